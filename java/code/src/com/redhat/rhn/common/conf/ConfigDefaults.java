@@ -44,6 +44,13 @@ public class ConfigDefaults {
     public static final String WEB_SESSION_DATABASE_LIFETIME =
             "web.session_database_lifetime";
 
+    /** Maximum number of API sessions kept in memory, 0 disables the cache */
+    public static final String WEB_SESSION_API_CACHE_SIZE = "web.session_api_cache_size";
+    /** Seconds an API session is served from memory before it is read from the database again */
+    public static final String WEB_SESSION_API_CACHE_TTL = "web.session_api_cache_ttl";
+    /** Seconds between the batched writes of the API session expiration times, 0 writes them on each call */
+    public static final String WEB_SESSION_API_FLUSH_INTERVAL = "web.session_api_flush_interval";
+
     public static final String WEB_SESSION_SECRET_1 = "web.session_secret_1";
     public static final String WEB_SESSION_SECRET_2 = "web.session_secret_2";
     public static final String WEB_SESSION_SECRET_3 = "web.session_secret_3";
@@ -181,8 +188,21 @@ public class ConfigDefaults {
     private static final String REPORT_DB_SSLROOTCERT = "report_db_sslrootcert";
     private static final String REPORT_DB_SSLMODE = "report_db_sslmode";
     private static final String REPORT_DB_PROTO = "reporting.hibernate.connection.driver_proto";
-    public static final String REPORT_DB_BATCH_SIZE = "report_db_batch_size";
     public static final String REPORT_DB_HUB_WORKERS = "report_db_hub_workers";
+    /** Number of tables copied in parallel from each peripheral server by the hub report db update */
+    public static final String REPORT_DB_HUB_TABLE_WORKERS = "report_db_hub_table_workers";
+    /**
+     * Number of reporting database tables refreshed in parallel by the report db update task.
+     * With more than one worker each table is committed on its own instead of in a single transaction.
+     */
+    public static final String REPORT_DB_UPDATE_WORKERS = "report_db_update_workers";
+    /**
+     * Refresh only the systems recorded in the change log instead of rebuilding the system tables. The
+     * change log triggers are switched on and off by the report db update task following this setting.
+     */
+    public static final String REPORT_DB_UPDATE_INCREMENTAL = "report_db_update_incremental";
+    /** Hours after which an incremental report db update task falls back to a full rebuild */
+    public static final String REPORT_DB_FULL_UPDATE_INTERVAL = "report_db_full_update_interval";
 
     public static final String LOOKUP_EXCEPT_SEND_EMAIL = "lookup_exception_email";
 
@@ -193,6 +213,12 @@ public class ConfigDefaults {
     /** Prometheus metric export flag */
     public static final String PROMETHEUS_MONITORING_ENABLED = "prometheus_monitoring_enabled";
 
+    /** Seconds between the refreshes of the systems statistics exported to Prometheus */
+    public static final String PROMETHEUS_SYSTEMS_REFRESH_INTERVAL = "prometheus_systems_refresh_interval";
+
+    /** Number of channels of a content lifecycle environment filtered concurrently during a build */
+    public static final String CLM_ALIGN_PARALLEL_THREADS = "java.clm_align_parallel_threads";
+
     /**
      * System Currency defaults
      */
@@ -209,6 +235,8 @@ public class ConfigDefaults {
      * Taskomatic defaults
      */
     private static final String TASKOMATIC_CHANNEL_REPODATA_WORKERS = "java.taskomatic_channel_repodata_workers";
+    private static final String TASKOMATIC_REPODATA_PIPELINED = "java.taskomatic_repodata_pipelined";
+    private static final String TASKOMATIC_REPODATA_INCREMENTAL = "java.taskomatic_repodata_incremental";
 
     /**
      * HTTP proxy defaults
@@ -227,6 +255,9 @@ public class ConfigDefaults {
     public static final String REG_BATCH_SIZE = "server.susemanager.reg_batch_size";
     public static final String SCC_BACKUP_SRV_USR = "server.susemanager.scc_backup_srv_usr";
     public static final String PRODUCT_TREE_TAG = "java.product_tree_tag";
+    public static final String SCC_PARALLEL_PAGE_REQUESTS = "java.scc_parallel_page_requests";
+    public static final String SCC_PARALLEL_REGISTRATIONS = "java.scc_parallel_registrations";
+    public static final String SCC_REGISTRATION_RETRIES = "java.scc_registration_retries";
 
     public static final String MESSAGE_QUEUE_THREAD_POOL_SIZE = "java.message_queue_thread_pool_size";
 
@@ -328,6 +359,22 @@ public class ConfigDefaults {
      */
     public static final String SALT_EVENTS_PER_COMMIT = "java.salt_events_per_commit";
 
+    /**
+     * If true, the Salt event queues are drained in batches sized by the measured processing time,
+     * between 1 and java.salt_events_max_per_commit events per COMMIT.
+     */
+    public static final String SALT_EVENTS_ADAPTIVE_COMMIT = "java.salt_events_adaptive_commit";
+
+    /**
+     * Maximum number of events processed before COMMITTing to the database in adaptive mode.
+     */
+    public static final String SALT_EVENTS_MAX_PER_COMMIT = "java.salt_events_max_per_commit";
+
+    /**
+     * Target duration in milliseconds of the processing of a batch of events in adaptive mode.
+     */
+    public static final String SALT_EVENTS_COMMIT_TARGET_MS = "java.salt_events_commit_target_ms";
+
     /**
      * Single Sign-On associated config option name in rhn.conf
      */
@@ -869,6 +916,23 @@ public class ConfigDefaults {
         return Config.get().getInt(TASKOMATIC_CHANNEL_REPODATA_WORKERS, 1);
     }
 
+    /**
+     * Returns true if the repodata files should be compressed and digested on dedicated threads
+     * @return true if the repodata generation is pipelined
+     */
+    public boolean isTaskoRepodataPipelined() {
+        return Config.get().getBoolean(TASKOMATIC_REPODATA_PIPELINED, false);
+    }
+
+    /**
+     * Returns true if the channel metadata should reuse the package XML of the previous generation
+     * for the packages which did not change
+     * @return true if the repodata generation is incremental
+     */
+    public boolean isTaskoRepodataIncremental() {
+        return Config.get().getBoolean(TASKOMATIC_REPODATA_INCREMENTAL, false);
+    }
+
     /**
      * Gets the proxy host.
      * @return the proxy host
@@ -997,6 +1061,46 @@ public class ConfigDefaults {
         return Config.get().getBoolean(PROMETHEUS_MONITORING_ENABLED);
     }
 
+    /**
+     * Returns the number of seconds between the refreshes of the systems statistics exported to Prometheus
+     * @return the refresh interval in seconds
+     */
+    public int getPrometheusSystemsRefreshInterval() {
+        return Config.get().getInt(PROMETHEUS_SYSTEMS_REFRESH_INTERVAL, 60);
+    }
+
+    /**
+     * Returns the number of channels of a content lifecycle environment filtered concurrently during a build
+     * @return the number of threads
+     */
+    public int getClmAlignParallelThreads() {
+        return Config.get().getInt(CLM_ALIGN_PARALLEL_THREADS, 4);
+    }
+
+    /**
+     * Returns the maximum number of pages of an SCC list fetched concurrently
+     * @return the number of concurrent page requests
+     */
+    public int getSCCParallelPageRequests() {
+        return Config.get().getInt(SCC_PARALLEL_PAGE_REQUESTS, 4);
+    }
+
+    /**
+     * Returns the maximum number of batches of system registrations sent concurrently to SCC
+     * @return the number of concurrent registration requests
+     */
+    public int getSCCParallelRegistrations() {
+        return Config.get().getInt(SCC_PARALLEL_REGISTRATIONS, 2);
+    }
+
+    /**
+     * Returns how many times a batch of system registrations is retried after a transient SCC error
+     * @return the number of retries
+     */
+    public int getSCCRegistrationRetries() {
+        return Config.get().getInt(SCC_REGISTRATION_RETRIES, 3);
+    }
+
     /**
      * Returns the duration, in hours, of the time window for Salt minions to
      * stage packages in advance of scheduled installations or upgrades.
@@ -1056,6 +1160,32 @@ public class ConfigDefaults {
         return Config.get().getInt(SALT_EVENTS_PER_COMMIT, 1);
     }
 
+    /**
+     * Returns true if the Salt event queues are drained in batches sized by the measured processing time.
+     *
+     * As with salt_events_per_commit, processing multiple events per COMMIT decreases reliability.
+     * @return true if the adaptive commit size is enabled
+     */
+    public boolean isSaltEventsAdaptiveCommit() {
+        return Config.get().getBoolean(SALT_EVENTS_ADAPTIVE_COMMIT, false);
+    }
+
+    /**
+     * Returns the maximum number of events processed before COMMITTing to the database in adaptive mode.
+     * @return the maximum number of events per commit
+     */
+    public int getSaltEventsMaxPerCommit() {
+        return Config.get().getInt(SALT_EVENTS_MAX_PER_COMMIT, 100);
+    }
+
+    /**
+     * Returns the target duration in milliseconds of the processing of a batch of events in adaptive mode.
+     * @return the target duration in milliseconds
+     */
+    public int getSaltEventsCommitTargetMillis() {
+        return Config.get().getInt(SALT_EVENTS_COMMIT_TARGET_MS, 1000);
+    }
+
 
     /**
      * Returns the notifications type disabled.
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource;
+
+import com.redhat.rhn.common.MethodInvocationException;
+import com.redhat.rhn.common.translation.Translator;
+import com.redhat.rhn.common.util.MethodUtil;
+import com.redhat.rhn.common.util.StringUtil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sets the columns of a query result row into a DTO object. The setters for each
+ * (DTO class, column list) pair are resolved only once and invoked through method handles,
+ * following the same rules as {@link MethodUtil#callMethod(Object, String, Object...)}:
+ * the first public setter accepting the value, directly or through the {@link Translator}, wins.
+ * The translation methods and the collection getters are resolved once as well.
+ * Collection setters get the value appended to the collection returned by the getter.
+ */
+public class BeanRowMapper {
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType TRANSLATOR_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final Map<Class<?>, Map<List<String>, BeanRowMapper>> MAPPERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Map<String, PropertySetter>> SETTERS = new ConcurrentHashMap<>();
+
+    private final List<String> columns;
+    private final PropertySetter[] setters;
+
+    private BeanRowMapper(Class<?> clazz, List<String> columnsIn) {
+        columns = columnsIn;
+        Map<String, PropertySetter> classSetters = SETTERS.computeIfAbsent(clazz, c -> new ConcurrentHashMap<>());
+        setters = columnsIn.stream()
+                .map(column -> classSetters.computeIfAbsent(column, col -> new PropertySetter(clazz, col)))
+                .toArray(PropertySetter[]::new);
+    }
+
+    /**
+     * Returns the mapper for a DTO class and the columns of a result set
+     * @param clazz the DTO class
+     * @param columns the lower case column names, in result set order
+     * @return the mapper
+     */
+    public static BeanRowMapper getMapper(Class<?> clazz, List<String> columns) {
+        return MAPPERS.computeIfAbsent(clazz, c -> new ConcurrentHashMap<>())
+                .computeIfAbsent(List.copyOf(columns), cols -> new BeanRowMapper(clazz, cols));
+    }
+
+    /**
+     * @return the lower case column names, in result set order
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Sets the value of a column into the object
+     * @param obj the DTO object
+     * @param columnIndex the 0-based index of the column in {@link #getColumns()}
+     * @param value the column value
+     */
+    public void setProperty(Object obj, int columnIndex, Object value) {
+        setters[columnIndex].set(obj, value);
+    }
+
+    /**
+     * Setter of one property of a DTO class
+     */
+    private static class PropertySetter {
+        private final String setName;
+        private final String getName;
+        private final List<Candidate> candidates = new ArrayList<>();
+        private final boolean isList;
+        private final Map<Class<?>, Optional<Candidate>> byValueClass = new ConcurrentHashMap<>();
+        private final Optional<Candidate> forNull;
+        private Method getterMethod;
+        private MethodHandle getter;
+
+        PropertySetter(Class<?> clazz, String column) {
+            setName = StringUtil.beanify("set " + column);
+            getName = StringUtil.beanify("get " + column);
+
+            boolean list = false;
+            boolean first = true;
+            for (Method method : clazz.getMethods()) {
+                if (!method.getName().equals(setName)) {
+                    continue;
+                }
+                // only the first setter found decides whether the property is a collection
+                if (first && method.getParameterCount() > 0) {
+                    list = Collection.class.isAssignableFrom(method.getParameterTypes()[0]);
+                    first = false;
+                }
+                if (method.getParameterCount() == 1) {
+                    candidates.add(new Candidate(method));
+                }
+            }
+            isList = list;
+
+            if (isList) {
+                try {
+                    getterMethod = clazz.getMethod(getName);
+                    getter = MethodHandles.publicLookup().unreflect(getterMethod).asType(GETTER_TYPE);
+                }
+                catch (NoSuchMethodException e) {
+                    // MethodUtil reports the missing getter
+                    getterMethod = null;
+                }
+                catch (IllegalAccessException e) {
+                    // e.g. public method declared in a non public class, fall back to reflection
+                    getter = null;
+                }
+            }
+
+            // a null value goes to the first setter if its parameter is not primitive,
+            // otherwise MethodUtil has to deal with it
+            forNull = candidates.stream()
+                    .findFirst()
+                    .filter(c -> !c.type.isPrimitive());
+        }
+
+        @SuppressWarnings("unchecked")
+        void set(Object obj, Object value) {
+            if (isList) {
+                Collection<Object> c = (Collection<Object>) (getterMethod != null ?
+                        invokeGetter(obj) : MethodUtil.callMethod(obj, getName, new Object[0]));
+                if (c == null) {
+                    c = new ArrayList<>();
+                }
+                c.add(value);
+                invokeSetter(obj, c);
+            }
+            else {
+                invokeSetter(obj, value);
+            }
+        }
+
+        private Object invokeGetter(Object obj) {
+            try {
+                return getter != null ? getter.invokeExact(obj) : getterMethod.invoke(obj);
+            }
+            catch (Throwable t) {
+                throw new MethodInvocationException("Something bad happened when calling " + getName, t);
+            }
+        }
+
+        private void invokeSetter(Object obj, Object value) {
+            Optional<Candidate> candidate = value == null ? forNull :
+                    byValueClass.computeIfAbsent(value.getClass(), this::resolve);
+            if (candidate.isEmpty()) {
+                // let MethodUtil convert, or report the missing setter
+                MethodUtil.callMethod(obj, setName, value);
+                return;
+            }
+
+            Object argument = value;
+            if (candidate.get().translator != null) {
+                try {
+                    argument = (Object) candidate.get().translator.invokeExact(value);
+                }
+                catch (Throwable t) {
+                    // the translation depends on the actual value, use the generic path
+                    MethodUtil.callMethod(obj, setName, value);
+                    return;
+                }
+            }
+            candidate.get().invoke(obj, argument, setName);
+        }
+
+        private Optional<Candidate> resolve(Class<?> valueClass) {
+            for (Candidate candidate : candidates) {
+                if (candidate.type.isAssignableFrom(valueClass)) {
+                    return Optional.of(candidate);
+                }
+                Method translator = Translator.findTranslator(valueClass, candidate.type);
+                if (translator != null) {
+                    try {
+                        return Optional.of(candidate.converting(
+                                MethodHandles.publicLookup().unreflect(translator).asType(TRANSLATOR_TYPE)));
+                    }
+                    catch (IllegalAccessException e) {
+                        // let MethodUtil convert
+                        return Optional.empty();
+                    }
+                }
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * A setter method of a DTO class
+     */
+    private static class Candidate {
+        private final Method method;
+        private final Class<?> type;
+        private final MethodHandle translator;
+        private final MethodHandle handle;
+
+        Candidate(Method methodIn) {
+            this(methodIn, null, unreflect(methodIn));
+        }
+
+        private Candidate(Method methodIn, MethodHandle translatorIn, MethodHandle handleIn) {
+            method = methodIn;
+            type = methodIn.getParameterTypes()[0];
+            translator = translatorIn;
+            handle = handleIn;
+        }
+
+        private static MethodHandle unreflect(Method method) {
+            try {
+                return MethodHandles.publicLookup().unreflect(method).asType(SETTER_TYPE);
+            }
+            catch (IllegalAccessException e) {
+                // e.g. public method declared in a non public class, fall back to reflection
+                return null;
+            }
+        }
+
+        Candidate converting(MethodHandle translatorIn) {
+            return new Candidate(method, translatorIn, handle);
+        }
+
+        void invoke(Object obj, Object argument, String name) {
+            try {
+                if (handle != null) {
+                    handle.invokeExact(obj, argument);
+                }
+                else {
+                    method.invoke(obj, argument);
+                }
+            }
+            catch (Throwable t) {
+                throw new MethodInvocationException("Something bad happened when calling " + name, t);
+            }
+        }
+    }
+}
@@ -32,6 +32,7 @@ import org.hibernate.jdbc.ReturningWork;
 import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.math.BigDecimal;
+import java.sql.Array;
 import java.sql.CallableStatement;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -40,12 +41,15 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import javax.persistence.FlushModeType;
@@ -71,6 +75,16 @@ public class CachedStatement implements Serializable {
      */
     public static final int BATCH_SIZE = 500;
 
+    /**
+     * The bind parameter replacing the %s in-clause list of the queries
+     * marked with in-array="t". The whole list is bound as a single array,
+     * so the statement text does not depend on the list size.
+     */
+    private static final String IN_ARRAY_PARAM = "in_array";
+
+    private static final Pattern IN_CLAUSE = Pattern.compile("\\b(not\\s+)?in\\s*\\(\\s*%s\\s*\\)",
+            Pattern.CASE_INSENSITIVE);
+
     /*
      * This is the original config for this query as specified in the mode query
      * xml file. It is intended to be immutable.
@@ -114,6 +128,33 @@ public class CachedStatement implements Serializable {
         this.params = new ArrayList<>(parsedQuery.getParameterList());
         this.sqlStatement = parsedQuery.getSqlStatement();
         this.session = sessionIn;
+        if (parsedQuery.isInArray()) {
+            this.sqlStatement = toInArrayQuery(sqlStatement);
+            this.params.add(IN_ARRAY_PARAM);
+        }
+    }
+
+    /**
+     * Rewrites the "IN (%s)" and "NOT IN (%s)" clauses of a query to compare
+     * with the in-clause array parameter instead.
+     * @param sql the query
+     * @return the rewritten query
+     */
+    private String toInArrayQuery(String sql) {
+        Matcher matcher = IN_CLAUSE.matcher(sql);
+        StringBuilder sb = new StringBuilder();
+        boolean found = false;
+        while (matcher.find()) {
+            String operator = matcher.group(1) == null ? "= ANY" : "<> ALL";
+            matcher.appendReplacement(sb, operator + "(:" + IN_ARRAY_PARAM + ")");
+            found = true;
+        }
+        matcher.appendTail(sb);
+        if (!found || sb.indexOf("%s") >= 0) {
+            throw new IllegalArgumentException("Query '" + name +
+                    "' is marked as in-array but does not use %s only in IN clauses");
+        }
+        return sb.toString();
     }
 
     /**
@@ -174,6 +215,14 @@ public class CachedStatement implements Serializable {
         return protoQuery.getSqlStatement();
     }
 
+    /**
+     * Get the named parameters of the original query
+     * @return the parameter names
+     */
+    List<String> getOrigParameters() {
+        return protoQuery.getParameterList();
+    }
+
     /**
      * Get the column used to relate driving queries and elaborators
      * @return column name.
@@ -290,12 +339,11 @@ public class CachedStatement implements Serializable {
     }
 
     private <T> DataResult<T> internalExecuteNoSubClause(Map<String, ?> parameters, Mode mode) {
-        storeForRestart(parameters, null, mode);
         this.sqlStatement = NamedPreparedStatement.replaceBindParams(sqlStatement, qMap);
         Object resultObj = executeChecking(sqlStatement, qMap, parameters, mode, null);
         Class<DataResult<T>> drClazz = (Class<DataResult<T>>)(Class<?>) DataResult.class;
         if (drClazz.isAssignableFrom(resultObj.getClass())) {
-            return drClazz.cast(executeChecking(sqlStatement, qMap, parameters, mode, null));
+            return drClazz.cast(resultObj);
         }
         return new DataResult<>(mode);
     }
@@ -304,7 +352,13 @@ public class CachedStatement implements Serializable {
         storeForRestart(parameters, inClause, mode);
         this.sqlStatement = NamedPreparedStatement.replaceBindParams(sqlStatement, qMap);
 
-        if (sqlStatement.contains("%s")) {
+        if (protoQuery.isInArray()) {
+            if (inClause == null || inClause.isEmpty()) {
+                return 0;
+            }
+            return internalExecuteUpdateNoSubClause(withInArray(parameters, inClause), mode);
+        }
+        else if (sqlStatement.contains("%s")) {
             int returnInt = 0;
 
             int subStart = 0;
@@ -348,7 +402,13 @@ public class CachedStatement implements Serializable {
         storeForRestart(parameters, inClause, mode);
         this.sqlStatement = NamedPreparedStatement.replaceBindParams(sqlStatement, qMap);
 
-        if (sqlStatement.contains("%s")) {
+        if (protoQuery.isInArray()) {
+            if (inClause == null || inClause.isEmpty()) {
+                return new DataResult<>(mode);
+            }
+            return internalExecuteNoSubClause(withInArray(parameters, inClause), mode);
+        }
+        else if (sqlStatement.contains("%s")) {
             if (inClause == null || inClause.isEmpty()) {
                 return new DataResult<>(mode);
             }
@@ -374,6 +434,33 @@ public class CachedStatement implements Serializable {
         }
     }
 
+    private Map<String, Object> withInArray(Map<String, ?> parameters, List<?> inClause) {
+        Map<String, Object> result = parameters != null ? new HashMap<>(parameters) : new HashMap<>();
+        result.put(IN_ARRAY_PARAM, inClause);
+        return result;
+    }
+
+    /**
+     * Creates the array bound to the in-clause parameter. Strings are bound as
+     * a varchar array, numbers as a bigint array.
+     * @param connection the connection
+     * @param values the in-clause values
+     * @return the array
+     * @throws SQLException in case of error creating the array
+     */
+    private Array createInArray(Connection connection, List<?> values) throws SQLException {
+        if (values.stream().allMatch(v -> v == null || v instanceof String)) {
+            return connection.createArrayOf("varchar", values.toArray());
+        }
+        if (values.stream().allMatch(v -> v == null || v instanceof Number)) {
+            return connection.createArrayOf("bigint", values.stream()
+                    .map(v -> v == null ? null : ((Number) v).longValue())
+                    .toArray());
+        }
+        throw new IllegalArgumentException("In-clause values of query '" + getName() +
+                "' must be either all strings or all numbers");
+    }
+
     private String commaSeparatedList(List<?> list) {
         StringBuilder sb = new StringBuilder();
         boolean firstValue = true;
@@ -397,8 +484,10 @@ public class CachedStatement implements Serializable {
     Collection<Object> executeElaborator(List<Object> resultList, Mode mode,
             Map<String, ?> parametersIn) {
         List<Object> elaborated = new LinkedList<>();
-        for (int batch = 0; batch < resultList.size(); batch = batch + BATCH_SIZE) {
-            int toIndex = batch + BATCH_SIZE;
+        // in-array elaborators run only once for the whole list
+        int batchSize = protoQuery.isInArray() ? Math.max(resultList.size(), 1) : BATCH_SIZE;
+        for (int batch = 0; batch < resultList.size(); batch = batch + batchSize) {
+            int toIndex = batch + batchSize;
             if (toIndex > resultList.size()) {
                 toIndex = resultList.size();
             }
@@ -424,6 +513,18 @@ public class CachedStatement implements Serializable {
             return resultList;
         }
 
+        if (protoQuery.isInArray()) {
+            if (!checkForColumn(resultList.get(0), getColumn())) {
+                throw new MapColumnNotFoundException(
+                        "Column, " + getColumn() + ", not found in driving query results");
+            }
+            parameters.put(IN_ARRAY_PARAM, resultList.stream()
+                    .map(result -> getKey(result, getColumn()))
+                    .collect(Collectors.toList()));
+            return (DataResult<Object>) executeChecking(sqlStatement, qMap, parameters,
+                    mode, resultList);
+        }
+
         // If we aren't actually operating on a list, just elaborate.
         if (!sqlStatement.contains("%s")) {
             return (DataResult<Object>) executeChecking(sqlStatement, qMap, parameters,
@@ -456,7 +557,7 @@ public class CachedStatement implements Serializable {
         return cs.executeElaboratorBatch(resultList, mode, parameters);
     }
 
-    private Map<String, ?> setupParamMap(Map<String, ?> parameters) {
+    private Map<String, Object> setupParamMap(Map<String, ?> parameters) {
         if (parameters == null && !params.isEmpty()) {
             throw new IllegalArgumentException(
                     "Query contains named parameter," + " but value map is null");
@@ -532,8 +633,12 @@ public class CachedStatement implements Serializable {
         PreparedStatement ps = null;
         try {
             ps = prepareStatement(connection, sql, mode);
-            boolean returnType = NamedPreparedStatement.execute(ps, parameterMap,
-                    setupParamMap(parameters));
+            Map<String, Object> bindParameters = setupParamMap(parameters);
+            if (protoQuery.isInArray()) {
+                bindParameters.put(IN_ARRAY_PARAM,
+                        createInArray(connection, (List<?>) bindParameters.get(IN_ARRAY_PARAM)));
+            }
+            boolean returnType = NamedPreparedStatement.execute(ps, parameterMap, bindParameters);
             if (log.isDebugEnabled()) {
                 log.debug("execute() - Return type: {}", returnType);
             }
@@ -634,6 +739,9 @@ public class CachedStatement implements Serializable {
         try {
             // Get the column names from the result set.
             List<String> columns = getColumnNames(rs.getMetaData());
+            boolean isMap = className == null || className.equals("java.util.Map");
+            Class<?> clazz = isMap ? null : Class.forName(className);
+            BeanRowMapper mapper = isMap ? null : BeanRowMapper.getMapper(clazz, columns);
             if (currentResults != null && !columns.contains(getColumn().toLowerCase())) {
                 // This is ugly, but we check driving query results someplace
                 // else, so this is only executed if we are elaborating.
@@ -646,7 +754,7 @@ public class CachedStatement implements Serializable {
                 /*
                  * If no className was specified *or* if the caller wants a Map
                  */
-                if (className == null || className.equals("java.util.Map")) {
+                if (isMap) {
                     Row resultMap;
                     if (pointers == null) {
                         resultMap = new Row();
@@ -663,8 +771,9 @@ public class CachedStatement implements Serializable {
                          */
                         resultMap = (Row) currentResults.get(pos);
                     }
-                    addToMap(columns, rs, resultMap,
-                            mode.getElaborators().indexOf(parentStatement));
+                    // in-array elaborators are not expanded into a child statement
+                    addToMap(columns, rs, resultMap, mode.getElaborators().indexOf(
+                            protoQuery.isInArray() ? this : parentStatement));
 
                     // bug 141664: Don't add to the DataResult if we are
                     // elaborating the data.
@@ -676,7 +785,6 @@ public class CachedStatement implements Serializable {
                  * Otherwise, try to set the results to the class given.
                  */
                 else {
-                    Class<?> clazz = Class.forName(className);
                     Object obj;
                     if (pointers == null) {
                         obj = clazz.newInstance();
@@ -691,7 +799,7 @@ public class CachedStatement implements Serializable {
                         obj = currentResults.get(pos);
                     }
                     // if pointers are null, we are doing an elaborator.
-                    addToObject(columns, rs, obj, (pointers != null));
+                    addToObject(mapper, rs, obj, (pointers != null));
                     // bug 141664: Don't add to the DataResult if we are
                     // elaborating the data.
                     if (pointers == null) {
@@ -767,8 +875,7 @@ public class CachedStatement implements Serializable {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void addToObject(List<String> columns, ResultSet rs, Object obj,
+    private void addToObject(BeanRowMapper mapper, ResultSet rs, Object obj,
             boolean elaborator)
         throws SQLException {
 
@@ -779,57 +886,23 @@ public class CachedStatement implements Serializable {
             columnSkip = cb.getCallBackColumns();
         }
         else {
-            columnSkip = new ArrayList<>();
+            columnSkip = Collections.emptyList();
         }
 
-        for (String columnName : columns) {
-            if (columnSkip.contains(columnName.toLowerCase())) {
+        List<String> columns = mapper.getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            if (columnSkip.contains(columns.get(i))) {
                 continue;
             }
-
-            String setName = StringUtil.beanify("set " + columnName.toLowerCase());
-            String getName = StringUtil.beanify("get " + columnName.toLowerCase());
-
-            boolean isList = false;
-            Method[] methods = obj.getClass().getMethods();
             /*
-             * Now loop through the methods and find the set method for this
-             * column then decide if it takes a collection Note: This action
-             * might not complete correctly if there are two set methods with
-             * the same name
-             */
-            for (Method methodIn : methods) {
-                // getName() gets the name of the set method
-                // setName is the name of the set method
-                if (methodIn.getName().equals(setName)) {
-                    Class<?> paramType = methodIn.getParameterTypes()[0];
-                    if (Collection.class.isAssignableFrom(paramType)) {
-                        isList = true;
-                    }
-                    break;
-                }
-            }
-
-            if (isList) { // requires matching get method returning the same
-                // list
-                Collection<Object> c = (Collection<Object>) MethodUtil.callMethod(obj,
-                        getName, new Object[0]);
-                if (c == null) {
-                    c = new ArrayList<>();
-                }
-                c.add(getObject(rs, columnName));
-                MethodUtil.callMethod(obj, setName, c);
-                continue;
-            }
-            /*
-             * Just call the set method. This will call the same set method
-             * multiple times. If the result set should be a list, but has a
+             * Calls the set method of the column, or adds the value to the collection
+             * if the set method takes one. If the result set should be a list, but has a
              * non-Collection set method, the attribute corresponding to this
              * column will ultimately contain the last item found for this
              * column.
              */
-            MethodUtil.callMethod(obj, setName, getObject(rs, columnName));
-        } // while
+            mapper.setProperty(obj, i, getObject(rs, i + 1));
+        }
     }
 
     /**
@@ -845,7 +918,19 @@ public class CachedStatement implements Serializable {
      * @throws SQLException if rs.getObject/rs.getTimestamp raise an exception.
      */
     private Object getObject(ResultSet rs, String columnName) throws SQLException {
-        Object columnValue = rs.getObject(columnName);
+        return getObject(rs, rs.findColumn(columnName));
+    }
+
+    /**
+     * Same as {@link #getObject(ResultSet, String)}, with the 1-based column index.
+     * @param rs the sql result set
+     * @param columnIndex the index of the column to be returned
+     * @return the timestamp if rs.getObject is a date, the Long if rs.getObject
+     * is a BigDecimal, or just rs.getObject otherwise.
+     * @throws SQLException if rs.getObject/rs.getTimestamp raise an exception.
+     */
+    private Object getObject(ResultSet rs, int columnIndex) throws SQLException {
+        Object columnValue = rs.getObject(columnIndex);
         if (columnValue == null) {
             return null;
         }
@@ -862,10 +947,10 @@ public class CachedStatement implements Serializable {
                      .equals(columnValue.getClass().getCanonicalName())) ||
                 ("oracle.sql.TIMESTAMPTZ"
                      .equals(columnValue.getClass().getCanonicalName()))) {
-            return rs.getTimestamp(columnName);
+            return rs.getTimestamp(columnIndex);
         }
         else if (columnValue instanceof BigDecimal) {
-            return rs.getLong(columnName);
+            return rs.getLong(columnIndex);
         }
         return columnValue;
     }
@@ -303,6 +303,7 @@ class DataSourceParserHelper implements ContentHandler, Serializable {
         private String elaboratorJoinColumn;
         private List<String> parameterList;
         private boolean multiple;
+        private boolean inArray;
         private String sqlStatement;
 
         /**
@@ -327,6 +328,9 @@ class DataSourceParserHelper implements ContentHandler, Serializable {
             String mult = parsedAttributes.getValue("multiple");
             multiple = (mult != null && mult.equals("t"));
 
+            String array = parsedAttributes.getValue("in-array");
+            inArray = (array != null && array.equals("t"));
+
             parameterList = new ArrayList<>();
             String parameters = parsedAttributes.getValue("params");
             if (parameters != null && !parameters.isEmpty()) {
@@ -342,6 +346,7 @@ class DataSourceParserHelper implements ContentHandler, Serializable {
             alias = parsedQuery.getAlias();
             elaboratorJoinColumn = parsedQuery.getElaboratorJoinColumn();
             multiple = parsedQuery.isMultiple();
+            inArray = parsedQuery.isInArray();
             parameterList = parsedQuery.getParameterList();
             sqlStatement = parsedQuery.getSqlStatement();
         }
@@ -379,6 +384,11 @@ class DataSourceParserHelper implements ContentHandler, Serializable {
         public boolean isMultiple() {
             return multiple;
         }
+
+        @Override
+        public boolean isInArray() {
+            return inArray;
+        }
     }
 
     /**
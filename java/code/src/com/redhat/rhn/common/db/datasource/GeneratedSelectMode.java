@@ -118,5 +118,10 @@ public class GeneratedSelectMode extends SelectMode {
         public boolean isMultiple() {
             return false;
         }
+
+        @Override
+        public boolean isInArray() {
+            return false;
+        }
     }
 }
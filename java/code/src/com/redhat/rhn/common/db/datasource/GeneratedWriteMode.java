@@ -119,5 +119,10 @@ public class GeneratedWriteMode extends WriteMode {
         public boolean isMultiple() {
             return false;
         }
+
+        @Override
+        public boolean isInArray() {
+            return false;
+        }
     }
 }
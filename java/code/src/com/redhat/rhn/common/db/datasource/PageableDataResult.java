@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * A list of the rows of a select mode, able to return single pages of them filtered, sorted and
+ * limited by the database. Used as the dataset of a list tag, only the rows of the displayed page
+ * are fetched and elaborated, whatever the size of the list.
+ * <p>
+ * The database can only filter and sort by the list attributes mapped to a column of the driving
+ * query: filtering matches the rows whose column contains the filter value, ignoring case, and
+ * sorting puts null values first in ascending order. Any other use of the list, like iterating over
+ * it, executes and elaborates the whole query once.
+ * <p>
+ * The driving query must not have an IN clause.
+ *
+ * @param <T> the type of the rows
+ */
+public class PageableDataResult<T> extends AbstractList<T> {
+
+    private static final String ALIAS = "paged_query";
+    private static final String FILTER_PARAM = "paged_filter";
+    private static final String LIMIT_PARAM = "paged_limit";
+    private static final String OFFSET_PARAM = "paged_offset";
+    private static final String LETTER_PARAM = "paged_letter";
+    private static final String VALUE_PARAM = "paged_value";
+    private static final Pattern COLUMN_NAME = Pattern.compile("[a-zA-Z_][a-zA-Z0-9_]*");
+
+    private final SelectMode mode;
+    private final Map<String, Object> params;
+    private final Map<String, Object> elabParams;
+    private final Map<String, String> columns;
+    private final Map<List<String>, Integer> counts = new HashMap<>();
+    private DataResult<T> all;
+
+    /**
+     * Constructor
+     * @param modeIn the select mode of the rows
+     * @param paramsIn the parameters of the driving query
+     * @param elabParamsIn the parameters of the elaborators, null if there are none
+     * @param columnsIn the list attributes that the database can filter and sort by, mapped to the
+     * corresponding column of the driving query
+     */
+    public PageableDataResult(SelectMode modeIn, Map<String, Object> paramsIn,
+            Map<String, Object> elabParamsIn, Map<String, String> columnsIn) {
+        if (modeIn.getQuery().getOrigQuery().contains("%s")) {
+            throw new IllegalArgumentException("Query " + modeIn.getName() + " has an IN clause");
+        }
+        columnsIn.values().stream()
+                .filter(c -> !COLUMN_NAME.matcher(c).matches())
+                .findAny()
+                .ifPresent(c -> {
+                    throw new IllegalArgumentException("Invalid column name: " + c);
+                });
+        mode = modeIn;
+        params = paramsIn;
+        elabParams = Optional.ofNullable(elabParamsIn).orElseGet(Collections::emptyMap);
+        columns = columnsIn;
+    }
+
+    /**
+     * Tells whether the database can filter and sort by a list attribute
+     * @param attribute the list attribute
+     * @return true if the attribute is mapped to a column of the driving query
+     */
+    public boolean hasColumn(String attribute) {
+        return attribute != null && columns.containsKey(attribute);
+    }
+
+    /**
+     * Counts the rows matching a filter
+     * @param filterAttribute the attribute to filter by, null for no filter
+     * @param filterValue the value the attribute has to contain
+     * @return the number of rows
+     */
+    public int count(String filterAttribute, String filterValue) {
+        if (!isFiltered(filterAttribute, filterValue) && all != null) {
+            return all.size();
+        }
+        List<String> key = isFiltered(filterAttribute, filterValue) ?
+                List.of(filterAttribute, filterValue) : List.of();
+        return counts.computeIfAbsent(key, k -> {
+            Map<String, Object> values = new HashMap<>();
+            String sql = select("count(*) AS total", filterAttribute, filterValue, null, values);
+            return getNumber(execute("count", sql, values, false)).intValue();
+        });
+    }
+
+    /**
+     * Returns one page of the rows matching a filter, with all the elaborators applied. The total
+     * size of the result is the number of rows matching the filter.
+     * @param filterAttribute the attribute to filter by, null for no filter
+     * @param filterValue the value the attribute has to contain
+     * @param sortAttribute the attribute to sort by, null to keep the order of the driving query
+     * @param ascending true to sort in ascending order
+     * @param offset the number of rows to skip
+     * @param limit the maximum number of rows of the page, 0 for no limit
+     * @return the rows of the page
+     */
+    public DataResult<T> getPage(String filterAttribute, String filterValue, String sortAttribute,
+            boolean ascending, int offset, int limit) {
+        Map<String, Object> values = new HashMap<>();
+        StringBuilder sql = new StringBuilder(select(ALIAS + ".*", filterAttribute, filterValue, null, values));
+        if (hasColumn(sortAttribute)) {
+            sql.append(" ORDER BY ").append(column(sortAttribute))
+                    .append(ascending ? " ASC NULLS FIRST" : " DESC NULLS LAST");
+            // keep the pages stable when several rows have the same value
+            if (hasColumn("id") && !"id".equals(sortAttribute)) {
+                sql.append(", ").append(column("id"));
+            }
+        }
+        if (limit > 0) {
+            sql.append(" LIMIT :" + LIMIT_PARAM);
+            values.put(LIMIT_PARAM, limit);
+        }
+        sql.append(" OFFSET :" + OFFSET_PARAM);
+        values.put(OFFSET_PARAM, offset);
+
+        DataResult<T> page = execute("page", sql.toString(), values, true);
+        page.elaborate(elabParams);
+        page.setTotalSize(count(filterAttribute, filterValue));
+        page.setStart(offset + 1);
+        page.setEnd(offset + page.size());
+        return page;
+    }
+
+    /**
+     * Returns the upper case initials of the values of an attribute among the rows matching a filter
+     * @param attribute the attribute
+     * @param filterAttribute the attribute to filter by, null for no filter
+     * @param filterValue the value the attribute has to contain
+     * @return the initials
+     */
+    public Set<Character> getInitials(String attribute, String filterAttribute, String filterValue) {
+        Map<String, Object> values = new HashMap<>();
+        String sql = select("DISTINCT upper(substr(" + column(attribute) + ", 1, 1)) AS initial",
+                filterAttribute, filterValue, "trim(" + column(attribute) + ") <> ''", values);
+        Set<Character> initials = new HashSet<>();
+        DataResult<Map<String, Object>> rows = execute("initials", sql, values, false);
+        rows.forEach(row -> initials.add(((String) row.get("initial")).charAt(0)));
+        return initials;
+    }
+
+    /**
+     * Returns the position of the first row whose attribute value starts with a letter, once the rows
+     * matching a filter are sorted by that attribute in ascending order
+     * @param attribute the attribute
+     * @param initial the upper case letter
+     * @param filterAttribute the attribute to filter by, null for no filter
+     * @param filterValue the value the attribute has to contain
+     * @return the 0-based position, or -1 if no value starts with the letter
+     */
+    public int getInitialPosition(String attribute, char initial, String filterAttribute, String filterValue) {
+        Map<String, Object> values = new HashMap<>();
+        String sql = select("min(" + column(attribute) + ") AS first_value", filterAttribute, filterValue,
+                "upper(substr(" + column(attribute) + ", 1, 1)) = :" + LETTER_PARAM, values);
+        values.put(LETTER_PARAM, String.valueOf(initial));
+        DataResult<Map<String, Object>> first = execute("initial", sql, values, false);
+        Object firstValue = first.isEmpty() ? null : first.get(0).get("first_value");
+        if (firstValue == null) {
+            return -1;
+        }
+
+        values = new HashMap<>();
+        sql = select("count(*) AS total", filterAttribute, filterValue,
+                "(" + column(attribute) + " IS NULL OR " + column(attribute) + " < :" + VALUE_PARAM + ")", values);
+        values.put(VALUE_PARAM, firstValue);
+        return getNumber(execute("position", sql, values, false)).intValue();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T get(int index) {
+        return getAll().get(index);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size() {
+        return getAll().size();
+    }
+
+    private DataResult<T> getAll() {
+        if (all == null) {
+            all = currentMode().execute(params);
+            all.elaborate(elabParams);
+        }
+        return all;
+    }
+
+    /**
+     * The list may outlive the request that created it, e.g. when stored in the HTTP session
+     * for the CSV export: always run the queries with the current hibernate session.
+     */
+    private SelectMode currentMode() {
+        SelectMode current = ModeFactory.getMode(HibernateFactory.getSession(), mode);
+        current.setClassString(mode.getClassString());
+        return current;
+    }
+
+    private static boolean isFiltered(String filterAttribute, String filterValue) {
+        return filterAttribute != null && filterValue != null && !filterValue.isEmpty();
+    }
+
+    private String column(String attribute) {
+        String column = columns.get(attribute);
+        if (column == null) {
+            throw new IllegalArgumentException("Attribute " + attribute + " is not mapped to a column");
+        }
+        return ALIAS + "." + column;
+    }
+
+    private String select(String what, String filterAttribute, String filterValue, String condition,
+            Map<String, Object> values) {
+        values.putAll(params);
+        List<String> where = new ArrayList<>();
+        if (isFiltered(filterAttribute, filterValue)) {
+            where.add("strpos(lower(CAST(" + column(filterAttribute) + " AS VARCHAR)), :" + FILTER_PARAM + ") > 0");
+            values.put(FILTER_PARAM, filterValue.toLowerCase());
+        }
+        if (condition != null) {
+            where.add(condition);
+        }
+        return "SELECT " + what + " FROM (" + mode.getQuery().getOrigQuery() + ") " + ALIAS +
+                (where.isEmpty() ? "" : " WHERE " + String.join(" AND ", where));
+    }
+
+    private <R> DataResult<R> execute(String name, String sql, Map<String, Object> values, boolean rows) {
+        List<String> names = new ArrayList<>(Optional.ofNullable(mode.getQuery().getOrigParameters())
+                .orElseGet(List::of));
+        values.keySet().stream()
+                .filter(k -> k.startsWith("paged_"))
+                .forEach(names::add);
+        SelectMode paged = new GeneratedSelectMode(mode.getName() + "." + name, HibernateFactory.getSession(),
+                sql, names);
+        if (rows) {
+            SelectMode current = currentMode();
+            paged.setClassString(current.getClassString());
+            current.getElaborators().forEach(paged::addElaborator);
+        }
+        return paged.execute(values);
+    }
+
+    private static Number getNumber(DataResult<Map<String, Object>> result) {
+        return (Number) result.get(0).get("total");
+    }
+}
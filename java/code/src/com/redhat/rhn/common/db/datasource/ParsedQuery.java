@@ -66,4 +66,11 @@ public interface ParsedQuery {
      * for each item in the primary query, false otherwise.
      */
     boolean isMultiple();
+
+    /**
+     * Determine if the %s in-clause of this query is bound as a single array
+     * parameter instead of being expanded into literal batches.
+     * @return True if the in-clause list is bound as an array, false otherwise.
+     */
+    boolean isInArray();
 }
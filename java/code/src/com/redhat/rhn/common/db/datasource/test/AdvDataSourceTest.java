@@ -25,6 +25,7 @@ import com.redhat.rhn.common.ObjectCreateWrapperException;
 import com.redhat.rhn.common.db.datasource.CallableMode;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.PageableDataResult;
 import com.redhat.rhn.common.db.datasource.Row;
 import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.db.datasource.WriteMode;
@@ -295,6 +296,35 @@ public class AdvDataSourceTest extends RhnBaseTestCase {
         }
     }
 
+    @Test
+    public void testPageableDataResult() {
+        for (int i = 0; i < 20; i++) {
+            insert((i % 2 == 0 ? "even" : "odd") + String.format("%02d", i), 1000 + i);
+        }
+        SelectMode m = ModeFactory.getMode(TEST_QUERIES, "find_all_in_table");
+        PageableDataResult<AdvDataSourceDto> pdr = new PageableDataResult<>(m, Collections.emptyMap(), null,
+                Map.of("id", "id", "foobar", "foobar"));
+        assertTrue(pdr.hasColumn("foobar"));
+        assertFalse(pdr.hasColumn("pin"));
+        assertEquals(20, pdr.count(null, null));
+        assertEquals(10, pdr.count("foobar", "ODD"));
+
+        DataResult<AdvDataSourceDto> page = pdr.getPage("foobar", "odd", "foobar", false, 2, 5);
+        assertEquals(5, page.size());
+        assertEquals(10, page.getTotalSize());
+        assertEquals(3, page.getStart());
+        assertEquals(7, page.getEnd());
+        assertEquals("odd15", page.get(0).getFoobar());
+        assertEquals("odd07", page.get(4).getFoobar());
+        // only the rows of the page are elaborated
+        page.forEach(row -> assertNotNull(row.getPin()));
+
+        assertEquals(Set.of('E', 'O'), pdr.getInitials("foobar", null, null));
+        assertEquals(10, pdr.getInitialPosition("foobar", 'O', null, null));
+        assertEquals(-1, pdr.getInitialPosition("foobar", 'X', null, null));
+        assertEquals(20, pdr.size());
+    }
+
     @Test
     public void testSelectInWithParams() {
         SelectMode m = ModeFactory.getMode(TEST_QUERIES, "select_in_withparams");
@@ -308,6 +338,53 @@ public class AdvDataSourceTest extends RhnBaseTestCase {
         assertNotNull(dr);
     }
 
+    @Test
+    public void testSelectInArrayWithParams() {
+        SelectMode m = ModeFactory.getMode(TEST_QUERIES, "select_in_array");
+        assertFalse(m.getQuery().getQuery().contains("%s"));
+        Map<String, Object> params = new HashMap<>();
+        params.put("name", "jesusr");
+
+        DataResult<Map<String, Object>> dr = m.execute(params, List.of(500, 1));
+        assertNotNull(dr);
+        assertTrue(m.execute(params, Collections.emptyList()).isEmpty());
+    }
+
+    @Test
+    public void testInArrayElaboration() {
+        int startId = 1000;
+        int endId = startId + 1500;
+
+        for (int i = startId; i < endId; i++) {
+            insert("foobar" + TestUtils.randomString(), i);
+        }
+        SelectMode m = ModeFactory.getMode(TEST_QUERIES, "find_all_in_table_in_array");
+        DataResult<AdvDataSourceDto> dr = m.execute(Collections.emptyMap());
+        dr.elaborate();
+        assertEquals(1500, dr.size());
+        for (AdvDataSourceDto row : dr) {
+            assertNotNull(row.getTestColumn());
+            assertNotNull(row.getPin());
+            assertNotNull(row.getFoobar());
+        }
+    }
+
+    @Test
+    public void testInArrayUpdate() {
+        insert("in_array_1", 10);
+        insert("in_array_2", 11);
+        insert("in_array_3", 12);
+
+        WriteMode m = ModeFactory.getWriteMode(TEST_QUERIES, "delete_from_table_in_array");
+        assertEquals(2, m.executeUpdate(Collections.emptyMap(), List.of(10L, 11L)));
+        assertEquals(0, m.executeUpdate(Collections.emptyMap(), Collections.emptyList()));
+
+        SelectMode select = ModeFactory.getMode(TEST_QUERIES, "find_in_table_not_in_array");
+        DataResult<AdvDataSourceDto> dr = select.execute(List.of("in_array_1", "in_array_2"));
+        assertEquals(1, dr.size());
+        assertEquals("in_array_3", dr.get(0).getFoobar());
+    }
+
 
     @Override
     @BeforeEach
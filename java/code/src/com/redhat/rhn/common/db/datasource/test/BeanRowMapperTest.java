@@ -0,0 +1,174 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.redhat.rhn.common.MethodInvocationException;
+import com.redhat.rhn.common.db.datasource.BeanRowMapper;
+import com.redhat.rhn.common.util.MethodNotFoundException;
+import com.redhat.rhn.common.util.MethodUtil;
+import com.redhat.rhn.common.util.StringUtil;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+public class BeanRowMapperTest {
+
+    private static final List<String> COLUMNS = List.of("id", "name", "created", "count", "tags");
+
+    /**
+     * DTO with the kind of setters found in the frontend DTOs
+     */
+    public static class MappedDto {
+        private Long id;
+        private String name;
+        private Date created;
+        private int count;
+        private List<String> tags;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long idIn) {
+            id = idIn;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String nameIn) {
+            if ("fail".equals(nameIn)) {
+                throw new IllegalArgumentException("invalid name");
+            }
+            name = nameIn;
+        }
+
+        public Date getCreated() {
+            return created;
+        }
+
+        public void setCreated(Date createdIn) {
+            created = createdIn;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public void setCount(int countIn) {
+            count = countIn;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tagsIn) {
+            tags = tagsIn;
+        }
+    }
+
+    @Test
+    public void testSetProperties() {
+        BeanRowMapper mapper = BeanRowMapper.getMapper(MappedDto.class, COLUMNS);
+        MappedDto dto = new MappedDto();
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        mapper.setProperty(dto, 0, 42L);
+        mapper.setProperty(dto, 1, "foo");
+        mapper.setProperty(dto, 2, now);
+        // the Long gets translated to the primitive int
+        mapper.setProperty(dto, 3, 3L);
+        mapper.setProperty(dto, 4, "first");
+        mapper.setProperty(dto, 4, "second");
+
+        assertEquals(42L, dto.getId());
+        assertEquals("foo", dto.getName());
+        assertEquals(now, dto.getCreated());
+        assertEquals(3, dto.getCount());
+        assertEquals(List.of("first", "second"), dto.getTags());
+
+        mapper.setProperty(dto, 1, null);
+        assertNull(dto.getName());
+    }
+
+    @Test
+    public void testSameMapperForSameColumns() {
+        assertEquals(BeanRowMapper.getMapper(MappedDto.class, COLUMNS),
+                BeanRowMapper.getMapper(MappedDto.class, new ArrayList<>(COLUMNS)));
+    }
+
+    @Test
+    public void testErrors() {
+        BeanRowMapper mapper = BeanRowMapper.getMapper(MappedDto.class, List.of("name", "unknown", "id"));
+        MappedDto dto = new MappedDto();
+
+        assertThrows(MethodInvocationException.class, () -> mapper.setProperty(dto, 0, "fail"));
+        assertThrows(MethodNotFoundException.class, () -> mapper.setProperty(dto, 1, "foo"));
+        assertThrows(MethodNotFoundException.class, () -> mapper.setProperty(dto, 2, "not a number"));
+    }
+
+    @Test
+    public void testSameResultAsMethodUtil() {
+        int rows = 10;
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+
+        List<MappedDto> reflected = new ArrayList<>(rows);
+        List<MappedDto> mapped = new ArrayList<>(rows);
+        for (int i = 0; i < rows; i++) {
+            // the count needs a different translation for Long and BigDecimal values
+            Object count = i % 2 == 0 ? Long.valueOf(i) : BigDecimal.valueOf(i);
+
+            MappedDto dto = new MappedDto();
+            Object[] values = {(long) i, "name" + i, now, count, "tag"};
+            for (int c = 0; c < COLUMNS.size(); c++) {
+                String column = COLUMNS.get(c);
+                if (column.equals("tags")) {
+                    List<String> tags = dto.getTags() == null ? new ArrayList<>() : dto.getTags();
+                    tags.add((String) values[c]);
+                    values[c] = tags;
+                }
+                MethodUtil.callMethod(dto, StringUtil.beanify("set " + column), values[c]);
+            }
+            reflected.add(dto);
+
+            dto = new MappedDto();
+            values = new Object[] {(long) i, "name" + i, now, count, "tag"};
+            BeanRowMapper mapper = BeanRowMapper.getMapper(MappedDto.class, COLUMNS);
+            for (int c = 0; c < values.length; c++) {
+                mapper.setProperty(dto, c, values[c]);
+            }
+            mapped.add(dto);
+        }
+
+        for (int i = 0; i < rows; i++) {
+            assertEquals(reflected.get(i).getId(), mapped.get(i).getId());
+            assertEquals(reflected.get(i).getName(), mapped.get(i).getName());
+            assertEquals(reflected.get(i).getCreated(), mapped.get(i).getCreated());
+            assertEquals(reflected.get(i).getCount(), mapped.get(i).getCount());
+            assertEquals(reflected.get(i).getTags(), mapped.get(i).getTags());
+        }
+    }
+}
@@ -16,11 +16,14 @@ package com.redhat.rhn.common.messaging;
 
 import com.redhat.rhn.frontend.events.TransactionHelper;
 
+import com.suse.manager.metrics.TaskDurations;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Utility class which encapsulates the logic necessary to dispatch actions.
@@ -29,6 +32,9 @@ class ActionExecutor implements Runnable {
 
     private static final Logger LOG = LogManager.getLogger(ActionExecutor.class);
 
+    /* Execution time of each action class */
+    private static final TaskDurations DURATIONS = new TaskDurations();
+
     private EventMessage msg;
     private List<MessageAction> actionHandlers = new ArrayList<>();
 
@@ -50,6 +56,7 @@ class ActionExecutor implements Runnable {
     public void run() {
         for (MessageAction action : actionHandlers) {
             LOG.debug("run() - got action: {}", action.getClass().getName());
+            long start = System.nanoTime();
             try {
                 if (msg instanceof EventDatabaseMessage) {
                     EventDatabaseMessage evtdb = (EventDatabaseMessage) msg;
@@ -72,9 +79,38 @@ class ActionExecutor implements Runnable {
             catch (Throwable t) {
                 LOG.error(t);
             }
+            finally {
+                DURATIONS.record(getLabel(action), System.nanoTime() - start);
+            }
         }
     }
 
+    /**
+     * Returns the label of an action in the durations: its simple class name, or the full
+     * name for the anonymous and lambda classes, which have an empty simple name.
+     */
+    private static String getLabel(MessageAction action) {
+        String label = action.getClass().getSimpleName();
+        return label.isEmpty() ? action.getClass().getName() : label;
+    }
+
+    /**
+     * Returns the execution time of the actions, by action class.
+     * @return the durations
+     */
+    static TaskDurations getDurations() {
+        return DURATIONS;
+    }
+
+    /**
+     * Returns the partition key of the message.
+     * @return the partition key
+     * @see EventMessage#getPartitionKey()
+     */
+    public Optional<String> getPartitionKey() {
+        return msg.getPartitionKey();
+    }
+
     /**
      * Return true if all message actions in this executor can run concurrently, else false.
      *
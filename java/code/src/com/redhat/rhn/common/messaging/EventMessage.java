@@ -15,6 +15,8 @@
 
 package com.redhat.rhn.common.messaging;
 
+import java.util.Optional;
+
 /**
  * A interface representing all messages that can be sent through the
  * messaging system,
@@ -33,6 +35,22 @@ public interface EventMessage {
      * @return the user that scheduled the Event
      */
     Long getUserId();
+
+    /**
+     * Get the key of the partition this message belongs to. Messages with the
+     * same key are dispatched one at a time, in the order they were published,
+     * while messages with different keys can be dispatched concurrently.
+     * <p>
+     * A key takes the message out of the global ordering of the messages whose
+     * actions cannot run concurrently: it is only ordered with the messages of the
+     * same key, even if its actions cannot run concurrently. Only declare one when
+     * the actions do not depend on other messages being handled before.
+     * @return the partition key, empty if the message has no ordering constraint
+     * other than the one of its actions
+     */
+    default Optional<String> getPartitionKey() {
+        return Optional.empty();
+    }
 }
 
 
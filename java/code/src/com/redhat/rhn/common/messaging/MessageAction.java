@@ -30,10 +30,10 @@ public interface MessageAction {
 
     /**
      * Return true in case this action can run concurrently with others. Depending on this
-     * flag the action will either be executed in the main message queue dispatcher thread
-     * and thus block other messages from being dispatched, or (in case of true) there will
-     * be a background thread executing this action while the main dispatcher thread can go
-     * on dispatching other messages.
+     * flag the action will either be executed one at a time with the other messages of
+     * its partition (see {@link EventMessage#getPartitionKey()}), or with all the other
+     * non concurrent messages without partition key, or (in case of true) it will be
+     * executed right away by the message queue thread pool.
      *
      * @return true if this action can run concurrently with others, else false
      */
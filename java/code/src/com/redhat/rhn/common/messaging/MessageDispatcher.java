@@ -17,35 +17,61 @@ package com.redhat.rhn.common.messaging;
 import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
-import com.redhat.rhn.frontend.events.TraceBackAction;
-import com.redhat.rhn.frontend.events.TraceBackEvent;
 
 import com.suse.manager.metrics.PrometheusExporter;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.concurrent.ExecutorService;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Polls the EventQueue for events and executes them
+ * Dispatches the published events to the message queue thread pool.
  *
+ * Events are executed concurrently unless they need to be ordered: events
+ * sharing a partition key are executed one at a time in publishing order, and
+ * so are the events without partition key having actions which cannot run
+ * concurrently. Events of different partitions are never ordered with each
+ * other: an event with a partition key does not wait for the events without key.
  */
-public class MessageDispatcher implements Runnable {
+public class MessageDispatcher {
 
     private static Logger log = LogManager.getLogger(MessageDispatcher.class);
-    private boolean isStopped = false;
+
+    /* Partition of the events without key which cannot run concurrently */
+    private static final String SERIAL_PARTITION = MessageDispatcher.class.getName() + ".serial";
+
+    private volatile boolean isStopped = false;
 
     /* Thread pool for concurrent execution of message actions */
-    private ExecutorService threadPool = new MessageQueueThreadPool(
+    private final ThreadPoolExecutor threadPool = new MessageQueueThreadPool(
             Config.get().getInt(ConfigDefaults.MESSAGE_QUEUE_THREAD_POOL_SIZE));
 
+    /*
+     * Events waiting for the running event of their partition to finish. A partition
+     * is present in the map as long as one of its events is running.
+     */
+    private final Map<String, Queue<ActionExecutor>> partitions = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor, registers the thread pool for exporting metrics
+     */
+    public MessageDispatcher() {
+        PrometheusExporter.INSTANCE.registerThreadPool(threadPool, "message_queue",
+                MessageQueue::getMessageCount, ActionExecutor.getDurations());
+    }
+
     /**
      * Signals the dispatcher to stop
      */
     public synchronized void stop() {
+        isStopped = true;
         // Gracefully shut down the thread pool
         threadPool.shutdown();
         log.info("Awaiting termination of threads (for 1 minute)");
@@ -55,73 +81,103 @@ public class MessageDispatcher implements Runnable {
         }
         catch (InterruptedException e) {
             log.error("Interrupted while awaiting termination", e);
+            Thread.currentThread().interrupt();
         }
-
-        isStopped = true;
     }
 
     /**
      * Returns the current stop state
      * @return true if stopped, else false
      */
-    public synchronized boolean isStopped() {
+    public boolean isStopped() {
         return isStopped;
     }
 
     /**
-     * Main run loop where events are popped off the queue
-     * and executed. Events are wrapped inside of a Runnable instance
+     * Dispatches an event, either right away or after the preceding events of its
+     * partition.
+     * @param actionHandler the event and its actions
+     */
+    void dispatch(ActionExecutor actionHandler) {
+        String partition = actionHandler.getPartitionKey()
+                .orElse(actionHandler.canRunConcurrently() ? null : SERIAL_PARTITION);
+        if (partition == null) {
+            execute(new DispatchedEvent(null, actionHandler));
+            return;
+        }
+
+        boolean[] first = {false};
+        partitions.compute(partition, (key, waiting) -> {
+            if (waiting == null) {
+                first[0] = true;
+                return new ArrayDeque<>();
+            }
+            waiting.add(actionHandler);
+            return waiting;
+        });
+        if (first[0]) {
+            execute(new DispatchedEvent(partition, actionHandler));
+        }
+    }
+
+    private void execute(DispatchedEvent event) {
+        try {
+            threadPool.execute(event);
+        }
+        catch (RejectedExecutionException e) {
+            // the pool is shutting down: do not lose the event
+            log.warn("Message queue is stopping, executing in the current thread: {}", event);
+            event.run();
+        }
+    }
+
+    /**
+     * Returns the next waiting event of a partition, removing the partition if there
+     * is none.
      */
-    @Override
-    public void run() {
+    private ActionExecutor next(String partition) {
+        ActionExecutor[] next = {null};
+        partitions.computeIfPresent(partition, (key, waiting) -> {
+            next[0] = waiting.poll();
+            return next[0] == null ? null : waiting;
+        });
+        return next[0];
+    }
 
-        // register the executor service for exporting metrics
-        PrometheusExporter.INSTANCE.registerThreadPool((ThreadPoolExecutor) this.threadPool, "message_queue");
+    /**
+     * An event executed by the thread pool
+     */
+    private class DispatchedEvent implements Runnable {
+        private final String partition;
+        private final ActionExecutor actionHandler;
 
+        DispatchedEvent(String partitionIn, ActionExecutor actionHandlerIn) {
+            partition = partitionIn;
+            actionHandler = actionHandlerIn;
+        }
 
-        while (!isStopped) {
+        @Override
+        public void run() {
+            MessageQueue.messageStarted();
             try {
-                ActionExecutor actionHandler = MessageQueue.popEventMessage();
-                if (actionHandler == null) {
-                    continue;
-                }
-                else if (actionHandler.canRunConcurrently()) {
-                    log.info("Executing in thread pool: {}", actionHandler);
-                    threadPool.execute(actionHandler);
-                }
-                else {
-                    actionHandler.run();
-                }
-            }
-            catch (InterruptedException e) {
-                log.error("Error occurred in the MessageQueue", e);
-                return;
-            }
-            catch (Throwable t) {
-                // better log this puppy to let folks know we have a problem
-                // but keep the queue running.
-                log.error("Error occurred with an event in the MessageQueue", t);
-
-                try {
-                    // ok let's email the admins of what's going on.
-                    // WARNING! DO NOT PUBLISH THE EVENT TO THE QUEUE!
-                    TraceBackEvent evt = new TraceBackEvent();
-                    evt.setUser(null);
-                    evt.setRequest(null);
-                    evt.setException(t);
-
-                    TraceBackAction tba = new TraceBackAction();
-                    tba.execute(evt);
-                }
-                catch (Throwable t1) {
-                    log.error("Error sending traceback email, logging for posterity.", t1);
-                }
+                log.debug("Executing: {}", actionHandler);
+                actionHandler.run();
             }
             finally {
                 HibernateFactory.closeSession();
+                if (partition != null) {
+                    ActionExecutor next = next(partition);
+                    if (next != null) {
+                        // queue the next event behind the ones already waiting in the pool
+                        execute(new DispatchedEvent(partition, next));
+                    }
+                }
             }
+        }
 
+        @Override
+        public String toString() {
+            return actionHandler.toString();
         }
     }
-
 }
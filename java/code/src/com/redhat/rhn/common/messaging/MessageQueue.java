@@ -64,15 +64,13 @@ import com.suse.manager.webui.services.iface.SaltApi;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Stream;
 
-import EDU.oswego.cs.dl.util.concurrent.Channel;
-import EDU.oswego.cs.dl.util.concurrent.LinkedQueue;
-
 /**
  * A class that passes messages from the sender to an action class
  */
@@ -84,11 +82,9 @@ public class MessageQueue {
     private static Logger logger = LogManager.getLogger(MessageQueue.class);
 
     private static final Map<Class<? extends EventMessage>, List<MessageAction>> ACTIONS =
-            new HashMap<>();
-    private static Channel messages = new LinkedQueue();
-    private static Thread dispatcherThread = null;
-    private static MessageDispatcher dispatcher = null;
-    private static int messageCount;
+            new ConcurrentHashMap<>();
+    private static volatile MessageDispatcher dispatcher = null;
+    private static final AtomicInteger MESSAGE_COUNT = new AtomicInteger();
 
     /**
      * Util class so we don't have a usable constructor
@@ -109,22 +105,15 @@ public class MessageQueue {
             startMessaging();
         }
         if (msg != null) {
-            synchronized (ACTIONS) {
-                List<MessageAction> handlers = ACTIONS.get(msg.getClass());
-                if (handlers != null && !handlers.isEmpty()) {
-                    logger.debug("creating ActionExecutor");
-                    ActionExecutor executor = new ActionExecutor(handlers, msg);
-                    try {
-                        messages.put(executor);
-                        messageCount++;
-                    }
-                    catch (InterruptedException e) {
-                        logger.error(e.getMessage(), e);
-                    }
-                }
-                else {
-                    logger.debug("handlers is null, not processing!");
-                }
+            List<MessageAction> handlers = ACTIONS.get(msg.getClass());
+            if (handlers != null && !handlers.isEmpty()) {
+                logger.debug("creating ActionExecutor");
+                ActionExecutor executor = new ActionExecutor(handlers, msg);
+                MESSAGE_COUNT.incrementAndGet();
+                dispatcher.dispatch(executor);
+            }
+            else {
+                logger.debug("handlers is null, not processing!");
             }
         }
 
@@ -139,17 +128,14 @@ public class MessageQueue {
      * @return actions
      */
     public static Stream<MessageAction> getActionsFor(EventMessage message) {
-        return ACTIONS.get(message.getClass()).stream();
+        return ACTIONS.getOrDefault(message.getClass(), List.of()).stream();
     }
 
-    static ActionExecutor popEventMessage() throws InterruptedException {
-        ActionExecutor retval = (ActionExecutor) messages.poll(500);
-        if (retval != null) {
-            synchronized (ACTIONS) {
-                messageCount--;
-            }
-        }
-        return retval;
+    /**
+     * Signals that the execution of a published message started
+     */
+    static void messageStarted() {
+        MESSAGE_COUNT.decrementAndGet();
     }
 
     /**
@@ -163,10 +149,6 @@ public class MessageQueue {
             return;
         }
         dispatcher = new MessageDispatcher();
-        dispatcherThread = new Thread(dispatcher);
-        dispatcherThread.setName("RHN Message Dispatcher");
-        dispatcherThread.setDaemon(false);
-        dispatcherThread.start();
         if (logger.isDebugEnabled()) {
             logger.debug("startMessaging() - end");
         }
@@ -186,11 +168,11 @@ public class MessageQueue {
     }
 
     /**
-     * Get the number of messages in the queue
+     * Get the number of messages in the queue, i.e. published but not started yet
      * @return int number of messages in queue.
      */
     public static int getMessageCount() {
-        return messageCount;
+        return MESSAGE_COUNT.get();
     }
 
     /**
@@ -202,10 +184,7 @@ public class MessageQueue {
         if (logger.isDebugEnabled()) {
             logger.debug("registerAction(MessageAction, Class) - : {} class: {}", act, eventType.getName());
         }
-        synchronized (ACTIONS) {
-            List<MessageAction> handlers = ACTIONS.computeIfAbsent(eventType, k -> new ArrayList<>());
-            handlers.add(act);
-        }
+        ACTIONS.computeIfAbsent(eventType, k -> new CopyOnWriteArrayList<>()).add(act);
     }
 
     /**
@@ -217,8 +196,8 @@ public class MessageQueue {
         if (logger.isDebugEnabled()) {
             logger.debug("deRegisterAction(MessageAction, Class) - start");
         }
-        synchronized (ACTIONS) {
-            List<MessageAction> handlers = ACTIONS.get(eventType);
+        List<MessageAction> handlers = ACTIONS.get(eventType);
+        if (handlers != null) {
             handlers.remove(act);
         }
         if (logger.isDebugEnabled()) {
@@ -236,15 +215,10 @@ public class MessageQueue {
             logger.debug("getRegisteredEventNames() - start");
         }
         String[] retval = null;
-        synchronized (ACTIONS) {
-            if (!ACTIONS.keySet().isEmpty()) {
-                retval = new String[ACTIONS.keySet().size()];
-                int index = 0;
-                for (Class<? extends EventMessage> klazz : ACTIONS.keySet()) {
-                    retval[index] = klazz.getName();
-                    index++;
-                }
-            }
+        if (!ACTIONS.isEmpty()) {
+            retval = ACTIONS.keySet().stream()
+                    .map(Class::getName)
+                    .toArray(String[]::new);
         }
 
         if (logger.isDebugEnabled()) {
@@ -15,6 +15,7 @@
 
 package com.redhat.rhn.common.messaging.test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -29,6 +30,11 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
 public class MessageQueueTest extends RhnBaseTestCase {
 
     private static Logger logger = LogManager.getLogger(MessageQueueTest.class);
@@ -136,6 +142,38 @@ public class MessageQueueTest extends RhnBaseTestCase {
         logger.debug("testMultiThreadedPublishRegister - end");
     }
 
+    @Test
+    public void testPartitionOrdering() throws Exception {
+        int partitions = 4;
+        int messages = 50;
+        TestPartitionedAction.registerAction();
+        try {
+            for (int i = 0; i < messages; i++) {
+                for (int p = 0; p < partitions; p++) {
+                    MessageQueue.publish(new TestPartitionedEventMessage("partition" + p, i));
+                }
+            }
+
+            List<Integer> expected = IntStream.range(0, messages).boxed().collect(Collectors.toList());
+            for (int tries = 0; tries < 100; tries++) {
+                boolean done = IntStream.range(0, partitions)
+                        .allMatch(p -> TestPartitionedAction.getExecuted("partition" + p).size() == messages);
+                if (done) {
+                    break;
+                }
+                Thread.sleep(100);
+            }
+            for (int p = 0; p < partitions; p++) {
+                assertEquals(expected, new ArrayList<>(TestPartitionedAction.getExecuted("partition" + p)));
+            }
+            assertEquals(0, TestPartitionedAction.getOverlaps());
+            assertEquals(0, MessageQueue.getMessageCount());
+        }
+        finally {
+            TestPartitionedAction.deRegisterAction();
+        }
+    }
+
     @Test
     public void testStop() throws Exception {
         logger.debug("testStop - start");
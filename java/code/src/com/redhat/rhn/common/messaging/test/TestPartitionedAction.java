@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.messaging.test;
+
+import com.redhat.rhn.common.messaging.EventMessage;
+import com.redhat.rhn.common.messaging.MessageAction;
+import com.redhat.rhn.common.messaging.MessageQueue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the order in which the messages of each partition are executed
+ */
+public class TestPartitionedAction implements MessageAction {
+
+    private static MessageAction registered = new TestPartitionedAction();
+
+    private static final Map<String, List<Integer>> EXECUTED = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicInteger> RUNNING = new ConcurrentHashMap<>();
+    private static final AtomicInteger OVERLAPS = new AtomicInteger();
+
+    public static void registerAction() {
+        EXECUTED.clear();
+        RUNNING.clear();
+        OVERLAPS.set(0);
+        MessageQueue.registerAction(registered, TestPartitionedEventMessage.class);
+    }
+
+    public static void deRegisterAction() {
+        MessageQueue.deRegisterAction(registered, TestPartitionedEventMessage.class);
+    }
+
+    public static List<Integer> getExecuted(String partition) {
+        return EXECUTED.getOrDefault(partition, Collections.emptyList());
+    }
+
+    /**
+     * @return the number of times a message started while another one of the same
+     * partition was running
+     */
+    public static int getOverlaps() {
+        return OVERLAPS.get();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void execute(EventMessage msg) {
+        TestPartitionedEventMessage tm = (TestPartitionedEventMessage) msg;
+        AtomicInteger running = RUNNING.computeIfAbsent(tm.getPartition(), p -> new AtomicInteger());
+        if (running.incrementAndGet() > 1) {
+            OVERLAPS.incrementAndGet();
+        }
+        try {
+            Thread.sleep(1);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        EXECUTED.computeIfAbsent(tm.getPartition(), p -> Collections.synchronizedList(new ArrayList<>()))
+                .add(tm.getIndex());
+        running.decrementAndGet();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean canRunConcurrently() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean needsTransactionHandling() {
+        return false;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.messaging.test;
+
+import com.redhat.rhn.common.messaging.EventMessage;
+
+import java.util.Optional;
+
+public class TestPartitionedEventMessage implements EventMessage {
+
+    private final String partition;
+    private final int index;
+
+    public TestPartitionedEventMessage(String partitionIn, int indexIn) {
+        partition = partitionIn;
+        index = indexIn;
+    }
+
+    public String getPartition() {
+        return partition;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toText() {
+        return "Partitioned test " + partition + " " + index;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long getUserId() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<String> getPartitionKey() {
+        return Optional.of(partition);
+    }
+}
@@ -57,6 +57,28 @@ public class Translations {
         return rc;
     }
 
+    // Returns the translation method convert() would run for values of the given class,
+    // or null if there is none.
+    protected static Method findTranslator(Class<?> thisClass, Class<?> haveClass, Class<?> want) {
+        Method[] methods = thisClass.getDeclaredMethods();
+
+        // exact match first, then the best match
+        for (Method methodIn : methods) {
+            Class<?>[] params = methodIn.getParameterTypes();
+            if (params.length == 1 && params[0].equals(haveClass) && methodIn.getReturnType().equals(want)) {
+                return methodIn;
+            }
+        }
+        for (Method methodIn : methods) {
+            Class<?>[] params = methodIn.getParameterTypes();
+            if (params.length == 1 && params[0].isAssignableFrom(haveClass) &&
+                    methodIn.getReturnType().equals(want)) {
+                return methodIn;
+            }
+        }
+        return null;
+    }
+
     private static Object findMatch(Method[] methods, Object have,
                                     Class<?> want, boolean bestMatch)
             throws TranslationException {
@@ -18,6 +18,7 @@ package com.redhat.rhn.common.translation;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.domain.user.UserFactory;
 
+import java.lang.reflect.Method;
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Date;
@@ -44,6 +45,17 @@ public class Translator extends Translations {
         return convert(Translator.class, have, want);
     }
 
+    /**
+     * Returns the translation method {@link #convert(Object, Class)} runs for values of a class,
+     * so that callers converting many values can resolve it only once
+     * @param have the class of the values to convert
+     * @param want the class to convert to
+     * @return the static translation method, or null if there is none
+     */
+    public static Method findTranslator(Class<?> have, Class<?> want) {
+        return findTranslator(Translator.class, have, want);
+    }
+
     /**
      * Convert an Integer object into a String
      * @param i the integer to convert
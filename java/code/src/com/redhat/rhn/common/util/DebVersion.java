@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.util;
+
+/**
+ * A Debian version precompiled for comparison. The upstream version and the revision are
+ * split once into pairs of a non-digit part, interned, and a numeric part, packed into a
+ * long, so that comparing two versions allocates nothing.
+ *
+ * <p>The ordering is exactly the one of {@link DebVersionComparator}.
+ */
+public final class DebVersion implements Comparable<DebVersion> {
+
+    private static final DebVersionComparator FALLBACK = new DebVersionComparator();
+
+    private final String version;
+    private final Parts upstream;
+    private final Parts revision;
+    private final boolean compiled;
+
+    /**
+     * Alternating non-digit and numeric parts of a version string
+     */
+    private static final class Parts {
+        private final String[] texts;
+        private final long[] numbers;
+        private final String[] digits;
+
+        private Parts(String[] textsIn, long[] numbersIn, String[] digitsIn) {
+            texts = textsIn;
+            numbers = numbersIn;
+            digits = digitsIn;
+        }
+
+        static Parts parse(String s) {
+            int length = s.length();
+            int capacity = length / 2 + 1;
+            String[] texts = new String[capacity];
+            long[] numbers = new long[capacity];
+            String[] digits = new String[capacity];
+
+            int count = 0;
+            int i = 0;
+            while (i < length) {
+                int end = i;
+                while (end < length && !Character.isDigit(s.charAt(end))) {
+                    end++;
+                }
+                texts[count] = s.substring(i, end).intern();
+                i = end;
+
+                while (end < length && Character.isDigit(s.charAt(end))) {
+                    end++;
+                }
+                int start = VersionSegments.skipZeros(s, i, end);
+                numbers[count] = VersionSegments.pack(s, start, end);
+                if (numbers[count] == VersionSegments.UNPACKED) {
+                    digits[count] = s.substring(start, end);
+                }
+                count++;
+                i = end;
+            }
+
+            String[] packedTexts = new String[count];
+            long[] packedNumbers = new long[count];
+            String[] packedDigits = new String[count];
+            System.arraycopy(texts, 0, packedTexts, 0, count);
+            System.arraycopy(numbers, 0, packedNumbers, 0, count);
+            System.arraycopy(digits, 0, packedDigits, 0, count);
+            return new Parts(packedTexts, packedNumbers, packedDigits);
+        }
+
+        int compareTo(Parts other) {
+            int count = Math.max(texts.length, other.texts.length);
+            for (int k = 0; k < count; k++) {
+                // missing parts are empty
+                String t1 = k < texts.length ? texts[k] : "";
+                String t2 = k < other.texts.length ? other.texts[k] : "";
+                if (t1 != t2) {
+                    int rc = compareTexts(t1, t2);
+                    if (rc != 0) {
+                        return rc;
+                    }
+                }
+                long n1 = k < numbers.length ? numbers[k] : 0;
+                long n2 = k < other.numbers.length ? other.numbers[k] : 0;
+                String d1 = k < digits.length ? digits[k] : null;
+                String d2 = k < other.digits.length ? other.digits[k] : null;
+                int rc = VersionSegments.compareNumbers(n1, d1, n2, d2);
+                if (rc != 0) {
+                    return rc;
+                }
+            }
+            return 0;
+        }
+
+        private static int compareTexts(String t1, String t2) {
+            int length = Math.max(t1.length(), t2.length());
+            for (int i = 0; i < length; i++) {
+                int c1 = i < t1.length() ? order(t1.charAt(i)) : 0;
+                int c2 = i < t2.length() ? order(t2.charAt(i)) : 0;
+                if (c1 != c2) {
+                    return c1 < c2 ? -1 : 1;
+                }
+            }
+            return 0;
+        }
+
+        private static int order(char c) {
+            if (Character.isLetter(c)) {
+                return c;
+            }
+            else if (c == '~') {
+                return -1;
+            }
+            return c + 256;
+        }
+    }
+
+    private DebVersion(String versionIn, Parts upstreamIn, Parts revisionIn, boolean compiledIn) {
+        version = versionIn;
+        upstream = upstreamIn;
+        revision = revisionIn;
+        compiled = compiledIn;
+    }
+
+    /**
+     * Compiles a version
+     * @param version the version string, optionally followed by a revision after the last hyphen
+     * @return the compiled version
+     */
+    public static DebVersion parse(String version) {
+        // a NUL character is special in dpkg's comparison, leave it to the plain comparator
+        // as well as a null version, which it refuses
+        if (version == null || version.indexOf('\0') >= 0) {
+            return new DebVersion(version, null, null, false);
+        }
+        String upstreamString = version;
+        String revisionString = "";
+        int hyphen = version.lastIndexOf('-');
+        if (hyphen > 0) {
+            revisionString = version.substring(hyphen + 1);
+            upstreamString = version.substring(0, hyphen);
+        }
+        return new DebVersion(version, Parts.parse(upstreamString), Parts.parse(revisionString), true);
+    }
+
+    /**
+     * @return the version string
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareTo(DebVersion other) {
+        if (this == other) {
+            return 0;
+        }
+        if (!compiled || !other.compiled) {
+            return FALLBACK.compare(version, other.version);
+        }
+        int rc = upstream.compareTo(other.upstream);
+        if (rc != 0) {
+            return rc;
+        }
+        return revision.compareTo(other.revision);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return version;
+    }
+}
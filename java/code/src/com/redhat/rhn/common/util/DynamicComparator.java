@@ -20,7 +20,10 @@ import com.redhat.rhn.frontend.struts.RequestContext;
 import org.apache.commons.beanutils.PropertyUtils;
 
 import java.text.Collator;
+import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.List;
+import java.util.ListIterator;
 
 /**
  * DynamicComparator - simple class that can be
@@ -73,31 +76,51 @@ public class DynamicComparator<T> implements Comparator<T>  {
     }
 
     /**
-     * {@inheritDoc}
+     * Sorts a list by a bean property. Unlike sorting with a DynamicComparator, the
+     * property is read only once per element instead of twice per comparison.
+     * @param list the list to sort
+     * @param fieldNameIn name of the bean property to sort by
+     * @param ascending true for ascending order
+     * @param <T> type of the list elements
      */
     @SuppressWarnings("unchecked")
+    public static <T> void sort(List<T> list, String fieldNameIn, boolean ascending) {
+        if (list.size() < 2) {
+            return;
+        }
+        DynamicComparator<T> comparator = new DynamicComparator<>(fieldNameIn, ascending);
+        List<Object[]> keyed = new ArrayList<>(list.size());
+        for (T item : list) {
+            try {
+                keyed.add(new Object[] {PropertyUtils.getProperty(item, fieldNameIn), item});
+            }
+            catch (Exception e) {
+                throw new IllegalArgumentException("Exception trying to read field " +
+                        fieldNameIn + " of " + item + ": " + e);
+            }
+        }
+        try {
+            keyed.sort((k1, k2) -> comparator.compareValues(k1[0], k2[0]));
+        }
+        catch (ClassCastException e) {
+            throw new IllegalArgumentException("Exception trying to compare field " +
+                    fieldNameIn + ": " + e);
+        }
+        ListIterator<T> it = list.listIterator();
+        for (Object[] k : keyed) {
+            it.next();
+            it.set((T) k[1]);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
     @Override
     public int compare(Object o1, Object o2) {
-        Object val1;
-        Object val2;
         try {
-            val1 = PropertyUtils.getProperty(o1, fieldName);
-            val2 = PropertyUtils.getProperty(o2, fieldName);
-            if (val1 instanceof String  && val2 instanceof String) {
-                return order * getCollator().compare(val1, val2);
-            }
-            // a < b = -1, a > b = 1 , a== b =0
-
-            if (val1 == null && val2 != null) {
-                return order * -1;
-            }
-            else if (val1 != null && val2 == null) {
-                return order;
-            }
-            else if (val1 == val2) {
-                return 0;
-            }
-            return order * ((Comparable<Object>)val1).compareTo(val2);
+            return compareValues(PropertyUtils.getProperty(o1, fieldName),
+                    PropertyUtils.getProperty(o2, fieldName));
         }
         catch (Exception e) {
             throw new IllegalArgumentException("Exception trying to compare " +
@@ -106,6 +129,25 @@ public class DynamicComparator<T> implements Comparator<T>  {
         }
     }
 
+    @SuppressWarnings("unchecked")
+    private int compareValues(Object val1, Object val2) {
+        if (val1 instanceof String  && val2 instanceof String) {
+            return order * getCollator().compare(val1, val2);
+        }
+        // a < b = -1, a > b = 1 , a== b =0
+
+        if (val1 == null && val2 != null) {
+            return order * -1;
+        }
+        else if (val1 != null && val2 == null) {
+            return order;
+        }
+        else if (val1 == val2) {
+            return 0;
+        }
+        return order * ((Comparable<Object>)val1).compareTo(val2);
+    }
+
     /**
      * @return Returns the fieldName.
      */
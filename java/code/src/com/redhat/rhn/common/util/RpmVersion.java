@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.util;
+
+/**
+ * An RPM version or release precompiled for comparison. The string is split once into
+ * its alphabetic, numeric, tilde and caret segments: numbers are packed into longs and
+ * alphabetic segments are interned, so that comparing two versions allocates nothing.
+ *
+ * <p>The ordering is exactly the one of {@link RpmVersionComparator}, including its
+ * asymmetries.
+ */
+public final class RpmVersion implements Comparable<RpmVersion> {
+
+    private static final byte END = 0;
+    private static final byte NUMBER = 1;
+    private static final byte ALPHA = 2;
+    private static final byte TILDE = 3;
+    private static final byte CARET = 4;
+
+    private final String version;
+    private final byte[] kinds;
+    private final long[] numbers;
+    private final String[] strings;
+
+    private RpmVersion(String versionIn, byte[] kindsIn, long[] numbersIn, String[] stringsIn) {
+        version = versionIn;
+        kinds = kindsIn;
+        numbers = numbersIn;
+        strings = stringsIn;
+    }
+
+    /**
+     * Compiles a version or a release
+     * @param version the version string, null is the same as the empty string
+     * @return the compiled version
+     */
+    public static RpmVersion parse(String version) {
+        String s = version == null ? "" : version;
+        int length = s.length();
+        byte[] kinds = new byte[length];
+        long[] numbers = new long[length];
+        String[] strings = new String[length];
+
+        int count = 0;
+        int i = 0;
+        while (i < length) {
+            char c = s.charAt(i);
+            if (c == '~' || c == '^') {
+                kinds[count++] = c == '~' ? TILDE : CARET;
+                i++;
+            }
+            else if (Character.isDigit(c)) {
+                int end = i;
+                while (end < length && Character.isDigit(s.charAt(end))) {
+                    end++;
+                }
+                int start = VersionSegments.skipZeros(s, i, end);
+                long value = VersionSegments.pack(s, start, end);
+                kinds[count] = NUMBER;
+                numbers[count] = value;
+                if (value == VersionSegments.UNPACKED) {
+                    strings[count] = s.substring(start, end);
+                }
+                count++;
+                i = end;
+            }
+            else if (Character.isLetter(c)) {
+                int end = i;
+                while (end < length && Character.isLetter(s.charAt(end))) {
+                    end++;
+                }
+                kinds[count] = ALPHA;
+                strings[count] = s.substring(i, end).intern();
+                count++;
+                i = end;
+            }
+            else {
+                // all the other characters are separators
+                i++;
+            }
+        }
+
+        byte[] packedKinds = new byte[count];
+        long[] packedNumbers = new long[count];
+        String[] packedStrings = new String[count];
+        System.arraycopy(kinds, 0, packedKinds, 0, count);
+        System.arraycopy(numbers, 0, packedNumbers, 0, count);
+        System.arraycopy(strings, 0, packedStrings, 0, count);
+        return new RpmVersion(s, packedKinds, packedNumbers, packedStrings);
+    }
+
+    /**
+     * @return the version string
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int compareTo(RpmVersion other) {
+        if (this == other) {
+            return 0;
+        }
+        int i = 0;
+        int j = 0;
+        byte k1;
+        byte k2;
+        while (true) {
+            k1 = i < kinds.length ? kinds[i] : END;
+            k2 = j < other.kinds.length ? other.kinds[j] : END;
+
+            // the tilde sorts before everything else, even the end of the version
+            if (k1 == TILDE || k2 == TILDE) {
+                if (k1 != TILDE) {
+                    return 1;
+                }
+                if (k2 != TILDE) {
+                    return -1;
+                }
+            }
+            // the caret sorts after the end of the version, but before everything else
+            else if (k1 == CARET || k2 == CARET) {
+                if (k1 == END) {
+                    return -1;
+                }
+                if (k2 == END) {
+                    return 1;
+                }
+                if (k1 != CARET) {
+                    return 1;
+                }
+                if (k2 != CARET) {
+                    return -1;
+                }
+            }
+            else if (k1 == END || k2 == END) {
+                break;
+            }
+            else {
+                int rc = compareSegments(k1, i, k2, other, j);
+                if (rc != 0) {
+                    return rc;
+                }
+            }
+            i++;
+            j++;
+        }
+
+        // whichever version still has segments left over wins
+        if (k1 == END && k2 == END) {
+            return 0;
+        }
+        return k1 == END ? -1 : 1;
+    }
+
+    private int compareSegments(byte k1, int i, byte k2, RpmVersion other, int j) {
+        // the type of the segment of this version decides, a segment of
+        // the other type counts as empty
+        if (k1 == NUMBER) {
+            if (k2 != NUMBER) {
+                return 1;
+            }
+            return VersionSegments.compareNumbers(numbers[i], strings[i], other.numbers[j], other.strings[j]);
+        }
+        if (k2 != ALPHA) {
+            return -1;
+        }
+        String s1 = strings[i];
+        String s2 = other.strings[j];
+        return s1 == s2 ? 0 : Integer.signum(s1.compareTo(s2));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return version;
+    }
+}
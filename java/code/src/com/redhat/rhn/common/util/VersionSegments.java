@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.util;
+
+/**
+ * Helpers shared by the precompiled {@link RpmVersion} and {@link DebVersion}.
+ *
+ * Numeric segments are stored without their leading ASCII zeros: as a long value when
+ * they are made of at most {@link #MAX_PACKED_DIGITS} ASCII digits, as a String otherwise.
+ */
+final class VersionSegments {
+
+    static final int MAX_PACKED_DIGITS = 18;
+
+    /** Value of the numbers which do not fit into a long */
+    static final long UNPACKED = -1L;
+
+    private VersionSegments() {
+    }
+
+    /**
+     * Strips the leading ASCII zeros of a run of digits
+     * @param s the string
+     * @param start the start of the run
+     * @param end the end of the run, exclusive
+     * @return the start of the significant digits
+     */
+    static int skipZeros(String s, int start, int end) {
+        int i = start;
+        while (i < end && s.charAt(i) == '0') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Packs a run of significant digits into a long
+     * @param s the string
+     * @param start the first significant digit
+     * @param end the end of the run, exclusive
+     * @return the value or {@link #UNPACKED} if the digits do not fit
+     */
+    static long pack(String s, int start, int end) {
+        if (end - start > MAX_PACKED_DIGITS) {
+            return UNPACKED;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                // other unicode digits are compared as characters
+                return UNPACKED;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Compares two numeric segments like rpmvercmp and dpkg do: the one with more
+     * significant digits wins, otherwise the first different digit decides.
+     * @param value1 the packed value of the first segment or {@link #UNPACKED}
+     * @param digits1 the significant digits of the first segment, used if not packed
+     * @param value2 the packed value of the second segment or {@link #UNPACKED}
+     * @param digits2 the significant digits of the second segment, used if not packed
+     * @return -1, 0 or 1
+     */
+    static int compareNumbers(long value1, String digits1, long value2, String digits2) {
+        if (value1 != UNPACKED && value2 != UNPACKED) {
+            return Long.compare(value1, value2);
+        }
+        String s1 = value1 != UNPACKED ? toDigits(value1) : digits1;
+        String s2 = value2 != UNPACKED ? toDigits(value2) : digits2;
+        if (s1.length() != s2.length()) {
+            return s1.length() > s2.length() ? 1 : -1;
+        }
+        return Integer.signum(s1.compareTo(s2));
+    }
+
+    private static String toDigits(long value) {
+        return value == 0 ? "" : Long.toString(value);
+    }
+}
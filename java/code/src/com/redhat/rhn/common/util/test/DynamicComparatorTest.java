@@ -15,6 +15,7 @@
 package com.redhat.rhn.common.util.test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import com.redhat.rhn.common.localization.LocalizationService;
 import com.redhat.rhn.common.util.DynamicComparator;
@@ -40,6 +41,24 @@ public class DynamicComparatorTest extends RhnJmockBaseTestCase {
         assertEquals("Z", list.get(list.size() - 1).getStringField());
     }
 
+    @Test
+    public void testSort() {
+        List<TestObject> list = generateRandomList();
+        DynamicComparator.sort(list, "stringField", false);
+        assertEquals("Z", list.get(0).getStringField());
+        assertEquals("A", list.get(list.size() - 1).getStringField());
+
+        DynamicComparator.sort(list, "stringField", true);
+        assertEquals("A", list.get(0).getStringField());
+        assertEquals("Z", list.get(list.size() - 1).getStringField());
+    }
+
+    @Test
+    public void testSortInvalidField() {
+        List<TestObject> list = generateRandomList();
+        assertThrows(IllegalArgumentException.class, () -> DynamicComparator.sort(list, "noSuchField", true));
+    }
+
     public static List<TestObject> generateRandomList() {
         List<String> letters = LocalizationService.getInstance().getAlphabet();
         Collections.shuffle(letters);
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.util.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.redhat.rhn.common.util.DebVersion;
+import com.redhat.rhn.common.util.DebVersionComparator;
+import com.redhat.rhn.common.util.RpmVersion;
+import com.redhat.rhn.common.util.RpmVersionComparator;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks that {@link RpmVersion} and {@link DebVersion} order versions exactly like
+ * {@link RpmVersionComparator} and {@link DebVersionComparator}.
+ */
+public class PrecompiledVersionTest {
+
+    /* Characters of the random versions, including an arabic digit and a latin letter */
+    private static final String CHARACTERS = "0123456789000abcXYZ.-_+:~^\u0663\u00e9";
+
+    private static final List<String> SAMPLES = List.of("", "0", "00", "1", "1.0", "1.0.0", "1_0",
+            "1.1", "1a", "1.1.PTF", "10mdk", "10.1mdk", "ximian.1", "1.4snap", "4.0x", "4.0.36", "2.0e",
+            "2.0.11", "1.0~rc1", "1.0~~", "1.0^", "1.0^git1", "1.0~rc1^git1", "5.3.18-150300.59.98.1",
+            "150300.59.98.1", "2.31+git20220101.abc", "0.9.8h", "1:2.30-0ubuntu1", "2.30-0ubuntu1~18.04",
+            "12345678901234567890", "012345678901234567890", "99999999999999999999");
+
+    private final RpmVersionComparator rpmComparator = new RpmVersionComparator();
+    private final DebVersionComparator debComparator = new DebVersionComparator();
+
+    @Test
+    public void testSamples() {
+        for (String v1 : SAMPLES) {
+            for (String v2 : SAMPLES) {
+                assertSameOrder(v1, v2);
+            }
+        }
+    }
+
+    @Test
+    public void testRandomVersions() {
+        // fixed seed, so that a failure can be reproduced
+        Random random = new Random(2023);
+        for (int i = 0; i < 200_000; i++) {
+            String v1 = randomVersion(random);
+            // also compare versions sharing a prefix, which go through more segments
+            String v2 = random.nextInt(4) == 0 ? v1 + randomVersion(random) : randomVersion(random);
+            assertSameOrder(v1, v2);
+            assertSameOrder(v2, v1);
+        }
+    }
+
+    @Test
+    public void testNullVersions() {
+        assertEquals(0, RpmVersion.parse(null).compareTo(RpmVersion.parse("")));
+        assertEquals(-1, RpmVersion.parse(null).compareTo(RpmVersion.parse("1")));
+        // the Debian comparator refuses null versions
+        assertThrows(NullPointerException.class, () -> DebVersion.parse(null).compareTo(DebVersion.parse("1")));
+    }
+
+    private void assertSameOrder(String v1, String v2) {
+        assertEquals(Integer.signum(rpmComparator.compare(v1, v2)),
+                RpmVersion.parse(v1).compareTo(RpmVersion.parse(v2)), "rpm: " + v1 + " <=> " + v2);
+        assertEquals(Integer.signum(debComparator.compare(v1, v2)),
+                DebVersion.parse(v1).compareTo(DebVersion.parse(v2)), "deb: " + v1 + " <=> " + v2);
+    }
+
+    private static String randomVersion(Random random) {
+        StringBuilder version = new StringBuilder();
+        int length = random.nextInt(14);
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(20) == 0) {
+                // numbers too long for a long
+                for (int d = 0; d < 19 + random.nextInt(3); d++) {
+                    version.append((char) ('0' + random.nextInt(10)));
+                }
+            }
+            else {
+                version.append(CHARACTERS.charAt(random.nextInt(CHARACTERS.length())));
+            }
+        }
+        return version.toString();
+    }
+}
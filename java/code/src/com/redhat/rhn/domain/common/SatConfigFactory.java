@@ -42,6 +42,7 @@ public class SatConfigFactory extends HibernateFactory {
     public static final String EXT_AUTH_USE_ORGUNIT = "extauth_use_orgunit";
     public static final String EXT_AUTH_KEEP_ROLES = "extauth_keep_temproles";
     public static final String SYSTEM_CHECKIN_THRESHOLD = "system_checkin_threshold";
+    public static final String REPORTDB_CHANGE_LOG = "reportdb_change_log";
 
     private SatConfigFactory() {
         super();
@@ -0,0 +1,302 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.domain.contentmgmt;
+
+import com.redhat.rhn.domain.rhnpackage.Package;
+import com.redhat.rhn.domain.rhnpackage.PackageEvr;
+import com.redhat.rhn.domain.rhnpackage.PackageType;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compiled form of a list of {@link PackageFilter}s, giving the same results as testing every
+ * filter against every package.
+ *
+ * The criteria are parsed once: EQUALS criteria become hash lookups, NEVR/NEVRA bounds are
+ * indexed by package name with their EVR parsed in advance, and PROVIDES_NAME criteria are
+ * resolved with one query per capability name. Packages are projected to plain rows first,
+ * so that the compiled criteria are evaluated in parallel without touching Hibernate.
+ * Filters which cannot be compiled are tested against the package entities as before.
+ */
+public class PackageFilterPlan {
+
+    private final CompiledRule deny;
+    private final CompiledRule allow;
+
+    /**
+     * Plain values of a package, as used by the package filters
+     */
+    private static class PackageRow {
+        private final Package pack;
+        private final Long id;
+        private final String name;
+        private final String arch;
+        private final PackageEvr evr;
+        private final String nevr;
+        private final String nevra;
+
+        PackageRow(Package packIn) {
+            pack = packIn;
+            id = packIn.getId();
+            name = packIn.getPackageName().getName();
+            arch = packIn.getPackageArch().getLabel();
+            evr = new PackageEvr(packIn.getPackageEvr());
+            nevr = packIn.getNameEvr();
+            nevra = packIn.getNevraWithEpoch();
+        }
+
+        String getField(String field) {
+            switch (field) {
+                case "name":
+                    return name;
+                case "nevr":
+                    return nevr;
+                case "nevra":
+                    return nevra;
+                default:
+                    throw new UnsupportedOperationException("Field " + field + " not supported");
+            }
+        }
+    }
+
+    /**
+     * A NEVR or NEVRA bound, e.g. "name greater than 1.0-1"
+     */
+    private static class EvrBound {
+        private final String arch;
+        private final FilterCriteria.Matcher matcher;
+        private final Map<PackageType, PackageEvr> evrs = new EnumMap<>(PackageType.class);
+
+        EvrBound(String archIn, FilterCriteria.Matcher matcherIn, String evr) {
+            arch = archIn;
+            matcher = matcherIn;
+            for (PackageType type : PackageType.values()) {
+                evrs.put(type, PackageEvr.parsePackageEvr(type, evr));
+            }
+        }
+
+        boolean test(PackageRow row) {
+            if (arch != null && !arch.equals(row.arch)) {
+                return false;
+            }
+            int comparison = row.evr.compareTo(evrs.get(row.evr.getPackageType()));
+            switch (matcher) {
+                case LOWER:
+                    return comparison < 0;
+                case LOWEREQ:
+                    return comparison <= 0;
+                case GREATEREQ:
+                    return comparison >= 0;
+                case GREATER:
+                    return comparison > 0;
+                default:
+                    throw new UnsupportedOperationException("Matcher " + matcher + " not supported");
+            }
+        }
+    }
+
+    /**
+     * The compiled filters of one rule
+     */
+    private static class CompiledRule {
+        private final Map<String, Set<String>> equalsByField = new HashMap<>();
+        private final Map<String, List<EvrBound>> boundsByName = new HashMap<>();
+        private final List<Predicate<PackageRow>> scanned = new ArrayList<>();
+        private final List<PackageFilter> entityFilters = new ArrayList<>();
+
+        CompiledRule(List<PackageFilter> filters, Function<String, Set<Long>> providers) {
+            Map<String, Set<Long>> providersByName = new HashMap<>();
+            for (PackageFilter filter : filters) {
+                if (filter.getClass() == ModularPackageFilter.class) {
+                    scanned.add(row -> row.evr.getRelease().contains(".module"));
+                    continue;
+                }
+                if (filter.getClass() != PackageFilter.class) {
+                    entityFilters.add(filter);
+                    continue;
+                }
+                FilterCriteria.Matcher matcher = filter.getCriteria().getMatcher();
+                String field = filter.getCriteria().getField();
+                String value = filter.getCriteria().getValue();
+                boolean knownField = field.equals("name") || field.equals("nevr") || field.equals("nevra");
+                switch (matcher) {
+                    case EQUALS:
+                        if (knownField) {
+                            equalsByField.computeIfAbsent(field, f -> new HashSet<>()).add(value);
+                            continue;
+                        }
+                        break;
+                    case CONTAINS:
+                        if (knownField) {
+                            scanned.add(row -> row.getField(field).contains(value));
+                            continue;
+                        }
+                        break;
+                    case MATCHES:
+                        if (knownField) {
+                            Pattern pattern;
+                            try {
+                                pattern = Pattern.compile(value);
+                            }
+                            catch (PatternSyntaxException e) {
+                                // let the filter report it when it gets tested
+                                break;
+                            }
+                            scanned.add(row -> pattern.matcher(row.getField(field)).matches());
+                            continue;
+                        }
+                        break;
+                    case LOWER:
+                    case LOWEREQ:
+                    case GREATEREQ:
+                    case GREATER:
+                        try {
+                            if (compileBound(field, value, matcher)) {
+                                continue;
+                            }
+                        }
+                        catch (RuntimeException e) {
+                            // the EVR cannot be parsed, let the filter report it when it gets tested
+                        }
+                        break;
+                    case PROVIDES_NAME:
+                        if (providers != null) {
+                            Set<Long> ids = providersByName.computeIfAbsent(value, providers);
+                            scanned.add(row -> ids.contains(row.id));
+                            continue;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                entityFilters.add(filter);
+            }
+        }
+
+        /**
+         * Compiles a NEVR or NEVRA bound the same way PackageFilter parses it.
+         * @return false if the bound could not be compiled
+         */
+        private boolean compileBound(String field, String value, FilterCriteria.Matcher matcher) {
+            int relIdx = value.lastIndexOf('-');
+            int verIdx = value.lastIndexOf('-', relIdx - 1);
+            if (field.equals("nevr")) {
+                if (verIdx <= 0) {
+                    // the name can never match
+                    return true;
+                }
+                boundsByName.computeIfAbsent(value.substring(0, verIdx), n -> new ArrayList<>())
+                        .add(new EvrBound(null, matcher, value.substring(verIdx + 1)));
+                return true;
+            }
+            if (field.equals("nevra")) {
+                int archIdx = value.lastIndexOf('.');
+                if (verIdx <= 0 || archIdx <= 0) {
+                    // name and arch can never match
+                    return true;
+                }
+                if (archIdx < verIdx + 1) {
+                    // the EVR cannot be extracted, let the filter report it
+                    return false;
+                }
+                boundsByName.computeIfAbsent(value.substring(0, verIdx), n -> new ArrayList<>())
+                        .add(new EvrBound(value.substring(archIdx + 1), matcher, value.substring(verIdx + 1, archIdx)));
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Tests the compiled filters, which can be done concurrently
+         */
+        boolean testCompiled(PackageRow row) {
+            for (Map.Entry<String, Set<String>> entry : equalsByField.entrySet()) {
+                if (entry.getValue().contains(row.getField(entry.getKey()))) {
+                    return true;
+                }
+            }
+            List<EvrBound> bounds = boundsByName.get(row.name);
+            if (bounds != null && bounds.stream().anyMatch(b -> b.test(row))) {
+                return true;
+            }
+            return scanned.stream().anyMatch(p -> p.test(row));
+        }
+
+        /**
+         * Tests the filters which could not be compiled, in the calling thread
+         */
+        boolean testEntity(PackageRow row) {
+            return entityFilters.stream().anyMatch(f -> f.test(row.pack));
+        }
+    }
+
+    /**
+     * Compiles the given filters
+     * @param filters the package filters
+     * @param providers returns the ids of the packages providing a capability, null to
+     * test the provided capabilities of each package
+     */
+    public PackageFilterPlan(Collection<PackageFilter> filters, Function<String, Set<Long>> providers) {
+        Map<ContentFilter.Rule, List<PackageFilter>> filtersByRule = filters.stream()
+                .collect(Collectors.groupingBy(ContentFilter::getRule));
+        deny = new CompiledRule(filtersByRule.getOrDefault(ContentFilter.Rule.DENY, List.of()), providers);
+        allow = new CompiledRule(filtersByRule.getOrDefault(ContentFilter.Rule.ALLOW, List.of()), providers);
+    }
+
+    /**
+     * Filters the given packages: a package is filtered out when any DENY filter is satisfied
+     * and no ALLOW filter is satisfied.
+     *
+     * @param packages the packages
+     * @return Pair containing (left side) a set of packages not filtered-out
+     * and (right side) a set of packages filtered out
+     */
+    public Pair<Set<Package>, Set<Package>> filter(Set<Package> packages) {
+        // touch the entities in the calling thread only
+        List<PackageRow> rows = packages.stream().map(PackageRow::new).collect(Collectors.toList());
+
+        boolean[] denied = new boolean[rows.size()];
+        boolean[] allowed = new boolean[rows.size()];
+        IntStream.range(0, rows.size()).parallel().forEach(i -> {
+            denied[i] = deny.testCompiled(rows.get(i));
+            allowed[i] = denied[i] && allow.testCompiled(rows.get(i));
+        });
+
+        Set<Package> kept = new HashSet<>();
+        Set<Package> filteredOut = new HashSet<>();
+        for (int i = 0; i < rows.size(); i++) {
+            PackageRow row = rows.get(i);
+            boolean isDenied = (denied[i] || deny.testEntity(row)) &&
+                    !(allowed[i] || allow.testCompiled(row) || allow.testEntity(row));
+            (isDenied ? filteredOut : kept).add(row.pack);
+        }
+        return Pair.of(kept, filteredOut);
+    }
+}
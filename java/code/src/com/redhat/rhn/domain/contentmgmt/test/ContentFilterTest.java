@@ -21,11 +21,15 @@ import static com.redhat.rhn.domain.contentmgmt.ContentFilter.EntityType.PACKAGE
 import static com.redhat.rhn.domain.contentmgmt.ContentFilter.Rule.ALLOW;
 import static com.redhat.rhn.domain.contentmgmt.ContentFilter.Rule.DENY;
 import static com.redhat.rhn.domain.role.RoleFactory.ORG_ADMIN;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.redhat.rhn.domain.contentmgmt.ContentFilter;
 import com.redhat.rhn.domain.contentmgmt.FilterCriteria;
+import com.redhat.rhn.domain.contentmgmt.ModularPackageFilter;
+import com.redhat.rhn.domain.contentmgmt.PackageFilter;
+import com.redhat.rhn.domain.contentmgmt.PackageFilterPlan;
 import com.redhat.rhn.domain.contentmgmt.modulemd.Module;
 import com.redhat.rhn.domain.errata.Errata;
 import com.redhat.rhn.domain.errata.ErrataFactory;
@@ -42,14 +46,19 @@ import com.redhat.rhn.testing.JMockBaseTestCaseWithUser;
 import com.redhat.rhn.testing.TestUtils;
 import com.redhat.rhn.testing.UserTestUtils;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Tests for {@link ContentFilter}
@@ -319,6 +328,50 @@ public class ContentFilterTest extends JMockBaseTestCaseWithUser {
         assertTrue(filter.test(pack));
     }
 
+    @Test
+    public void testPackageFilterPlan() {
+        Package pack1 = PackageTest.createTestPackage(user.getOrg());
+        pack1.setPackageEvr(PackageEvrFactoryTest.createTestPackageEvr("1", "1.0.0", "3", PackageType.RPM));
+        Package pack2 = PackageTest.createTestPackage(user.getOrg());
+        pack2.setPackageEvr(PackageEvrFactoryTest.createTestPackageEvr(null, "2.0.0", "1.module_el8", PackageType.RPM));
+        Package pack3 = PackageTest.createTestPackage(user.getOrg());
+        Package pack4 = PackageTest.createTestPackage(user.getOrg());
+        Set<Package> packages = Set.of(pack1, pack2, pack3, pack4);
+
+        List<PackageFilter> filters = new ArrayList<>();
+        filters.add(createPackageFilter(DENY, FilterCriteria.Matcher.GREATEREQ, "nevra",
+                pack1.getPackageName().getName() + "-0:1.0.0-1." + pack1.getPackageArch().getLabel()));
+        filters.add(createPackageFilter(DENY, FilterCriteria.Matcher.LOWER, "nevr", "broken"));
+        filters.add(createPackageFilter(DENY, FilterCriteria.Matcher.MATCHES, "name", "\\d+JavaTest.*"));
+        filters.add(createPackageFilter(ALLOW, FilterCriteria.Matcher.EQUALS, "nevr", pack3.getNameEvr()));
+        filters.add(createPackageFilter(ALLOW, FilterCriteria.Matcher.PROVIDES_NAME, "provides_name",
+                "installhint(reboot-needed)"));
+        filters.add(new ModularPackageFilter());
+
+        // the same evaluation as testing every filter against every package
+        Set<Package> expectedDenied = packages.stream()
+                .filter(p -> filters.stream().anyMatch(f -> f.getRule() == DENY && f.test(p)) &&
+                        filters.stream().noneMatch(f -> f.getRule() == ALLOW && f.test(p)))
+                .collect(Collectors.toSet());
+        assertEquals(Set.of(pack1, pack2, pack4), expectedDenied);
+
+        Pair<Set<Package>, Set<Package>> result = new PackageFilterPlan(filters, null).filter(packages);
+        assertEquals(expectedDenied, result.getRight());
+        assertEquals(Set.of(pack3), result.getLeft());
+
+        // providers looked up in advance, here pack4 provides the allowed capability
+        result = new PackageFilterPlan(filters, capability -> Set.of(pack4.getId())).filter(packages);
+        assertEquals(Set.of(pack1, pack2), result.getRight());
+        assertEquals(Set.of(pack3, pack4), result.getLeft());
+    }
+
+    private PackageFilter createPackageFilter(ContentFilter.Rule rule, FilterCriteria.Matcher matcher, String field,
+                                              String value) {
+        FilterCriteria criteria = new FilterCriteria(matcher, field, value);
+        return (PackageFilter) contentManager.createFilter(TestUtils.randomString() + "-filter", rule, PACKAGE,
+                criteria, user);
+    }
+
     /**
      * Test basic Errata filtering based on advisory name
      *
@@ -42,11 +42,20 @@ public class CachingSUSEProductFactory {
      * @param ip an installed product
      */
     private SUSEProduct lookupCachedSUSEProduct(InstalledProduct ip) {
-        String name = ip.getName();
-        String version = ip.getVersion();
-        String release = ip.getRelease();
-        String arch = Opt.fold(ofNullable(ip.getArch()), () -> null, PackageArch::getLabel);
+        return lookup(ip.getName(), ip.getVersion(), ip.getRelease(),
+                Opt.fold(ofNullable(ip.getArch()), () -> null, PackageArch::getLabel));
+    }
 
+    /**
+     * Returns the SUSE product corresponding to the attributes of an installed product, if available.
+     * Caches results for faster lookups.
+     * @param name the installed product name
+     * @param version the installed product version
+     * @param release the installed product release
+     * @param arch the installed product architecture label
+     * @return the SUSE product or null
+     */
+    public SUSEProduct lookup(String name, String version, String release, String arch) {
         String key = name + "-" + version + "-" + release + "-" + arch;
         SUSEProduct cached = suseProductCache.get(key);
         if (cached != null) {
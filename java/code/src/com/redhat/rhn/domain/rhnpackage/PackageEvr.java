@@ -14,26 +14,61 @@
  */
 package com.redhat.rhn.domain.rhnpackage;
 
-import com.redhat.rhn.common.util.DebVersionComparator;
-import com.redhat.rhn.common.util.RpmVersionComparator;
+import com.redhat.rhn.common.util.DebVersion;
+import com.redhat.rhn.common.util.RpmVersion;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * PackageEvr
  */
 public class PackageEvr implements Comparable<PackageEvr> {
 
-    private static final RpmVersionComparator RPMVERCMP = new RpmVersionComparator();
-    private static final DebVersionComparator DEBVERCMP = new DebVersionComparator();
+    /* Compiled versions and releases by id, shared by the instances of all the sessions */
+    private static final Map<Long, Compiled> COMPILED = new ConcurrentHashMap<>();
+    private static final int MAX_COMPILED = 100_000;
 
     private Long id;
     private String epoch;
     private String version;
     private String release;
     private String type;
+    private transient Compiled compiled;
+
+    /**
+     * Version and release of a PackageEvr, precompiled for comparison
+     */
+    private static final class Compiled {
+        private final String version;
+        private final String release;
+        private final String type;
+        private final RpmVersion rpmVersion;
+        private final RpmVersion rpmRelease;
+        private final DebVersion debVersion;
+        private final DebVersion debRelease;
+
+        Compiled(PackageEvr evr) {
+            version = evr.getVersion();
+            release = evr.getRelease();
+            type = evr.getType();
+            boolean deb = PackageType.DEB.getDbString().equals(type);
+            rpmVersion = deb ? null : RpmVersion.parse(version);
+            rpmRelease = deb ? null : RpmVersion.parse(release);
+            debVersion = deb ? DebVersion.parse(version) : null;
+            debRelease = deb ? DebVersion.parse(release) : null;
+        }
+
+        boolean matches(PackageEvr evr) {
+            return Objects.equals(version, evr.getVersion()) && Objects.equals(release, evr.getRelease()) &&
+                    Objects.equals(type, evr.getType());
+        }
+    }
 
     /**
      * Null constructor, needed for hibernate
@@ -199,13 +234,15 @@ public class PackageEvr implements Comparable<PackageEvr> {
             throw new IllegalStateException(
                     "To compare PackageEvr, both must have non-null versions");
         }
-        result = RPMVERCMP.compare(getVersion(), other.getVersion());
+        Compiled evr = getCompiled();
+        Compiled otherEvr = other.getCompiled();
+        result = evr.rpmVersion.compareTo(otherEvr.rpmVersion);
         if (result != 0) {
             return result;
         }
         // The perl code doesn't check for null releases, so we won't either
         // In the long run, a check might be in order, though
-        return RPMVERCMP.compare(getRelease(), other.getRelease());
+        return evr.rpmRelease.compareTo(otherEvr.rpmRelease);
     }
 
     private int debCompareTo(PackageEvr other) {
@@ -217,13 +254,40 @@ public class PackageEvr implements Comparable<PackageEvr> {
             throw new IllegalStateException(
                     "To compare PackageEvr, both must have non-null versions");
         }
-        result = DEBVERCMP.compare(getVersion(), other.getVersion());
+        Compiled evr = getCompiled();
+        Compiled otherEvr = other.getCompiled();
+        result = evr.debVersion.compareTo(otherEvr.debVersion);
         if (result != 0) {
             return result;
         }
         // The perl code doesn't check for null releases, so we won't either
         // In the long run, a check might be in order, though
-        return DEBVERCMP.compare(getRelease(), other.getRelease());
+        return evr.debRelease.compareTo(otherEvr.debRelease);
+    }
+
+    /**
+     * Returns the compiled version and release, reusing the ones of other instances
+     * with the same id. They are checked against the current values, as the setters
+     * may have changed them.
+     */
+    private Compiled getCompiled() {
+        Compiled result = compiled;
+        if (result != null && result.matches(this)) {
+            return result;
+        }
+        Long evrId = getId();
+        result = evrId == null ? null : COMPILED.get(evrId);
+        if (result == null || !result.matches(this)) {
+            result = new Compiled(this);
+            if (evrId != null) {
+                if (COMPILED.size() >= MAX_COMPILED) {
+                    COMPILED.clear();
+                }
+                COMPILED.put(evrId, result);
+            }
+        }
+        compiled = result;
+        return result;
     }
 
     /**
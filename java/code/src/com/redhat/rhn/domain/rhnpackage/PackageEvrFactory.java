@@ -15,15 +15,24 @@
 package com.redhat.rhn.domain.rhnpackage;
 
 import com.redhat.rhn.common.db.datasource.CallableMode;
+import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.SelectMode;
+import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 
 import org.hibernate.Session;
 
 import java.sql.Types;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * PackageEvrFactory
@@ -88,6 +97,60 @@ public class PackageEvrFactory {
         return lookupPackageEvrById(id);
     }
 
+    /**
+     * Lookup the IDs of many PackageEvrs of the same type, INSERTing the missing ones with a single batch.
+     * @param evrs the PackageEvrs, without id
+     * @param type the type of all the PackageEvrs
+     * @return the PackageEvr ids by PackageEvr
+     */
+    public static Map<PackageEvr, Long> lookupOrCreatePackageEvrIds(Collection<PackageEvr> evrs,
+            PackageType type) {
+        Map<PackageEvr, Long> ids = lookupPackageEvrIds(evrs, type);
+        // sorted, so that concurrent inserts of overlapping EVRs do not deadlock
+        List<PackageEvr> missing = evrs.stream()
+                .filter(evr -> !ids.containsKey(evr))
+                .distinct()
+                .sorted(Comparator.comparing(PackageEvr::getVersion)
+                        .thenComparing(PackageEvr::getRelease)
+                        .thenComparing(PackageEvr::getEpoch, Comparator.nullsFirst(Comparator.naturalOrder())))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            WriteMode m = ModeFactory.getWriteMode("Package_queries", "insert_package_evr");
+            m.executeBatchUpdates(new DataResult<>(missing.stream()
+                    .map(evr -> {
+                        Map<String, Object> params = new HashMap<>();
+                        params.put("epoch", evr.getEpoch());
+                        params.put("version", evr.getVersion());
+                        params.put("release", evr.getRelease());
+                        params.put("type", type.getDbString());
+                        return params;
+                    })
+                    .collect(Collectors.toList())));
+            ids.putAll(lookupPackageEvrIds(missing, type));
+        }
+        return ids;
+    }
+
+    private static Map<PackageEvr, Long> lookupPackageEvrIds(Collection<PackageEvr> evrs, PackageType type) {
+        SelectMode m = ModeFactory.getMode("Package_queries", "package_evr_ids");
+        List<String> versions = evrs.stream()
+                .map(PackageEvr::getVersion)
+                .distinct()
+                .collect(Collectors.toList());
+        DataResult<Map<String, Object>> rows = m.execute(Map.of("type", type.getDbString()), versions);
+        Set<PackageEvr> wanted = new HashSet<>(evrs);
+        Map<PackageEvr, Long> ids = new HashMap<>();
+        rows.forEach(row -> {
+            PackageEvr evr = new PackageEvr((String) row.get("epoch"), (String) row.get("version"),
+                    (String) row.get("release"), type);
+            // the same version can come with other epochs and releases
+            if (wanted.contains(evr)) {
+                ids.put(evr, (Long) row.get("id"));
+            }
+        });
+        return ids;
+    }
+
     /**
      * Lookup a PackageEvr by its id
      * @param id the id to search for
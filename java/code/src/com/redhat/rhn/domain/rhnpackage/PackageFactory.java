@@ -20,6 +20,7 @@ import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.Row;
 import com.redhat.rhn.common.db.datasource.SelectMode;
+import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.domain.org.Org;
 import com.redhat.rhn.domain.server.InstalledPackage;
@@ -36,6 +37,7 @@ import org.hibernate.Session;
 
 import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -44,6 +46,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
@@ -290,6 +293,53 @@ public class PackageFactory extends HibernateFactory {
         return (Long) result.get("nameId");
     }
 
+    /**
+     * Lookup the IDs of many package names, INSERTing the missing ones with a single batch.
+     * @param names the package names
+     * @return the package name ids by name
+     */
+    public static Map<String, Long> lookupOrCreatePackageNameIds(Collection<String> names) {
+        Map<String, Long> ids = lookupPackageNameIds(names);
+        // sorted, so that concurrent inserts of overlapping names do not deadlock
+        List<String> missing = names.stream()
+                .filter(name -> !ids.containsKey(name))
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            WriteMode m = ModeFactory.getWriteMode("Package_queries", "insert_package_name");
+            m.executeBatchUpdates(new DataResult<>(missing.stream()
+                    .map(name -> Map.<String, Object>of("name", name))
+                    .collect(Collectors.toList())));
+            ids.putAll(lookupPackageNameIds(missing));
+        }
+        return ids;
+    }
+
+    private static Map<String, Long> lookupPackageNameIds(Collection<String> names) {
+        SelectMode m = ModeFactory.getMode("Package_queries", "package_name_ids");
+        DataResult<Map<String, Object>> rows = m.execute(new ArrayList<>(names));
+        Map<String, Long> ids = new HashMap<>();
+        rows.forEach(row -> ids.put((String) row.get("name"), (Long) row.get("id")));
+        return ids;
+    }
+
+    /**
+     * Returns the ids of the packages of a channel providing the given capability
+     *
+     * @param channelId the channel id
+     * @param capability the capability name
+     * @return the set of package ids
+     */
+    public static Set<Long> lookupChannelPackageIdsProviding(Long channelId, String capability) {
+        SelectMode m = ModeFactory.getMode("Package_queries", "channel_packages_providing");
+        Map<String, Object> params = new HashMap<>();
+        params.put("channel_id", channelId);
+        params.put("name", capability);
+        DataResult<Map<String, Object>> rows = m.execute(params);
+        return rows.stream().map(row -> (Long) row.get("id")).collect(Collectors.toSet());
+    }
+
     /**
      * lookup a PackageName object based on it's id, returns null if it does
      * not exist
@@ -277,6 +277,22 @@ public class ServerFactory extends HibernateFactory {
         m.execute(inParams, new HashMap<>());
     }
 
+    /**
+     * Regenerate the package needed cache for several servers with a single set based statement.
+     * The upgrade candidates of the subscribed channels are computed once for all the servers,
+     * so the servers should preferably share the same channels.
+     *
+     * @param serverIds the server IDs
+     */
+    public static void updateServerNeededCache(List<Long> serverIds) {
+        if (serverIds.isEmpty()) {
+            return;
+        }
+        CallableMode m = ModeFactory.getCallableMode(SYSTEM_QUERIES, "update_needed_cache_bulk");
+        String array = serverIds.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+        m.execute(Map.of("server_ids", array), new HashMap<>());
+    }
+
     /**
      * Get the Logger for the derived class so log messages show up on the
      * correct class
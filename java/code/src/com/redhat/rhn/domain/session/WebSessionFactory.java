@@ -22,6 +22,12 @@ import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
 import org.hibernate.query.Query;
 
+import java.sql.PreparedStatement;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
 /**
  * SessionFactory - the singleton class used to fetch and store
  * com.redhat.rhn.domain.session.Session objects from the
@@ -94,5 +100,35 @@ public class WebSessionFactory extends HibernateFactory {
         query.setParameter("user_id", user.getId());
         query.executeUpdate();
     }
-}
 
+    /**
+     * Extends the expiration time of several sessions with a single batched update.
+     * Expiration times are never shortened.
+     * @param expiresById the new expiration time in seconds, by session id
+     * @return the ids of the sessions which do not exist anymore
+     */
+    public static Set<Long> extendExpires(Map<Long, Long> expiresById) {
+        Set<Long> missing = new HashSet<>();
+        if (expiresById.isEmpty()) {
+            return missing;
+        }
+        List<Long> ids = List.copyOf(expiresById.keySet());
+        HibernateFactory.getSession().doWork(connection -> {
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "UPDATE PXTSessions SET expires = GREATEST(expires, ?) WHERE id = ?")) {
+                for (Long id : ids) {
+                    stmt.setLong(1, expiresById.get(id));
+                    stmt.setLong(2, id);
+                    stmt.addBatch();
+                }
+                int[] counts = stmt.executeBatch();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] == 0) {
+                        missing.add(ids.get(i));
+                    }
+                }
+            }
+        });
+        return missing;
+    }
+}
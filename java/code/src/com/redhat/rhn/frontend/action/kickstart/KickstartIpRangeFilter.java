@@ -46,6 +46,15 @@ public class KickstartIpRangeFilter extends BaseListFilter {
         map.put(label, "iprange.range");
     }
 
+    /**
+     * ${@inheritDoc}
+     */
+    @Override
+    public String getFilterAttribute() {
+        // ranges are matched by value, not by text
+        return null;
+    }
+
     /**
      * ${@inheritDoc}
      */
@@ -15,6 +15,10 @@
 
 package com.redhat.rhn.frontend.events;
 
+import static java.util.stream.Collectors.toList;
+
+import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.messaging.EventMessage;
 import com.redhat.rhn.common.messaging.MessageAction;
 import com.redhat.rhn.common.security.PermissionException;
@@ -33,43 +37,130 @@ import org.apache.logging.log4j.Logger;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 
 /**
- * Align Errata and Packages of {@link Channel} to given {@link Channel}
+ * Align Errata and Packages of {@link Channel}s to given {@link Channel}s
  *
+ * The packages of the source channels are filtered concurrently, then the target channels are aligned one by one
+ * (cloned errata are shared by the channels of an organization) and the statistics of the affected tables are
+ * refreshed once at the end.
  */
 public class AlignSoftwareTargetAction implements MessageAction {
 
     private static final Logger LOG = LogManager.getLogger(AlignSoftwareTargetAction.class);
 
+    private final boolean concurrent;
+
+    /**
+     * Standard constructor, filtering the packages of the source channels concurrently
+     */
+    public AlignSoftwareTargetAction() {
+        this(true);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param concurrentIn filter the packages of each source channel in its own thread and session. Only possible
+     * when the source channels are committed.
+     */
+    public AlignSoftwareTargetAction(boolean concurrentIn) {
+        this.concurrent = concurrentIn;
+    }
+
     @Override
     public void execute(EventMessage msgIn) {
         ContentManager contentManager = new ContentManager();
         AlignSoftwareTargetMsg msg = (AlignSoftwareTargetMsg) msgIn;
-        Channel sourceChannel = ChannelFactory.lookupById(msg.getSource().getId());
-        Long targetId = msg.getTarget().getId();
-        SoftwareEnvironmentTarget target = ContentProjectFactory
-                .lookupSwEnvironmentTargetById(targetId)
-                .orElseThrow(() -> new EntityNotExistsException(targetId));
-        Channel targetChannel = target.getChannel();
+        List<Channel> sourceChannels = msg.getSourcesAndTargets().stream()
+                .map(srcTgt -> ChannelFactory.lookupById(srcTgt.getLeft().getId()))
+                .collect(toList());
+        List<SoftwareEnvironmentTarget> targets = msg.getSourcesAndTargets().stream()
+                .map(srcTgt -> srcTgt.getRight().getId())
+                .map(targetId -> ContentProjectFactory
+                        .lookupSwEnvironmentTargetById(targetId)
+                        .orElseThrow(() -> new EntityNotExistsException(targetId)))
+                .collect(toList());
         List<ContentFilter> filters = msg.getFilters();
 
         try {
-            if (!UserManager.verifyChannelAdmin(msg.getUser(), targetChannel)) {
-                throw new PermissionException("User " + msg.getUser().getLogin() + " has no permission for channel " +
-                        targetChannel.getLabel());
+            for (SoftwareEnvironmentTarget target : targets) {
+                Channel targetChannel = target.getChannel();
+                if (!UserManager.verifyChannelAdmin(msg.getUser(), targetChannel)) {
+                    throw new PermissionException("User " + msg.getUser().getLogin() +
+                            " has no permission for channel " + targetChannel.getLabel());
+                }
             }
 
             LOG.info("Asynchronously aligning: {}", msg);
             Instant start = Instant.now();
-            contentManager.alignEnvironmentTargetSync(filters, sourceChannel, targetChannel, msg.getUser());
-            target.setStatus(Status.GENERATING_REPODATA);
+            List<Set<Long>> packageIds = filterPackages(contentManager, sourceChannels, filters);
+            for (int i = 0; i < targets.size(); i++) {
+                SoftwareEnvironmentTarget target = targets.get(i);
+                contentManager.alignEnvironmentTargetSync(filters, sourceChannels.get(i), target.getChannel(),
+                        packageIds.get(i), msg.getUser());
+                target.setStatus(Status.GENERATING_REPODATA);
+            }
+
+            // a lot was inserted into tables at this point. Make sure stats are up-to-date
+            contentManager.analyzeAlignTables();
             LOG.info("Finished aligning {} in {}", msg, Duration.between(start, Instant.now()));
         }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AlignSoftwareTargetException(targets, e);
+        }
+        catch (ExecutionException e) {
+            throw new AlignSoftwareTargetException(targets, e.getCause());
+        }
         catch (Throwable t) {
-            throw new AlignSoftwareTargetException(target, t);
+            throw new AlignSoftwareTargetException(targets, t);
+        }
+    }
+
+    private List<Set<Long>> filterPackages(ContentManager contentManager, List<Channel> sourceChannels,
+            List<ContentFilter> filters) throws InterruptedException, ExecutionException {
+        int threads = Math.min(sourceChannels.size(), ConfigDefaults.get().getClmAlignParallelThreads());
+        if (!concurrent || threads <= 1) {
+            return sourceChannels.stream()
+                    .map(src -> contentManager.filterPackageIds(filters, src))
+                    .collect(toList());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Set<Long>>> futures = new ArrayList<>();
+            for (Channel src : sourceChannels) {
+                Long srcId = src.getId();
+                futures.add(executor.submit(() -> filterPackagesInNewSession(contentManager, srcId, filters)));
+            }
+            List<Set<Long>> packageIds = new ArrayList<>();
+            for (Future<Set<Long>> future : futures) {
+                packageIds.add(future.get());
+            }
+            return packageIds;
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Set<Long> filterPackagesInNewSession(ContentManager contentManager, Long sourceId,
+            List<ContentFilter> filters) {
+        try {
+            return contentManager.filterPackageIds(filters, ChannelFactory.lookupById(sourceId));
+        }
+        finally {
+            // the session is only used for reading the source channel
+            HibernateFactory.rollbackTransactionAndCloseSession(false);
         }
     }
 
@@ -82,10 +173,12 @@ public class AlignSoftwareTargetAction implements MessageAction {
     public Consumer<Exception> getExceptionHandler() {
         return (e) -> {
             if (e instanceof AlignSoftwareTargetException) {
-                LOG.error("Error aligning target {}", ((AlignSoftwareTargetException) e).getTarget().getId(), e);
                 AlignSoftwareTargetException exc = ((AlignSoftwareTargetException) e);
-                exc.getTarget().setStatus(Status.FAILED);
-                ContentProjectFactory.save(exc.getTarget());
+                exc.getTargets().forEach(target -> {
+                    LOG.error("Error aligning target {}", target.getId(), e);
+                    target.setStatus(Status.FAILED);
+                    ContentProjectFactory.save(target);
+                });
             }
         };
     }
@@ -97,20 +190,20 @@ public class AlignSoftwareTargetAction implements MessageAction {
 
     private class AlignSoftwareTargetException extends RuntimeException {
 
-        private final SoftwareEnvironmentTarget target;
+        private final List<SoftwareEnvironmentTarget> targets;
 
-        AlignSoftwareTargetException(SoftwareEnvironmentTarget targetIn, Throwable cause) {
+        AlignSoftwareTargetException(List<SoftwareEnvironmentTarget> targetsIn, Throwable cause) {
             super(cause);
-            this.target = targetIn;
+            this.targets = targetsIn;
         }
 
         /**
-         * Gets the target.
+         * Gets the targets.
          *
-         * @return target
+         * @return targets
          */
-        public SoftwareEnvironmentTarget getTarget() {
-            return target;
+        public List<SoftwareEnvironmentTarget> getTargets() {
+            return targets;
         }
     }
 }
@@ -23,6 +23,7 @@ import com.redhat.rhn.domain.contentmgmt.SoftwareEnvironmentTarget;
 import com.redhat.rhn.domain.user.User;
 
 import org.apache.commons.lang3.builder.ToStringBuilder;
+import org.apache.commons.lang3.tuple.Pair;
 import org.hibernate.Transaction;
 
 import java.util.List;
@@ -32,44 +33,33 @@ import java.util.List;
  */
 public class AlignSoftwareTargetMsg implements EventDatabaseMessage {
 
-    private final Channel source;
-    private final SoftwareEnvironmentTarget target;
+    private final List<Pair<Channel, SoftwareEnvironmentTarget>> sourcesAndTargets;
     private final List<ContentFilter> filters;
     private final User user;
     private final Transaction txn;
 
     /**
      * Standard constructor
-     * @param src the source Channel
-     * @param tgt the {@link SoftwareEnvironmentTarget} in which the source channel will be aligned
+     * @param sourcesAndTargetsIn the [source Channel, {@link SoftwareEnvironmentTarget}] pairs, each source channel
+     * being aligned in its target
      * @param filtersIn the {@link ContentFilter}s
      * @param userIn the User
      */
-    public AlignSoftwareTargetMsg(Channel src, SoftwareEnvironmentTarget tgt, List<ContentFilter> filtersIn,
-            User userIn) {
-        this.source = src;
-        this.target = tgt;
+    public AlignSoftwareTargetMsg(List<Pair<Channel, SoftwareEnvironmentTarget>> sourcesAndTargetsIn,
+            List<ContentFilter> filtersIn, User userIn) {
+        this.sourcesAndTargets = sourcesAndTargetsIn;
         this.filters = filtersIn;
         this.user = userIn;
         this.txn = HibernateFactory.getSession().getTransaction();
     }
 
     /**
-     * Gets the source Channel.
+     * Gets the [source Channel, {@link SoftwareEnvironmentTarget}] pairs.
      *
-     * @return source
+     * @return the sources and targets
      */
-    public Channel getSource() {
-        return source;
-    }
-
-    /**
-     * Gets the {@link SoftwareEnvironmentTarget}
-     *
-     * @return target
-     */
-    public SoftwareEnvironmentTarget getTarget() {
-        return target;
+    public List<Pair<Channel, SoftwareEnvironmentTarget>> getSourcesAndTargets() {
+        return sourcesAndTargets;
     }
 
     /**
@@ -108,8 +98,7 @@ public class AlignSoftwareTargetMsg implements EventDatabaseMessage {
     @Override
     public String toString() {
         return new ToStringBuilder(this)
-                .append("source", source)
-                .append("target", target)
+                .append("sourcesAndTargets", sourcesAndTargets)
                 .append("user", user)
                 .toString();
     }
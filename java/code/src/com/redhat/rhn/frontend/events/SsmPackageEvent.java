@@ -21,6 +21,7 @@ import com.redhat.rhn.domain.action.ActionChain;
 import org.hibernate.Transaction;
 
 import java.util.Date;
+import java.util.Optional;
 
 /**
  * Base for SSM package install/update/remove actions. Holds the data shared between the
@@ -66,6 +67,15 @@ public abstract class SsmPackageEvent implements EventDatabaseMessage {
         return userId;
     }
 
+    /**
+     * The package operations of the SSM of a user are handled in order.
+     * @return the user partition key
+     */
+    @Override
+    public Optional<String> getPartitionKey() {
+        return Optional.of("user_" + userId);
+    }
+
     /**
      * @return may be <code>null</code>
      */
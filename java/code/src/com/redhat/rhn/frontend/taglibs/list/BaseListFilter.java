@@ -59,6 +59,16 @@ public abstract class BaseListFilter implements ListFilter {
         return false;
     }
 
+    /**
+     * Returns the bean property whose value has to contain the filter criteria, ignoring
+     * case. Pageable lists pass it down to the database instead of filtering each
+     * object. Filters matching the objects differently must return null.
+     * @return the bean property, or null
+     */
+    public String getFilterAttribute() {
+        return fieldMap.values().iterator().next();
+    }
+
     /**
      * ${@inheritDoc}
      */
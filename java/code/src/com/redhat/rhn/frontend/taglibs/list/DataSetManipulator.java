@@ -15,6 +15,7 @@
 
 package com.redhat.rhn.frontend.taglibs.list;
 
+import com.redhat.rhn.common.db.datasource.PageableDataResult;
 import com.redhat.rhn.common.localization.LocalizationService;
 import com.redhat.rhn.common.util.DynamicComparator;
 import com.redhat.rhn.common.util.MethodUtil;
@@ -27,6 +28,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -42,7 +44,10 @@ import javax.servlet.jsp.PageContext;
 /**
  * Provides a bunch of helper methods to make working with lists easier from a
  * custom tag POV.
- *
+ * <p>
+ * When the dataset is a {@link PageableDataResult}, the filtering, sorting, paging and
+ * alpha bar are done by the database as long as the attributes involved are mapped to
+ * columns. Otherwise the whole dataset is loaded and handled in memory.
  */
 public class DataSetManipulator {
 
@@ -54,13 +59,19 @@ public class DataSetManipulator {
     private String filterBy;
     private String filterValue;
     private int totalDataSetSize;
+    private PageableDataResult<?> pageable;
+    private ListFilter pagedFilter;
+    private String pagedFilterAttribute;
+    private String pagedSortAttribute;
+    private boolean pagedAscending;
+    private Integer pagedAlphaPosition;
     private final HttpServletRequest request;
     private final String uniqueName;
     private int pageNumber = -1;
     private String alphaCol;
     private int alphaPosition = -1;
     private boolean ascending = true;
-    private final int unfilteredDataSize;
+    private int unfilteredDataSize;
     private final boolean parentIsAnElement;
     private String defaultSortAttribute;
 
@@ -84,9 +95,17 @@ public class DataSetManipulator {
         dataset = datasetIn;
         request = requestIn;
         uniqueName = listNameIn;
-        totalDataSetSize = dataset.size();
-        unfilteredDataSize = dataset.size();
         parentIsAnElement = parentIsElement;
+        if (dataset instanceof PageableDataResult && parentIsAnElement) {
+            // the sizes are counted on demand
+            pageable = (PageableDataResult<?>) dataset;
+            totalDataSetSize = -1;
+            unfilteredDataSize = -1;
+        }
+        else {
+            totalDataSetSize = dataset.size();
+            unfilteredDataSize = dataset.size();
+        }
     }
 
     /**
@@ -111,6 +130,16 @@ public class DataSetManipulator {
         filterClass.setAttribute("value", f.getClass().getCanonicalName());
         ListTagUtil.write(context, filterClass.render());
 
+        if (pageable != null && f instanceof BaseListFilter) {
+            String attribute = ((BaseListFilter) f).getFilterAttribute();
+            if (pageable.hasColumn(attribute)) {
+                pagedFilter = f;
+                pagedFilterAttribute = attribute;
+                totalDataSetSize = -1;
+                return;
+            }
+        }
+        loadDataSet();
         dataset = ListFilterHelper.filter(dataset, f, filterBy, filterValue);
         totalDataSetSize = dataset.size();
     }
@@ -125,12 +154,18 @@ public class DataSetManipulator {
         }
 
         String sortDir = getActiveSortDirection();
+        if (pageable != null && pageable.hasColumn(sortAttr)) {
+            pagedSortAttribute = sortAttr;
+            pagedAscending = RequestContext.SORT_ASC.equals(sortDir);
+            return;
+        }
+        loadDataSet();
         try {
-            dataset.sort(new DynamicComparator<>(sortAttr, sortDir));
+            DynamicComparator.sort(dataset, sortAttr, RequestContext.SORT_ASC.equals(sortDir));
         }
         catch (IllegalArgumentException iae) {
             log.warn("Unable to sort dataset according to: {}", sortAttr);
-            dataset.sort(new DynamicComparator<>(defaultSortAttribute, sortDir));
+            DynamicComparator.sort(dataset, defaultSortAttribute, RequestContext.SORT_ASC.equals(sortDir));
         }
     }
 
@@ -139,6 +174,9 @@ public class DataSetManipulator {
      * @return total size
      */
     public int getTotalDataSetSize() {
+        if (totalDataSetSize < 0) {
+            totalDataSetSize = pageable.count(pagedFilterAttribute, filterValue);
+        }
         return totalDataSetSize;
     }
 
@@ -148,7 +186,16 @@ public class DataSetManipulator {
      */
     public List getPage() {
         List retval = new LinkedList<>();
-        if (pageSize > 0) {
+        if (pageable != null) {
+            int startOffset = 0;
+            if (pageSize > 0) {
+                startOffset = Math.max(0, Math.min(getCurrentPageNumber() * pageSize,
+                        getTotalDataSetSize() - 1));
+            }
+            retval.addAll(pageable.getPage(pagedFilterAttribute, filterValue, pagedSortAttribute,
+                    pagedAscending, startOffset, Math.max(pageSize, 0)));
+        }
+        else if (pageSize > 0) {
             int startOffset = getCurrentPageNumber() * pageSize;
             if (startOffset > dataset.size()) {
                 startOffset = dataset.size() - 1;
@@ -174,7 +221,13 @@ public class DataSetManipulator {
      */
     public List getAllData() {
         List retval = new LinkedList<>();
-        retval.addAll(dataset);
+        if (pageable != null) {
+            retval.addAll(pageable.getPage(pagedFilterAttribute, filterValue, pagedSortAttribute,
+                    pagedAscending, 0, 0));
+        }
+        else {
+            retval.addAll(dataset);
+        }
         return expand(retval);
     }
 
@@ -206,12 +259,12 @@ public class DataSetManipulator {
     public int getNextPageNumber() {
         int retval = -1;
         if (getCurrentPageNumber() == 0) {
-            if (totalDataSetSize > pageSize) {
+            if (getTotalDataSetSize() > pageSize) {
                 retval = getCurrentPageNumber() + 1;
             }
         }
         else {
-            if ((getCurrentPageNumber() * pageSize) + pageSize < (totalDataSetSize)) {
+            if ((getCurrentPageNumber() * pageSize) + pageSize < getTotalDataSetSize()) {
                 retval = getCurrentPageNumber() + 1;
             }
         }
@@ -245,10 +298,10 @@ public class DataSetManipulator {
      * @return answer to that burning question
      */
     public boolean isLastPage() {
-        int maxPage = (dataset.size() / pageSize) - 1;
+        int maxPage = (getTotalDataSetSize() / pageSize) - 1;
         // Add a page for overflow, since the dataset is not
         // evenly divisible by the pagesize
-        if (dataset.size() % pageSize > 0) {
+        if (getTotalDataSetSize() % pageSize > 0) {
             maxPage++;
         }
         return getCurrentPageNumber() == maxPage;
@@ -297,7 +350,7 @@ public class DataSetManipulator {
      */
     public Map<String, String[]> getPaginationLinks() {
         Map<String, String[]> links = new HashMap<>();
-        if (pageSize > 0 && !dataset.isEmpty() && getTotalDataSetSize() > pageSize) {
+        if (pageSize > 0 && !isListEmpty() && getTotalDataSetSize() > pageSize) {
             String pageLinkName = "list_" + uniqueName + "_page";
             String[] data = new String[4];
             if (!isFirstPage()) {
@@ -362,6 +415,9 @@ public class DataSetManipulator {
      * @return boolean
      */
     public boolean isListEmpty() {
+        if (pageable != null) {
+            return getTotalDataSetSize() == 0;
+        }
         return dataset == null || dataset.isEmpty();
     }
 
@@ -370,6 +426,10 @@ public class DataSetManipulator {
      * @return the set of characters that are active
      */
     public Set<Character> getAlphaBarIndex() {
+        if (pageable != null && pageable.hasColumn(alphaCol)) {
+            return pageable.getInitials(alphaCol, pagedFilterAttribute, filterValue);
+        }
+        loadDataSet();
         Set<Character> chars = new HashSet<>();
         int i = 0;
         for (Object inputRow : dataset) {
@@ -410,6 +470,14 @@ public class DataSetManipulator {
             }
             char alpha = Character
                     .toUpperCase(helper.getAlphaValue(uniqueName, request).charAt(0));
+            if (pageable != null && pageable.hasColumn(alphaCol)) {
+                if (pagedAlphaPosition == null) {
+                    pagedAlphaPosition = pageable.getInitialPosition(alphaCol, alpha,
+                            pagedFilterAttribute, filterValue);
+                }
+                return pagedAlphaPosition;
+            }
+            loadDataSet();
             int i = 0;
             for (Object inputRow : dataset) {
                 String value = getAlphaValue(inputRow);
@@ -469,6 +537,9 @@ public class DataSetManipulator {
      * @return Returns the unfilteredDataSize.
      */
     public int getUnfilteredDataSize() {
+        if (unfilteredDataSize < 0) {
+            unfilteredDataSize = pageable.count(null, null);
+        }
         return unfilteredDataSize;
     }
 
@@ -492,6 +563,27 @@ public class DataSetManipulator {
         return null;
     }
 
+    /**
+     * Loads the whole pageable dataset, for the operations the database cannot do.
+     * The filter already passed down to the database is applied in memory.
+     */
+    private void loadDataSet() {
+        if (pageable == null) {
+            return;
+        }
+        log.debug("Loading the whole dataset of list {}", uniqueName);
+        dataset = new ArrayList<>(pageable);
+        unfilteredDataSize = dataset.size();
+        if (pagedFilter != null) {
+            dataset = ListFilterHelper.filter(dataset, pagedFilter, filterBy, filterValue);
+        }
+        totalDataSetSize = dataset.size();
+        pageable = null;
+        pagedFilter = null;
+        pagedFilterAttribute = null;
+        pagedSortAttribute = null;
+    }
+
     private String getAlphaValue(Object inputRow) {
         String value;
         if (inputRow instanceof Map) {
@@ -533,6 +625,10 @@ public class DataSetManipulator {
         if (startOffset < 0) {
             startOffset = 0;
         }
+        if (pageable != null) {
+            // pageable rows are never expanded
+            return startOffset + 1;
+        }
         List parentList = dataset.subList(0, startOffset);
         List data = expand(parentList);
         int ret = data.size() + 1;
@@ -554,6 +650,9 @@ public class DataSetManipulator {
         }
 
         int endOffset = startOffset + pageSize;
+        if (pageable != null) {
+            return Math.min(endOffset, getTotalDataSetSize());
+        }
         if (endOffset > dataset.size()) {
             endOffset = dataset.size();
         }
@@ -568,6 +667,9 @@ public class DataSetManipulator {
     }
 
     private int getExpandedDataSize() {
+        if (pageable != null) {
+            return getTotalDataSetSize();
+        }
         if (!parentIsAnElement) {
             return expand(dataset).size() - dataset.size();
         }
@@ -600,11 +702,11 @@ public class DataSetManipulator {
                 value = "0";
             }
             else if (value.equalsIgnoreCase("last")) {
-                if (totalDataSetSize == 0) {
+                if (getTotalDataSetSize() == 0) {
                     value = "0";
                 }
                 else {
-                    value = String.valueOf((totalDataSetSize - 1) / pageSize);
+                    value = String.valueOf((getTotalDataSetSize() - 1) / pageSize);
                 }
             }
             try {
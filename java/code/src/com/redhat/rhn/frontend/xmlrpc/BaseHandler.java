@@ -32,14 +32,13 @@ import com.redhat.rhn.domain.product.Tuple2;
 import com.redhat.rhn.domain.role.Role;
 import com.redhat.rhn.domain.role.RoleFactory;
 import com.redhat.rhn.domain.server.Server;
-import com.redhat.rhn.domain.session.WebSession;
 import com.redhat.rhn.domain.user.User;
-import com.redhat.rhn.manager.session.SessionManager;
+import com.redhat.rhn.domain.user.UserFactory;
+import com.redhat.rhn.frontend.xmlrpc.XmlRpcMethodIndex.HandlerMethod;
+import com.redhat.rhn.manager.session.ApiSessionCache;
+import com.redhat.rhn.manager.session.ApiSessionCache.ApiSession;
 import com.redhat.rhn.manager.system.SystemManager;
 
-import com.suse.manager.api.ApiIgnore;
-import com.suse.manager.api.ApiType;
-import com.suse.manager.api.ReadOnly;
 import com.suse.salt.netapi.utils.Xor;
 
 import org.apache.logging.log4j.LogManager;
@@ -50,10 +49,6 @@ import org.xml.sax.SAXException;
 import java.io.IOException;
 import java.io.StringReader;
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
@@ -94,42 +89,39 @@ public class BaseHandler implements XmlRpcInvocationHandler {
     @Override
     public Object invoke(String methodCalled, List params) throws XmlRpcFault {
         Class<? extends BaseHandler> myClass = this.getClass();
-        Method[] methods = Arrays.stream(myClass.getDeclaredMethods())
-                .filter(m -> Modifier.isPublic(m.getModifiers()))
-                .filter(BaseHandler::isMethodAvailable)
-                .toArray(Method[]::new);
+        XmlRpcMethodIndex index = XmlRpcMethodIndex.forClass(myClass);
 
         String[] byNamespace = methodCalled.split("\\.");
         String beanifiedMethod = StringUtil.beanify(byNamespace[byNamespace.length - 1]);
-        WebSession session = null;
+        ApiSession session = null;
         User user = null;
 
         if (!params.isEmpty() && params.get(0) instanceof String &&
                 isSessionKey((String)params.get(0))) {
             if (!myClass.getName().endsWith("AuthHandler") &&
                 !myClass.getName().endsWith("SearchHandler")) {
-                session = SessionManager.loadSession((String)params.get(0));
-                user = getLoggedInUser((String) params.get(0));
+                session = ApiSessionCache.getInstance().lookup((String) params.get(0));
+                user = getLoggedInUser(session, (String) params.get(0));
                 params.set(0, user);
             }
         }
 
         //we've found all the methods that have the same number of parameters
-        List<Method> matchedMethods = findMethods(methods, params, beanifiedMethod);
+        List<HandlerMethod> matchedMethods = findMethods(index, params, beanifiedMethod);
 
         //Attempt to find a perfect match
-        Method foundMethod = findPerfectMethod(params, matchedMethods);
+        HandlerMethod foundMethod = index.findPerfectMethod(beanifiedMethod, params).orElse(null);
         Object[] converted = params.toArray();
 
         if (foundMethod == null) {
-            Tuple2<Method, Object[]> fallbackMethod = findFallbackMethod(params, matchedMethods);
+            Tuple2<HandlerMethod, Object[]> fallbackMethod = findFallbackMethod(params, matchedMethods);
             foundMethod = fallbackMethod.getA();
             converted = fallbackMethod.getB();
         }
-        XmlRpcLoggingInvocationProcessor.setCalledMethod(foundMethod);
+        XmlRpcLoggingInvocationProcessor.setCalledMethod(foundMethod.getMethod());
 
         if (user != null && user.isReadOnly()) {
-            if (!foundMethod.isAnnotationPresent(ReadOnly.class)) {
+            if (!foundMethod.isReadOnly()) {
                 throw new SecurityException("The " + beanifiedMethod + " API is not available to read-only API users");
             }
         }
@@ -174,18 +166,18 @@ public class BaseHandler implements XmlRpcInvocationHandler {
         }
         finally {
             if (session != null) {
-                SessionManager.extendSessionLifetime(session);
+                ApiSessionCache.getInstance().extendLifetime(session);
             }
         }
     }
 
-    private Tuple2<Method, Object[]> findFallbackMethod(
-            List<Object> params, List<Method> matchedMethods) {
+    private Tuple2<HandlerMethod, Object[]> findFallbackMethod(
+            List<Object> params, List<HandlerMethod> matchedMethods) {
 
-        Map<Boolean, List<Xor<TranslationException, Tuple2<Method, Object[]>>>> collect = matchedMethods
+        Map<Boolean, List<Xor<TranslationException, Tuple2<HandlerMethod, Object[]>>>> collect = matchedMethods
                 .stream()
                 .map(method -> {
-                    Class<?>[] types = method.getParameterTypes();
+                    Class<?>[] types = method.getMethod().getParameterTypes();
                     Object[] converted = params.toArray();
 
                     Iterator<Object> iter = params.iterator();
@@ -196,15 +188,16 @@ public class BaseHandler implements XmlRpcInvocationHandler {
                                 converted[i] = Translator.convert(curr, types[i]);
                             }
                             catch (TranslationException e) {
-                                return Xor.<TranslationException, Tuple2<Method, Object[]>>left(e);
+                                return Xor.<TranslationException, Tuple2<HandlerMethod, Object[]>>left(e);
                             }
                         }
                     }
-                    return Xor.<TranslationException, Tuple2<Method, Object[]>>right(new Tuple2<>(method, converted));
+                    return Xor.<TranslationException, Tuple2<HandlerMethod, Object[]>>right(
+                            new Tuple2<>(method, converted));
 
                 }).collect(Collectors.partitioningBy(x -> x.isRight()));
 
-        List<Tuple2<Method, Object[]>> candidates = collect.get(true).stream()
+        List<Tuple2<HandlerMethod, Object[]>> candidates = collect.get(true).stream()
                 .flatMap(x -> x.right().stream()).collect(Collectors.toList());
 
         List<TranslationException> exceptions = collect.get(false).stream()
@@ -221,70 +214,19 @@ public class BaseHandler implements XmlRpcInvocationHandler {
         }
     }
 
-    /**
-     * Finds the perfect match for a method based upon type
-     * @param params The parameters to find the match for.
-     * @param matchedMethods the list of methods to check for a perfect match
-     * @return null if no perfect match was found, otherwise the matched method.
-     */
-    private Method findPerfectMethod(List params, List<Method> matchedMethods) {
-        //now lets try to find one that matches parameters exactly
-        for (Method currMethod : matchedMethods) {
-            if (log.isDebugEnabled()) {
-                log.debug("findPerfectMethod test:{}", currMethod.toGenericString());
-            }
-            Class[] types = currMethod.getParameterTypes();
-            for (int i = 0; i < types.length; i++) {
-                if (log.isDebugEnabled()) {
-                    log.debug("  findPerfectMethod: compare: {} isAssignableFrom {}", types[i].getCanonicalName(),
-                            params.get(i).getClass().getCanonicalName());
-                }
-                //if we find a param that doesn't match, go to the next method
-                if (!types[i].isAssignableFrom(params.get(i).getClass())) {
-                    break;
-                }
-                //if we have gone through all of the params, and are here it is a
-                //      perfect match.
-                if (i == types.length - 1) {
-                    log.debug("  all parameter match");
-                    return currMethod;
-                }
-            }
-        }
-        return null;
-    }
-
     /**
      * Private method to find the method in the java class that is being called
      * via xml-rpc
-     * @param methods The methods contained in the class
+     * @param index The index of the methods contained in the class
      * @param params The parameters sent to us via xml-rpc
      * @param beanifiedMethod The method name we are looking for
-     * @return The matching method we're looking for
+     * @return The methods with the right name and number of parameters
      * @throws XmlRpcFault Thrown if we can't find the method asked for
      */
-    /*
-     * TODO: Make this method even smarterer.
-     *      Currently this finds methods that match the number of parameters and returns
-     *          those.
-     */
-    private List<Method> findMethods(Method[] methods, Collection params,
+    private List<HandlerMethod> findMethods(XmlRpcMethodIndex index, Collection params,
             String beanifiedMethod) throws XmlRpcFault {
 
-        List<Method> toReturn = new ArrayList<>();
-
-        //Loop through the methods array and find the one we are trying to call.
-        for (Method methodIn : methods) {
-            if (methodIn.getName().equals(beanifiedMethod)) {
-                // We found a method with the right name, but does the parameter count
-                // match?
-                int numberOfParams = methodIn.getParameterTypes().length;
-                if (numberOfParams == params.size()) {
-                    //Method name and number of parameters match.
-                    toReturn.add(methodIn);
-                }
-            }
-        }
+        List<HandlerMethod> toReturn = index.getMethods(beanifiedMethod, params.size());
         if (toReturn.isEmpty()) {
             //The caller didn't get the method name or number of parameters right
             String message = "Could not find method: " + beanifiedMethod +
@@ -311,9 +253,11 @@ public class BaseHandler implements XmlRpcInvocationHandler {
      * sessionkey.
      */
     public static User getLoggedInUser(String sessionKey) {
-        //Load the session
-        WebSession session = SessionManager.loadSession(sessionKey);
-        User user = session.getUser();
+        return getLoggedInUser(ApiSessionCache.getInstance().lookup(sessionKey), sessionKey);
+    }
+
+    private static User getLoggedInUser(ApiSession session, String sessionKey) {
+        User user = session.getUserId() != null ? UserFactory.lookupById(session.getUserId()) : null;
 
         //Make sure there was a valid user in the session. If not, the session is invalid.
         if (user == null) {
@@ -518,14 +462,4 @@ public class BaseHandler implements XmlRpcInvocationHandler {
     private boolean isSessionKey(String string) {
         return string.matches(KEY_REGEX);
     }
-
-    /**
-     * Returns true if the method is available to be exposed in the XMLRPC interface
-     * @param method the method
-     * @return true if the method is available
-     */
-    private static boolean isMethodAvailable(Method method) {
-        return !(method.isAnnotationPresent(ApiIgnore.class) &&
-                Arrays.asList(method.getAnnotation(ApiIgnore.class).value()).contains(ApiType.XMLRPC));
-    }
 }
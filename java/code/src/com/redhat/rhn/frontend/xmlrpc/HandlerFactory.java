@@ -120,6 +120,8 @@ public class HandlerFactory {
      * @param handler xml rpc handler.
      */
     public void addHandler(String namespace, BaseHandler handler) {
+       // build the method index now rather than on the first call
+       XmlRpcMethodIndex.forClass(handler.getClass());
        handlers.put(namespace, handler);
     }
 
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.xmlrpc;
+
+import com.suse.manager.api.ApiIgnore;
+import com.suse.manager.api.ApiType;
+import com.suse.manager.api.ReadOnly;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of the methods of a handler class exposed in the XMLRPC interface, by name and number
+ * of parameters. The method matching exactly the types of the arguments of a call is resolved
+ * once per (name, argument types) pair, then invoked through a method handle.
+ */
+public class XmlRpcMethodIndex {
+
+    private static final Logger LOG = LogManager.getLogger(XmlRpcMethodIndex.class);
+
+    private static final MethodType INVOKER_TYPE =
+            MethodType.methodType(Object.class, Object.class, Object[].class);
+
+    private static final ClassValue<XmlRpcMethodIndex> INDEXES = new ClassValue<>() {
+        @Override
+        protected XmlRpcMethodIndex computeValue(Class<?> type) {
+            return new XmlRpcMethodIndex(type);
+        }
+    };
+
+    private final Class<?> handlerClass;
+    private final Map<String, Map<Integer, List<HandlerMethod>>> methods = new HashMap<>();
+    private final Map<Signature, Optional<HandlerMethod>> perfectMatches = new ConcurrentHashMap<>();
+
+    private XmlRpcMethodIndex(Class<?> handlerClassIn) {
+        handlerClass = handlerClassIn;
+        for (Method method : handlerClassIn.getDeclaredMethods()) {
+            if (Modifier.isPublic(method.getModifiers()) && isMethodAvailable(method)) {
+                methods.computeIfAbsent(method.getName(), n -> new HashMap<>())
+                        .computeIfAbsent(method.getParameterCount(), c -> new ArrayList<>())
+                        .add(new HandlerMethod(method));
+            }
+        }
+    }
+
+    /**
+     * Returns the index of a handler class, building it on the first call
+     * @param handlerClass the handler class
+     * @return the index
+     */
+    public static XmlRpcMethodIndex forClass(Class<? extends BaseHandler> handlerClass) {
+        return INDEXES.get(handlerClass);
+    }
+
+    /**
+     * Returns the methods with the given name and number of parameters
+     * @param name the beanified method name
+     * @param parameterCount the number of parameters
+     * @return the methods, in declaration order
+     */
+    public List<HandlerMethod> getMethods(String name, int parameterCount) {
+        return methods.getOrDefault(name, Collections.emptyMap())
+                .getOrDefault(parameterCount, Collections.emptyList());
+    }
+
+    /**
+     * Returns the first method whose parameter types are assignable from the classes of the arguments
+     * @param name the beanified method name
+     * @param params the arguments of the call
+     * @return the method, or empty if the arguments need to be converted or there are none
+     */
+    public Optional<HandlerMethod> findPerfectMethod(String name, List<?> params) {
+        Class<?>[] types = new Class<?>[params.size()];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = params.get(i).getClass();
+        }
+        return perfectMatches.computeIfAbsent(new Signature(name, types), this::resolvePerfectMethod);
+    }
+
+    private Optional<HandlerMethod> resolvePerfectMethod(Signature signature) {
+        // methods without parameters are always resolved by the conversion fallback
+        if (signature.types.length == 0) {
+            return Optional.empty();
+        }
+        for (HandlerMethod candidate : getMethods(signature.name, signature.types.length)) {
+            Class<?>[] parameterTypes = candidate.method.getParameterTypes();
+            boolean matches = true;
+            for (int i = 0; i < parameterTypes.length && matches; i++) {
+                matches = parameterTypes[i].isAssignableFrom(signature.types[i]);
+            }
+            if (matches) {
+                LOG.debug("{}.{} resolved to {} for {}", handlerClass.getSimpleName(), signature.name,
+                        candidate.method.toGenericString(), Arrays.toString(signature.types));
+                return Optional.of(candidate);
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Returns true if the method is available to be exposed in the XMLRPC interface
+     * @param method the method
+     * @return true if the method is available
+     */
+    private static boolean isMethodAvailable(Method method) {
+        return !(method.isAnnotationPresent(ApiIgnore.class) &&
+                Arrays.asList(method.getAnnotation(ApiIgnore.class).value()).contains(ApiType.XMLRPC));
+    }
+
+    /**
+     * A handler method exposed in the XMLRPC interface
+     */
+    public static final class HandlerMethod {
+        private final Method method;
+        private final MethodHandle invoker;
+        private final boolean readOnly;
+
+        private HandlerMethod(Method methodIn) {
+            method = methodIn;
+            invoker = unreflect(methodIn);
+            readOnly = methodIn.isAnnotationPresent(ReadOnly.class);
+        }
+
+        private static MethodHandle unreflect(Method method) {
+            try {
+                MethodHandle handle = MethodHandles.publicLookup().unreflect(method);
+                if (Modifier.isStatic(method.getModifiers())) {
+                    // ignore the handler instance, like Method.invoke() does
+                    handle = MethodHandles.dropArguments(handle, 0, Object.class);
+                }
+                return handle.asSpreader(Object[].class, method.getParameterCount()).asType(INVOKER_TYPE);
+            }
+            catch (IllegalAccessException e) {
+                // e.g. handler classes which are not public, fall back to reflection
+                return null;
+            }
+        }
+
+        /**
+         * @return the method
+         */
+        public Method getMethod() {
+            return method;
+        }
+
+        /**
+         * @return true if the method is available to read-only API users
+         */
+        public boolean isReadOnly() {
+            return readOnly;
+        }
+
+        /**
+         * Invokes the method, like {@link Method#invoke(Object, Object...)} does
+         * @param handler the handler instance
+         * @param args the arguments, already converted to the parameter types
+         * @return the result of the method
+         * @throws IllegalAccessException if the method is not accessible
+         * @throws InvocationTargetException wrapping any exception thrown by the method
+         */
+        public Object invoke(Object handler, Object[] args) throws IllegalAccessException, InvocationTargetException {
+            if (invoker == null) {
+                return method.invoke(handler, args);
+            }
+            try {
+                return invoker.invokeExact(handler, args);
+            }
+            catch (Throwable t) {
+                throw new InvocationTargetException(t);
+            }
+        }
+    }
+
+    /**
+     * The name of a called method and the classes of its arguments
+     */
+    private static final class Signature {
+        private final String name;
+        private final Class<?>[] types;
+        private final int hash;
+
+        Signature(String nameIn, Class<?>[] typesIn) {
+            name = nameIn;
+            types = typesIn;
+            hash = 31 * nameIn.hashCode() + Arrays.hashCode(typesIn);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Signature)) {
+                return false;
+            }
+            Signature other = (Signature) o;
+            return name.equals(other.name) && Arrays.equals(types, other.types);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
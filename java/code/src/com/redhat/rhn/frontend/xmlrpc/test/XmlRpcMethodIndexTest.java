@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.xmlrpc.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.domain.user.User;
+import com.redhat.rhn.domain.user.UserFactory;
+import com.redhat.rhn.frontend.xmlrpc.XmlRpcMethodIndex;
+import com.redhat.rhn.frontend.xmlrpc.system.SystemHandler;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class XmlRpcMethodIndexTest {
+
+    /**
+     * Frequent system API calls, with the arguments as they come from the XMLRPC parser
+     */
+    private static List<Map.Entry<String, List<Object>>> hotCalls() {
+        User user = UserFactory.createUser();
+        return List.of(
+                Map.entry("listSystems", List.of(user)),
+                Map.entry("getDetails", List.of(user, 1000010000)),
+                Map.entry("getId", List.of(user, "minion.example.com")),
+                Map.entry("listInstalledPackages", List.of(user, 1000010000)),
+                Map.entry("getRelevantErrata", List.of(user, 1000010000)),
+                Map.entry("scheduleApplyErrata", List.of(user, 1000010000, new ArrayList<>(List.of(1, 2)))),
+                Map.entry("scheduleApplyErrata", List.of(user, new ArrayList<>(List.of(1000010000)),
+                        new ArrayList<>(List.of(1, 2)))));
+    }
+
+    @Test
+    public void testSameMethodsAsDeclaredMethodsScan() {
+        XmlRpcMethodIndex index = XmlRpcMethodIndex.forClass(SystemHandler.class);
+        for (Map.Entry<String, List<Object>> call : hotCalls()) {
+            Method scanned = scanPerfectMethod(call.getKey(), call.getValue());
+            assertNotNull(scanned);
+            assertEquals(scanned, index.findPerfectMethod(call.getKey(), call.getValue()).get().getMethod());
+        }
+    }
+
+    @Test
+    public void testOverloadResolution() {
+        XmlRpcMethodIndex index = XmlRpcMethodIndex.forClass(SystemHandler.class);
+        User user = UserFactory.createUser();
+        Method single = index.findPerfectMethod("scheduleApplyErrata",
+                List.of(user, 1000010000, new ArrayList<>(List.of(1, 2)))).get().getMethod();
+        Method multiple = index.findPerfectMethod("scheduleApplyErrata",
+                List.of(user, new ArrayList<>(List.of(1000010000)), new ArrayList<>(List.of(1, 2)))).get().getMethod();
+        assertEquals(Integer.class, single.getParameterTypes()[1]);
+        assertEquals(List.class, multiple.getParameterTypes()[1]);
+        // the resolved method is cached per argument classes
+        assertEquals(single, index.findPerfectMethod("scheduleApplyErrata",
+                List.of(user, 1000010001, new ArrayList<>(List.of(3)))).get().getMethod());
+    }
+
+    @Test
+    public void testMethodsNeedingConversion() {
+        XmlRpcMethodIndex index = XmlRpcMethodIndex.forClass(UnitTestHandler.class);
+
+        // add(Integer, Integer) does not accept longs as they are
+        assertFalse(index.findPerfectMethod("add", List.of(1L, 2L)).isPresent());
+        assertEquals(1, index.getMethods("add", 2).size());
+        assertTrue(index.getMethods("add", 1).isEmpty());
+        assertTrue(index.getMethods("unknown", 0).isEmpty());
+        // methods without parameters are resolved by the conversion fallback
+        assertFalse(index.findPerfectMethod("login", List.of()).isPresent());
+        assertEquals(1, index.getMethods("login", 0).size());
+    }
+
+    @Test
+    public void testInvoke() throws Exception {
+        UnitTestHandler handler = new UnitTestHandler();
+        assertEquals(5, handler.invoke("unittest.add", new ArrayList<>(List.of(2, 3))));
+        // the longs are converted by the fallback
+        assertEquals(5, handler.invoke("unittest.add", new ArrayList<>(List.of(2L, 3L))));
+        assertTrue(XmlRpcMethodIndex.forClass(UnitTestHandler.class).getMethods("getUserLogin", 1).get(0)
+                .isReadOnly());
+    }
+
+    /**
+     * The method lookup done by BaseHandler before the index was introduced
+     */
+    private static Method scanPerfectMethod(String name, List<Object> params) {
+        Method[] methods = Arrays.stream(SystemHandler.class.getDeclaredMethods())
+                .filter(m -> Modifier.isPublic(m.getModifiers()))
+                .toArray(Method[]::new);
+        for (Method method : methods) {
+            if (!method.getName().equals(name) || method.getParameterCount() != params.size()) {
+                continue;
+            }
+            Class<?>[] types = method.getParameterTypes();
+            boolean matches = true;
+            for (int i = 0; i < types.length && matches; i++) {
+                matches = types[i].isAssignableFrom(params.get(i).getClass());
+            }
+            if (matches) {
+                return method;
+            }
+        }
+        return null;
+    }
+}
@@ -50,5 +50,22 @@ public class EulaManager {
 
         return result;
     }
-}
 
+    /**
+     * Get the EULAs of several packages
+     * @param pkgIds ids of the packages
+     * @return the EULAs by package id, packages without EULA are missing
+     */
+    public Map<Long, List<String>> getEulasForPackages(List<Long> pkgIds) {
+        SelectMode m = ModeFactory.getMode(TaskConstants.MODE_NAME,
+            TaskConstants.TASK_QUERY_REPOMD_GENERATOR_PACKAGES_EULAS);
+        DataResult<Map<String, Object>> dataResult = m.execute(pkgIds);
+
+        Map<Long, List<String>> result = new HashMap<>();
+        for (Map<String, Object> row: dataResult) {
+            result.computeIfAbsent(((Number) row.get("package_id")).longValue(), id -> new LinkedList<>())
+                .add(HibernateFactory.getBlobContents(row.get("text")));
+        }
+        return result;
+    }
+}
@@ -255,10 +255,21 @@ public class ContentSyncManager {
         // stop as soon as a credential pair works
         while (i.hasNext() && productList.isEmpty()) {
             Credentials c = i.next();
-            List<SCCProductJson> products = new LinkedList<>();
+            Set<SCCProductJson> products = new HashSet<>();
             try {
                 SCCClient scc = getSCCClient(c);
-                products = scc.listProducts();
+                scc.forEachProduct(product -> {
+                    // Check for missing attributes
+                    String missing = verifySCCProduct(product);
+                    if (!StringUtils.isBlank(missing)) {
+                        log.warn("Broken product: {}, Version: {}, Identifier: {}, Product ID: {} " +
+                                        "### Missing attributes: {}", product.getName(), product.getVersion(),
+                                product.getIdentifier(), product.getId(), missing);
+                    }
+
+                    // Add product in any case
+                    products.add(product);
+                });
             }
             catch (SCCClientException e) {
                 // test for OES credentials
@@ -270,18 +281,7 @@ public class ContentSyncManager {
             catch (URISyntaxException e) {
                 throw new ContentSyncException(e);
             }
-            for (SCCProductJson product : products) {
-                // Check for missing attributes
-                String missing = verifySCCProduct(product);
-                if (!StringUtils.isBlank(missing)) {
-                    log.warn("Broken product: {}, Version: {}, Identifier: {}, Product ID: {} " +
-                                    "### Missing attributes: {}", product.getName(), product.getVersion(),
-                            product.getIdentifier(), product.getId(), missing);
-                }
-
-                // Add product in any case
-                productList.add(product);
-            }
+            productList.addAll(products);
         }
 
         if (log.isDebugEnabled()) {
@@ -51,6 +51,7 @@ import com.redhat.rhn.domain.contentmgmt.ErrataFilter;
 import com.redhat.rhn.domain.contentmgmt.FilterCriteria;
 import com.redhat.rhn.domain.contentmgmt.ModuleFilter;
 import com.redhat.rhn.domain.contentmgmt.PackageFilter;
+import com.redhat.rhn.domain.contentmgmt.PackageFilterPlan;
 import com.redhat.rhn.domain.contentmgmt.ProjectSource;
 import com.redhat.rhn.domain.contentmgmt.ProjectSource.Type;
 import com.redhat.rhn.domain.contentmgmt.SoftwareEnvironmentTarget;
@@ -61,6 +62,7 @@ import com.redhat.rhn.domain.errata.ClonedErrata;
 import com.redhat.rhn.domain.errata.Errata;
 import com.redhat.rhn.domain.errata.ErrataFactory;
 import com.redhat.rhn.domain.rhnpackage.Package;
+import com.redhat.rhn.domain.rhnpackage.PackageFactory;
 import com.redhat.rhn.domain.server.ServerFactory;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.frontend.events.AlignSoftwareTargetAction;
@@ -758,8 +760,7 @@ public class ContentManager {
             DependencyResolutionResult result = resolver.resolveFilters(filters);
 
             // align the contents
-            newSrcTgtPairs.forEach(srcTgt -> alignEnvironmentTarget(srcTgt.getLeft(), srcTgt.getRight(),
-                    result.getFilters(), async, user));
+            alignEnvironmentTargets(newSrcTgtPairs, result.getFilters(), async, user);
         }
         catch (DependencyResolutionException e) {
             // Build shouldn't be allowed if dependency resolution fails
@@ -931,26 +932,31 @@ public class ContentManager {
     }
 
     /**
-     * Align packages and errata of the {@link SoftwareEnvironmentTarget} to the source {@link Channel}
+     * Align packages and errata of the {@link SoftwareEnvironmentTarget}s to their source {@link Channel}s
      *
-     * @param src the source {@link Channel}
-     * @param tgt the target {@link SoftwareEnvironmentTarget}
+     * @param srcTgtPairs the [source {@link Channel}, target {@link SoftwareEnvironmentTarget}] pairs
      * @param filters the {@link ContentFilter}s
      * @param async run this operation asynchronously?
      * @param user the user
      */
-    public void alignEnvironmentTarget(Channel src, SoftwareEnvironmentTarget tgt, List<ContentFilter> filters,
-            boolean async, User user) {
+    public void alignEnvironmentTargets(List<Pair<Channel, SoftwareEnvironmentTarget>> srcTgtPairs,
+            List<ContentFilter> filters, boolean async, User user) {
+        if (srcTgtPairs.isEmpty()) {
+            return;
+        }
+
         // adjust the target status
-        tgt.setStatus(EnvironmentTarget.Status.BUILDING);
-        ContentProjectFactory.save(tgt);
+        srcTgtPairs.forEach(srcTgt -> {
+            srcTgt.getRight().setStatus(EnvironmentTarget.Status.BUILDING);
+            ContentProjectFactory.save(srcTgt.getRight());
+        });
 
-        AlignSoftwareTargetMsg msg = new AlignSoftwareTargetMsg(src, tgt, filters, user);
+        AlignSoftwareTargetMsg msg = new AlignSoftwareTargetMsg(srcTgtPairs, filters, user);
         if (async) {
             MessageQueue.publish(msg);
         }
         else {
-            new AlignSoftwareTargetAction().execute(msg);
+            new AlignSoftwareTargetAction(false).execute(msg);
         }
     }
 
@@ -964,13 +970,52 @@ public class ContentManager {
      * @param user the user
      */
     public void alignEnvironmentTargetSync(Collection<ContentFilter> filters, Channel src, Channel tgt, User user) {
+        alignEnvironmentTargetSync(filters, src, tgt, filterPackageIds(filters, src), user);
+
+        // a lot was inserted into tables at this point. Make sure stats are up-to-date
+        analyzeAlignTables();
+    }
+
+    /**
+     * Compute the ids of the packages of the source {@link Channel} which are not filtered out by the given filters
+     *
+     * @param filters the filters
+     * @param src the source {@link Channel}
+     * @return the ids of the packages to align to the target channel
+     */
+    public Set<Long> filterPackageIds(Collection<ContentFilter> filters, Channel src) {
         List<PackageFilter> packageFilters = extractFiltersOfType(filters, PackageFilter.class);
+        LOG.debug("Filtering {} entities through {} filter(s)", src.getPackages().size(), packageFilters.size());
+        // provided capabilities are looked up in the database, make sure it sees the source packages
+        HibernateFactory.getSession().flush();
+        PackageFilterPlan plan = new PackageFilterPlan(packageFilters,
+                capability -> PackageFactory.lookupChannelPackageIdsProviding(src.getId(), capability));
+        return plan.filter(src.getPackages()).getLeft().stream()
+                .map(Package::getId)
+                .collect(toSet());
+    }
+
+    /**
+     * Synchronously align packages and errata of the {@link Channel} to the source {@link Channel}, given the
+     * packages computed by {@link #filterPackageIds(Collection, Channel)}.
+     * The table statistics are not refreshed: call {@link #analyzeAlignTables()} once all the channels are aligned.
+     *
+     * @param filters the filters
+     * @param src the source {@link Channel}
+     * @param tgt the target {@link Channel}
+     * @param packageIds the ids of the packages to align to the target channel
+     * @param user the user
+     */
+    public void alignEnvironmentTargetSync(Collection<ContentFilter> filters, Channel src, Channel tgt,
+            Set<Long> packageIds, User user) {
         List<ErrataFilter> errataFilters = extractFiltersOfType(filters, ErrataFilter.class);
 
-        Set<Package> oldTgtPackages = new HashSet<>(tgt.getPackages());
+        // the packages are aligned with plain statements, flush the pending changes of the channel first
+        HibernateFactory.getSession().flush();
+        Set<Long> oldTgtPackageIds = new HashSet<>(ChannelFactory.getPackageIds(tgt.getId()));
 
         // align packages
-        alignPackages(src, tgt, packageFilters);
+        alignPackages(tgt, oldTgtPackageIds, packageIds, user);
 
         // align errata and the cache (rhnServerNeededCache)
         alignErrata(src, tgt, errataFilters, user);
@@ -978,10 +1023,7 @@ public class ContentManager {
         // align the package cache
         // this must be done after aligning errata since some packages may belong to a retracted erratum and we don't
         // want them in the cache. For this we need the errata to be up-to-date in target
-        alignPackageCache(tgt, oldTgtPackages);
-
-        // a lot was inserted into tables at this point. Make sure stats are up-to-date before continuing
-        analyzeAlignTables();
+        alignPackageCache(tgt, oldTgtPackageIds);
 
         // Also check if content of cloned errata needs alignment (advisory status etc.)
         if (user.getOrg().getOrgConfig().isClmSyncPatches()) {
@@ -1003,7 +1045,7 @@ public class ContentManager {
     /**
      * Run database analyze in tables more affected by the CLM channel align
      */
-    private void analyzeAlignTables() {
+    public void analyzeAlignTables() {
         ChannelFactory.analyzeChannelPackages();
         ChannelFactory.analyzeErrataPackages();
         ChannelFactory.analyzeChannelErrata();
@@ -1012,16 +1054,20 @@ public class ContentManager {
         ChannelFactory.analyzeServerNeededCache();
     }
 
-    private void alignPackageCache(Channel channel, Set<Package> oldChannelPackages) {
+    private void alignPackageCache(Channel channel, Set<Long> oldChannelPackageIds) {
+        Set<Long> channelPackageIds = new HashSet<>(ChannelFactory.getPackageIds(channel.getId()));
+
         // remove entries for deleted packages
-        Set<Package> removedPackages = new HashSet<>(oldChannelPackages);
-        removedPackages.removeAll(channel.getPackages());
-        ErrataCacheManager.deleteCacheEntriesForChannelPackages(channel.getId(), extractPackageIds(removedPackages));
+        List<Long> removedPackageIds = oldChannelPackageIds.stream()
+                .filter(id -> !channelPackageIds.contains(id))
+                .collect(toList());
+        ErrataCacheManager.deleteCacheEntriesForChannelPackages(channel.getId(), removedPackageIds);
 
         // add cache entries for new ones
-        Set<Package> newTgtPackages = new HashSet<>(channel.getPackages());
-        newTgtPackages.removeAll(oldChannelPackages);
-        ErrataCacheManager.insertCacheForChannelPackages(channel.getId(), null, extractPackageIds(newTgtPackages));
+        List<Long> newPackageIds = channelPackageIds.stream()
+                .filter(id -> !oldChannelPackageIds.contains(id))
+                .collect(toList());
+        ErrataCacheManager.insertCacheForChannelPackages(channel.getId(), null, newPackageIds);
     }
 
     // helper for extracting certain filter types
@@ -1033,12 +1079,26 @@ public class ContentManager {
                 .collect(toList());
     }
 
-    private void alignPackages(Channel srcChannel, Channel tgtChannel, Collection<PackageFilter> filters) {
-        tgtChannel.getPackages().clear();
-        LOG.debug("Filtering {} entities through {} filter(s)", srcChannel.getPackages().size(), filters.size());
-        Set<Package> newPackages = filterEntities(srcChannel.getPackages(), filters).getLeft();
-        tgtChannel.getPackages().addAll(newPackages);
-        ChannelFactory.save(tgtChannel);
+    /**
+     * Apply the difference between the current and the wanted packages of the target channel in the database,
+     * instead of recreating the whole package collection
+     */
+    private void alignPackages(Channel tgtChannel, Set<Long> oldPackageIds, Set<Long> packageIds, User user) {
+        List<Long> removedPackageIds = oldPackageIds.stream()
+                .filter(id -> !packageIds.contains(id))
+                .collect(toList());
+        List<Long> addedPackageIds = packageIds.stream()
+                .filter(id -> !oldPackageIds.contains(id))
+                .collect(toList());
+        LOG.debug("Aligning channel {}: {} package(s) removed, {} package(s) added", tgtChannel.getLabel(),
+                removedPackageIds.size(), addedPackageIds.size());
+
+        if (!removedPackageIds.isEmpty()) {
+            ChannelManager.removePackages(tgtChannel, removedPackageIds, user);
+        }
+        if (!addedPackageIds.isEmpty()) {
+            ChannelManager.addPackages(tgtChannel, addedPackageIds, user);
+        }
     }
 
     /**
@@ -1106,10 +1166,6 @@ public class ContentManager {
         return Pair.of(allowed, denied);
     }
 
-    private static List<Long> extractPackageIds(Collection<Package> packages) {
-        return packages.stream().map(Package::getId).collect(toList());
-    }
-
     /**
      * Ensures that given user has the Org admin role
      *
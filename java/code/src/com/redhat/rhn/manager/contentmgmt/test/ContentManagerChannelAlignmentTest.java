@@ -70,6 +70,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -136,6 +137,37 @@ public class ContentManagerChannelAlignmentTest extends BaseTestCaseWithUser {
         assertEquals(srcChannel.getErratas(), tgtChannel.getErratas());
     }
 
+    /**
+     * Test aligning several targets with the packages filtered in advance, only the difference being applied
+     */
+    @Test
+    public void testAlignTargetsWithFilteredPackages() {
+        Package pack2 = PackageTest.createTestPackage(user.getOrg());
+        Package pack3 = PackageTest.createTestPackage(user.getOrg());
+        srcChannel.addPackage(pack2);
+        tgtChannel.getPackages().add(pkg);
+        tgtChannel.getPackages().add(pack3);
+        Channel tgtChannel2 = ChannelTestUtils.createBaseChannel(user);
+
+        FilterCriteria criteria = new FilterCriteria(
+                FilterCriteria.Matcher.EQUALS, "name", pack2.getPackageName().getName());
+        List<ContentFilter> filters = List.of(contentManager.createFilter("test-filter-123", DENY, PACKAGE, criteria,
+                user));
+
+        Set<Long> packageIds = contentManager.filterPackageIds(filters, srcChannel);
+        assertEquals(Set.of(pkg.getId()), packageIds);
+
+        contentManager.alignEnvironmentTargetSync(filters, srcChannel, tgtChannel, packageIds, user);
+        contentManager.alignEnvironmentTargetSync(filters, srcChannel, tgtChannel2, packageIds, user);
+        contentManager.analyzeAlignTables();
+
+        tgtChannel = HibernateFactory.reload(tgtChannel);
+        tgtChannel2 = HibernateFactory.reload(tgtChannel2);
+        assertEquals(Set.of(pkg), tgtChannel.getPackages());
+        assertEquals(Set.of(pkg), tgtChannel2.getPackages());
+        assertEquals(srcChannel.getErratas(), tgtChannel2.getErratas());
+    }
+
     /**
      * Test that the cache of newest packages in the channel is refreshed
      *
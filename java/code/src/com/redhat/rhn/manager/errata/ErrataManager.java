@@ -2221,4 +2221,19 @@ public class ErrataManager extends BaseManager {
         WriteMode m = ModeFactory.getWriteMode(ERRATA_QUERIES, "delete_invalid_erratas_from_set");
         m.executeUpdate(params);
     }
+
+    /**
+     * Removes the errata which are no longer needed from the errata sets of several servers
+     * @param serverIds the server ids
+     */
+    public static void updateErrataSet(List<Long> serverIds) {
+        if (serverIds.isEmpty()) {
+            return;
+        }
+        List<String> labels = serverIds.stream()
+                .map(sid -> RhnSetDecl.generateCustomSetName(RhnSetDecl.ERRATA, sid))
+                .collect(toList());
+        WriteMode m = ModeFactory.getWriteMode(ERRATA_QUERIES, "delete_invalid_erratas_from_sets");
+        m.executeUpdate(new HashMap<>(), labels);
+    }
 }
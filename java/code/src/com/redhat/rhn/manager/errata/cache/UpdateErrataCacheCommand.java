@@ -117,6 +117,32 @@ public class UpdateErrataCacheCommand extends BaseTransactionCommand {
         log.info("Finished errata cache for server [{}]", serverId);
     }
 
+    /**
+     * Updates the errata cache for several servers at once. The needed package cache
+     * is computed with set based statements, so the servers should preferably be
+     * subscribed to the same channels.
+     * @param serverIds Server ids which need to get updated.
+     * @param commit commit the database transaction when complete
+     */
+    public void updateErrataCacheForServers(List<Long> serverIds, boolean commit) {
+        log.info("Updating errata cache for {} servers", serverIds.size());
+        try {
+            ServerFactory.updateServerNeededCache(serverIds);
+            ErrataManager.updateErrataSet(serverIds);
+            SystemManager.updateSystemOverview(serverIds);
+        }
+        catch (Exception e) {
+            log.error("Problem updating cache for servers", e);
+            HibernateFactory.rollbackTransaction();
+        }
+        finally {
+            if (commit) {
+                handleTransaction();
+            }
+        }
+        log.info("Finished errata cache for {} servers", serverIds.size());
+    }
+
     /**
      * Updates the errata cache for the given image.
      * @param imageId Image id which needs to get updated.
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.manager.errata.cache.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.domain.errata.AdvisoryStatus;
+import com.redhat.rhn.domain.errata.Errata;
+import com.redhat.rhn.domain.errata.test.ErrataFactoryTest;
+import com.redhat.rhn.domain.rhnpackage.Package;
+import com.redhat.rhn.domain.server.Server;
+import com.redhat.rhn.domain.server.ServerFactory;
+import com.redhat.rhn.domain.server.test.ServerFactoryTest;
+import com.redhat.rhn.manager.errata.cache.ErrataCacheManager;
+import com.redhat.rhn.manager.errata.cache.UpdateErrataCacheCommand;
+import com.redhat.rhn.manager.system.SystemManager;
+import com.redhat.rhn.testing.BaseTestCaseWithUser;
+import com.redhat.rhn.testing.ChannelTestUtils;
+import com.redhat.rhn.testing.PackageTestUtils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link UpdateErrataCacheCommand}
+ */
+public class UpdateErrataCacheCommandTest extends BaseTestCaseWithUser {
+
+    /**
+     * The set based update of several servers must compute the same needed package cache
+     * as the per server procedure.
+     *
+     * @throws Exception if anything goes wrong
+     */
+    @Test
+    public void testUpdateErrataCacheForServers() throws Exception {
+        Channel baseChannel = ChannelTestUtils.createBaseChannel(user);
+        Channel childChannel = ChannelTestUtils.createChildChannel(user, baseChannel);
+
+        // 3 ascending versions of two packages, one in each channel
+        List<Package> basePkgs = PackageTestUtils.createSubsequentPackages(user.getOrg());
+        List<Package> childPkgs = PackageTestUtils.createSubsequentPackages(user.getOrg());
+        baseChannel.getPackages().addAll(basePkgs);
+        childChannel.getPackages().addAll(childPkgs);
+
+        // the middle versions are shipped by an errata, the newest child package by a retracted one
+        Errata errata = ErrataFactoryTest.createTestErrata(user.getOrg().getId());
+        errata.addPackage(basePkgs.get(1));
+        errata.addPackage(childPkgs.get(1));
+        baseChannel.addErrata(errata);
+        childChannel.addErrata(errata);
+        Errata retracted = ErrataFactoryTest.createTestErrata(user.getOrg().getId());
+        retracted.setAdvisoryStatus(AdvisoryStatus.RETRACTED);
+        retracted.addPackage(childPkgs.get(2));
+        childChannel.addErrata(retracted);
+
+        Server server1 = ServerFactoryTest.createTestServer(user);
+        SystemManager.subscribeServerToChannel(user, server1, baseChannel);
+        SystemManager.subscribeServerToChannel(user, server1, childChannel);
+        PackageTestUtils.installPackagesOnServer(List.of(basePkgs.get(0), childPkgs.get(0)), server1);
+
+        Server server2 = ServerFactoryTest.createTestServer(user);
+        SystemManager.subscribeServerToChannel(user, server2, baseChannel);
+        PackageTestUtils.installPackageOnServer(basePkgs.get(1), server2);
+
+        // a server without channels
+        Server server3 = ServerFactoryTest.createTestServer(user);
+        PackageTestUtils.installPackageOnServer(basePkgs.get(0), server3);
+        HibernateFactory.getSession().flush();
+
+        // an outdated row to be removed
+        ErrataCacheManager.insertNeededErrataCache(server2.getId(), errata.getId(), basePkgs.get(1).getId());
+        // and one without its channel to be replaced
+        ErrataCacheManager.insertNeededErrataCache(server1.getId(), errata.getId(), basePkgs.get(1).getId());
+
+        List<Long> serverIds = List.of(server1.getId(), server2.getId(), server3.getId());
+        new UpdateErrataCacheCommand().updateErrataCacheForServers(serverIds, false);
+        List<List<Long>> bulkRows = listNeededCache(serverIds);
+
+        assertTrue(bulkRows.contains(
+                Arrays.asList(server1.getId(), errata.getId(), basePkgs.get(1).getId(), baseChannel.getId())));
+        assertTrue(bulkRows.contains(Arrays.asList(server1.getId(), null, basePkgs.get(2).getId(), null)));
+        assertTrue(bulkRows.contains(Arrays.asList(server2.getId(), null, basePkgs.get(2).getId(), null)));
+        assertFalse(bulkRows.contains(
+                Arrays.asList(server1.getId(), errata.getId(), basePkgs.get(1).getId(), null)));
+        assertFalse(bulkRows.contains(
+                Arrays.asList(server2.getId(), errata.getId(), basePkgs.get(1).getId(), null)));
+        assertFalse(bulkRows.stream().anyMatch(r -> r.get(2).equals(childPkgs.get(2).getId())));
+        assertFalse(bulkRows.stream().anyMatch(r -> r.get(0).equals(server3.getId())));
+
+        for (Long serverId : serverIds) {
+            ServerFactory.updateServerNeededCache(serverId);
+        }
+        assertEquals(listNeededCache(serverIds), bulkRows);
+    }
+
+    private static List<List<Long>> listNeededCache(List<Long> serverIds) {
+        List<Object[]> rows = HibernateFactory.getSession()
+                .createNativeQuery("SELECT server_id, errata_id, package_id, channel_id " +
+                        "FROM rhnServerNeededCache WHERE server_id IN (:sids)")
+                .setParameterList("sids", serverIds)
+                .getResultList();
+        // the errata and channel ids can be null
+        return rows.stream()
+                .map(row -> Arrays.stream(row)
+                        .map(c -> c == null ? null : ((Number) c).longValue())
+                        .collect(Collectors.toList()))
+                .sorted(Comparator.comparing(Object::toString))
+                .collect(Collectors.toList());
+    }
+}
@@ -18,6 +18,7 @@ import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.PageableDataResult;
 import com.redhat.rhn.common.db.datasource.Row;
 import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.db.datasource.WriteMode;
@@ -241,6 +242,19 @@ public class PackageManager extends BaseManager {
         return m.execute(params);
     }
 
+    /**
+     * List the package in a channel (for the web UI lists), letting the database
+     * filter, sort and page them by package name
+     * @param cid the channel id
+     * @return the list of packages
+     */
+    public static PageableDataResult<PackageOverview> listPackagesInChannelPageable(Long cid) {
+        SelectMode m = ModeFactory.getMode("Package_queries", "packages_in_channel");
+        Map<String, Object> params = new HashMap<>();
+        params.put("cid", cid);
+        return new PageableDataResult<>(m, params, null, Map.of("id", "id", "nvrea", "nvrea"));
+    }
+
 
     /**
      * Runs Channel_queries.org_pkg_channels query.
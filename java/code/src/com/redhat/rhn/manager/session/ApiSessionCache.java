@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.manager.session;
+
+import com.redhat.rhn.common.conf.Config;
+import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.common.util.TimeUtils;
+import com.redhat.rhn.domain.session.WebSession;
+import com.redhat.rhn.domain.session.WebSessionFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the API sessions validated recently in memory, so that authenticated API calls
+ * do not need to read the session from the database. The extensions of the session
+ * lifetime are collected and written to the database in batches by a background thread.
+ *
+ * Entries are dropped after a configurable time to live, when the session is removed and
+ * when its user is changed or removed.
+ */
+public class ApiSessionCache {
+
+    private static final Logger LOG = LogManager.getLogger(ApiSessionCache.class);
+
+    /* Seconds to wait for the last write of the expiration times when stopping */
+    private static final long FLUSH_TIMEOUT = 30;
+
+    private static final ApiSessionCache INSTANCE = new ApiSessionCache(
+            Config.get().getInt(ConfigDefaults.WEB_SESSION_API_CACHE_SIZE, 1000),
+            Config.get().getInt(ConfigDefaults.WEB_SESSION_API_CACHE_TTL, 60),
+            Config.get().getInt(ConfigDefaults.WEB_SESSION_API_FLUSH_INTERVAL, 10));
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final int flushInterval;
+    private final Map<Long, ApiSession> sessions;
+    private final Map<Long, Long> pendingExpires = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    /**
+     * An API session whose key has been validated
+     */
+    public static class ApiSession {
+        private final Long id;
+        private final String key;
+        private final Long userId;
+        private final long cachedAt;
+        private volatile long expires;
+
+        private ApiSession(WebSession session, String keyIn) {
+            id = session.getId();
+            key = keyIn;
+            userId = session.getWebUserId();
+            expires = session.getExpires();
+            cachedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * @return the session id
+         */
+        public Long getId() {
+            return id;
+        }
+
+        /**
+         * @return the id of the user logged in the session
+         */
+        public Long getUserId() {
+            return userId;
+        }
+
+        /**
+         * @return the expiration time of the session in seconds, including the pending extensions
+         */
+        public long getExpires() {
+            return expires;
+        }
+    }
+
+    /**
+     * Constructor
+     * @param maxSizeIn the maximum number of cached sessions, 0 disables the cache
+     * @param ttlIn the time in seconds a session is served from the cache before reading it again
+     * @param flushIntervalIn the interval in seconds between the writes of the session expiration times,
+     * 0 writes them in the calling thread
+     */
+    public ApiSessionCache(int maxSizeIn, int ttlIn, int flushIntervalIn) {
+        maxSize = maxSizeIn;
+        ttlMillis = TimeUnit.SECONDS.toMillis(ttlIn);
+        flushInterval = flushIntervalIn;
+        sessions = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ApiSession> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return the cache used by the API handlers
+     */
+    public static ApiSessionCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the session identified by a session key, reading it from the database only if it is not
+     * cached, its time to live is over or it looks expired.
+     * @param sessionKey the session key
+     * @return the validated session
+     */
+    public ApiSession lookup(String sessionKey) {
+        ApiSession cached = get(sessionKey);
+        if (cached != null) {
+            return cached;
+        }
+
+        // validates the key and throws if the session does not exist
+        ApiSession session = new ApiSession(SessionManager.lookupByKey(sessionKey), sessionKey);
+        if (maxSize > 0) {
+            synchronized (sessions) {
+                sessions.put(session.getId(), session);
+            }
+        }
+        return session;
+    }
+
+    private ApiSession get(String sessionKey) {
+        if (maxSize <= 0 || sessionKey == null) {
+            return null;
+        }
+        int separator = sessionKey.indexOf('x');
+        Long id;
+        try {
+            id = Long.valueOf(separator < 0 ? sessionKey : sessionKey.substring(0, separator));
+        }
+        catch (NumberFormatException e) {
+            return null;
+        }
+
+        ApiSession session;
+        synchronized (sessions) {
+            session = sessions.get(id);
+        }
+        if (session == null || !session.key.equals(sessionKey) ||
+                System.currentTimeMillis() - session.cachedAt > ttlMillis ||
+                session.expires < TimeUtils.currentTimeSeconds()) {
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * Extends the lifetime of a session. The new expiration time is written to the
+     * database by the next flush.
+     * @param session the session
+     */
+    public void extendLifetime(ApiSession session) {
+        long expires = TimeUtils.currentTimeSeconds() + SessionManager.lifetimeValue();
+        session.expires = expires;
+        pendingExpires.merge(session.getId(), expires, Math::max);
+        if (flushInterval <= 0) {
+            flush();
+        }
+        else {
+            startFlusher();
+        }
+    }
+
+    /**
+     * Writes the pending expiration times to the database using the current Hibernate session.
+     * Sessions which do not exist anymore are dropped from the cache.
+     */
+    public void flush() {
+        Map<Long, Long> batch = new HashMap<>();
+        for (Long id : pendingExpires.keySet()) {
+            Long expires = pendingExpires.remove(id);
+            if (expires != null) {
+                batch.put(id, expires);
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        Set<Long> missing = WebSessionFactory.extendExpires(batch);
+        missing.forEach(this::invalidate);
+        LOG.debug("Extended the lifetime of {} API sessions, {} were gone", batch.size(), missing.size());
+    }
+
+    private synchronized void startFlusher() {
+        if (flusher != null) {
+            return;
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "api-session-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushInTransaction, flushInterval, flushInterval, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops writing the expiration times in the background, writing the pending ones a last time
+     */
+    public void stop() {
+        ScheduledExecutorService stopped;
+        synchronized (this) {
+            stopped = flusher;
+            flusher = null;
+        }
+        if (stopped == null) {
+            return;
+        }
+        // the periodic flush is cancelled by the shutdown, the final one still runs
+        stopped.execute(this::flushInTransaction);
+        stopped.shutdown();
+        try {
+            if (!stopped.awaitTermination(FLUSH_TIMEOUT, TimeUnit.SECONDS)) {
+                LOG.warn("The API session expiration times were not written in {} seconds", FLUSH_TIMEOUT);
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void flushInTransaction() {
+        if (pendingExpires.isEmpty()) {
+            return;
+        }
+        try {
+            flush();
+            HibernateFactory.commitTransaction();
+        }
+        catch (Exception e) {
+            LOG.error("Unable to write the API session expiration times", e);
+            HibernateFactory.rollbackTransaction();
+        }
+        finally {
+            HibernateFactory.closeSession();
+        }
+    }
+
+    /**
+     * Drops a session from the cache
+     * @param sessionId the session id
+     */
+    public void invalidate(Long sessionId) {
+        synchronized (sessions) {
+            sessions.remove(sessionId);
+        }
+        pendingExpires.remove(sessionId);
+    }
+
+    /**
+     * Drops all the sessions of a user from the cache
+     * @param userId the user id
+     */
+    public void invalidateUser(Long userId) {
+        if (userId == null) {
+            return;
+        }
+        synchronized (sessions) {
+            sessions.values().removeIf(s -> userId.equals(s.getUserId()));
+        }
+    }
+
+    /**
+     * Drops all the cached sessions
+     */
+    public void clear() {
+        synchronized (sessions) {
+            sessions.clear();
+        }
+    }
+}
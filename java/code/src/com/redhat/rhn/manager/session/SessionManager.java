@@ -96,6 +96,7 @@ public class SessionManager extends BaseManager {
      * @return number of sessions removed (typically 1 or 0).
      */
     public static int removeSession(WebSession s) {
+        ApiSessionCache.getInstance().invalidate(s.getId());
         return WebSessionFactory.remove(s);
     }
 
@@ -393,6 +394,7 @@ public class SessionManager extends BaseManager {
      * @param user the user whose sessions are to be purged.
      */
     public static void purgeUserSessions(User user) {
+        ApiSessionCache.getInstance().invalidateUser(user.getId());
         WebSessionFactory.purgeUserSessions(user);
     }
 
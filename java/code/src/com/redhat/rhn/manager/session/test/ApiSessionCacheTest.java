@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.manager.session.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.common.hibernate.LookupException;
+import com.redhat.rhn.common.util.TimeUtils;
+import com.redhat.rhn.domain.session.InvalidSessionIdException;
+import com.redhat.rhn.domain.session.WebSession;
+import com.redhat.rhn.domain.session.WebSessionFactory;
+import com.redhat.rhn.domain.user.User;
+import com.redhat.rhn.manager.session.ApiSessionCache;
+import com.redhat.rhn.manager.session.ApiSessionCache.ApiSession;
+import com.redhat.rhn.manager.session.SessionManager;
+import com.redhat.rhn.testing.RhnBaseTestCase;
+import com.redhat.rhn.testing.UserTestUtils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class ApiSessionCacheTest extends RhnBaseTestCase {
+
+    private final List<ApiSessionCache> caches = new ArrayList<>();
+
+    @Override
+    @AfterEach
+    public void tearDown() throws Exception {
+        caches.forEach(ApiSessionCache::stop);
+        super.tearDown();
+    }
+
+    private ApiSessionCache makeCache(int maxSize, int flushInterval) {
+        ApiSessionCache cache = new ApiSessionCache(maxSize, 60, flushInterval);
+        caches.add(cache);
+        return cache;
+    }
+
+    private WebSession makeSession(User user) {
+        WebSession session = SessionManager.makeSession(user.getId(), SessionManager.lifetimeValue());
+        assertNotNull(session.getId());
+        return session;
+    }
+
+    /**
+     * Removes the session row without going through the cache
+     */
+    private void deleteRow(WebSession session) {
+        WebSessionFactory.remove(session);
+        HibernateFactory.getSession().flush();
+    }
+
+    @Test
+    public void testLookupIsServedFromMemory() {
+        User user = UserTestUtils.findNewUser("testUser", "testOrg" + this.getClass().getSimpleName());
+        WebSession session = makeSession(user);
+        ApiSessionCache cache = makeCache(10, 0);
+
+        ApiSession cached = cache.lookup(session.getKey());
+        assertEquals(session.getId(), cached.getId());
+        assertEquals(user.getId(), cached.getUserId());
+
+        // a different key for the same id is still validated
+        assertThrows(InvalidSessionIdException.class, () -> cache.lookup(session.getId() + "xfoobaredkeyhash"));
+
+        deleteRow(session);
+        assertEquals(cached, cache.lookup(session.getKey()));
+
+        cache.invalidate(session.getId());
+        assertThrows(LookupException.class, () -> cache.lookup(session.getKey()));
+    }
+
+    @Test
+    public void testDisabledCacheReadsTheDatabase() {
+        User user = UserTestUtils.findNewUser("testUser", "testOrg" + this.getClass().getSimpleName());
+        WebSession session = makeSession(user);
+        ApiSessionCache cache = makeCache(0, 0);
+
+        cache.lookup(session.getKey());
+        deleteRow(session);
+        assertThrows(LookupException.class, () -> cache.lookup(session.getKey()));
+    }
+
+    @Test
+    public void testCacheIsBounded() {
+        User user = UserTestUtils.findNewUser("testUser", "testOrg" + this.getClass().getSimpleName());
+        WebSession first = makeSession(user);
+        WebSession second = makeSession(user);
+        ApiSessionCache cache = makeCache(1, 0);
+
+        cache.lookup(first.getKey());
+        cache.lookup(second.getKey());
+        deleteRow(first);
+        deleteRow(second);
+
+        assertThrows(LookupException.class, () -> cache.lookup(first.getKey()));
+        assertEquals(second.getId(), cache.lookup(second.getKey()).getId());
+    }
+
+    @Test
+    public void testInvalidateUser() {
+        User user = UserTestUtils.findNewUser("testUser", "testOrg" + this.getClass().getSimpleName());
+        User other = UserTestUtils.createUser("otherUser", user.getOrg().getId());
+        WebSession session = makeSession(user);
+        WebSession otherSession = makeSession(other);
+        ApiSessionCache cache = makeCache(10, 0);
+
+        cache.lookup(session.getKey());
+        cache.lookup(otherSession.getKey());
+        deleteRow(session);
+        deleteRow(otherSession);
+
+        cache.invalidateUser(user.getId());
+        assertThrows(LookupException.class, () -> cache.lookup(session.getKey()));
+        assertEquals(otherSession.getId(), cache.lookup(otherSession.getKey()).getId());
+    }
+
+    @Test
+    public void testLifetimeIsWrittenOnFlush() {
+        User user = UserTestUtils.findNewUser("testUser", "testOrg" + this.getClass().getSimpleName());
+        WebSession session = makeSession(user);
+        long initialExpires = TimeUtils.currentTimeSeconds() - 10;
+        session.setExpires(initialExpires);
+        WebSessionFactory.save(session);
+        HibernateFactory.getSession().flush();
+
+        // the background flush never happens during the test
+        ApiSessionCache cache = makeCache(10, 3600);
+        ApiSession cached = cache.lookup(session.getKey());
+        for (int i = 0; i < 10; i++) {
+            cache.extendLifetime(cached);
+        }
+        assertTrue(cached.getExpires() > TimeUtils.currentTimeSeconds());
+
+        HibernateFactory.getSession().refresh(session);
+        assertEquals(initialExpires, session.getExpires());
+
+        cache.flush();
+        HibernateFactory.getSession().refresh(session);
+        assertEquals(cached.getExpires(), session.getExpires());
+    }
+
+    @Test
+    public void testFlushDropsRemovedSessions() {
+        User user = UserTestUtils.findNewUser("testUser", "testOrg" + this.getClass().getSimpleName());
+        WebSession session = makeSession(user);
+        WebSession removed = makeSession(user);
+        ApiSessionCache cache = makeCache(10, 3600);
+
+        ApiSession cached = cache.lookup(session.getKey());
+        ApiSession cachedRemoved = cache.lookup(removed.getKey());
+        cache.extendLifetime(cached);
+        cache.extendLifetime(cachedRemoved);
+        deleteRow(removed);
+
+        cache.flush();
+        assertThrows(LookupException.class, () -> cache.lookup(removed.getKey()));
+        assertEquals(cached, cache.lookup(session.getKey()));
+
+        assertTrue(WebSessionFactory.extendExpires(Map.of(removed.getId(), 1L)).contains(removed.getId()));
+    }
+}
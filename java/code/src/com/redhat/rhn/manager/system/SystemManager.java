@@ -118,6 +118,7 @@ import com.redhat.rhn.manager.user.UserManager;
 import com.redhat.rhn.taskomatic.task.systems.SystemsOverviewUpdateDriver;
 import com.redhat.rhn.taskomatic.task.systems.SystemsOverviewUpdateWorker;
 
+import com.suse.manager.metrics.SystemsStatistics;
 import com.suse.manager.model.maintenance.MaintenanceSchedule;
 import com.suse.manager.reactor.messaging.ApplyStatesEventMessage;
 import com.suse.manager.reactor.messaging.ChannelsChangedEventMessage;
@@ -778,6 +779,8 @@ public class SystemManager extends BaseManager {
         // Remove the system overview and the related update tasks
         deleteSystemOverview(server.getId());
         SystemsOverviewUpdateWorker.removeTask(server.getId());
+
+        SystemsStatistics.INSTANCE.requestRefreshAfterCommit();
     }
 
     private void deleteSystemOverview(Long sid) {
@@ -3968,6 +3971,20 @@ public class SystemManager extends BaseManager {
     }
 
 
+    /**
+     * Queue the update of the suseSystemOverview table data for several systems.
+     * The systems already waiting for an update are not queued again.
+     * @param sids the IDs of the systems to update
+     */
+    public static void updateSystemOverview(List<Long> sids) {
+        if (sids.isEmpty()) {
+            return;
+        }
+        WriteMode mode = ModeFactory.getWriteMode("Task_queries", "system_overview_enqueue");
+        mode.executeUpdate(Map.of("org_id", OrgFactory.getSatelliteOrg().getId(),
+                "task_name", SystemsOverviewUpdateDriver.TASK_NAME), sids);
+    }
+
     /**
      * Update the suseSystemOverview table data for a system
      * @param server the server to update. Checked for null value
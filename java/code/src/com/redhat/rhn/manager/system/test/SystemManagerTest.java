@@ -129,7 +129,6 @@ import com.redhat.rhn.testing.TestStatics;
 import com.redhat.rhn.testing.TestUtils;
 import com.redhat.rhn.testing.UserTestUtils;
 
-import com.suse.manager.metrics.SystemsCollector;
 import com.suse.manager.ssl.SSLCertPair;
 import com.suse.manager.virtualization.test.TestVirtManager;
 import com.suse.manager.webui.controllers.utils.ContactMethodUtil;
@@ -180,6 +179,8 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
 
+import javax.persistence.Tuple;
+
 
 public class SystemManagerTest extends JMockBaseTestCaseWithUser {
 
@@ -770,6 +771,72 @@ public class SystemManagerTest extends JMockBaseTestCaseWithUser {
         assertNotEmpty(dr);
     }
 
+    @Test
+    public void testBulkOverviewUpdate() throws Exception {
+        User user = UserTestUtils.findNewUser(TestStatics.TESTUSER, TestStatics.TESTORG);
+        user.addPermanentRole(RoleFactory.ORG_ADMIN);
+        // a system with a base channel, errata, outdated packages and a queued action
+        Server server1 = ServerTestUtils.createTestSystem(user);
+        PackageEvr upgradedPackageEvr =
+                PackageEvrFactory.lookupOrCreatePackageEvr("1", "1.0.0", "2", server1.getPackageType());
+        ServerTestUtils.populateServerErrataPackages(user.getOrg(), server1, upgradedPackageEvr,
+                ErrataFactory.ERRATA_TYPE_SECURITY);
+        ServerTestUtils.populateServerErrataPackages(user.getOrg(), server1, upgradedPackageEvr,
+                ErrataFactory.ERRATA_TYPE_BUG);
+        Action action = ActionFactoryTest.createAction(user, ActionFactory.TYPE_PACKAGES_UPDATE);
+        ServerActionTest.createServerAction(server1, action);
+        ActionFactory.save(action);
+        // a system without errata nor channel
+        Server server2 = ServerFactoryTest.createTestServer(user, true);
+        HibernateFactory.getSession().flush();
+        List<Long> sids = List.of(server1.getId(), server2.getId());
+
+        SystemsOverviewUpdateWorker.doUpdate(sids);
+        Map<Long, Map<String, Object>> bulkOverviews = listSystemOverviews(sids);
+
+        Set<Long> ids = SystemManager.registeredList(user, null, 0).stream()
+                .map(SystemOverview::getId)
+                .collect(Collectors.toSet());
+        assertTrue(ids.containsAll(sids));
+
+        Map<String, Object> overview1 = bulkOverviews.get(server1.getId());
+        assertNotNull(overview1.get("channel_id"));
+        assertEquals(1, ((Number) overview1.get("security_errata")).intValue());
+        assertEquals(1, ((Number) overview1.get("bug_errata")).intValue());
+        assertEquals(1, ((Number) overview1.get("actions_count")).intValue());
+        Map<String, Object> overview2 = bulkOverviews.get(server2.getId());
+        assertNull(overview2.get("channel_id"));
+        assertNull(overview2.get("channel_labels"));
+        assertEquals(0, ((Number) overview2.get("security_errata")).intValue());
+
+        // the per system procedure computes exactly the same rows
+        for (Long sid : sids) {
+            SystemsOverviewUpdateWorker.doUpdate(sid);
+        }
+        assertEquals(listSystemOverviews(sids), bulkOverviews);
+
+        // refreshing again updates the existing rows
+        SystemsOverviewUpdateWorker.doUpdate(List.of(server1.getId()));
+        assertEquals(ids.size(), SystemManager.registeredList(user, null, 0).size());
+        assertEquals(bulkOverviews, listSystemOverviews(sids));
+    }
+
+    private static Map<Long, Map<String, Object>> listSystemOverviews(List<Long> sids) {
+        List<Tuple> rows = HibernateFactory.getSession()
+                .createNativeQuery("SELECT * FROM suseSystemOverview WHERE id IN (:sids)", Tuple.class)
+                .setParameterList("sids", sids)
+                .getResultList();
+        Map<Long, Map<String, Object>> overviews = new HashMap<>();
+        for (Tuple row : rows) {
+            // the columns can be null
+            Map<String, Object> columns = new HashMap<>();
+            row.getElements().forEach(e -> columns.put(e.getAlias(), row.get(e)));
+            overviews.put(((Number) row.get("id")).longValue(), columns);
+        }
+        assertEquals(sids.size(), overviews.size());
+        return overviews;
+    }
+
     @Test
     public void testDeactivateProxy() throws Exception {
         User user = UserTestUtils.findNewUser(TestStatics.TESTUSER, TestStatics.TESTORG);
@@ -2082,15 +2149,4 @@ public class SystemManagerTest extends JMockBaseTestCaseWithUser {
                 .map(NetworkDto::getId)
                 .collect(Collectors.toSet());
     }
-
-    public void testCountOutdatedSystems() throws Exception {
-        User user = UserTestUtils.findNewUser("testUser",
-                "testOrg" + this.getClass().getSimpleName());
-        Server server = ServerFactoryTest.createTestServer(user);
-        Long sid = server.getId();
-        Package pack = PackageTest.createTestPackage(user.getOrg());
-        ErrataCacheManager.insertNeededErrataCache(sid, null, pack.getId());
-
-        assertEquals(1, SystemsCollector.getNumberOfOutdatedSystems());
-    }
 }
@@ -24,11 +24,14 @@ import com.redhat.rhn.frontend.dto.PackageChangelogDto;
 import com.redhat.rhn.frontend.dto.PackageDto;
 import com.redhat.rhn.taskomatic.task.TaskConstants;
 
+import java.sql.Timestamp;
 import java.util.Collection;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -71,6 +74,77 @@ public class TaskManager {
         return m.execute(params);
     }
 
+    /**
+     * Get the ids of the packages of a channel
+     * @param channel channel info
+     * @return the package ids, sorted
+     */
+    public static List<Long> getChannelPackageIds(Channel channel) {
+        SelectMode m = ModeFactory.getMode(TaskConstants.MODE_NAME,
+                TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CHANNEL_PACKAGE_IDS);
+        DataResult<Map<String, Object>> result = m.execute(Map.of("channel_id", channel.getId()));
+        return result.stream()
+                .map(row -> ((Number) row.get("id")).longValue())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the package list of a channel restricted to the given package ids
+     * @param channel channel info
+     * @param packageIds the ids of the packages to fetch
+     * @return the packages, sorted by id
+     */
+    public static DataResult<PackageDto> getChannelPackageDtos(Channel channel, List<Long> packageIds) {
+        SelectMode m = ModeFactory.getMode(TaskConstants.MODE_NAME,
+                TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CHANNEL_PACKAGES_BY_IDS);
+        return m.execute(Map.of("channel_id", channel.getId()), packageIds);
+    }
+
+    /**
+     * Get the package data needed by the susedata metadata of a channel, restricted to
+     * the given package ids
+     * @param channel channel info
+     * @param packageIds the ids of the packages to fetch
+     * @return the packages, sorted by id
+     */
+    public static DataResult<PackageDto> getChannelSuseDataPackageDtos(Channel channel, List<Long> packageIds) {
+        SelectMode m = ModeFactory.getMode(TaskConstants.MODE_NAME,
+                TaskConstants.TASK_QUERY_REPOMD_GENERATOR_SUSEDATA_PACKAGES_BY_IDS);
+        return m.execute(Map.of("channel_id", channel.getId()), packageIds);
+    }
+
+    /**
+     * Get the ids of the packages of a channel whose primary, filelists or other metadata may
+     * have changed since a given time, because the package or its errata were modified
+     * @param channel channel info
+     * @param since the time to compare to
+     * @return the package ids
+     */
+    public static Set<Long> getChannelPackageIdsModifiedSince(Channel channel, Date since) {
+        SelectMode m = ModeFactory.getMode(TaskConstants.MODE_NAME,
+                TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CHANNEL_PACKAGES_MODIFIED_SINCE);
+        Map<String, Object> params = new HashMap<>();
+        params.put("channel_id", channel.getId());
+        params.put("since", new Timestamp(since.getTime()));
+        DataResult<Map<String, Object>> result = m.execute(params);
+        return result.stream()
+                .map(row -> ((Number) row.get("id")).longValue())
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Get the time to compare the modification dates to at the next incremental metadata
+     * generation. It is taken from the database, before the start of the oldest open transaction
+     * since the rows it writes get the time of the transaction start once committed.
+     * @return the modification mark
+     */
+    public static Date getRepomdModificationMark() {
+        SelectMode m = ModeFactory.getMode(TaskConstants.MODE_NAME,
+                TaskConstants.TASK_QUERY_REPOMD_GENERATOR_MODIFICATION_MARK);
+        DataResult<Map<String, Object>> result = m.execute(new HashMap<>());
+        return (Date) result.get(0).get("mark");
+    }
+
     /**
      * Get capabilities of a certain type for a package
      * @param packageId the package's id
@@ -136,6 +210,38 @@ public class TaskManager {
         return result;
     }
 
+    /**
+     * Get the keyword labels for several packages in a channel. Like
+     * {@link #getChannelPackageKeywords(Long, Long)}, the keywords of the packages having none
+     * in a cloned channel are looked up in the original channel.
+     * @param channelId the channel's id
+     * @param packageIds the packages' ids
+     * @return the keywords by package id, packages without keywords are missing
+     */
+    public static Map<Long, List<String>> getChannelPackagesKeywords(Long channelId, List<Long> packageIds) {
+        SelectMode m = ModeFactory.getMode(TaskConstants.MODE_NAME,
+                TaskConstants.TASK_QUERY_REPOMD_CHANNEL_PACKAGES_KEYWORDS);
+        DataResult<Map<String, Object>> dataResult = m.execute(Map.of("channel_id", channelId), packageIds);
+        Map<Long, List<String>> result = new HashMap<>();
+        for (Map<String, Object> row : dataResult) {
+            result.computeIfAbsent(((Number) row.get("package_id")).longValue(), id -> new LinkedList<>())
+                    .add((String) row.get("label"));
+        }
+
+        List<Long> missing = packageIds.stream()
+                .filter(id -> !result.containsKey(id))
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            SelectMode originalMode = ModeFactory.getMode(TaskConstants.MODE_NAME,
+                    TaskConstants.TASK_QUERY_REPOMD_GENERATOR_CLONED_FROM);
+            DataResult<Map<String, Long>> originalId = originalMode.execute(Map.of("channel_id", channelId));
+            if (!originalId.isEmpty()) {
+                result.putAll(getChannelPackagesKeywords(originalId.get(0).get("original_id"), missing));
+            }
+        }
+        return result;
+    }
+
     /**
      * Return task status info
      * @return task status info
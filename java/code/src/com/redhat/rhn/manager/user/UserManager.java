@@ -52,6 +52,7 @@ import com.redhat.rhn.frontend.taglibs.list.decorators.PageSizeDecorator;
 import com.redhat.rhn.manager.BaseManager;
 import com.redhat.rhn.manager.SatManager;
 import com.redhat.rhn.manager.channel.ChannelManager;
+import com.redhat.rhn.manager.session.ApiSessionCache;
 import com.redhat.rhn.manager.system.ServerGroupManager;
 
 import org.apache.logging.log4j.LogManager;
@@ -625,6 +626,7 @@ public class UserManager extends BaseManager {
         }
 
         UserFactory.deleteUser(targetUid);
+        ApiSessionCache.getInstance().invalidateUser(targetUid);
     }
 
     /**
@@ -139,6 +139,32 @@ public class TaskomaticApi {
                 new Date());
     }
 
+    /**
+     * Schedule an action on several ssh minions with a single job. The job executes the action
+     * on the minions through a bounded pool of threads.
+     * @param actionIn the action
+     * @param sshMinions the Salt ssh minions
+     * @param forcePackageListRefresh force package list refresh when set to true
+     * @throws TaskomaticApiException if there was an error
+     */
+    public void scheduleSSHActionExecution(Action actionIn, List<MinionServer> sshMinions,
+            boolean forcePackageListRefresh) throws TaskomaticApiException {
+        if (sshMinions.isEmpty()) {
+            return;
+        }
+        Map<String, Object> scheduleParams = new HashMap<>();
+        scheduleParams.put("action_id", Long.toString(actionIn.getId()));
+        scheduleParams.put("force_pkg_list_refresh", Boolean.toString(forcePackageListRefresh));
+        scheduleParams.put("ssh_minion_ids",
+                sshMinions.stream().map(MinionServer::getMinionId).collect(Collectors.toList()));
+        invoke("tasko.scheduleSingleSatBunchRun",
+                "ssh-minion-action-executor-bunch",
+                StringUtils.substring(
+                        "ssh-minion-action-executor-" + actionIn.getId() + "-" + sshMinions.get(0).getId(), 0, 50),
+                scheduleParams,
+                new Date());
+    }
+
 
     /**
      * Schedule a single reposync
@@ -30,6 +30,8 @@ import com.redhat.rhn.taskomatic.TaskoXmlRpcServer;
 import com.redhat.rhn.taskomatic.TaskomaticApi;
 import com.redhat.rhn.taskomatic.domain.TaskoRun;
 import com.redhat.rhn.taskomatic.domain.TaskoSchedule;
+import com.redhat.rhn.taskomatic.task.HubReportDbSyncStatistics;
+import com.redhat.rhn.taskomatic.task.systems.SystemsOverviewUpdateStatistics;
 
 import com.suse.manager.metrics.PrometheusExporter;
 
@@ -107,6 +109,8 @@ public class SchedulerKernel {
 
             PrometheusExporter.INSTANCE.startHttpServer();
             PrometheusExporter.INSTANCE.registerScheduler(SchedulerKernel.scheduler, "taskomatic");
+            PrometheusExporter.INSTANCE.registerHubReportDbSync(HubReportDbSyncStatistics.INSTANCE);
+            PrometheusExporter.INSTANCE.registerSystemsOverviewUpdate(SystemsOverviewUpdateStatistics.INSTANCE);
         }
         catch (SchedulerException e) {
             throw new InstantiationException("this.scheduler failed");
@@ -93,7 +93,7 @@ public class ForwardRegistrationTask extends RhnJavaJob {
             SCCConfig sccConfig = new SCCConfig(url, "", "", uuid);
             SCCClient sccClient = new SCCWebClient(sccConfig);
 
-            SCCSystemRegistrationManager sccRegManager = new SCCSystemRegistrationManager(sccClient);
+            SCCSystemRegistrationManager sccRegManager = new SCCSystemRegistrationManager(sccClient, true);
             List<SCCRegCacheItem> forwardRegistration = SCCCachingFactory.findSystemsToForwardRegistration();
             log.debug("{} RegCacheItems found to forward", forwardRegistration.size());
 
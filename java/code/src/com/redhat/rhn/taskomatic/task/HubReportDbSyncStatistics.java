@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the last copy of each reporting database table from each peripheral server.
+ */
+public class HubReportDbSyncStatistics {
+
+    public static final HubReportDbSyncStatistics INSTANCE = new HubReportDbSyncStatistics();
+
+    private static final double NANOSECONDS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<String, Map<String, TableCopy>> copies = new ConcurrentHashMap<>();
+
+    /**
+     * The last copy of a table
+     */
+    public static class TableCopy {
+        private final long rows;
+        private final long bytes;
+        private final long durationNanos;
+
+        private TableCopy(long rowsIn, long bytesIn, long durationNanosIn) {
+            rows = rowsIn;
+            bytes = bytesIn;
+            durationNanos = durationNanosIn;
+        }
+
+        /**
+         * @return the number of copied rows
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * @return the size of the copied rows in the COPY text format
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return the duration of the copy in seconds, commit included
+         */
+        public double getSeconds() {
+            return durationNanos / NANOSECONDS_PER_SECOND;
+        }
+
+        /**
+         * @return the number of rows copied per second
+         */
+        public double getRowsPerSecond() {
+            return durationNanos == 0 ? 0 : rows / getSeconds();
+        }
+    }
+
+    /**
+     * Records the copy of a table, replacing the previous one.
+     * @param server the peripheral server the table was copied from
+     * @param table the table name
+     * @param rows the number of copied rows
+     * @param bytes the size of the copied rows
+     * @param durationNanos the duration of the copy in nanoseconds
+     * @return the recorded copy
+     */
+    public TableCopy record(String server, String table, long rows, long bytes, long durationNanos) {
+        TableCopy copy = new TableCopy(rows, bytes, durationNanos);
+        copies.computeIfAbsent(server, s -> new ConcurrentHashMap<>()).put(table, copy);
+        return copy;
+    }
+
+    /**
+     * @return the last copy of each table, by server and table name
+     */
+    public Map<String, Map<String, TableCopy>> getLastCopies() {
+        return Collections.unmodifiableMap(copies);
+    }
+}
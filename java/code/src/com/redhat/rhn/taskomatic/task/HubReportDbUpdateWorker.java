@@ -14,18 +14,14 @@
  */
 package com.redhat.rhn.taskomatic.task;
 
-import static com.redhat.rhn.common.conf.ConfigDefaults.REPORT_DB_BATCH_SIZE;
-
 import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.SelectMode;
-import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.ConnectionManager;
 import com.redhat.rhn.common.hibernate.ConnectionManagerFactory;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.hibernate.ReportDbHibernateFactory;
-import com.redhat.rhn.common.util.TimeUtils;
 import com.redhat.rhn.domain.credentials.Credentials;
 import com.redhat.rhn.domain.server.MgrServerInfo;
 import com.redhat.rhn.domain.server.Server;
@@ -40,12 +36,13 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
 
 
 public class HubReportDbUpdateWorker implements QueueWorker {
 
-    private final int batchSize;
+    private final int tableWorkers;
     private final ReportDBHelper dbHelper;
     private TaskQueue parentQueue;
     private final MgrServerInfo mgrServerInfo;
@@ -66,7 +63,8 @@ public class HubReportDbUpdateWorker implements QueueWorker {
      * @param mgrServerInfoIn mgr server to query data from
      */
     public HubReportDbUpdateWorker(Logger loggerIn, MgrServerInfo mgrServerInfoIn) {
-        this(loggerIn, mgrServerInfoIn, ReportDBHelper.INSTANCE, Config.get().getInt(REPORT_DB_BATCH_SIZE, 2000));
+        this(loggerIn, mgrServerInfoIn, ReportDBHelper.INSTANCE,
+                Config.get().getInt(ConfigDefaults.REPORT_DB_HUB_TABLE_WORKERS, 2));
     }
 
     /**
@@ -74,14 +72,14 @@ public class HubReportDbUpdateWorker implements QueueWorker {
      * @param loggerIn logger
      * @param mgrServerInfoIn mgr server to query data from
      * @param dbHelperIn the {@link ReportDBHelper}
-     * @param batchSizeIn the batch size
+     * @param tableWorkersIn the number of tables copied in parallel
      */
     public HubReportDbUpdateWorker(Logger loggerIn, MgrServerInfo mgrServerInfoIn, ReportDBHelper dbHelperIn,
-                                      int batchSizeIn) {
+                                      int tableWorkersIn) {
         this.mgrServerInfo = mgrServerInfoIn;
         this.log = loggerIn;
         this.dbHelper = dbHelperIn;
-        this.batchSize = batchSizeIn;
+        this.tableWorkers = tableWorkersIn;
     }
 
     @Override
@@ -105,39 +103,54 @@ public class HubReportDbUpdateWorker implements QueueWorker {
         return tableEntry.stream().map(t -> String.valueOf(t.getValue())).collect(Collectors.toList());
     }
 
-    private void updateRemoteData(Session remoteSession, Session localSession, String tableName, long mgmId) {
-        TimeUtils.logTime(log, "Refreshing table " + tableName, () -> {
-            SelectMode query = dbHelper.generateQuery(remoteSession, tableName, log);
-
-            // Remove all the existing data
-            log.debug("Deleting existing data in table {}", tableName);
-            WriteMode delete = dbHelper.generateDelete(localSession, tableName);
-            delete.executeUpdate(Map.of("mgm_id", mgmId));
-
-            // Extract the first batch
-            DataResult<Map<String, Object>> firstBatch = query.execute(Map.of("offset", 0, "limit", batchSize));
-            firstBatch.forEach(e -> e.remove("mgm_id"));
-
-            if (!firstBatch.isEmpty()) {
-                // Generate the insert using the column name retrieved from the select
-                WriteMode insert = dbHelper.generateInsert(localSession, tableName, mgmId, firstBatch.get(0).keySet());
-                insert.executeBatchUpdates(firstBatch);
-                log.debug("Extracted {} rows for table {}", firstBatch.size(), tableName);
-
-                // Iterate further if we can have additional rows
-                if (firstBatch.size() == batchSize) {
-                    dbHelper.<Map<String, Object>>batchStream(query, batchSize, batchSize)
-                            .forEach(batch -> {
-                                batch.forEach(e -> e.remove("mgm_id"));
-                                insert.executeBatchUpdates(batch);
-                                log.debug("Extracted {} rows more for table {}", firstBatch.size(), tableName);
-                            });
-                }
+    /**
+     * Copies a table from the peripheral server and commits it to the local reporting database
+     */
+    private void updateRemoteData(ConnectionManager remoteCm, ConnectionManager localCm, String tableName,
+                                  long mgmId) {
+        try {
+            long start = System.nanoTime();
+            ReportDBHelper.CopiedRows copied = dbHelper.copyRemoteTable(remoteCm.getSession(),
+                    localCm.getSession(), tableName, mgmId);
+            localCm.commitTransaction();
+
+            HubReportDbSyncStatistics.TableCopy copy = HubReportDbSyncStatistics.INSTANCE.record(
+                    mgrServerInfo.getReportDbHost(), tableName, copied.getRows(), copied.getBytes(),
+                    System.nanoTime() - start);
+            log.info("Copied {} rows ({} bytes) of table {} from {} in {} s ({} rows/s)", copy.getRows(),
+                    copy.getBytes(), tableName, mgrServerInfo.getReportDbHost(),
+                    String.format("%.3f", copy.getSeconds()), Math.round(copy.getRowsPerSecond()));
+        }
+        catch (RuntimeException ex) {
+            try {
+                localCm.rollbackTransaction();
             }
-            else {
-                log.debug("No data extracted for table {}", tableName);
+            catch (RuntimeException rollbackException) {
+                log.warn("Unable to rollback transaction", rollbackException);
             }
-        });
+            throw ex;
+        }
+    }
+
+    /**
+     * Copies a table in a worker thread, using its own sessions on both databases
+     */
+    private void updateRemoteDataInWorker(ConnectionManager remoteCm, ConnectionManager localCm, String tableName,
+                                          long mgmId) {
+        try {
+            updateRemoteData(remoteCm, localCm, tableName, mgmId);
+        }
+        finally {
+            remoteCm.closeSession();
+            localCm.closeSession();
+        }
+    }
+
+    private void updateRemoteTables(ConnectionManager remoteCm, ConnectionManager localCm, List<String> tables,
+                                    long mgmId) throws InterruptedException, ExecutionException {
+        ReportDBHelper.processTables(tables, tableWorkers,
+                table -> updateRemoteData(remoteCm, localCm, table, mgmId),
+                table -> updateRemoteDataInWorker(remoteCm, localCm, table, mgmId), log);
     }
 
     @Override
@@ -158,10 +171,8 @@ public class HubReportDbUpdateWorker implements QueueWorker {
             ReportDbHibernateFactory remoteDB = new ReportDbHibernateFactory(remoteDBCM);
             try {
                 List<String> existingTables = filterExistingTables(remoteDB.getSession(), mgrServerInfo.getId());
-                existingTables.forEach(table -> {
-                    updateRemoteData(remoteDB.getSession(), localRh.getSession(), table, mgrServerInfo.getId());
-                });
-                dbHelper.analyzeReportDb(localRh.getSession());
+                updateRemoteTables(remoteDBCM, localRcm, existingTables, mgrServerInfo.getId());
+                dbHelper.analyzeTables(localRh.getSession(), existingTables);
                 Server mgrServer = ServerFactory.lookupById(mgrServerInfo.getId());
                 mgrServer.getMgrServerInfo().setReportDbLastSynced(new Date());
                 ServerFactory.save(mgrServer);
@@ -169,8 +180,12 @@ public class HubReportDbUpdateWorker implements QueueWorker {
                 localRcm.commitTransaction();
                 log.info("Reporting db updated for server {} successfully.", mgrServerInfo.getServer().getId());
             }
-            catch (RuntimeException ex) {
-                log.warn("Unable to update reporting db", ex);
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                log.warn("Interrupted while updating reporting db", ex);
+            }
+            catch (ExecutionException | RuntimeException ex) {
+                log.warn("Unable to update reporting db", ex instanceof ExecutionException ? ex.getCause() : ex);
 
                 try {
                     localRcm.rollbackTransaction();
@@ -16,21 +16,36 @@ package com.redhat.rhn.taskomatic.task;
 
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.GeneratedSelectMode;
-import com.redhat.rhn.common.db.datasource.GeneratedWriteMode;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.SelectMode;
-import com.redhat.rhn.common.db.datasource.WriteMode;
 
 import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyOut;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class ReportDBHelper {
 
@@ -39,54 +54,17 @@ public class ReportDBHelper {
 
     public static final ReportDBHelper INSTANCE = new ReportDBHelper();
 
+    // trailing ORDER BY and paging clauses of the report queries, not needed when copying a whole table
+    private static final Pattern PAGING_CLAUSE =
+            Pattern.compile("\\s+(ORDER\\s+BY\\s+[^()]*?\\s+)?OFFSET\\s+:offset\\s+LIMIT\\s+:limit\\s*$",
+                    Pattern.CASE_INSENSITIVE);
+
     /**
      * Default constructor to allow unit test sub-classes
      */
     protected ReportDBHelper() {
     }
 
-    /**
-     * Returns the result of a query in a stream of batches.
-     * @param query select query
-     * @param batchSize max size of a batch
-     * @param initialOffset initial offset
-     * @param <T> type of the query result
-     * @return stream of batched results
-     */
-    @SuppressWarnings("unchecked")
-    public <T> Stream<DataResult<T>> batchStream(SelectMode query, int batchSize, int initialOffset) {
-        return Stream.iterate(initialOffset, i -> i + batchSize)
-                .map(offset -> (DataResult<T>) query.execute(Map.of("offset", offset, "limit", batchSize)))
-                .takeWhile(batch -> !batch.isEmpty());
-    }
-
-    private String getOrderColumns(Session session, String table, Logger log) {
-        String orderSQL =
-                "SELECT string_agg(a.attname, ', ') AS order " +
-                "  FROM pg_constraint AS c " +
-                "    CROSS JOIN LATERAL UNNEST(c.conkey) AS cols(colnum) " +
-                "    INNER JOIN pg_attribute AS a ON a.attrelid = c.conrelid AND cols.colnum = a.attnum " +
-                " WHERE c.contype = 'p' " +
-                "   AND c.conrelid = '" + table + "'::REGCLASS " +
-                "UNION " +
-                "SELECT string_agg(a.attname, ', ') AS order " +
-                "  FROM pg_index ix " +
-                "  JOIN pg_class t on t.oid = ix.indrelid " +
-                "  JOIN pg_class i on i.oid = ix.indexrelid " +
-                "  JOIN pg_attribute a on a.attrelid = t.oid and a.attnum = ANY(ix.indkey) " +
-                " WHERE t.relkind = 'r' " +
-                "   AND t.relname = '" + table.toLowerCase() + "' " +
-                "   AND i.relname = '" + table.toLowerCase() + "_order_idx'";
-
-        GeneratedSelectMode orderQuery = new GeneratedSelectMode("orderquery." + table, session, orderSQL , List.of());
-
-        DataResult<Map<String, String>> order = orderQuery.execute();
-        String orderColumns = order.stream().findFirst().map(o -> o.getOrDefault("order", "ctid")).orElse("ctid");
-
-        log.debug("Order Columns of {} by: {}", table, orderColumns);
-        return orderColumns;
-    }
-
     /**
      * Generated a query for checking if a table exists
      * @param session session the query should use
@@ -101,75 +79,244 @@ public class ReportDBHelper {
     }
 
     /**
-     * Generated a query for all local entries of a report db table
-     * @param session session the query should use
+     * Replaces the local rows of a report db table with all the rows of a report query. The rows are
+     * streamed with COPY from the source database into a temporary table, then inserted skipping the
+     * conflicting ones.
+     * @param sourceSession session of the database the query runs on
+     * @param query the report query, its ORDER BY, OFFSET and LIMIT clauses are ignored
+     * @param targetSession session of the report database
      * @param table table name
-     * @param log the logger
-     * @return select mode query
+     * @return the number of rows read from the source
      */
-    public SelectMode generateQuery(Session session, String table, Logger log) {
-        String orderColumns = getOrderColumns(session, table, log);
-
-        final String sqlStatement = "SELECT * FROM " + table +
-                " WHERE mgm_id = " + LOCAL_MGM_ID +  " ORDER BY " + orderColumns + " OFFSET :offset LIMIT :limit";
-        return new GeneratedSelectMode("select." + table, session, sqlStatement, List.of("offset", "limit"));
+    public long copyQueryToTable(Session sourceSession, SelectMode query, Session targetSession, String table) {
+        return copyRows(sourceSession, stripPagingClause(query.getQuery().getOrigQuery()), targetSession, table,
+                "mgm_id = " + LOCAL_MGM_ID);
     }
 
     /**
-     * Generates a delete statement for a report db table that takes mgm_id as parameter
-     * @param session session the query should use
+     * Replaces the local rows of some systems in a report db table with the matching rows of a report query,
+     * like {@link #copyQueryToTable(Session, SelectMode, Session, String)} does for the whole table.
+     * @param sourceSession session of the database the query runs on
+     * @param query the report query, its ORDER BY, OFFSET and LIMIT clauses are ignored
+     * @param targetSession session of the report database
      * @param table table name
-     * @return write mode query
+     * @param systemColumns the columns of the table holding system ids, a row matches if any of them does
+     * @param systemIds the ids of the systems to refresh
+     * @return the number of rows read from the source
      */
-    public WriteMode generateDelete(Session session, String table) {
-        final String sqlStatement = "DELETE FROM " + table + " WHERE mgm_id = :mgm_id";
-        final List<String> params = List.of("mgm_id");
+    public long copySystemsQueryToTable(Session sourceSession, SelectMode query, Session targetSession,
+                                        String table, List<String> systemColumns, Collection<Long> systemIds) {
+        // COPY takes no bind parameters, the ids are numbers and can be inlined safely
+        String ids = systemIds.stream().map(String::valueOf).collect(Collectors.joining(",", "'{", "}'"));
+        String condition = systemColumns.stream()
+                .map(column -> column + " = ANY(" + ids + "::numeric[])")
+                .collect(Collectors.joining(" OR ", "(", ")"));
 
-        return new GeneratedWriteMode("delete." + table, session, sqlStatement, params);
+        String sql = "SELECT * FROM (" + stripPagingClause(query.getQuery().getOrigQuery()) + ") report WHERE " +
+                condition;
+        return copyRows(sourceSession, sql, targetSession, table, "mgm_id = " + LOCAL_MGM_ID + " AND " + condition);
+    }
+
+    private long copyRows(Session sourceSession, String sql, Session targetSession, String table,
+                          String deleteCondition) {
+        return sourceSession.doReturningWork(source -> targetSession.doReturningWork(target -> {
+            List<String> columns = getColumnLabels(source, sql);
+            String columnList = String.join(", ", columns);
+            String staging = "tmp_" + table;
+
+            try (Statement stmt = target.createStatement()) {
+                stmt.executeUpdate("DELETE FROM " + table + " WHERE " + deleteCondition);
+                stmt.executeUpdate("CREATE TEMPORARY TABLE " + staging + " ON COMMIT DROP AS SELECT " +
+                        columnList + " FROM " + table + " WITH NO DATA");
+            }
+
+            CopyOut copyOut = source.unwrap(PGConnection.class).getCopyAPI()
+                    .copyOut("COPY (" + sql + ") TO STDOUT");
+            CopyIn copyIn = null;
+            try {
+                copyIn = target.unwrap(PGConnection.class).getCopyAPI()
+                        .copyIn("COPY " + staging + " (" + columnList + ") FROM STDIN");
+                byte[] row;
+                while ((row = copyOut.readFromCopy()) != null) {
+                    copyIn.writeToCopy(row, 0, row.length);
+                }
+                long rows = copyIn.endCopy();
+
+                try (Statement stmt = target.createStatement()) {
+                    stmt.executeUpdate("INSERT INTO " + table + " (mgm_id, synced_date, " + columnList + ") " +
+                            "SELECT " + LOCAL_MGM_ID + ", current_timestamp, " + columnList + " FROM " + staging +
+                            " ON CONFLICT DO NOTHING");
+                    stmt.executeUpdate("DROP TABLE " + staging);
+                }
+                return rows;
+            }
+            finally {
+                if (copyOut.isActive()) {
+                    copyOut.cancelCopy();
+                }
+                if (copyIn != null && copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        }));
     }
 
     /**
-     * Generates an insert statement for a report db table
-     * @param session session the query should use
+     * Replaces the rows of a peripheral server in a report db table with the local rows of the same table in
+     * the report db of the peripheral. The rows are streamed with COPY from one database to the other; only the
+     * columns existing in both tables are copied.
+     * @param remoteSession session of the report database of the peripheral server
+     * @param localSession session of the local report database
      * @param table table name
-     * @param mgmId mgmId to insert
-     * @param params table column names (excluding mgm_id)
-     * @return write mode query
+     * @param mgmId the mgm_id of the peripheral server in the local report database
+     * @return the number and size of the copied rows
      */
-    public WriteMode generateInsert(Session session, String table, long mgmId, Set<String> params) {
-        final String sqlStatement = String.format(
-                "INSERT INTO %s (mgm_id, %s) " +
-                "     VALUES (%s, %s) " +
-                "ON CONFLICT DO NOTHING",
-                table,
-                String.join(",", params),
-                mgmId,
-                params.stream().map(p -> ":" + p).collect(Collectors.joining(","))
-        );
-
-        return new GeneratedWriteMode("insert." + table, session, sqlStatement, params);
+    public CopiedRows copyRemoteTable(Session remoteSession, Session localSession, String table, long mgmId) {
+        String tableSql = "SELECT * FROM " + table;
+        return remoteSession.doReturningWork(remote -> localSession.doReturningWork(local -> {
+            List<String> localColumns = getColumnLabels(local, tableSql);
+            List<String> columns = getColumnLabels(remote, tableSql).stream()
+                    .filter(c -> !c.equals("mgm_id") && localColumns.contains(c))
+                    .collect(Collectors.toList());
+            String columnList = String.join(", ", columns);
+
+            try (Statement stmt = local.createStatement()) {
+                stmt.executeUpdate("DELETE FROM " + table + " WHERE mgm_id = " + mgmId);
+            }
+
+            CopyOut copyOut = remote.unwrap(PGConnection.class).getCopyAPI()
+                    .copyOut("COPY (SELECT " + mgmId + ", " + columnList + " FROM " + table +
+                            " WHERE mgm_id = " + LOCAL_MGM_ID + ") TO STDOUT");
+            CopyIn copyIn = null;
+            try {
+                copyIn = local.unwrap(PGConnection.class).getCopyAPI()
+                        .copyIn("COPY " + table + " (mgm_id, " + columnList + ") FROM STDIN");
+                long bytes = 0;
+                byte[] row;
+                while ((row = copyOut.readFromCopy()) != null) {
+                    copyIn.writeToCopy(row, 0, row.length);
+                    bytes += row.length;
+                }
+                return new CopiedRows(copyIn.endCopy(), bytes);
+            }
+            finally {
+                if (copyOut.isActive()) {
+                    copyOut.cancelCopy();
+                }
+                if (copyIn != null && copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        }));
     }
 
     /**
-     * Generates an insert statement for a report db table that automatically sets synced_date to current_timestamp
-     * @param session session the query should use
-     * @param table table name
-     * @param mgmId mgmId to insert
-     * @param params table column names (excluding mgm_id)
-     * @return write mode query
+     * Number and size of the rows copied by {@link #copyRemoteTable(Session, Session, String, long)}
+     */
+    public static final class CopiedRows {
+        private final long rows;
+        private final long bytes;
+
+        private CopiedRows(long rowsIn, long bytesIn) {
+            rows = rowsIn;
+            bytes = bytesIn;
+        }
+
+        /**
+         * @return the number of copied rows
+         */
+        public long getRows() {
+            return rows;
+        }
+
+        /**
+         * @return the size of the copied rows in the COPY text format
+         */
+        public long getBytes() {
+            return bytes;
+        }
+    }
+
+    /**
+     * Empties the log of the systems changed since the last call. The log is filled by triggers on the
+     * tables the system reports are extracted from; it is consumed only if the transaction commits.
+     * @param session session of the main database
+     * @return the ids of the changed systems, including the deleted ones
      */
-    public WriteMode generateInsertWithDate(Session session, String table, long mgmId, Set<String> params) {
-        final String sqlStatement = String.format(
-                "INSERT INTO %s (mgm_id, synced_date, %s) " +
-                "     VALUES (%s, current_timestamp, %s) " +
-                "ON CONFLICT DO NOTHING",
-                table,
-                String.join(",", params),
-                mgmId,
-                params.stream().map(p -> ":" + p).collect(Collectors.joining(","))
-        );
-
-        return new GeneratedWriteMode("insert." + table, session, sqlStatement, params);
+    public Set<Long> consumeChangedSystems(Session session) {
+        SelectMode m = ModeFactory.getMode(session, "SystemReport_queries", "consume_changed_systems", Map.class);
+        DataResult<Map<String, Object>> rows = m.execute();
+        return rows.stream()
+                .map(row -> ((Number) row.get("server_id")).longValue())
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Removes the trailing ORDER BY, OFFSET and LIMIT clauses of a report query
+     * @param sql the report query
+     * @return the query returning all the rows
+     */
+    public static String stripPagingClause(String sql) {
+        Matcher matcher = PAGING_CLAUSE.matcher(sql);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("Query has no OFFSET :offset LIMIT :limit clause: " + sql);
+        }
+        return sql.substring(0, matcher.start());
+    }
+
+    private static List<String> getColumnLabels(Connection connection, String sql) throws SQLException {
+        // the statement is only described, not executed
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            ResultSetMetaData metaData = stmt.getMetaData();
+            List<String> columns = new ArrayList<>(metaData.getColumnCount());
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                columns.add(metaData.getColumnLabel(i));
+            }
+            return columns;
+        }
+    }
+
+    /**
+     * Processes some report database tables. With more than one worker the tables are processed in parallel by
+     * a thread pool: the worker action runs in a pool thread and must use its own sessions.
+     * @param tables the tables to process
+     * @param workers the number of tables processed in parallel
+     * @param action the action processing a table in the calling thread, with a single worker
+     * @param workerAction the action processing a table in a pool thread
+     * @param log the logger
+     * @param <T> the type of the tables
+     * @throws InterruptedException if interrupted while waiting for the workers
+     * @throws ExecutionException if the processing of a table failed
+     */
+    public static <T> void processTables(List<T> tables, int workers, Consumer<T> action, Consumer<T> workerAction,
+                                         Logger log) throws InterruptedException, ExecutionException {
+        if (workers <= 1) {
+            tables.forEach(action);
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (T table : tables) {
+                results.add(executor.submit(() -> workerAction.accept(table)));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        }
+        finally {
+            // drop the tables not started yet and wait for the running ones
+            executor.shutdownNow();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    log.debug("Waiting for the running table workers to finish");
+                }
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     /**
@@ -180,4 +327,20 @@ public class ReportDBHelper {
         var m = ModeFactory.getCallableMode(session, "GeneralReport_queries", "analyze_reportdb");
         m.execute(new HashMap<>(), new HashMap<>());
     }
+
+    /**
+     * Analyzes some report database tables after massive inserts
+     * @param session session the query should use
+     * @param tables the table names
+     */
+    public void analyzeTables(Session session, Collection<String> tables) {
+        if (tables.isEmpty()) {
+            return;
+        }
+        session.doWork(connection -> {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("ANALYZE " + String.join(", ", tables));
+            }
+        });
+    }
 }
@@ -14,25 +14,26 @@
  */
 package com.redhat.rhn.taskomatic.task;
 
-import static com.redhat.rhn.common.conf.ConfigDefaults.REPORT_DB_BATCH_SIZE;
-import static com.redhat.rhn.taskomatic.task.ReportDBHelper.LOCAL_MGM_ID;
-
 import com.redhat.rhn.common.conf.Config;
-import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.SelectMode;
-import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.ConnectionManager;
 import com.redhat.rhn.common.hibernate.ConnectionManagerFactory;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.hibernate.ReportDbHibernateFactory;
 import com.redhat.rhn.common.util.TimeUtils;
+import com.redhat.rhn.domain.common.SatConfigFactory;
 
-import org.hibernate.Session;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 
 public class ReportDbUpdateTask extends RhnJavaJob {
@@ -42,7 +43,80 @@ public class ReportDbUpdateTask extends RhnJavaJob {
     private static final String CHANNEL_REPORT_QUERIES = "ChannelReport_queries";
     private static final String SCAP_REPORT_QUERIES = "ScapReport_queries";
 
-    private final int batchSize;
+    /** Columns holding the system ids in most of the system tables */
+    private static final List<String> SYSTEM_ID = List.of("system_id");
+
+    /** The report queries and the tables they fill, biggest tables first to balance the workers */
+    private static final List<ReportTable> TABLES = List.of(
+            new ReportTable(SYSTEM_REPORT_QUERIES, "SystemPackageInstalled", SYSTEM_ID),
+            new ReportTable(SYSTEM_REPORT_QUERIES, "SystemPackageUpdate", SYSTEM_ID),
+            new ReportTable(CHANNEL_REPORT_QUERIES, "ChannelPackage"),
+            new ReportTable(SYSTEM_REPORT_QUERIES, "SystemErrata", SYSTEM_ID),
+            new ReportTable(CHANNEL_REPORT_QUERIES, "ChannelErrata"),
+            new ReportTable(SYSTEM_REPORT_QUERIES, "SystemHistory", SYSTEM_ID),
+            new ReportTable(SYSTEM_REPORT_QUERIES, "SystemAction", SYSTEM_ID),
+            new ReportTable(CHANNEL_REPORT_QUERIES, "Package"),
+            new ReportTable(CHANNEL_REPORT_QUERIES, "Errata"),
+            new ReportTable(SCAP_REPORT_QUERIES, "XccdScanResult", SYSTEM_ID),
+            new ReportTable(SCAP_REPORT_QUERIES, "XccdScan", SYSTEM_ID),
+
+            new ReportTable(GENERAL_REPORT_QUERIES, "SystemGroup"),
+            new ReportTable(GENERAL_REPORT_QUERIES, "SystemGroupPermission"),
+            new ReportTable(GENERAL_REPORT_QUERIES, "Account"),
+            new ReportTable(GENERAL_REPORT_QUERIES, "AccountGroup"),
+
+            new ReportTable(SYSTEM_REPORT_QUERIES, "System", SYSTEM_ID),
+            new ReportTable(SYSTEM_REPORT_QUERIES, "SystemChannel", SYSTEM_ID),
+            new ReportTable(SYSTEM_REPORT_QUERIES, "SystemConfigChannel", SYSTEM_ID),
+            new ReportTable(SYSTEM_REPORT_QUERIES, "SystemVirtualData",
+                    List.of("host_system_id", "virtual_system_id")),
+            new ReportTable(SYSTEM_REPORT_QUERIES, "SystemNetInterface", SYSTEM_ID),
+            new ReportTable(SYSTEM_REPORT_QUERIES, "SystemNetAddressV4", SYSTEM_ID),
+            new ReportTable(SYSTEM_REPORT_QUERIES, "SystemNetAddressV6", SYSTEM_ID),
+            new ReportTable(SYSTEM_REPORT_QUERIES, "SystemOutdated", SYSTEM_ID),
+            new ReportTable(SYSTEM_REPORT_QUERIES, "SystemGroupMember", SYSTEM_ID),
+            new ReportTable(SYSTEM_REPORT_QUERIES, "SystemEntitlement", SYSTEM_ID),
+            new ReportTable(SYSTEM_REPORT_QUERIES, "SystemCustomInfo", SYSTEM_ID),
+
+            new ReportTable(CHANNEL_REPORT_QUERIES, "Channel"),
+            new ReportTable(CHANNEL_REPORT_QUERIES, "ChannelRepository"),
+            new ReportTable(CHANNEL_REPORT_QUERIES, "Repository")
+    );
+
+    /** Start time of the last full update done by this taskomatic instance */
+    private static volatile long lastFullUpdate = 0;
+
+    /**
+     * A reporting database table and the query filling it
+     */
+    private static final class ReportTable {
+        private final String xmlName;
+        private final String name;
+        private final List<String> systemColumns;
+
+        ReportTable(String xmlNameIn, String nameIn) {
+            this(xmlNameIn, nameIn, List.of());
+        }
+
+        ReportTable(String xmlNameIn, String nameIn, List<String> systemColumnsIn) {
+            xmlName = xmlNameIn;
+            name = nameIn;
+            systemColumns = systemColumnsIn;
+        }
+
+        /**
+         * @return true if the rows of the table belong to systems and can be refreshed per system
+         */
+        boolean isSystemTable() {
+            return !systemColumns.isEmpty();
+        }
+    }
+
+    private final int workers;
+
+    private final boolean incremental;
+
+    private final long fullUpdateInterval;
 
     private final ReportDBHelper dbHelper;
 
@@ -50,98 +124,137 @@ public class ReportDbUpdateTask extends RhnJavaJob {
      * Default constructor
      */
     public ReportDbUpdateTask() {
-        this(ReportDBHelper.INSTANCE, Config.get().getInt(REPORT_DB_BATCH_SIZE, 2000));
+        this(ReportDBHelper.INSTANCE, Config.get().getInt(ConfigDefaults.REPORT_DB_UPDATE_WORKERS, 1),
+                Config.get().getBoolean(ConfigDefaults.REPORT_DB_UPDATE_INCREMENTAL, false));
     }
 
     /**
      * Constructor used for unit test to specify the {@link ReportDBHelper}
      * @param dbHelperIn the {@link ReportDBHelper}
-     * @param batchSizeIn the batch size
+     * @param workersIn the number of tables refreshed in parallel
+     */
+    public ReportDbUpdateTask(ReportDBHelper dbHelperIn, int workersIn) {
+        this(dbHelperIn, workersIn, false);
+    }
+
+    /**
+     * Constructor used for unit test to specify the {@link ReportDBHelper} and the update mode
+     * @param dbHelperIn the {@link ReportDBHelper}
+     * @param workersIn the number of tables refreshed in parallel
+     * @param incrementalIn true to refresh only the changed systems in the system tables
      */
-    public ReportDbUpdateTask(ReportDBHelper dbHelperIn, int batchSizeIn) {
+    public ReportDbUpdateTask(ReportDBHelper dbHelperIn, int workersIn, boolean incrementalIn) {
         this.dbHelper = dbHelperIn;
-        this.batchSize = batchSizeIn;
+        this.workers = workersIn;
+        this.incremental = incrementalIn;
+        this.fullUpdateInterval = TimeUnit.HOURS.toMillis(
+                Config.get().getInt(ConfigDefaults.REPORT_DB_FULL_UPDATE_INTERVAL, 24));
     }
 
-    private void fillReportDbTable(Session session, String xmlName, String tableName) {
-        TimeUtils.logTime(log, "Refreshing table " + tableName, () -> {
-            SelectMode query = ModeFactory.getMode(xmlName, tableName, Map.class);
-
-            // Remove all the existing data
-            log.debug("Deleting existing data in table {}", tableName);
-            WriteMode delete = dbHelper.generateDelete(session, tableName);
-            delete.executeUpdate(Map.of("mgm_id", LOCAL_MGM_ID));
-
-            // Extract the first batch
-            DataResult<Map<String, Object>> firstBatch = query.execute(Map.of("offset", 0, "limit", batchSize));
-            if (!firstBatch.isEmpty()) {
-                // Generate the insert using the column name retrieved from the select
-                Set<String> columnParameters = firstBatch.get(0).keySet();
-                WriteMode insert = dbHelper.generateInsertWithDate(session, tableName, LOCAL_MGM_ID, columnParameters);
-
-                insert.executeUpdates(firstBatch);
-                log.debug("Extracted {} rows for table {}", firstBatch.size(), tableName);
-
-                // Iterate further if we can have additional rows
-                if (firstBatch.size() == batchSize) {
-                    dbHelper.<Map<String, Object>>batchStream(query, batchSize, batchSize)
-                        .forEach(batch -> {
-                            insert.executeUpdates(batch);
-                            log.debug("Extracted {} rows more for table {}", firstBatch.size(), tableName);
-                        });
-                }
+    /**
+     * Refreshes a table in the current transaction of the reporting database
+     * @param changedSystems the systems to refresh in the system tables, null to refresh all the rows
+     */
+    private void fillReportDbTable(ConnectionManager rcm, ReportTable table, Set<Long> changedSystems) {
+        TimeUtils.logTime(log, "Refreshing table " + table.name, () -> {
+            SelectMode query = ModeFactory.getMode(table.xmlName, table.name, Map.class);
+            long rows;
+            if (changedSystems != null && table.isSystemTable()) {
+                rows = dbHelper.copySystemsQueryToTable(HibernateFactory.getSession(), query,
+                        rcm.getSession(), table.name, table.systemColumns, changedSystems);
             }
             else {
-                log.debug("No data extracted for table {}", tableName);
+                rows = dbHelper.copyQueryToTable(HibernateFactory.getSession(), query, rcm.getSession(),
+                        table.name);
             }
+            log.debug("Extracted {} rows for table {}", rows, table.name);
         });
     }
 
+    /**
+     * Refreshes a table in a worker thread, using its own sessions on both databases. Each table is committed
+     * on its own: readers of the reporting database can see some tables already refreshed and others not.
+     */
+    private void fillReportDbTableInWorker(ConnectionManager rcm, ReportTable table, Set<Long> changedSystems) {
+        try {
+            fillReportDbTable(rcm, table, changedSystems);
+            rcm.commitTransaction();
+        }
+        catch (RuntimeException ex) {
+            try {
+                rcm.rollbackTransaction();
+            }
+            catch (RuntimeException rollbackException) {
+                log.warn("Unable to rollback transaction", rollbackException);
+            }
+            throw ex;
+        }
+        finally {
+            rcm.closeSession();
+            HibernateFactory.closeSession();
+        }
+    }
+
+    private void fillReportDbTables(ConnectionManager rcm, Set<Long> changedSystems)
+            throws InterruptedException, ExecutionException {
+        // nothing to do on the system tables if no system changed
+        List<ReportTable> tables = TABLES.stream()
+                .filter(t -> changedSystems == null || !changedSystems.isEmpty() || !t.isSystemTable())
+                .collect(Collectors.toList());
+
+        ReportDBHelper.processTables(tables, workers,
+                table -> fillReportDbTable(rcm, table, changedSystems),
+                table -> fillReportDbTableInWorker(rcm, table, changedSystems), log);
+    }
+
+    /**
+     * Switches the triggers recording the changed systems on or off. The switch is committed before the update
+     * reads any data, so that no change is missed once the log is on.
+     */
+    private void enableChangeLog(boolean enabled) {
+        if (SatConfigFactory.getSatConfigBooleanValue(SatConfigFactory.REPORTDB_CHANGE_LOG) == enabled) {
+            return;
+        }
+        SatConfigFactory.setSatConfigBooleanValue(SatConfigFactory.REPORTDB_CHANGE_LOG, enabled);
+        HibernateFactory.commitTransaction();
+        log.info("{} the log of the systems changed for the reporting db", enabled ? "Enabled" : "Disabled");
+        // the changes done before the log was on are only caught by a full update
+        lastFullUpdate = 0;
+    }
+
     @Override
     public void execute(JobExecutionContext arg0) throws JobExecutionException {
         ConnectionManager rcm = ConnectionManagerFactory.localReportingConnectionManager();
         ReportDbHibernateFactory rh = new ReportDbHibernateFactory(rcm);
 
         try {
-            fillReportDbTable(rh.getSession(), GENERAL_REPORT_QUERIES, "SystemGroup");
-            fillReportDbTable(rh.getSession(), GENERAL_REPORT_QUERIES, "SystemGroupPermission");
-            fillReportDbTable(rh.getSession(), GENERAL_REPORT_QUERIES, "Account");
-            fillReportDbTable(rh.getSession(), GENERAL_REPORT_QUERIES, "AccountGroup");
-
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "System");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemHistory");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemAction");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemChannel");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemConfigChannel");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemVirtualData");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemNetInterface");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemNetAddressV4");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemNetAddressV6");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemOutdated");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemGroupMember");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemEntitlement");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemErrata");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemPackageInstalled");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemPackageUpdate");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemCustomInfo");
-
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "Channel");
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "ChannelErrata");
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "ChannelPackage");
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "ChannelRepository");
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "Errata");
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "Package");
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "Repository");
-
-            fillReportDbTable(rh.getSession(), SCAP_REPORT_QUERIES, "XccdScan");
-            fillReportDbTable(rh.getSession(), SCAP_REPORT_QUERIES, "XccdScanResult");
+            enableChangeLog(incremental);
+            long start = System.currentTimeMillis();
+            // the log is always emptied, a full update includes all the changes. If the update fails the
+            // transaction is rolled back and the changes are refreshed by the next run.
+            Set<Long> changedSystems = dbHelper.consumeChangedSystems(HibernateFactory.getSession());
+            boolean full = !incremental || start - lastFullUpdate >= fullUpdateInterval;
+            if (full) {
+                fillReportDbTables(rcm, null);
+            }
+            else {
+                log.info("Refreshing {} changed systems in the reporting db", changedSystems.size());
+                fillReportDbTables(rcm, changedSystems);
+            }
 
             dbHelper.analyzeReportDb(rh.getSession());
 
             rh.commitTransaction();
+            if (full) {
+                lastFullUpdate = start;
+            }
             log.info("Reporting db updated successfully.");
         }
-        catch (RuntimeException ex) {
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new JobExecutionException("Interrupted while updating reporting db", ex);
+        }
+        catch (ExecutionException | RuntimeException ex) {
             try {
                 rh.rollbackTransaction();
             }
@@ -149,7 +262,8 @@ public class ReportDbUpdateTask extends RhnJavaJob {
                 log.warn("Unable to rollback transaction", rollbackException);
             }
 
-            throw new JobExecutionException("Unable to update reporting db", ex);
+            Throwable cause = ex instanceof ExecutionException ? ex.getCause() : ex;
+            throw new JobExecutionException("Unable to update reporting db", cause);
         }
         finally {
             rh.closeSession();
@@ -22,16 +22,33 @@ import com.redhat.rhn.domain.action.ActionFactory;
 import com.redhat.rhn.domain.server.MinionServer;
 import com.redhat.rhn.domain.server.MinionServerFactory;
 
+import com.suse.manager.metrics.PrometheusExporter;
+
+import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Execute actions via salt-ssh.
+ *
+ * A job either targets a single minion (ssh_minion_id) or a list of minions (ssh_minion_ids).
+ * The minions of a list are handled by a pool of threads shared by all the jobs, so that the
+ * number of concurrent salt-ssh calls stays bounded however many minions are targeted.
  */
 public class SSHMinionActionExecutor extends RhnJavaJob {
 
+    private static ThreadPoolExecutor sshPool;
+
     @Override
     public int getDefaultParallelThreads() {
         return 20;
@@ -47,11 +64,61 @@ public class SSHMinionActionExecutor extends RhnJavaJob {
      * @see org.quartz.Job#execute(JobExecutionContext)
      */
     @Override
+    @SuppressWarnings("unchecked")
     public void execute(JobExecutionContext context) {
-        long actionId = context.getJobDetail()
-                .getJobDataMap().getLongValueFromString("action_id");
-        boolean forcePkgRefresh = context.getJobDetail().getJobDataMap().getBooleanValue("force_pkg_list_refresh");
-        String sshMinionId = context.getJobDetail().getJobDataMap().getString("ssh_minion_id");
+        JobDataMap dataMap = context.getJobDetail().getJobDataMap();
+        long actionId = dataMap.getLongValueFromString("action_id");
+        boolean forcePkgRefresh = dataMap.getBooleanValue("force_pkg_list_refresh");
+        List<String> sshMinionIds = (List<String>) dataMap.get("ssh_minion_ids");
+        if (sshMinionIds == null) {
+            executeOnMinion(actionId, dataMap.getString("ssh_minion_id"), forcePkgRefresh);
+            return;
+        }
+
+        log.info("Executing action: {} on {} ssh minions", actionId, sshMinionIds.size());
+        ThreadPoolExecutor pool = getSSHPool(getParallelThreads());
+        List<Future<?>> executions = new ArrayList<>(sshMinionIds.size());
+        for (String sshMinionId : sshMinionIds) {
+            executions.add(pool.submit(() -> executeInNewSession(actionId, sshMinionId, forcePkgRefresh)));
+        }
+        for (int i = 0; i < executions.size(); i++) {
+            try {
+                executions.get(i).get();
+            }
+            catch (ExecutionException e) {
+                log.error("Execution of action {} on ssh minion {} failed", actionId, sshMinionIds.get(i),
+                        e.getCause());
+            }
+            catch (InterruptedException e) {
+                log.warn("Interrupted while executing action {}, cancelling the pending executions", actionId);
+                executions.forEach(execution -> execution.cancel(false));
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void executeInNewSession(long actionId, String sshMinionId, boolean forcePkgRefresh) {
+        try {
+            executeOnMinion(actionId, sshMinionId, forcePkgRefresh);
+            HibernateFactory.commitTransaction();
+        }
+        catch (RuntimeException e) {
+            HibernateFactory.rollbackTransaction();
+            throw e;
+        }
+        finally {
+            HibernateFactory.closeSession();
+        }
+    }
+
+    /**
+     * Executes the action on a single ssh minion, in the Hibernate session of the calling thread
+     * @param actionId the action id
+     * @param sshMinionId the minion id of the ssh minion
+     * @param forcePkgRefresh force package list refresh when set to true
+     */
+    protected void executeOnMinion(long actionId, String sshMinionId, boolean forcePkgRefresh) {
         Optional<MinionServer> sshMinionOpt = MinionServerFactory.findByMinionId(sshMinionId);
         if (sshMinionOpt.isEmpty()) {
             log.error("SSH Minion {} not found. Aborting execution of action {}", sshMinionId, actionId);
@@ -74,4 +141,18 @@ public class SSHMinionActionExecutor extends RhnJavaJob {
         log.info("Executing action: {} on ssh minion: {}", actionId, sshMinionId);
         GlobalInstanceHolder.SALT_SERVER_ACTION_SERVICE.executeSSHAction(action, sshMinionOpt.get(), forcePkgRefresh);
     }
+
+    private static synchronized ThreadPoolExecutor getSSHPool(int size) {
+        if (sshPool == null) {
+            AtomicInteger count = new AtomicInteger();
+            sshPool = new ThreadPoolExecutor(size, size, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread thread = new Thread(r, "ssh-minion-action-executor-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            sshPool.allowCoreThreadTimeOut(true);
+            PrometheusExporter.INSTANCE.registerThreadPool(sshPool, "ssh_minion_action_executor");
+        }
+        return sshPool;
+    }
 }
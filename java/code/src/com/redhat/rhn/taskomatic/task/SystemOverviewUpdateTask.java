@@ -14,13 +14,15 @@
  */
 package com.redhat.rhn.taskomatic.task;
 
+import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.domain.org.OrgFactory;
-import com.redhat.rhn.domain.task.TaskFactory;
-import com.redhat.rhn.manager.system.SystemManager;
 import com.redhat.rhn.taskomatic.task.systems.SystemsOverviewUpdateDriver;
 
 import org.quartz.JobExecutionContext;
 
+import java.util.Map;
+
 /**
  * Taskomatic task updating the suseSystemOverview table
  */
@@ -34,8 +36,11 @@ public class SystemOverviewUpdateTask extends RhnJavaJob {
     @Override
     public void execute(JobExecutionContext context) {
 
-        // Queue one task for each system to be picked by ServerOverviewUpdateQueue
-        SystemManager.listSystemIds().forEach(sid ->
-            TaskFactory.createTask(OrgFactory.getSatelliteOrg(), SystemsOverviewUpdateDriver.TASK_NAME, sid));
+        // Queue one task for each system to be picked by ServerOverviewUpdateQueue,
+        // unless the system is already waiting for an update
+        WriteMode mode = ModeFactory.getWriteMode("Task_queries", "system_overview_enqueue_all");
+        int queued = mode.executeUpdate(Map.of("org_id", OrgFactory.getSatelliteOrg().getId(),
+                "task_name", SystemsOverviewUpdateDriver.TASK_NAME));
+        log.debug("Queued the overview update of {} systems", queued);
     }
 }
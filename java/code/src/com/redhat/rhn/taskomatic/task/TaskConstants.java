@@ -132,6 +132,21 @@ public class TaskConstants {
     public static final String TASK_QUERY_REPOMD_GENERATOR_CHANNEL_PACKAGES_BATCH =
         "repomdgenerator_channel_package_batch";
 
+    public static final String TASK_QUERY_REPOMD_GENERATOR_CHANNEL_PACKAGE_IDS =
+        "repomdgenerator_channel_package_ids";
+
+    public static final String TASK_QUERY_REPOMD_GENERATOR_CHANNEL_PACKAGES_BY_IDS =
+        "repomdgenerator_channel_packages_by_ids";
+
+    public static final String TASK_QUERY_REPOMD_GENERATOR_CHANNEL_PACKAGES_MODIFIED_SINCE =
+        "repomdgenerator_channel_packages_modified_since";
+
+    public static final String TASK_QUERY_REPOMD_GENERATOR_MODIFICATION_MARK =
+        "repomdgenerator_modification_mark";
+
+    public static final String TASK_QUERY_REPOMD_GENERATOR_SUSEDATA_PACKAGES_BY_IDS =
+        "repomdgenerator_susedata_packages_by_ids";
+
     public static final String TASK_QUERY_REPOMD_GENERATOR_CAPABILITY_FILES =
         "repomdgenerator_capability_files";
 
@@ -176,6 +191,12 @@ public class TaskConstants {
     public static final String TASK_QUERY_REPOMD_GENERATOR_EULAS =
         "repomdgenerator_package_eulas";
 
+    public static final String TASK_QUERY_REPOMD_CHANNEL_PACKAGES_KEYWORDS =
+        "repomdgenerator_channel_packages_keywords";
+
+    public static final String TASK_QUERY_REPOMD_GENERATOR_PACKAGES_EULAS =
+        "repomdgenerator_packages_eulas";
+
     public static final String TASK_QUERY_REPOMD_GENERATOR_CLONED_FROM =
         "repomdgenerator_channel_cloned_from";
 
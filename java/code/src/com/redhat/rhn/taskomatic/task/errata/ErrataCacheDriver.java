@@ -15,6 +15,9 @@
 package com.redhat.rhn.taskomatic.task.errata;
 
 import com.redhat.rhn.common.conf.Config;
+import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.domain.task.Task;
 import com.redhat.rhn.domain.task.TaskFactory;
 import com.redhat.rhn.taskomatic.task.threaded.QueueDriver;
@@ -23,14 +26,21 @@ import com.redhat.rhn.taskomatic.task.threaded.QueueWorker;
 import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
- * Driver for the threaded errata cache update queue
+ * Driver for the threaded errata cache update queue. Each candidate is a list of tasks
+ * handled by one worker: channel and image tasks are handled one by one, while server
+ * tasks are grouped by channel subscriptions so that the needed package cache is
+ * computed once per group.
  */
-public class ErrataCacheDriver implements QueueDriver<Task> {
+public class ErrataCacheDriver implements QueueDriver<List<Task>> {
 
     private Logger logger = null;
 
@@ -46,13 +56,17 @@ public class ErrataCacheDriver implements QueueDriver<Task> {
      * {@inheritDoc}
      */
     @Override
-    public List<Task> getCandidates() {
-        List<Task> tasks = TaskFactory.getTaskListByNameLike(ErrataCacheWorker.BY_CHANNEL);
-        tasks.addAll(consolidateTasks(
-                TaskFactory.getTaskListByNameLike(ErrataCacheWorker.FOR_SERVER)));
-        tasks.addAll(consolidateTasks(
-                TaskFactory.getTaskListByNameLike(ErrataCacheWorker.FOR_IMAGE)));
-        return tasks;
+    public List<List<Task>> getCandidates() {
+        List<List<Task>> candidates = new ArrayList<>();
+        for (Task task : TaskFactory.getTaskListByNameLike(ErrataCacheWorker.BY_CHANNEL)) {
+            candidates.add(List.of(task));
+        }
+        candidates.addAll(groupByChannels(consolidateTasks(
+                TaskFactory.getTaskListByNameLike(ErrataCacheWorker.FOR_SERVER))));
+        for (Task task : consolidateTasks(TaskFactory.getTaskListByNameLike(ErrataCacheWorker.FOR_IMAGE))) {
+            candidates.add(List.of(task));
+        }
+        return candidates;
     }
 
     /**
@@ -83,8 +97,8 @@ public class ErrataCacheDriver implements QueueDriver<Task> {
      * {@inheritDoc}
      */
     @Override
-    public QueueWorker makeWorker(Task task) {
-        return new ErrataCacheWorker(task, logger);
+    public QueueWorker makeWorker(List<Task> tasks) {
+        return new ErrataCacheWorker(tasks, logger);
     }
 
     /**
@@ -113,6 +127,45 @@ public class ErrataCacheDriver implements QueueDriver<Task> {
         return consolidated;
     }
 
+    /**
+     * Groups server tasks by the set of channels the servers are subscribed to. Groups
+     * bigger than the configured batch size are split.
+     *
+     * @param tasks list of consolidated server {@link Task} objects
+     * @return the task groups
+     */
+    private List<List<Task>> groupByChannels(List<Task> tasks) {
+        if (tasks.isEmpty()) {
+            return new ArrayList<>();
+        }
+        SelectMode mode = ModeFactory.getMode("ErrataCache_queries", "server_channel_sets");
+        List<Long> sids = tasks.stream().map(Task::getData).collect(Collectors.toList());
+        DataResult<Map<String, Object>> rows = mode.execute(new HashMap<>(), sids);
+        Map<Long, String> channelSets = new HashMap<>();
+        for (Map<String, Object> row : rows) {
+            channelSets.put((Long) row.get("id"), (String) row.get("channels"));
+        }
+
+        // servers without channels have nothing to compute and end up in the same group
+        Map<String, List<Task>> groups = new LinkedHashMap<>();
+        for (Task task : tasks) {
+            groups.computeIfAbsent(channelSets.getOrDefault(task.getData(), ""), k -> new ArrayList<>())
+                    .add(task);
+        }
+
+        int batchSize = Math.max(1, Config.get().getInt("taskomatic.errata_cache_server_batch_size", 500));
+        List<List<Task>> batches = new ArrayList<>();
+        for (List<Task> group : groups.values()) {
+            for (int i = 0; i < group.size(); i += batchSize) {
+                batches.add(group.subList(i, Math.min(i + batchSize, group.size())));
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Grouped {} servers in {} channel sets", tasks.size(), groups.size());
+        }
+        return batches;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -14,6 +14,8 @@
  */
 package com.redhat.rhn.taskomatic.task.errata;
 
+import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.domain.task.Task;
 import com.redhat.rhn.domain.task.TaskFactory;
@@ -23,8 +25,12 @@ import com.redhat.rhn.taskomatic.task.threaded.TaskQueue;
 
 import org.apache.logging.log4j.Logger;
 
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 /**
- * Performs errata cache recalc for a given server or channel
+ * Performs errata cache recalc for a given channel or image, or a group of servers
  */
 public class ErrataCacheWorker implements QueueWorker {
 
@@ -33,6 +39,7 @@ public class ErrataCacheWorker implements QueueWorker {
     public static final String FOR_IMAGE  = "update_image_errata_cache";
 
     private Task task;
+    private List<Task> tasks;
     private Logger logger;
     private TaskQueue parentQueue;
 
@@ -42,7 +49,18 @@ public class ErrataCacheWorker implements QueueWorker {
      * @param parentLogger logger to use
      */
     public ErrataCacheWorker(Task taskIn, Logger parentLogger) {
-        task = taskIn;
+        this(List.of(taskIn), parentLogger);
+    }
+
+    /**
+     * Constructor
+     * @param tasksIn the tasks to work on. They all have the same name and only
+     * server tasks can be more than one.
+     * @param parentLogger logger to use
+     */
+    public ErrataCacheWorker(List<Task> tasksIn, Logger parentLogger) {
+        tasks = tasksIn;
+        task = tasksIn.get(0);
         logger = parentLogger;
     }
 
@@ -55,7 +73,17 @@ public class ErrataCacheWorker implements QueueWorker {
             removeTask();
             parentQueue.workerStarting();
             UpdateErrataCacheCommand uecc = new UpdateErrataCacheCommand();
-            if (ErrataCacheWorker.FOR_SERVER.equals(task.getName())) {
+            if (ErrataCacheWorker.FOR_SERVER.equals(task.getName()) && tasks.size() > 1) {
+                List<Long> sids = tasks.stream().map(Task::getData).collect(Collectors.toList());
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Updating errata cache for sids {}", sids);
+                }
+                uecc.updateErrataCacheForServers(sids, false);
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Finished errata cache for {} sids", sids.size());
+                }
+            }
+            else if (ErrataCacheWorker.FOR_SERVER.equals(task.getName())) {
                 Long sid = task.getData();
                 if (logger.isDebugEnabled()) {
                     logger.debug("Updating errata cache for sid [{}]", sid);
@@ -107,9 +135,17 @@ public class ErrataCacheWorker implements QueueWorker {
     }
 
     /**
-     * Remove the task related to this worker from the DB via mode query.
+     * Remove the tasks related to this worker from the DB via mode query.
      */
     private void removeTask() {
-        TaskFactory.deleteByOrgNameDataPriority(task.getOrg(), task.getName(), task.getData(), task.getPriority());
+        if (tasks.size() == 1) {
+            TaskFactory.deleteByOrgNameDataPriority(task.getOrg(), task.getName(), task.getData(),
+                    task.getPriority());
+            return;
+        }
+        // server ids are unique across organizations
+        WriteMode mode = ModeFactory.getWriteMode("Task_queries", "delete_by_name_and_data");
+        mode.executeUpdate(Map.of("task_name", task.getName()),
+                tasks.stream().map(Task::getData).collect(Collectors.toList()));
     }
 }
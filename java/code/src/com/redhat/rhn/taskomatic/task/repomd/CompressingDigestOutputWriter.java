@@ -16,25 +16,47 @@ package com.redhat.rhn.taskomatic.task.repomd;
 
 import com.redhat.rhn.common.util.StringUtil;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+
 import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPOutputStream;
 
 /**
+ * Output stream computing the checksum of the written data, gzip-compressing it and computing
+ * the checksum of the compressed data.
  *
- *
+ * In pipelined mode, the written bytes are collected in chunks which are compressed and digested
+ * on a dedicated thread, so that the caller can keep on producing data in the meantime. The
+ * produced file and checksums are the same in both modes.
  */
 public class CompressingDigestOutputWriter extends OutputStream {
 
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_PENDING_CHUNKS = 32;
+
     private DigestOutputStream uncompressedDigestStream;
     private DigestOutputStream compressedDigestStream;
     private OutputStream compressedStream;
     private BufferedOutputStream bufferedStream;
 
+    // pipelined mode only
+    private ExecutorService compressor;
+    private Semaphore pendingChunks;
+    private byte[] chunk;
+    private int chunkLength;
+    private volatile IOException failure;
+
     /**
      *
      * @param stream The stream to compress
@@ -44,12 +66,36 @@ public class CompressingDigestOutputWriter extends OutputStream {
      */
     public CompressingDigestOutputWriter(OutputStream stream, String checksumAlgo)
                                         throws NoSuchAlgorithmException, IOException {
+        this(stream, checksumAlgo, false);
+    }
+
+    /**
+     *
+     * @param stream The stream to compress
+     * @param checksumAlgo checksum algorithm
+     * @param pipelined true to compress and digest the data on a dedicated thread
+     * @throws NoSuchAlgorithmException nosuchalgorithmexception
+     * @throws IOException ioexception
+     */
+    public CompressingDigestOutputWriter(OutputStream stream, String checksumAlgo, boolean pipelined)
+                                        throws NoSuchAlgorithmException, IOException {
             compressedDigestStream = new DigestOutputStream(stream,
                     MessageDigest.getInstance(checksumAlgo));
             compressedStream = new GZIPOutputStream(compressedDigestStream);
             uncompressedDigestStream = new DigestOutputStream(compressedStream,
                     MessageDigest.getInstance(checksumAlgo));
-            bufferedStream = new BufferedOutputStream(uncompressedDigestStream);
+            bufferedStream = new BufferedOutputStream(uncompressedDigestStream, CHUNK_SIZE);
+
+            if (pipelined) {
+                // a single worker keeps the chunks in order; it expires if the writer gets abandoned
+                compressor = new ThreadPoolExecutor(0, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                        new BasicThreadFactory.Builder()
+                                .namingPattern("repodata-compressor-%d")
+                                .daemon(true)
+                                .build());
+                pendingChunks = new Semaphore(MAX_PENDING_CHUNKS);
+                chunk = new byte[CHUNK_SIZE];
+            }
     }
 
     /**
@@ -59,7 +105,14 @@ public class CompressingDigestOutputWriter extends OutputStream {
      */
     @Override
     public void write(int arg0) throws IOException {
-        bufferedStream.write(arg0);
+        if (compressor == null) {
+            bufferedStream.write(arg0);
+            return;
+        }
+        if (chunkLength == CHUNK_SIZE) {
+            submitChunk();
+        }
+        chunk[chunkLength++] = (byte) arg0;
     }
 
     /**
@@ -69,7 +122,32 @@ public class CompressingDigestOutputWriter extends OutputStream {
      */
     @Override
     public void write(byte[] b) throws IOException {
-        bufferedStream.write(b);
+        write(b, 0, b.length);
+    }
+
+    /**
+     * write len bytes from the specified byte array starting at offset off
+     * @param b byte
+     * @param off the start offset in the data
+     * @param len the number of bytes to write
+     * @throws IOException ioexception
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (compressor == null) {
+            bufferedStream.write(b, off, len);
+            return;
+        }
+        int written = 0;
+        while (written < len) {
+            if (chunkLength == CHUNK_SIZE) {
+                submitChunk();
+            }
+            int count = Math.min(len - written, CHUNK_SIZE - chunkLength);
+            System.arraycopy(b, off + written, chunk, chunkLength, count);
+            chunkLength += count;
+            written += count;
+        }
     }
 
     /**
@@ -78,7 +156,12 @@ public class CompressingDigestOutputWriter extends OutputStream {
      */
     @Override
     public void flush() throws IOException {
-        bufferedStream.flush();
+        if (compressor == null) {
+            bufferedStream.flush();
+            return;
+        }
+        // in pipelined mode, data is handed over to the compressor thread when a chunk is full
+        checkFailure();
     }
 
     /**
@@ -87,7 +170,79 @@ public class CompressingDigestOutputWriter extends OutputStream {
      */
     @Override
     public void close() throws IOException {
-        bufferedStream.close();
+        if (compressor == null) {
+            bufferedStream.close();
+            return;
+        }
+        if (compressor.isShutdown()) {
+            return;
+        }
+        try {
+            submitChunk();
+            compressor.execute(() -> {
+                try {
+                    bufferedStream.close();
+                }
+                catch (IOException e) {
+                    failure = e;
+                }
+            });
+        }
+        finally {
+            compressor.shutdown();
+            awaitCompressor();
+        }
+        checkFailure();
+    }
+
+    private void submitChunk() throws IOException {
+        checkFailure();
+        if (chunkLength == 0) {
+            return;
+        }
+        byte[] data = chunk;
+        int length = chunkLength;
+        try {
+            pendingChunks.acquire();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the compressor thread");
+        }
+        compressor.execute(() -> {
+            try {
+                if (failure == null) {
+                    bufferedStream.write(data, 0, length);
+                }
+            }
+            catch (IOException e) {
+                failure = e;
+            }
+            finally {
+                pendingChunks.release();
+            }
+        });
+        chunk = new byte[CHUNK_SIZE];
+        chunkLength = 0;
+    }
+
+    private void awaitCompressor() throws IOException {
+        try {
+            while (!compressor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // keep on waiting, the compressor thread is still busy
+            }
+        }
+        catch (InterruptedException e) {
+            compressor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the compressor thread");
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
     }
 
     /**
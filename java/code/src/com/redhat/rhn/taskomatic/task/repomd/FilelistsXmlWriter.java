@@ -85,12 +85,20 @@ public class FilelistsXmlWriter extends RepomdWriter {
      * @param pkgDto pkg info to add to xml
      */
     public void addPackage(PackageDto pkgDto) {
+        addPackageXml(getPackageXml(pkgDto));
+    }
+
+    /**
+     * Generates the filelists XML snippet of a package
+     * @param pkgDto pkg info to generate the xml for
+     * @return the package XML snippet, possibly empty
+     */
+    public String getPackageXml(PackageDto pkgDto) {
         try {
             String xml = pkgDto.getFilelistXml();
             if (ConfigDefaults.get().useDBRepodata() && !StringUtils.isEmpty(xml)) {
                 if (xml != null) {
-                    handler.addCharacters(xml);
-                    return;
+                    return xml;
                 }
             }
 
@@ -105,7 +113,7 @@ public class FilelistsXmlWriter extends RepomdWriter {
 
             String pkg =  st.toString();
             PackageManager.updateRepoFileList(pkgDto.getId(), pkg);
-            handler.addCharacters(pkg);
+            return pkg;
 
 
         }
@@ -87,13 +87,21 @@ public class PrimaryXmlWriter extends RepomdWriter {
      * @param pkgDto pkg info to add to xml
      */
     public void addPackage(PackageDto pkgDto) {
+        addPackageXml(getPackageXml(pkgDto));
+    }
+
+    /**
+     * Generates the primary XML snippet of a package
+     * @param pkgDto pkg info to generate the xml for
+     * @return the package XML snippet, possibly empty
+     */
+    public String getPackageXml(PackageDto pkgDto) {
         try {
             String xml = pkgDto.getPrimaryXml();
             if (ConfigDefaults.get().useDBRepodata() && !StringUtils.isEmpty(xml)) {
 
                 if (xml != null) {
-                    handler.addCharacters(xml);
-                    return;
+                    return xml;
                 }
             }
 
@@ -114,7 +122,7 @@ public class PrimaryXmlWriter extends RepomdWriter {
 
             String pkg =  st.toString();
             PackageManager.updateRepoPrimary(pkgDto.getId(), pkg);
-            handler.addCharacters(pkg);
+            return pkg;
 
         }
         catch (SAXException e) {
@@ -0,0 +1,353 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Stores the uncompressed per-package XML snippets of the package based metadata files
+ * (primary, filelists, other and susedata) of a channel, sorted by package id.
+ *
+ * Each file is a sequence of records made of the package id, the snippet length and the
+ * UTF-8 snippet itself. A properties file records the generation the fragments belong to,
+ * so that the next generation can reuse the snippets of the packages which did not change.
+ */
+public class RepomdFragmentStore {
+
+    private static final Logger LOG = LogManager.getLogger(RepomdFragmentStore.class);
+
+    /** The package based metadata files, in the order used for the fragment arrays */
+    public static final String[] TYPES = {"primary", "filelists", "other", "susedata"};
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String FRAGMENTS_SUFFIX = ".fragments";
+    private static final String NEW_SUFFIX = ".new";
+    private static final String METADATA_FILE = "fragments.properties";
+    private static final String VERSION_KEY = "version";
+    private static final String CHECKSUM_TYPE_KEY = "checksum_type";
+    private static final String GENERATED_KEY = "generated";
+
+    private final File directory;
+
+    /**
+     * Metadata of an existing fragment store
+     */
+    public static class Generation {
+        private final String checksumType;
+        private final Date generated;
+
+        private Generation(String checksumTypeIn, Date generatedIn) {
+            checksumType = checksumTypeIn;
+            generated = generatedIn;
+        }
+
+        /**
+         * @return the checksum type of the channel when the fragments were generated
+         */
+        public String getChecksumType() {
+            return checksumType;
+        }
+
+        /**
+         * @return the database time to compare the modification dates to, taken before the
+         * generation of the fragments started
+         */
+        public Date getGenerated() {
+            return generated;
+        }
+    }
+
+    /**
+     * Constructor
+     * @param directoryIn the directory holding the fragments of a channel
+     */
+    public RepomdFragmentStore(String directoryIn) {
+        directory = new File(directoryIn);
+    }
+
+    /**
+     * Returns the generation of the stored fragments, if they are complete and can be reused
+     * @return the generation, or empty if there are no usable fragments
+     */
+    public Optional<Generation> getGeneration() {
+        File metadataFile = new File(directory, METADATA_FILE);
+        if (!metadataFile.isFile()) {
+            return Optional.empty();
+        }
+        for (String type : TYPES) {
+            if (!new File(directory, type + FRAGMENTS_SUFFIX).isFile()) {
+                return Optional.empty();
+            }
+        }
+
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(metadataFile)) {
+            properties.load(in);
+            if (!Integer.toString(FORMAT_VERSION).equals(properties.getProperty(VERSION_KEY))) {
+                return Optional.empty();
+            }
+            return Optional.of(new Generation(properties.getProperty(CHECKSUM_TYPE_KEY),
+                    new Date(Long.parseLong(properties.getProperty(GENERATED_KEY)))));
+        }
+        catch (IOException | NumberFormatException e) {
+            LOG.warn("Ignoring unreadable repodata fragments in {}", directory, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Reads the ids of the packages having stored fragments
+     * @return the package ids, sorted
+     * @throws IOException in case of read errors
+     */
+    public List<Long> readPackageIds() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (FragmentReader reader = new FragmentReader(new File(directory, TYPES[0] + FRAGMENTS_SUFFIX))) {
+            while (reader.hasNext()) {
+                ids.add(reader.peekId());
+                reader.skip();
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Opens the stored fragments for reading
+     * @return the readers, one per type in {@link #TYPES} order
+     * @throws IOException in case of read errors
+     */
+    public Readers openReaders() throws IOException {
+        Readers readers = new Readers();
+        try {
+            for (String type : TYPES) {
+                readers.readers.add(new FragmentReader(new File(directory, type + FRAGMENTS_SUFFIX)));
+            }
+        }
+        catch (IOException e) {
+            readers.close();
+            throw e;
+        }
+        return readers;
+    }
+
+    /**
+     * Opens a new set of fragments for writing. They replace the stored ones only
+     * when {@link Writers#commit(String, Date)} is called.
+     * @return the writers, one per type in {@link #TYPES} order
+     * @throws IOException in case of write errors
+     */
+    public Writers openWriters() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory: " + directory);
+        }
+        Writers writers = new Writers();
+        try {
+            for (String type : TYPES) {
+                File file = new File(directory, type + FRAGMENTS_SUFFIX + NEW_SUFFIX);
+                writers.streams.add(new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))));
+            }
+        }
+        catch (IOException e) {
+            writers.abort();
+            throw e;
+        }
+        return writers;
+    }
+
+    /**
+     * Removes the stored fragments
+     */
+    public void delete() {
+        FileUtils.deleteQuietly(directory);
+    }
+
+    /**
+     * Sequential reader of all the fragment files
+     */
+    public class Readers implements Closeable {
+        private final List<FragmentReader> readers = new ArrayList<>();
+
+        /**
+         * Reads the fragments of a package, skipping the fragments of the preceding packages
+         * @param packageId the package id
+         * @return the fragments in {@link #TYPES} order
+         * @throws IOException if the package has no stored fragment or in case of read errors
+         */
+        public String[] read(long packageId) throws IOException {
+            String[] fragments = new String[readers.size()];
+            for (int i = 0; i < fragments.length; i++) {
+                FragmentReader reader = readers.get(i);
+                while (reader.hasNext() && reader.peekId() < packageId) {
+                    reader.skip();
+                }
+                if (!reader.hasNext() || reader.peekId() != packageId) {
+                    throw new IOException("No stored " + TYPES[i] + " fragment for package " + packageId);
+                }
+                fragments[i] = reader.read();
+            }
+            return fragments;
+        }
+
+        @Override
+        public void close() throws IOException {
+            for (FragmentReader reader : readers) {
+                reader.close();
+            }
+        }
+    }
+
+    /**
+     * Writer of a new set of fragment files
+     */
+    public class Writers {
+        private final List<DataOutputStream> streams = new ArrayList<>();
+
+        /**
+         * Appends the fragments of a package. Packages must be added sorted by id.
+         * @param packageId the package id
+         * @param fragments the fragments in {@link #TYPES} order
+         * @throws IOException in case of write errors
+         */
+        public void add(long packageId, String[] fragments) throws IOException {
+            for (int i = 0; i < streams.size(); i++) {
+                byte[] bytes = fragments[i].getBytes(StandardCharsets.UTF_8);
+                DataOutputStream stream = streams.get(i);
+                stream.writeLong(packageId);
+                stream.writeInt(bytes.length);
+                stream.write(bytes);
+            }
+        }
+
+        /**
+         * Replaces the stored fragments with the written ones
+         * @param checksumType the checksum type of the channel
+         * @param generated the database time to compare the modification dates to at the next generation
+         * @throws IOException in case of write errors
+         */
+        public void commit(String checksumType, Date generated) throws IOException {
+            File metadataFile = new File(directory, METADATA_FILE);
+            // invalidate the current fragments first, in case we fail in the middle
+            if (metadataFile.exists() && !metadataFile.delete()) {
+                throw new IOException("Unable to remove " + metadataFile);
+            }
+            for (OutputStream stream : streams) {
+                stream.close();
+            }
+            for (String type : TYPES) {
+                File file = new File(directory, type + FRAGMENTS_SUFFIX + NEW_SUFFIX);
+                if (!file.renameTo(new File(directory, type + FRAGMENTS_SUFFIX))) {
+                    throw new IOException("Unable to rename " + file);
+                }
+            }
+
+            Properties properties = new Properties();
+            properties.setProperty(VERSION_KEY, Integer.toString(FORMAT_VERSION));
+            properties.setProperty(CHECKSUM_TYPE_KEY, checksumType);
+            properties.setProperty(GENERATED_KEY, Long.toString(generated.getTime()));
+            try (OutputStream out = new FileOutputStream(metadataFile)) {
+                properties.store(out, null);
+            }
+        }
+
+        /**
+         * Drops the written fragments, keeping the stored ones
+         */
+        public void abort() {
+            for (OutputStream stream : streams) {
+                try {
+                    stream.close();
+                }
+                catch (IOException e) {
+                    LOG.debug("Unable to close fragment stream", e);
+                }
+            }
+            for (String type : TYPES) {
+                FileUtils.deleteQuietly(new File(directory, type + FRAGMENTS_SUFFIX + NEW_SUFFIX));
+            }
+        }
+    }
+
+    /**
+     * Reader of a single fragment file
+     */
+    private static class FragmentReader implements Closeable {
+        private final DataInputStream stream;
+        private long nextId;
+        private boolean hasNext;
+
+        FragmentReader(File file) throws IOException {
+            stream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            advance();
+        }
+
+        private void advance() throws IOException {
+            try {
+                nextId = stream.readLong();
+                hasNext = true;
+            }
+            catch (EOFException e) {
+                hasNext = false;
+            }
+        }
+
+        boolean hasNext() {
+            return hasNext;
+        }
+
+        long peekId() {
+            return nextId;
+        }
+
+        String read() throws IOException {
+            byte[] bytes = new byte[stream.readInt()];
+            stream.readFully(bytes);
+            advance();
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        void skip() throws IOException {
+            int length = stream.readInt();
+            IOUtils.skipFully(stream, length);
+            advance();
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.close();
+        }
+    }
+}
@@ -158,6 +158,22 @@ public abstract class RepomdWriter {
     }
 
 
+    /**
+     * Adds an already generated package XML snippet to the document
+     * @param xml the package XML snippet, nothing is added if empty
+     */
+    public void addPackageXml(String xml) {
+        if (StringUtils.isEmpty(xml)) {
+            return;
+        }
+        try {
+            handler.addCharacters(xml);
+        }
+        catch (SAXException e) {
+            throw new RepomdRuntimeException(e);
+        }
+    }
+
     /**
      *
      * @param channel channel info
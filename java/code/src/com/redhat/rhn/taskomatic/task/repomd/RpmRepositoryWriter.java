@@ -24,6 +24,7 @@ import com.redhat.rhn.domain.channel.Channel;
 import com.redhat.rhn.domain.channel.ChannelFactory;
 import com.redhat.rhn.domain.channel.RepoMetadata;
 import com.redhat.rhn.frontend.dto.PackageDto;
+import com.redhat.rhn.manager.EulaManager;
 import com.redhat.rhn.manager.channel.ChannelManager;
 import com.redhat.rhn.manager.rhnpackage.PackageManager;
 import com.redhat.rhn.manager.satellite.Executor;
@@ -49,9 +50,18 @@ import java.security.NoSuchAlgorithmException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 /**
  *
@@ -70,6 +80,9 @@ public class RpmRepositoryWriter extends RepositoryWriter {
     private static final String SOLV_FILE = "solv.new";
     private static final String REPO2SOLV = "/usr/bin/repo2solv";
 
+    private static final String FRAGMENTS_DIR_SUFFIX = "-fragments";
+    private static final int BATCH_SIZE = 1000;
+
     private static final String GROUP = "groups";
     private static final String MODULES = "modules";
 
@@ -148,6 +161,76 @@ public class RpmRepositoryWriter extends RepositoryWriter {
         }
     }
 
+    /**
+     * The writers of the package based metadata files
+     */
+    private static class PackageMetadataWriters {
+        private final PrimaryXmlWriter primary;
+        private final FilelistsXmlWriter filelists;
+        private final OtherXmlWriter other;
+        private final SuseDataXmlWriter susedata;
+
+        private PackageMetadataWriters(PrimaryXmlWriter primaryIn, FilelistsXmlWriter filelistsIn,
+                OtherXmlWriter otherIn, SuseDataXmlWriter susedataIn) {
+            primary = primaryIn;
+            filelists = filelistsIn;
+            other = otherIn;
+            susedata = susedataIn;
+        }
+
+        private void begin(Channel channel) {
+            primary.begin(channel);
+            filelists.begin(channel);
+            other.begin(channel);
+            susedata.begin(channel);
+        }
+
+        /**
+         * Generates the XML snippets of a package
+         * @param pkgDto the package
+         * @return the snippets in {@link RepomdFragmentStore#TYPES} order
+         */
+        private String[] generate(PackageDto pkgDto) {
+            return new String[] {
+                    primary.getPackageXml(pkgDto),
+                    filelists.getPackageXml(pkgDto),
+                    other.getPackageXml(pkgDto),
+                    susedata.getPackageXml(pkgDto)
+            };
+        }
+
+        private String generateSuseData(PackageDto pkgDto, Collection<String> keywords, List<String> eulas) {
+            return susedata.getPackageXml(pkgDto, keywords, eulas);
+        }
+
+        private void add(String[] xml) {
+            primary.addPackageXml(xml[0]);
+            filelists.addPackageXml(xml[1]);
+            other.addPackageXml(xml[2]);
+            susedata.addPackageXml(xml[3]);
+        }
+
+        private void end() {
+            primary.end();
+            filelists.end();
+            other.end();
+            susedata.end();
+        }
+    }
+
+    /**
+     * The packages of an incremental metadata generation
+     */
+    private static class IncrementalPlan {
+        private final List<Long> packageIds;
+        private final Set<Long> toGenerate;
+
+        private IncrementalPlan(List<Long> packageIdsIn, Set<Long> toGenerateIn) {
+            packageIds = packageIdsIn;
+            toGenerate = toGenerateIn;
+        }
+    }
+
     /**
      * Constructor takes in pathprefix and mountpoint
      * @param pathPrefixIn prefix to package path
@@ -257,17 +340,20 @@ public class RpmRepositoryWriter extends RepositoryWriter {
 
         CompressingDigestOutputWriter primaryFile, filelistsFile, otherFile, susedataFile;
 
+        // when pipelined, each file gets compressed and digested on its own thread while
+        // the package XML is being generated here
+        boolean pipelined = ConfigDefaults.get().isTaskoRepodataPipelined();
         try {
             primaryFile = new CompressingDigestOutputWriter(
                     new FileOutputStream(prefix + PRIMARY_FILE),
-                    checksumAlgo);
+                    checksumAlgo, pipelined);
             filelistsFile = new CompressingDigestOutputWriter(
                     new FileOutputStream(prefix + FILELISTS_FILE),
-                    checksumAlgo);
+                    checksumAlgo, pipelined);
             otherFile = new CompressingDigestOutputWriter(
-                    new FileOutputStream(prefix + OTHER_FILE), checksumAlgo);
+                    new FileOutputStream(prefix + OTHER_FILE), checksumAlgo, pipelined);
             susedataFile = new CompressingDigestOutputWriter(
-                    new FileOutputStream(prefix + SUSEDATA_FILE), checksumAlgo);
+                    new FileOutputStream(prefix + SUSEDATA_FILE), checksumAlgo, pipelined);
         }
         catch (IOException | NoSuchAlgorithmException e) {
             throw new RepomdRuntimeException(e);
@@ -290,49 +376,42 @@ public class RpmRepositoryWriter extends RepositoryWriter {
                 susedataBufferedWriter);
         Date start = new Date();
 
-        primary.begin(channel);
-        filelists.begin(channel);
-        other.begin(channel);
-        susedata.begin(channel);
+        PackageMetadataWriters writers = new PackageMetadataWriters(primary, filelists, other, susedata);
+        RepomdFragmentStore fragmentStore = new RepomdFragmentStore(getFragmentsPath(channel.getLabel()));
+        RepomdFragmentStore.Writers fragments = null;
+        Optional<IncrementalPlan> plan = Optional.empty();
+        Date mark = null;
+        if (ConfigDefaults.get().isTaskoRepodataIncremental()) {
+            mark = TaskManager.getRepomdModificationMark();
+            plan = planIncrementalGeneration(channel, checksumType, fragmentStore);
+            try {
+                fragments = fragmentStore.openWriters();
+            }
+            catch (IOException e) {
+                throw new RepomdRuntimeException(e);
+            }
+        }
+        else {
+            // stale fragments must never be reused if the incremental mode gets enabled later
+            fragmentStore.delete();
+        }
 
-        // batch the elaboration so we don't have to hold many thousands of packages in memory at once
-        final int batchSize = 1000;
-        for (long i = 0; i < channel.getPackageCount(); i += batchSize) {
-            DataResult<PackageDto> packageBatch = TaskManager.getChannelPackageDtos(channel, i, batchSize);
-            packageBatch.elaborate();
-            for (PackageDto pkgDto : packageBatch) {
-                // this is a sanity check
-                // package may have been deleted before packageBatch.elaborate()
-                if (pkgDto.getChecksum() == null) {
-                    // channel content changed, we cannot guarantee correct repodata
-                    throw new RepomdRuntimeException("Package with id " + pkgDto.getId() +
-                            " removed from server, interrupting repo generation for " +
-                            channel.getLabel());
-                }
-                primary.addPackage(pkgDto);
-                filelists.addPackage(pkgDto);
-                other.addPackage(pkgDto);
-                susedata.addPackage(pkgDto);
-                try {
-                    primaryFile.flush();
-                    filelistsFile.flush();
-                    otherFile.flush();
-                    susedataFile.flush();
-                }
-                catch (IOException e) {
-                    throw new RepomdRuntimeException(e);
-                }
+        try {
+            writers.begin(channel);
+            if (plan.isPresent()) {
+                writePackagesIncrementally(channel, plan.get(), fragmentStore, writers, fragments);
             }
-            log.info("Processed {} packages", i + packageBatch.getEnd());
-            if (commitTransaction) {
-                // commit pre generated XML snippets in the cache
-                HibernateFactory.commitTransaction();
+            else {
+                writeAllPackages(channel, writers, fragments);
             }
+            writers.end();
+        }
+        catch (RuntimeException e) {
+            if (fragments != null) {
+                fragments.abort();
+            }
+            throw e;
         }
-        primary.end();
-        filelists.end();
-        other.end();
-        susedata.end();
         try {
             primaryBufferedWriter.close();
             filelistsBufferedWriter.close();
@@ -340,9 +419,23 @@ public class RpmRepositoryWriter extends RepositoryWriter {
             susedataBufferedWriter.close();
         }
         catch (IOException e) {
+            if (fragments != null) {
+                fragments.abort();
+            }
             throw new RepomdRuntimeException(e);
         }
 
+        if (fragments != null) {
+            try {
+                fragments.commit(checksumType, mark);
+            }
+            catch (IOException e) {
+                log.warn("Unable to store the repodata fragments of '{}', the next generation will be full",
+                        channel.getLabel(), e);
+                fragmentStore.delete();
+            }
+        }
+
         RepomdIndexData primaryData = new RepomdIndexData(primaryFile.getCompressedChecksum(),
                 primaryFile.getUncompressedChecksum(), channel.getLastModified());
         RepomdIndexData filelistsData = new RepomdIndexData(filelistsFile.getCompressedChecksum(),
@@ -442,6 +535,224 @@ public class RpmRepositoryWriter extends RepositoryWriter {
                 .forEach(File::delete);
     }
 
+    /**
+     * Generates the metadata of all the packages of the channel
+     * @param channel the channel
+     * @param writers the package metadata writers
+     * @param fragments the fragment store to fill, or null
+     */
+    private void writeAllPackages(Channel channel, PackageMetadataWriters writers,
+            RepomdFragmentStore.Writers fragments) {
+        // batch the elaboration so we don't have to hold many thousands of packages in memory at once
+        for (long i = 0; i < channel.getPackageCount(); i += BATCH_SIZE) {
+            DataResult<PackageDto> packageBatch = TaskManager.getChannelPackageDtos(channel, i, BATCH_SIZE);
+            packageBatch.elaborate();
+            for (PackageDto pkgDto : packageBatch) {
+                checkPackage(channel, pkgDto);
+                String[] xml = writers.generate(pkgDto);
+                writers.add(xml);
+                addFragments(fragments, pkgDto.getId(), xml);
+            }
+            log.info("Processed {} packages", i + packageBatch.getEnd());
+            if (commitTransaction) {
+                // commit pre generated XML snippets in the cache
+                HibernateFactory.commitTransaction();
+            }
+        }
+    }
+
+    /**
+     * Computes which packages need their metadata generated, the others are taken over
+     * from the fragments of the previous generation
+     * @param channel the channel
+     * @param checksumType the checksum type of the channel
+     * @param fragmentStore the fragments of the previous generation
+     * @return the plan, or empty if all the packages have to be generated
+     */
+    private Optional<IncrementalPlan> planIncrementalGeneration(Channel channel, String checksumType,
+            RepomdFragmentStore fragmentStore) {
+        Optional<RepomdFragmentStore.Generation> generation = fragmentStore.getGeneration();
+        if (generation.isEmpty() || !checksumType.equals(generation.get().getChecksumType())) {
+            log.info("No reusable repodata fragments for '{}', generating all packages", channel.getLabel());
+            return Optional.empty();
+        }
+
+        Set<Long> storedIds;
+        try {
+            storedIds = new HashSet<>(fragmentStore.readPackageIds());
+        }
+        catch (IOException e) {
+            log.warn("Unable to read the repodata fragments of '{}', generating all packages",
+                    channel.getLabel(), e);
+            return Optional.empty();
+        }
+
+        List<Long> packageIds = TaskManager.getChannelPackageIds(channel);
+        Set<Long> toGenerate = new HashSet<>(
+                TaskManager.getChannelPackageIdsModifiedSince(channel, generation.get().getGenerated()));
+        packageIds.stream()
+                .filter(id -> !storedIds.contains(id))
+                .forEach(toGenerate::add);
+
+        if (toGenerate.size() > packageIds.size() / 2) {
+            log.info("{} of {} packages changed in '{}', generating all packages", toGenerate.size(),
+                    packageIds.size(), channel.getLabel());
+            return Optional.empty();
+        }
+        log.info("Generating {} of {} packages in '{}', reusing the others", toGenerate.size(),
+                packageIds.size(), channel.getLabel());
+        return Optional.of(new IncrementalPlan(packageIds, toGenerate));
+    }
+
+    /**
+     * Writes the metadata of the channel packages, generating only the changed packages. The
+     * susedata snippets of the other packages are always generated again: keywords and EULAs
+     * can be removed, which no modification date tells.
+     * @param channel the channel
+     * @param plan the packages to write and generate
+     * @param fragmentStore the fragments of the previous generation
+     * @param writers the package metadata writers
+     * @param fragments the fragment store to fill
+     */
+    private void writePackagesIncrementally(Channel channel, IncrementalPlan plan,
+            RepomdFragmentStore fragmentStore, PackageMetadataWriters writers,
+            RepomdFragmentStore.Writers fragments) {
+        Iterator<List<Long>> batches = batches(plan.packageIds.stream()
+                .filter(plan.toGenerate::contains)
+                .collect(Collectors.toList()));
+        Iterator<List<Long>> reusedBatches = batches(plan.packageIds.stream()
+                .filter(id -> !plan.toGenerate.contains(id))
+                .collect(Collectors.toList()));
+        Map<Long, String[]> generated = new HashMap<>();
+        Map<Long, String> susedata = new HashMap<>();
+
+        try (RepomdFragmentStore.Readers stored = fragmentStore.openReaders()) {
+            for (Long packageId : plan.packageIds) {
+                String[] xml;
+                if (plan.toGenerate.contains(packageId)) {
+                    if (!generated.containsKey(packageId)) {
+                        generated = generatePackages(channel, batches.next(), writers);
+                    }
+                    xml = generated.remove(packageId);
+                }
+                else {
+                    if (!susedata.containsKey(packageId)) {
+                        susedata = generateSuseData(channel, reusedBatches.next(), writers);
+                    }
+                    xml = stored.read(packageId);
+                    xml[3] = susedata.remove(packageId);
+                }
+                writers.add(xml);
+                addFragments(fragments, packageId, xml);
+            }
+        }
+        catch (IOException e) {
+            // do not try again with broken fragments
+            fragmentStore.delete();
+            throw new RepomdRuntimeException(e);
+        }
+    }
+
+    /**
+     * Generates the metadata of a batch of packages
+     * @param channel the channel
+     * @param packageIds the package ids
+     * @param writers the package metadata writers
+     * @return the package XML snippets by package id
+     */
+    private Map<Long, String[]> generatePackages(Channel channel, List<Long> packageIds,
+            PackageMetadataWriters writers) {
+        DataResult<PackageDto> packageBatch = TaskManager.getChannelPackageDtos(channel, packageIds);
+        packageBatch.elaborate();
+        Map<Long, String[]> generated = new HashMap<>();
+        for (PackageDto pkgDto : packageBatch) {
+            checkPackage(channel, pkgDto);
+            generated.put(pkgDto.getId(), writers.generate(pkgDto));
+        }
+        if (generated.size() != packageIds.size()) {
+            throw new RepomdRuntimeException("Packages removed from channel, interrupting repo generation for " +
+                    channel.getLabel());
+        }
+        if (commitTransaction) {
+            // commit pre generated XML snippets in the cache
+            HibernateFactory.commitTransaction();
+        }
+        return generated;
+    }
+
+    /**
+     * Generates the susedata metadata of a batch of packages, fetching their keywords and EULAs at once
+     * @param channel the channel
+     * @param packageIds the package ids
+     * @param writers the package metadata writers
+     * @return the package susedata XML snippets by package id
+     */
+    private Map<Long, String> generateSuseData(Channel channel, List<Long> packageIds,
+            PackageMetadataWriters writers) {
+        DataResult<PackageDto> packageBatch = TaskManager.getChannelSuseDataPackageDtos(channel, packageIds);
+        Map<Long, List<String>> keywords = TaskManager.getChannelPackagesKeywords(channel.getId(), packageIds);
+        Map<Long, List<String>> eulas = new EulaManager().getEulasForPackages(packageIds);
+        Map<Long, String> generated = new HashMap<>();
+        for (PackageDto pkgDto : packageBatch) {
+            checkPackage(channel, pkgDto);
+            generated.put(pkgDto.getId(), writers.generateSuseData(pkgDto,
+                    keywords.getOrDefault(pkgDto.getId(), List.of()),
+                    eulas.getOrDefault(pkgDto.getId(), List.of())));
+        }
+        if (generated.size() != packageIds.size()) {
+            throw new RepomdRuntimeException("Packages removed from channel, interrupting repo generation for " +
+                    channel.getLabel());
+        }
+        return generated;
+    }
+
+    private static Iterator<List<Long>> batches(List<Long> ids) {
+        int size = ids.size();
+        return IntStream.iterate(0, i -> i < size, i -> i + BATCH_SIZE)
+                .mapToObj(i -> ids.subList(i, Math.min(i + BATCH_SIZE, size)))
+                .iterator();
+    }
+
+    private void checkPackage(Channel channel, PackageDto pkgDto) {
+        // this is a sanity check
+        // package may have been deleted before packageBatch.elaborate()
+        if (pkgDto.getChecksum() == null) {
+            // channel content changed, we cannot guarantee correct repodata
+            throw new RepomdRuntimeException("Package with id " + pkgDto.getId() +
+                    " removed from server, interrupting repo generation for " +
+                    channel.getLabel());
+        }
+    }
+
+    private void addFragments(RepomdFragmentStore.Writers fragments, Long packageId, String[] xml) {
+        if (fragments == null) {
+            return;
+        }
+        try {
+            fragments.add(packageId, xml);
+        }
+        catch (IOException e) {
+            throw new RepomdRuntimeException(e);
+        }
+    }
+
+    private String getFragmentsPath(String channelLabel) {
+        return mountPoint + File.separator + pathPrefix + FRAGMENTS_DIR_SUFFIX + File.separator + channelLabel;
+    }
+
+    /**
+     * Deletes repository cache files, and the stored fragments if the directory gets removed
+     * @param channelLabelToProcess channel label
+     * @param deleteDir directory to delete
+     */
+    @Override
+    public void deleteRepomdFiles(String channelLabelToProcess, boolean deleteDir) {
+        super.deleteRepomdFiles(channelLabelToProcess, deleteDir);
+        if (deleteDir) {
+            new RepomdFragmentStore(getFragmentsPath(channelLabelToProcess)).delete();
+        }
+    }
+
     private void generateSolv(Channel channel) {
         String repodir  = mountPoint + File.separator + pathPrefix +
                           File.separator + channel.getLabel() + File.separator;
@@ -81,15 +81,36 @@ public class SuseDataXmlWriter extends RepomdWriter {
      * @param pkgDto pkg info to add to xml
      */
     public void addPackage(PackageDto pkgDto) {
+        addPackageXml(getPackageXml(pkgDto));
+    }
+
+    /**
+     * Generates the susedata XML snippet of a package
+     * @param pkgDto pkg info to generate the xml for
+     * @return the package XML snippet, possibly empty
+     */
+    public String getPackageXml(PackageDto pkgDto) {
         long pkgId = pkgDto.getId();
         List<String> eulas = new EulaManager().getEulasForPackage(pkgId);
 
         Collection<String> keywords = TaskManager
                 .getChannelPackageKeywords(channelId, pkgId);
 
+        return getPackageXml(pkgDto, keywords, eulas);
+    }
+
+    /**
+     * Generates the susedata XML snippet of a package from its already fetched keywords and EULAs
+     * @param pkgDto pkg info to generate the xml for
+     * @param keywords the keywords of the package in the channel
+     * @param eulas the EULAs of the package
+     * @return the package XML snippet, possibly empty
+     */
+    public String getPackageXml(PackageDto pkgDto, Collection<String> keywords, List<String> eulas) {
+        long pkgId = pkgDto.getId();
         if (keywords.isEmpty() && eulas.isEmpty()) {
             // this package has no keywords and no EULA
-            return;
+            return "";
         }
         try {
             ByteArrayOutputStream st = new ByteArrayOutputStream();
@@ -103,7 +124,7 @@ public class SuseDataXmlWriter extends RepomdWriter {
             tmpHandler.endDocument();
 
             String pkg =  st.toString();
-            handler.addCharacters(pkg);
+            return pkg;
         }
         catch (SAXException e) {
             throw new RepomdRuntimeException(e);
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd.test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.redhat.rhn.common.util.StringUtil;
+import com.redhat.rhn.taskomatic.task.repomd.CompressingDigestOutputWriter;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.util.zip.GZIPInputStream;
+
+public class CompressingDigestOutputWriterTest {
+
+    /**
+     * Number of packages of the synthetic channel, enough to fill several chunks
+     */
+    private static final int PACKAGES = 500;
+
+    private static final class Result {
+        private final byte[] compressed;
+        private final String compressedChecksum;
+        private final String uncompressedChecksum;
+
+        private Result(byte[] compressedIn, String compressedChecksumIn, String uncompressedChecksumIn) {
+            compressed = compressedIn;
+            compressedChecksum = compressedChecksumIn;
+            uncompressedChecksum = uncompressedChecksumIn;
+        }
+    }
+
+    @Test
+    public void testPipelinedOutputIsIdentical() throws Exception {
+        Result sync = writeSyntheticChannel(false);
+        Result pipelined = writeSyntheticChannel(true);
+
+        assertArrayEquals(sync.compressed, pipelined.compressed);
+        assertEquals(sync.compressedChecksum, pipelined.compressedChecksum);
+        assertEquals(sync.uncompressedChecksum, pipelined.uncompressedChecksum);
+
+        MessageDigest compressedDigest = MessageDigest.getInstance("SHA-256");
+        assertEquals(StringUtil.getHexString(compressedDigest.digest(pipelined.compressed)),
+                pipelined.compressedChecksum);
+
+        MessageDigest uncompressedDigest = MessageDigest.getInstance("SHA-256");
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(pipelined.compressed))) {
+            assertEquals(StringUtil.getHexString(uncompressedDigest.digest(in.readAllBytes())),
+                    pipelined.uncompressedChecksum);
+        }
+    }
+
+    @Test
+    public void testEmptyStream() throws Exception {
+        Result sync = writePackages(0, false);
+        Result pipelined = writePackages(0, true);
+
+        assertArrayEquals(sync.compressed, pipelined.compressed);
+        assertEquals(sync.uncompressedChecksum, pipelined.uncompressedChecksum);
+    }
+
+    private Result writeSyntheticChannel(boolean pipelined) throws Exception {
+        return writePackages(PACKAGES, pipelined);
+    }
+
+    private Result writePackages(int count, boolean pipelined) throws Exception {
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        CompressingDigestOutputWriter stream = new CompressingDigestOutputWriter(target, "SHA-256", pipelined);
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(stream))) {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<metadata packages=\"" + count + "\">\n");
+            for (int i = 0; i < count; i++) {
+                writePackage(writer, i);
+            }
+            writer.write("</metadata>\n");
+        }
+        return new Result(target.toByteArray(), stream.getCompressedChecksum(), stream.getUncompressedChecksum());
+    }
+
+    private void writePackage(Writer writer, int i) throws IOException {
+        writer.write("<package type=\"rpm\"><name>package-" + i + "</name><arch>x86_64</arch>");
+        writer.write("<version epoch=\"0\" ver=\"" + (i % 97) + "." + (i % 13) + "\" rel=\"" + i + ".1\"/>");
+        writer.write("<checksum type=\"sha256\" pkgid=\"YES\">" + Integer.toHexString(i * 31) + "</checksum>");
+        writer.write("<summary>Synthetic package " + i + "</summary>");
+        writer.write("<description>Synthetic package used to check the repodata streams</description>");
+        writer.write("<format><rpm:provides><rpm:entry name=\"package-" + i + "\"/></rpm:provides>");
+        writer.write("<file>/usr/share/doc/package-" + i + "/README</file></format></package>\n");
+    }
+}
@@ -15,6 +15,7 @@
 package com.redhat.rhn.taskomatic.task.repomd.test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -49,11 +50,14 @@ import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.Properties;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 
@@ -224,6 +228,130 @@ public class RpmRepositoryWriterTest extends JMockBaseTestCaseWithUser {
         }
     }
 
+    @Test
+    public void testIncrementalWriteRepomdFiles() throws Exception {
+        RpmRepositoryWriter writer = new RpmRepositoryWriter("rhn/repodata", mountPointDir.toAbsolutePath().toString());
+        writer.setCommitTransaction(false);
+        boolean cfgIncremental = ConfigDefaults.get().isTaskoRepodataIncremental();
+        Config.get().setBoolean("java.taskomatic_repodata_incremental", "true");
+        try {
+            for (int i = 0; i < 5; i++) {
+                PackageManagerTest.addPackageToChannel("incpkg" + i, channel);
+            }
+            PackageManager.createRepoEntrys(channel.getId());
+            HibernateFactory.getSession().flush();
+            HibernateFactory.getSession().clear();
+
+            writer.writeRepomdFiles(channel);
+            Path fragments = mountPointDir.resolve(Path.of("rhn", "repodata-fragments", channel.getLabel()));
+            assertTrue(fragments.resolve("fragments.properties").toFile().exists());
+            // everything is written in the test transaction: ignore the modification dates
+            ignoreModificationsBefore(fragments);
+
+            channel = ChannelFactory.lookupById(channel.getId());
+            PackageManagerTest.addPackageToChannel("incpkg-new", channel);
+            PackageManager.createRepoEntrys(channel.getId());
+            HibernateFactory.getSession().flush();
+            HibernateFactory.getSession().clear();
+
+            channel = ChannelFactory.lookupById(channel.getId());
+            writer.writeRepomdFiles(channel);
+            String incremental = readMetadataFile("-primary.xml.gz");
+            assertTrue(incremental.contains("<name>incpkg-new</name>"));
+            assertTrue(incremental.contains("packages=\"6\""));
+
+            // a full generation gives the same result
+            Config.get().setBoolean("java.taskomatic_repodata_incremental", "false");
+            channel = ChannelFactory.lookupById(channel.getId());
+            writer.writeRepomdFiles(channel);
+            assertEquals(readMetadataFile("-primary.xml.gz"), incremental);
+            assertFalse(fragments.toFile().exists());
+        }
+        finally {
+            Config.get().setBoolean("java.taskomatic_repodata_incremental", Boolean.toString(cfgIncremental));
+        }
+    }
+
+    @Test
+    public void testIncrementalRemovedKeyword() throws Exception {
+        RpmRepositoryWriter writer = new RpmRepositoryWriter("rhn/repodata", mountPointDir.toAbsolutePath().toString());
+        writer.setCommitTransaction(false);
+        boolean cfgIncremental = ConfigDefaults.get().isTaskoRepodataIncremental();
+        Config.get().setBoolean("java.taskomatic_repodata_incremental", "true");
+        try {
+            com.redhat.rhn.domain.rhnpackage.Package pkg = PackageManagerTest.addPackageToChannel("kwpkg0", channel);
+            for (int i = 1; i < 5; i++) {
+                PackageManagerTest.addPackageToChannel("kwpkg" + i, channel);
+            }
+            String keyword = "test_keyword_" + TestUtils.randomString();
+            HibernateFactory.getSession()
+                    .createNativeQuery("INSERT INTO suseMdKeyword (id, label) " +
+                            "VALUES (nextval('suse_mdkeyword_id_seq'), :label)")
+                    .setParameter("label", keyword)
+                    .executeUpdate();
+            HibernateFactory.getSession()
+                    .createNativeQuery("INSERT INTO suseMdData (channel_id, package_id, keyword_id) " +
+                            "SELECT :cid, :pid, id FROM suseMdKeyword WHERE label = :label")
+                    .setParameter("cid", channel.getId())
+                    .setParameter("pid", pkg.getId())
+                    .setParameter("label", keyword)
+                    .executeUpdate();
+            PackageManager.createRepoEntrys(channel.getId());
+            HibernateFactory.getSession().flush();
+            HibernateFactory.getSession().clear();
+
+            writer.writeRepomdFiles(channel);
+            assertTrue(readMetadataFile("-susedata.xml.gz").contains("<keyword>" + keyword + "</keyword>"));
+            ignoreModificationsBefore(mountPointDir.resolve(Path.of("rhn", "repodata-fragments", channel.getLabel())));
+
+            // a deletion leaves no modification date behind
+            HibernateFactory.getSession()
+                    .createNativeQuery("DELETE FROM suseMdData WHERE channel_id = :cid")
+                    .setParameter("cid", channel.getId())
+                    .executeUpdate();
+            HibernateFactory.getSession().clear();
+
+            channel = ChannelFactory.lookupById(channel.getId());
+            writer.writeRepomdFiles(channel);
+            String incremental = readMetadataFile("-susedata.xml.gz");
+            assertFalse(incremental.contains(keyword));
+
+            Config.get().setBoolean("java.taskomatic_repodata_incremental", "false");
+            channel = ChannelFactory.lookupById(channel.getId());
+            writer.writeRepomdFiles(channel);
+            assertEquals(readMetadataFile("-susedata.xml.gz"), incremental);
+        }
+        finally {
+            Config.get().setBoolean("java.taskomatic_repodata_incremental", Boolean.toString(cfgIncremental));
+        }
+    }
+
+    /**
+     * Moves the modification mark of the stored fragments to the future, so that the next
+     * generation only detects the changes that are not found by their modification date
+     * @param fragments the fragments directory
+     */
+    private static void ignoreModificationsBefore(Path fragments) throws IOException {
+        File metadataFile = fragments.resolve("fragments.properties").toFile();
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(metadataFile)) {
+            properties.load(in);
+        }
+        properties.setProperty("generated", Long.toString(System.currentTimeMillis() + 86_400_000L));
+        try (OutputStream out = new FileOutputStream(metadataFile)) {
+            properties.store(out, null);
+        }
+    }
+
+    private String readMetadataFile(String suffix) throws IOException {
+        File file = Files.list(metadataPath).map(Path::toFile)
+                .filter(f -> f.getName().endsWith(suffix)).findFirst().get();
+        try (FileInputStream fin = new FileInputStream(file);
+                InputStream gzipStream = new GZIPInputStream(fin)) {
+            return TestUtils.readAll(gzipStream);
+        }
+    }
+
     /**
      * Factory method to provide a JMock action for touching metadata key files
      * @param path the path to the repodata directory
@@ -15,23 +15,56 @@
 package com.redhat.rhn.taskomatic.task.systems;
 
 import com.redhat.rhn.common.conf.Config;
-import com.redhat.rhn.domain.task.TaskFactory;
+import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.taskomatic.task.threaded.QueueDriver;
 import com.redhat.rhn.taskomatic.task.threaded.QueueWorker;
 
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * Driver for the threaded system overview update queue
  */
-public class SystemsOverviewUpdateDriver implements QueueDriver<Long> {
+public class SystemsOverviewUpdateDriver implements QueueDriver<SystemsOverviewUpdateDriver.Batch> {
 
     public static final String TASK_NAME = "update_system_overview";
     private Logger logger = null;
 
+    /**
+     * Systems refreshed together by one worker
+     */
+    public static class Batch {
+        private final List<Long> sids = new ArrayList<>();
+        private Date oldestRequest;
+
+        /**
+         * @return the IDs of the systems to refresh
+         */
+        public List<Long> getSids() {
+            return sids;
+        }
+
+        /**
+         * @return the time of the oldest refresh request of the batch
+         */
+        public Date getOldestRequest() {
+            return oldestRequest;
+        }
+
+        private void add(Long sid, Date requested) {
+            sids.add(sid);
+            if (oldestRequest == null || requested.before(oldestRequest)) {
+                oldestRequest = requested;
+            }
+        }
+    }
+
     @Override
     public void setLogger(Logger loggerIn) {
         logger = loggerIn;
@@ -43,12 +76,26 @@ public class SystemsOverviewUpdateDriver implements QueueDriver<Long> {
     }
 
     @Override
-    public List<Long> getCandidates() {
-        // Candidates are system IDs, deduplicated to avoid useless updates
-        return TaskFactory.getTaskListByNameLike(TASK_NAME).stream()
-            .map(task -> task.getData())
-            .distinct()
-            .collect(Collectors.toList());
+    public List<Batch> getCandidates() {
+        // Candidates are batches of system IDs, deduplicated to avoid useless updates,
+        // oldest requests first
+        SelectMode mode = ModeFactory.getMode("Task_queries", "system_overview_pending");
+        DataResult<Map<String, Object>> pending = mode.execute(Map.of("task_name", TASK_NAME));
+
+        int batchSize = Math.max(1, Config.get().getInt("taskomatic.systems_overview_update_batch_size", 1000));
+        List<Batch> batches = new ArrayList<>();
+        Batch batch = null;
+        for (Map<String, Object> row : pending) {
+            if (batch == null || batch.getSids().size() >= batchSize) {
+                batch = new Batch();
+                batches.add(batch);
+            }
+            batch.add((Long) row.get("sid"), (Date) row.get("earliest"));
+        }
+
+        SystemsOverviewUpdateStatistics.INSTANCE.setPending(pending.size(),
+                batches.isEmpty() ? null : batches.get(0).getOldestRequest());
+        return batches;
     }
 
     @Override
@@ -57,8 +104,8 @@ public class SystemsOverviewUpdateDriver implements QueueDriver<Long> {
     }
 
     @Override
-    public QueueWorker makeWorker(Long sid) {
-        return new SystemsOverviewUpdateWorker(sid, logger);
+    public QueueWorker makeWorker(Batch batch) {
+        return new SystemsOverviewUpdateWorker(batch.getSids(), batch.getOldestRequest(), logger);
     }
 
     @Override
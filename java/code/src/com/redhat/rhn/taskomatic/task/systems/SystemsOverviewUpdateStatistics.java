@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.systems;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Depth of the system overview update queue and latency of the refreshes.
+ */
+public class SystemsOverviewUpdateStatistics {
+
+    public static final SystemsOverviewUpdateStatistics INSTANCE = new SystemsOverviewUpdateStatistics();
+
+    private static final double NANOSECONDS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private volatile long pendingSystems;
+    private volatile long oldestPendingAgeMillis;
+    private volatile long lastBatchSystems;
+    private volatile long lastBatchNanos;
+    private volatile long lastBatchLatencyMillis;
+    private final AtomicLong refreshedSystems = new AtomicLong();
+
+    /**
+     * Records the content of the queue when it is drained
+     * @param systems the number of distinct systems waiting for a refresh
+     * @param oldestRequest the time of the oldest pending refresh request, null if there is none
+     */
+    public void setPending(long systems, Date oldestRequest) {
+        pendingSystems = systems;
+        oldestPendingAgeMillis = oldestRequest == null ? 0 : System.currentTimeMillis() - oldestRequest.getTime();
+    }
+
+    /**
+     * Records the refresh of a batch of systems
+     * @param systems the number of refreshed systems
+     * @param durationNanos the duration of the refresh in nanoseconds, commit included
+     * @param oldestRequest the time of the oldest refresh request of the batch
+     */
+    public void recordBatch(long systems, long durationNanos, Date oldestRequest) {
+        lastBatchSystems = systems;
+        lastBatchNanos = durationNanos;
+        lastBatchLatencyMillis = oldestRequest == null ? 0 : System.currentTimeMillis() - oldestRequest.getTime();
+        refreshedSystems.addAndGet(systems);
+    }
+
+    /**
+     * @return the number of distinct systems waiting for a refresh when the queue was last drained
+     */
+    public long getPendingSystems() {
+        return pendingSystems;
+    }
+
+    /**
+     * @return the age in seconds of the oldest pending refresh request when the queue was last drained,
+     * 0 if the queue was empty
+     */
+    public double getOldestPendingSeconds() {
+        return oldestPendingAgeMillis / 1000.0;
+    }
+
+    /**
+     * @return the number of systems refreshed by the last batch
+     */
+    public long getLastBatchSystems() {
+        return lastBatchSystems;
+    }
+
+    /**
+     * @return the duration of the last batch refresh in seconds
+     */
+    public double getLastBatchSeconds() {
+        return lastBatchNanos / NANOSECONDS_PER_SECOND;
+    }
+
+    /**
+     * @return the time in seconds between the oldest request of the last batch and its refresh
+     */
+    public double getLastBatchLatencySeconds() {
+        return lastBatchLatencyMillis / 1000.0;
+    }
+
+    /**
+     * @return the total number of refreshed systems
+     */
+    public long getRefreshedSystems() {
+        return refreshedSystems.get();
+    }
+}
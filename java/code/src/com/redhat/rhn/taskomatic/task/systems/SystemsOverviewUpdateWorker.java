@@ -16,6 +16,7 @@ package com.redhat.rhn.taskomatic.task.systems;
 
 import com.redhat.rhn.common.db.datasource.CallableMode;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.domain.org.OrgFactory;
 import com.redhat.rhn.domain.task.TaskFactory;
@@ -24,27 +25,33 @@ import com.redhat.rhn.taskomatic.task.threaded.TaskQueue;
 
 import org.apache.logging.log4j.Logger;
 
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
- * Performs overview table refresh for a given server
+ * Performs overview table refresh for a batch of servers
  */
 public class SystemsOverviewUpdateWorker implements QueueWorker {
 
     private final Logger logger;
-    private final Long sid;
+    private final List<Long> sids;
+    private final Date oldestRequest;
     private TaskQueue parentQueue;
 
 
     /**
      * Constructor
      *
-     * @param sidIn The ID of server to update the overview from
+     * @param sidsIn The IDs of the servers to update the overview from
+     * @param oldestRequestIn the time of the oldest update request for these servers
      * @param loggerIn the logger
      */
-    public SystemsOverviewUpdateWorker(Long sidIn, Logger loggerIn) {
-        sid = sidIn;
+    public SystemsOverviewUpdateWorker(List<Long> sidsIn, Date oldestRequestIn, Logger loggerIn) {
+        sids = sidsIn;
+        oldestRequest = oldestRequestIn;
         logger = loggerIn;
     }
 
@@ -56,10 +63,15 @@ public class SystemsOverviewUpdateWorker implements QueueWorker {
     @Override
     public void run() {
         try {
-            removeTask(sid);
+            long start = System.nanoTime();
+            // requests filed from now on will trigger a new refresh
+            removeTasks(sids);
             parentQueue.workerStarting();
-            doUpdate(sid);
+            doUpdate(sids);
             HibernateFactory.commitTransaction();
+            SystemsOverviewUpdateStatistics.INSTANCE.recordBatch(sids.size(), System.nanoTime() - start,
+                    oldestRequest);
+            logger.debug("Updated the overview of {} systems", sids.size());
         }
         catch (Exception e) {
             logger.error(e);
@@ -85,6 +97,23 @@ public class SystemsOverviewUpdateWorker implements QueueWorker {
         mode.execute(params, new HashMap<>());
     }
 
+    /**
+     * Trigger the set based update_system_overview_bulk procedure, refreshing all the systems
+     * with a single statement.
+     *
+     * This should only be called by the worker or unit tests.
+     *
+     * @param sidsIn systems to update
+     */
+    public static void doUpdate(List<Long> sidsIn) {
+        if (sidsIn.isEmpty()) {
+            return;
+        }
+        CallableMode mode = ModeFactory.getCallableMode("System_queries", "update_system_overview_bulk");
+        String array = sidsIn.stream().map(String::valueOf).collect(Collectors.joining(",", "{", "}"));
+        mode.execute(Map.of("sids", array), new HashMap<>());
+    }
+
     /**
      * Remove system overview update tasks for a system ID
      *
@@ -94,4 +123,15 @@ public class SystemsOverviewUpdateWorker implements QueueWorker {
         TaskFactory.deleteByOrgNameDataPriority(OrgFactory.getSatelliteOrg(), SystemsOverviewUpdateDriver.TASK_NAME,
                 sid, 0);
     }
+
+    /**
+     * Remove system overview update tasks for several system IDs
+     *
+     * @param sidsIn the System ids to remove the tasks from
+     */
+    public static void removeTasks(List<Long> sidsIn) {
+        WriteMode mode = ModeFactory.getWriteMode("Task_queries", "system_overview_dequeue");
+        mode.executeUpdate(Map.of("org_id", OrgFactory.getSatelliteOrg().getId(),
+                "task_name", SystemsOverviewUpdateDriver.TASK_NAME), sidsIn);
+    }
 }
@@ -15,7 +15,12 @@
 package com.redhat.rhn.taskomatic.task.test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.domain.channel.test.ChannelFactoryTest;
 import com.redhat.rhn.domain.server.Server;
 import com.redhat.rhn.domain.server.test.ServerFactoryTest;
 import com.redhat.rhn.domain.task.Task;
@@ -26,6 +31,10 @@ import com.redhat.rhn.testing.BaseTestCaseWithUser;
 import org.apache.logging.log4j.LogManager;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 /**
  * Tests for ErrataCacheDriver class.
  */
@@ -51,11 +60,42 @@ public class ErrataCacheDriverTest extends BaseTestCaseWithUser {
         ErrataCacheDriver driver = new ErrataCacheDriver();
         driver.setLogger(LogManager.getLogger(ErrataCacheDriverTest.class));
         int candidateCount = 0;
-        for (Task task : driver.getCandidates()) {
-            if (task.getData().equals(server.getId())) {
-                candidateCount++;
+        for (List<Task> tasks : driver.getCandidates()) {
+            for (Task task : tasks) {
+                if (task.getData().equals(server.getId())) {
+                    candidateCount++;
+                }
             }
         }
         assertEquals(1, candidateCount);
     }
+
+    /**
+     * Test the grouping of the server tasks by subscribed channels in getCandidates().
+     *
+     * @throws Exception in case of a problem
+     */
+    @Test
+    public void testGetCandidatesGroupsByChannels() throws Exception {
+        Channel channel = ChannelFactoryTest.createTestChannel(user);
+        Server server1 = ServerFactoryTest.createTestServer(user);
+        Server server2 = ServerFactoryTest.createTestServer(user);
+        Server server3 = ServerFactoryTest.createTestServer(user);
+        server1.addChannel(channel);
+        server2.addChannel(channel);
+        HibernateFactory.getSession().flush();
+        ErrataManager.insertErrataCacheTask(server1);
+        ErrataManager.insertErrataCacheTask(server2);
+        ErrataManager.insertErrataCacheTask(server3);
+
+        ErrataCacheDriver driver = new ErrataCacheDriver();
+        driver.setLogger(LogManager.getLogger(ErrataCacheDriverTest.class));
+        for (List<Task> tasks : driver.getCandidates()) {
+            Set<Long> sids = tasks.stream().map(Task::getData).collect(Collectors.toSet());
+            if (sids.contains(server1.getId())) {
+                assertTrue(sids.contains(server2.getId()));
+                assertFalse(sids.contains(server3.getId()));
+            }
+        }
+    }
 }
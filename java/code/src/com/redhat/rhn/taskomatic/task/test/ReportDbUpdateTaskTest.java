@@ -16,16 +16,22 @@ package com.redhat.rhn.taskomatic.task.test;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
-import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.hibernate.ConnectionManager;
 import com.redhat.rhn.common.hibernate.ConnectionManagerFactory;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.domain.channel.Channel;
 import com.redhat.rhn.domain.channel.test.ChannelFactoryTest;
+import com.redhat.rhn.domain.common.SatConfigFactory;
 import com.redhat.rhn.domain.rhnpackage.Package;
 import com.redhat.rhn.domain.rhnpackage.test.PackageTest;
+import com.redhat.rhn.domain.server.Server;
+import com.redhat.rhn.domain.server.test.ServerFactoryTest;
+import com.redhat.rhn.taskomatic.task.HubReportDbSyncStatistics;
 import com.redhat.rhn.taskomatic.task.ReportDBHelper;
 import com.redhat.rhn.taskomatic.task.ReportDbUpdateTask;
 import com.redhat.rhn.testing.JMockBaseTestCaseWithUser;
@@ -39,10 +45,11 @@ import org.quartz.JobExecutionContext;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import javax.persistence.Tuple;
 
@@ -92,18 +99,21 @@ public class ReportDbUpdateTaskTest extends JMockBaseTestCaseWithUser {
 
         ReportDBHelper testReportDbHelper = new ReportDBHelper() {
             @Override
-            public <T> Stream<DataResult<T>> batchStream(SelectMode query, int batchSize, int initialOffset) {
-                // If we are processing the second batch for the ChannelPackage table...
+            public long copyQueryToTable(Session sourceSession, SelectMode query, Session targetSession,
+                                         String table) {
+                // If we are processing the ChannelPackage table...
                 if ("ChannelPackage".equals(query.getName())) {
-                    // Add a new package to the first channel. This will change the order of the result and lead to the
-                    // same row from rhnchannelpackage to be extracted twice. This should not translate in an exception
+                    // Add a new package to the first channel after the previous tables were copied.
+                    // The whole table is copied in a single statement, so it is expected to show up exactly once
                     firstChannel.getPackages().add(testPackages.get(0));
+                    HibernateFactory.getSession().flush();
                 }
-                return super.batchStream(query, batchSize, initialOffset);
+                return super.copyQueryToTable(sourceSession, query, targetSession, table);
             }
         };
 
-        ReportDbUpdateTask task = new ReportDbUpdateTask(testReportDbHelper, 2);
+        // A single worker refreshes the tables in the current sessions, seeing the uncommitted test data
+        ReportDbUpdateTask task = new ReportDbUpdateTask(testReportDbHelper, 1);
 
 
         assertDoesNotThrow(() -> task.execute(contextMock));
@@ -111,7 +121,7 @@ public class ReportDbUpdateTaskTest extends JMockBaseTestCaseWithUser {
         String channelPackageQuery = "SELECT * FROM ChannelPackage WHERE mgm_id = 1 ORDER BY channel_id, package_id";
         List<Tuple> resultList = getSession().createNativeQuery(channelPackageQuery, Tuple.class).getResultList();
 
-        assertEquals(4, resultList.size());
+        assertEquals(5, resultList.size());
 
         // Extract a set of pairs from the tuples
         Set<Pair<Long, Long>> pairSet = resultList.stream()
@@ -124,6 +134,7 @@ public class ReportDbUpdateTaskTest extends JMockBaseTestCaseWithUser {
 
         // Build the set of expected pairs
         Set<Pair<Long, Long>> expectedPairSet = Set.of(
+            Pair.of(firstChannel.getId(), testPackages.get(0).getId()),
             Pair.of(firstChannel.getId(), testPackages.get(1).getId()),
             Pair.of(firstChannel.getId(), testPackages.get(2).getId()),
             Pair.of(secondChannel.getId(), testPackages.get(3).getId()),
@@ -134,6 +145,119 @@ public class ReportDbUpdateTaskTest extends JMockBaseTestCaseWithUser {
 
     }
 
+    @Test
+    public void incrementalUpdateRefreshesOnlyChangedSystems() throws Exception {
+        Server server = ServerFactoryTest.createTestServer(user);
+        HibernateFactory.getSession().flush();
+
+        // the change log is already on, switching it would commit the test data
+        SatConfigFactory.setSatConfigBooleanValue(SatConfigFactory.REPORTDB_CHANGE_LOG, true);
+
+        // A first update empties the change log
+        assertDoesNotThrow(() -> new ReportDbUpdateTask(ReportDBHelper.INSTANCE, 1, true).execute(contextMock));
+
+        server.setName("incremental-" + server.getId());
+        HibernateFactory.getSession().flush();
+
+        Set<String> systemTables = new HashSet<>();
+        Set<Long> refreshedSystems = new HashSet<>();
+        ReportDBHelper testReportDbHelper = new ReportDBHelper() {
+            @Override
+            public long copySystemsQueryToTable(Session sourceSession, SelectMode query, Session targetSession,
+                                                String table, List<String> systemColumns,
+                                                Collection<Long> systemIds) {
+                systemTables.add(table);
+                refreshedSystems.addAll(systemIds);
+                return super.copySystemsQueryToTable(sourceSession, query, targetSession, table, systemColumns,
+                        systemIds);
+            }
+        };
+
+        assertDoesNotThrow(() -> new ReportDbUpdateTask(testReportDbHelper, 1, true).execute(contextMock));
+
+        assertTrue(systemTables.contains("System"));
+        assertTrue(systemTables.contains("SystemPackageInstalled"));
+        assertFalse(systemTables.contains("ChannelPackage"));
+        assertEquals(Set.of(server.getId()), refreshedSystems);
+
+        String systemQuery = "SELECT profile_name FROM System WHERE mgm_id = 1 AND system_id = :sid";
+        List<Tuple> resultList = getSession().createNativeQuery(systemQuery, Tuple.class)
+                .setParameter("sid", server.getId())
+                .getResultList();
+
+        assertEquals(1, resultList.size());
+        assertEquals("incremental-" + server.getId(), resultList.get(0).get("profile_name", String.class));
+    }
+
+    @Test
+    public void copyRemoteTableReplacesThePeripheralRows() {
+        long mgmId = 999999;
+        // a second connection plays the report db of the peripheral server
+        ConnectionManager remoteCm = ConnectionManagerFactory.localReportingConnectionManager();
+        try {
+            Session remote = remoteCm.getSession();
+            for (long id = 1; id <= 3; id++) {
+                remote.createNativeQuery("INSERT INTO SystemGroup (mgm_id, system_group_id, name) " +
+                                "VALUES (1, :id, :name)")
+                        .setParameter("id", -id)
+                        .setParameter("name", "remote-group-" + id)
+                        .executeUpdate();
+            }
+            long remoteRows = ((Number) remote
+                    .createNativeQuery("SELECT COUNT(*) FROM SystemGroup WHERE mgm_id = 1")
+                    .getSingleResult()).longValue();
+
+            // a row of a previous copy, to be replaced
+            getSession().createNativeQuery("INSERT INTO SystemGroup (mgm_id, system_group_id, name) " +
+                            "VALUES (:mgm_id, -100, 'stale-group')")
+                    .setParameter("mgm_id", mgmId)
+                    .executeUpdate();
+
+            HubReportDbSyncStatistics statistics = new HubReportDbSyncStatistics();
+            long start = System.nanoTime();
+            ReportDBHelper.CopiedRows copied = ReportDBHelper.INSTANCE.copyRemoteTable(remote, getSession(),
+                    "SystemGroup", mgmId);
+            HubReportDbSyncStatistics.TableCopy copy = statistics.record("peripheral.example.com", "SystemGroup",
+                    copied.getRows(), copied.getBytes(), System.nanoTime() - start);
+
+            assertEquals(remoteRows, copied.getRows());
+            assertTrue(copied.getBytes() > 0);
+
+            List<String> names = getSession()
+                    .createNativeQuery("SELECT name FROM SystemGroup WHERE mgm_id = :mgm_id", Tuple.class)
+                    .setParameter("mgm_id", mgmId)
+                    .getResultList().stream()
+                    .map(t -> t.get("name", String.class))
+                    .collect(Collectors.toList());
+            assertEquals(remoteRows, names.size());
+            assertTrue(names.containsAll(List.of("remote-group-1", "remote-group-2", "remote-group-3")));
+            assertFalse(names.contains("stale-group"));
+
+            assertEquals(copy, statistics.getLastCopies().get("peripheral.example.com").get("SystemGroup"));
+            assertEquals(remoteRows, copy.getRows());
+            assertEquals(copied.getBytes(), copy.getBytes());
+            assertTrue(copy.getSeconds() > 0);
+            assertTrue(copy.getRowsPerSecond() > 0);
+        }
+        finally {
+            remoteCm.rollbackTransaction();
+            remoteCm.closeSession();
+            remoteCm.close();
+            reportDbConnectionManager.rollbackTransaction();
+        }
+    }
+
+    @Test
+    public void testStripPagingClause() {
+        assertEquals("SELECT id, name FROM rhnchannel",
+                ReportDBHelper.stripPagingClause("SELECT id, name FROM rhnchannel\n" +
+                        "        ORDER BY channel_id, package_id OFFSET :offset LIMIT :limit\n    "));
+        assertEquals("SELECT id, ROW_NUMBER() OVER (ORDER BY id) FROM rhnchannel",
+                ReportDBHelper.stripPagingClause("SELECT id, ROW_NUMBER() OVER (ORDER BY id) FROM rhnchannel" +
+                        " OFFSET :offset LIMIT :limit"));
+        assertThrows(IllegalArgumentException.class, () -> ReportDBHelper.stripPagingClause("SELECT 1"));
+    }
+
     private static synchronized Session getSession() {
         if (reportDbConnectionManager == null) {
             reportDbConnectionManager = ConnectionManagerFactory.localReportingConnectionManager();
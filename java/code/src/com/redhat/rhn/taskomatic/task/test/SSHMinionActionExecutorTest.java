@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.taskomatic.task.SSHMinionActionExecutor;
+import com.redhat.rhn.testing.JMockBaseTestCaseWithUser;
+
+import org.hibernate.Session;
+import org.jmock.Expectations;
+import org.junit.jupiter.api.Test;
+import org.quartz.JobDataMap;
+import org.quartz.JobDetail;
+import org.quartz.JobExecutionContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class SSHMinionActionExecutorTest extends JMockBaseTestCaseWithUser {
+
+    /**
+     * Records the executions instead of calling salt-ssh
+     */
+    private static class RecordingExecutor extends SSHMinionActionExecutor {
+
+        private final Map<String, String> calls = new ConcurrentHashMap<>();
+        private final Map<String, String> threads = new ConcurrentHashMap<>();
+        private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+        @Override
+        protected void executeOnMinion(long actionId, String sshMinionId, boolean forcePkgRefresh) {
+            // failures in the pool threads are only logged: the checks happen in the test thread
+            calls.put(sshMinionId, actionId + "/" + forcePkgRefresh);
+            threads.put(sshMinionId, Thread.currentThread().getName());
+            sessions.put(sshMinionId, HibernateFactory.getSession());
+        }
+    }
+
+    @Test
+    public void testExecuteOnSeveralMinions() {
+        JobExecutionContext ctx = mock(JobExecutionContext.class);
+        JobDetail jobDetail = mock(JobDetail.class);
+        context().checking(new Expectations() {{
+            allowing(ctx).getJobDetail();
+            will(returnValue(jobDetail));
+
+            JobDataMap dataMap = new JobDataMap();
+            dataMap.putAsString("action_id", 42L);
+            dataMap.putAsString("force_pkg_list_refresh", true);
+            dataMap.put("ssh_minion_ids", List.of("ssh-minion-1", "ssh-minion-2"));
+
+            allowing(jobDetail).getJobDataMap();
+            will(returnValue(dataMap));
+        }});
+
+        RecordingExecutor executor = new RecordingExecutor();
+        executor.execute(ctx);
+
+        assertEquals(Map.of("ssh-minion-1", "42/true", "ssh-minion-2", "42/true"), executor.calls);
+
+        // each minion runs on a thread of the shared pool
+        assertEquals(Set.of("ssh-minion-1", "ssh-minion-2"), executor.threads.keySet());
+        executor.threads.values().forEach(t -> assertTrue(t.startsWith("ssh-minion-action-executor-"), t));
+
+        // with its own Hibernate session, closed once the minion is done
+        Session first = executor.sessions.get("ssh-minion-1");
+        Session second = executor.sessions.get("ssh-minion-2");
+        assertNotSame(first, second);
+        assertNotSame(HibernateFactory.getSession(), first);
+        assertNotSame(HibernateFactory.getSession(), second);
+        assertFalse(first.isOpen());
+        assertFalse(second.isOpen());
+    }
+}
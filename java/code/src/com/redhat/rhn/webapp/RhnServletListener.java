@@ -19,9 +19,11 @@ import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.messaging.MessageQueue;
 import com.redhat.rhn.manager.satellite.StartupTasksCommand;
 import com.redhat.rhn.manager.satellite.UpgradeCommand;
+import com.redhat.rhn.manager.session.ApiSessionCache;
 
 import com.suse.manager.metrics.PrometheusExporter;
 import com.suse.manager.metrics.SystemsCollector;
+import com.suse.manager.metrics.SystemsStatistics;
 import com.suse.manager.reactor.SaltReactor;
 
 import org.apache.logging.log4j.LogManager;
@@ -168,6 +170,9 @@ public class RhnServletListener implements ServletContextListener {
         stopMessaging();
         logStop("Messaging");
 
+        SystemsStatistics.INSTANCE.stop();
+        ApiSessionCache.getInstance().stop();
+
         stopHibernate();
         logStop("Hibernate");
 
@@ -22,6 +22,8 @@ import static java.util.stream.Stream.concat;
 import static java.util.stream.Stream.empty;
 import static java.util.stream.Stream.of;
 
+import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.domain.credentials.Credentials;
 import com.redhat.rhn.domain.matcher.MatcherRunData;
@@ -33,8 +35,6 @@ import com.redhat.rhn.domain.scc.SCCCachingFactory;
 import com.redhat.rhn.domain.scc.SCCSubscription;
 import com.redhat.rhn.domain.server.PinnedSubscription;
 import com.redhat.rhn.domain.server.Server;
-import com.redhat.rhn.domain.server.ServerArch;
-import com.redhat.rhn.domain.server.ServerFactory;
 import com.redhat.rhn.domain.server.virtualhostmanager.VirtualHostManagerFactory;
 import com.redhat.rhn.manager.entitlement.EntitlementManager;
 
@@ -50,10 +50,18 @@ import com.suse.utils.Opt;
 import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -63,6 +71,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -78,13 +87,19 @@ public class MatcherJsonIO {
     private static final String AMD64_ARCH_STR = "amd64";
     private static final String S390_ARCH_STR = "s390";
     private static final String PPC64LE_ARCH_STR = "ppc64le";
+    private static final String S390X_ARCH_LABEL = "s390x";
+
+    private static final String MATCHER_QUERIES = "Matcher_queries";
+
+    /** Name of the systems list in the serialized InputJson */
+    private static final String SYSTEMS_FIELD = "systems";
+
+    /** Number of systems read by each round of projection queries */
+    private static final int SYSTEM_BATCH_SIZE = 1000;
 
     /** (De)serializer instance. */
     private Gson gson;
 
-    /** Cached instance of the s390x ServerArch object. */
-    private final ServerArch s390arch;
-
     /** Cached mandatory product ID for an s390x system. */
     private final Optional<Long> productIdForS390xSystem;
 
@@ -124,8 +139,6 @@ public class MatcherJsonIO {
             .setPrettyPrinting()
             .create();
 
-        s390arch = ServerFactory.lookupServerArchByLabel("s390x");
-
         productIdForS390xSystem = productIdForEntitlement("SUSE-Manager-Mgmt-Unlimited-Virtual-Z");
         productIdForSystem = productIdForEntitlement("SUSE-Manager-Mgmt-Single");
         lifecycleProductsTranslation = new HashMap<>();
@@ -158,25 +171,70 @@ public class MatcherJsonIO {
      * about systems on this Server
      */
     public List<SystemJson> getJsonSystems(boolean includeSelf, String arch, boolean selfMonitoringEnabled) {
-        Stream<SystemJson> systems = ServerFactory.list(true, true).stream()
-            .map(system -> {
-                Long cpus = system.getCpu() == null ? null : system.getCpu().getNrsocket();
-                Set<String> entitlements = system.getEntitlementLabels();
-                boolean virtualHost = entitlements.contains(EntitlementManager.VIRTUALIZATION_ENTITLED) ||
-                        !system.getGuests().isEmpty();
-                Set<Long> productIds = productIdsForServer(system, entitlements).collect(toSet());
-                return new SystemJson(
-                    system.getId(),
-                    system.getName(),
+        List<SystemJson> systems = new ArrayList<>();
+        forEachJsonSystem(systems::add);
+        jsonSystemForSelf(includeSelf, selfMonitoringEnabled, arch).forEach(systems::add);
+        return systems;
+    }
+
+    /**
+     * Passes the systems of this Server to a consumer, reading them in batches with a few
+     * projection queries instead of loading the Server entities.
+     * @param consumer the consumer of the systems
+     */
+    private void forEachJsonSystem(Consumer<SystemJson> consumer) {
+        DataResult<Map<String, Object>> idRows = ModeFactory.getMode(MATCHER_QUERIES, "system_ids").execute();
+        List<Long> ids = idRows.stream().map(row -> (Long) row.get("id")).collect(toList());
+        idRows.clear();
+
+        for (int i = 0; i < ids.size(); i += SYSTEM_BATCH_SIZE) {
+            List<Long> batch = ids.subList(i, Math.min(i + SYSTEM_BATCH_SIZE, ids.size()));
+
+            Map<Long, Set<String>> entitlements = new HashMap<>();
+            selectBatch("system_entitlements", batch).forEach(row -> entitlements
+                    .computeIfAbsent((Long) row.get("server_id"), k -> new HashSet<>())
+                    .add((String) row.get("label")));
+
+            // hosts with guests having an UUID, even if they are not registered systems
+            Map<Long, Set<Long>> guests = new HashMap<>();
+            selectBatch("system_guests", batch).forEach(row -> {
+                Set<Long> hostGuests = guests.computeIfAbsent((Long) row.get("server_id"), k -> new HashSet<>());
+                ofNullable((Long) row.get("guest_id")).ifPresent(hostGuests::add);
+            });
+
+            Map<Long, List<SUSEProduct>> products = new HashMap<>();
+            selectBatch("system_installed_products", batch).forEach(row -> {
+                SUSEProduct product = productFactory.lookup((String) row.get("name"), (String) row.get("version"),
+                        (String) row.get("release"), (String) row.get("arch"));
+                if (product != null) {
+                    products.computeIfAbsent((Long) row.get("server_id"), k -> new ArrayList<>()).add(product);
+                }
+            });
+
+            for (Map<String, Object> row : selectBatch("systems", batch)) {
+                Long id = (Long) row.get("id");
+                Number cpus = (Number) row.get("nrsocket");
+                Set<String> systemEntitlements = entitlements.getOrDefault(id, Set.of());
+                boolean virtualHost = systemEntitlements.contains(EntitlementManager.VIRTUALIZATION_ENTITLED) ||
+                        guests.containsKey(id);
+                boolean s390 = S390X_ARCH_LABEL.equals(row.get("arch_label"));
+                boolean payg = "Y".equals(row.get("payg"));
+                consumer.accept(new SystemJson(
+                    id,
+                    (String) row.get("name"),
                     cpus == null ? null : cpus.intValue(),
-                    !system.isVirtualGuest(),
+                    !Boolean.TRUE.equals(row.get("virtual_guest")),
                     virtualHost,
-                    getVirtualGuests(system),
-                    productIds
-                );
-            });
+                    guests.getOrDefault(id, new HashSet<>()),
+                    productIdsForServer(products.getOrDefault(id, List.of()), s390, payg, systemEntitlements)
+                            .collect(toSet())
+                ));
+            }
+        }
+    }
 
-        return concat(systems, jsonSystemForSelf(includeSelf, selfMonitoringEnabled, arch)).collect(toList());
+    private static DataResult<Map<String, Object>> selectBatch(String mode, List<Long> ids) {
+        return ModeFactory.getMode(MATCHER_QUERIES, mode).execute(ids);
     }
 
     private static Set<Long> getVirtualGuests(Server system) {
@@ -258,14 +316,56 @@ public class MatcherJsonIO {
      * @return an object representation of the JSON input for the matcher
      */
     public String generateMatcherInput(boolean includeSelf, String arch, boolean selfMonitoringEnabled) {
-        return gson.toJson(new InputJson(
+        StringWriter writer = new StringWriter();
+        try {
+            writeMatcherInput(writer, includeSelf, arch, selfMonitoringEnabled);
+        }
+        catch (IOException e) {
+            // a StringWriter does not throw
+            throw new UncheckedIOException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the input data for subscription-matcher. The systems are written as soon as they
+     * are read, so that the memory used does not grow with the number of systems.
+     *
+     * @param out the writer to write the JSON document to, it is not closed
+     * @param includeSelf see {@link #generateMatcherInput(boolean, String, boolean)}
+     * @param arch cpu architecture of this SUMA instance
+     * @param selfMonitoringEnabled whether the monitoring of SUMA server itself is enabled
+     * @throws IOException in case of write errors
+     */
+    public void writeMatcherInput(Writer out, boolean includeSelf, String arch, boolean selfMonitoringEnabled)
+            throws IOException {
+        // everything but the systems is small: serialize it as usual, streaming only the systems
+        JsonObject input = gson.toJsonTree(new InputJson(
             new Date(),
-            getJsonSystems(includeSelf, arch, selfMonitoringEnabled),
+            new ArrayList<>(),
             getJsonVirtualizationGroups(),
             getJsonProducts(),
             getJsonSubscriptions(),
             getJsonMatches())
-        );
+        ).getAsJsonObject();
+
+        JsonWriter writer = gson.newJsonWriter(out);
+        writer.beginObject();
+        for (Map.Entry<String, JsonElement> entry : input.entrySet()) {
+            writer.name(entry.getKey());
+            if (SYSTEMS_FIELD.equals(entry.getKey())) {
+                writer.beginArray();
+                Consumer<SystemJson> writeSystem = system -> gson.toJson(system, SystemJson.class, writer);
+                forEachJsonSystem(writeSystem);
+                jsonSystemForSelf(includeSelf, selfMonitoringEnabled, arch).forEach(writeSystem);
+                writer.endArray();
+            }
+            else {
+                gson.toJson(entry.getValue(), writer);
+            }
+        }
+        writer.endObject();
+        writer.flush();
     }
 
     /**
@@ -341,8 +441,9 @@ public class MatcherJsonIO {
      * subsription matching.
      * Also filters out the products for PAYG (Pay-As-You-Go) instances.
      */
-    private Stream<Long> productIdsForServer(Server server, Set<String> entitlements) {
-        List<SUSEProduct> products = productFactory.map(server.getInstalledProducts())
+    private Stream<Long> productIdsForServer(List<SUSEProduct> installedProducts, boolean s390, boolean payg,
+            Set<String> entitlements) {
+        List<SUSEProduct> products = installedProducts.stream()
                 .filter(product -> !"SLE-M-T".equals(product.getChannelFamily().getLabel()))
                 .collect(toList());
 
@@ -352,19 +453,19 @@ public class MatcherJsonIO {
 
         // add SUSE Manager entitlements
         return concat(
-                server.isPayg() ? Stream.empty() : products.stream().map(SUSEProduct::getProductId),
-                entitlementIdsForServer(server, entitlements)
+                payg ? Stream.empty() : products.stream().map(SUSEProduct::getProductId),
+                entitlementIdsForServer(s390, entitlements)
         );
     }
 
     /**
      * Returns SUSE Manager entitlement product ids for a server.
      */
-    private Stream<Long> entitlementIdsForServer(Server server, Set<String> entitlements) {
+    private Stream<Long> entitlementIdsForServer(boolean s390, Set<String> entitlements) {
         Optional<Long> lifecycleProduct = Optional.empty();
         if (entitlements.contains(EntitlementManager.SALT_ENTITLED) ||
                 entitlements.contains(EntitlementManager.ENTERPRISE_ENTITLED)) {
-            if (server.getServerArch().equals(s390arch)) {
+            if (s390) {
                 lifecycleProduct = productIdForS390xSystem;
             }
             else {
@@ -373,7 +474,7 @@ public class MatcherJsonIO {
         }
         Optional<Long> monitoringProduct = Optional.empty();
         if (entitlements.contains(EntitlementManager.MONITORING_ENTITLED)) {
-            if (server.getServerArch().equals(s390arch)) {
+            if (s390) {
                 monitoringProduct = monitoringProductIdS390x;
             }
             else {
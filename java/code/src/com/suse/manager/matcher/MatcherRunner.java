@@ -30,11 +30,14 @@ import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
@@ -88,18 +91,21 @@ public class MatcherRunner {
             boolean isSelfMonitoringEnabled = MonitoringService.isMonitoringEnabled();
             PinnedSubscriptionFactory.getInstance().cleanStalePins();
             String arch = System.getProperty("os.arch");
-            String s = new MatcherJsonIO().generateMatcherInput(isISSMaster, arch, isSelfMonitoringEnabled);
+            MatcherJsonIO matcherJsonIO = new MatcherJsonIO();
 
             Process p = r.exec(args.toArray(new String[0]));
-            PrintWriter stdin = new PrintWriter(p.getOutputStream());
-            stdin.println(s);
-            stdin.flush();
-            stdin.close();
 
             // we need to exhaust the process output not to get stuck
             errorReaderService = exhaustOutputOnBackground(p.getErrorStream());
             inputReaderService = exhaustOutputOnBackground(p.getInputStream());
 
+            // stream the input instead of building it in memory first
+            try (Writer stdin = new BufferedWriter(new OutputStreamWriter(p.getOutputStream(),
+                    StandardCharsets.UTF_8))) {
+                matcherJsonIO.writeMatcherInput(stdin, isISSMaster, arch, isSelfMonitoringEnabled);
+                stdin.write(System.lineSeparator());
+            }
+
             int exitCode = p.waitFor();
             if (exitCode != 0) {
                 logger.error("Error while calling the subscription-matcher, exit code {}", exitCode);
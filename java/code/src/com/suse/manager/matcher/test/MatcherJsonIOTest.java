@@ -55,6 +55,7 @@ import com.suse.manager.webui.services.iface.MonitoringManager;
 import com.suse.manager.webui.services.iface.SaltApi;
 import com.suse.manager.webui.services.iface.VirtManager;
 import com.suse.manager.webui.services.test.TestSaltApi;
+import com.suse.matcher.json.InputJson;
 import com.suse.matcher.json.MatchJson;
 import com.suse.matcher.json.ProductJson;
 import com.suse.matcher.json.SubscriptionJson;
@@ -62,12 +63,16 @@ import com.suse.matcher.json.SystemJson;
 import com.suse.matcher.json.VirtualizationGroupJson;
 import com.suse.scc.model.SCCSubscriptionJson;
 
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.GsonBuilder;
+
 import org.jmock.Expectations;
 import org.jmock.imposters.ByteBuddyClassImposteriser;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
@@ -540,6 +545,40 @@ public class MatcherJsonIOTest extends JMockBaseTestCaseWithUser {
         assertTrue(virtualizationGroup.getVirtualGuestIds().containsAll(guestIds));
     }
 
+    @Test
+    public void testWriteMatcherInput() throws Exception {
+        SUSEProductTestUtils.clearAllProducts();
+        SUSEProductTestUtils.createVendorSUSEProducts();
+        SUSEProductTestUtils.createVendorEntitlementProducts();
+
+        Server system = ServerTestUtils.createTestSystem();
+        system.setName("streamed.example.com");
+        system.setCpu(createCPU(system, 2L));
+        ServerFactory.save(system);
+
+        MatcherJsonIO matcherJsonIO = new MatcherJsonIO();
+        StringWriter writer = new StringWriter();
+        matcherJsonIO.writeMatcherInput(writer, true, AMD64_ARCH, false);
+
+        InputJson input = new GsonBuilder()
+                .setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSX")
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .create()
+                .fromJson(writer.toString(), InputJson.class);
+
+        // the streamed systems are the same as the listed ones
+        List<SystemJson> expected = matcherJsonIO.getJsonSystems(true, AMD64_ARCH, false);
+        assertEquals(expected.size(), input.getSystems().size());
+        SystemJson streamed = findSystem(system.getId(), input.getSystems());
+        assertEquals("streamed.example.com", streamed.getName());
+        assertEquals(2, streamed.getCpus().intValue());
+        assertEquals(findSystem(system.getId(), expected).getProductIds(), streamed.getProductIds());
+        assertTrue(streamed.getPhysical());
+        assertNotNull(findSystem(MatcherJsonIO.SELF_SYSTEM_ID, input.getSystems()));
+
+        assertEquals(matcherJsonIO.getJsonProducts().size(), input.getProducts().size());
+    }
+
     @Test
     public void testPinsToJson() throws Exception {
         File subJson = new File(TestUtils.findTestData(
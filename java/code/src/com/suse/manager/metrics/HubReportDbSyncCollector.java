@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.metrics;
+
+import com.redhat.rhn.taskomatic.task.HubReportDbSyncStatistics;
+
+import java.util.List;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
+
+/**
+ * Collector for the copies of the reporting database tables from the peripheral servers.
+ */
+public class HubReportDbSyncCollector extends Collector {
+
+    private static final String PREFIX = "hub_reportdb_sync";
+    private static final List<String> LABELS = List.of("server", "table");
+
+    private final HubReportDbSyncStatistics statistics;
+
+    /**
+     * Standard constructor.
+     * @param statisticsIn the statistics of the copies
+     */
+    public HubReportDbSyncCollector(HubReportDbSyncStatistics statisticsIn) {
+        this.statistics = statisticsIn;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        GaugeMetricFamily rows = new GaugeMetricFamily(PREFIX + "_rows",
+                PREFIX + " - Number of rows of the last copy of the table", LABELS);
+        GaugeMetricFamily bytes = new GaugeMetricFamily(PREFIX + "_bytes",
+                PREFIX + " - Size of the last copy of the table", LABELS);
+        GaugeMetricFamily seconds = new GaugeMetricFamily(PREFIX + "_seconds",
+                PREFIX + " - Duration of the last copy of the table", LABELS);
+        GaugeMetricFamily rowsPerSecond = new GaugeMetricFamily(PREFIX + "_rows_per_second",
+                PREFIX + " - Copy rate of the last copy of the table", LABELS);
+
+        statistics.getLastCopies().forEach((server, tables) -> tables.forEach((table, copy) -> {
+            List<String> label = List.of(server, table);
+            rows.addMetric(label, copy.getRows());
+            bytes.addMetric(label, copy.getBytes());
+            seconds.addMetric(label, copy.getSeconds());
+            rowsPerSecond.addMetric(label, copy.getRowsPerSecond());
+        }));
+        return List.of(rows, bytes, seconds, rowsPerSecond);
+    }
+}
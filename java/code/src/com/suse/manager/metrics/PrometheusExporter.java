@@ -15,13 +15,19 @@
 package com.suse.manager.metrics;
 
 import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.taskomatic.task.HubReportDbSyncStatistics;
+import com.redhat.rhn.taskomatic.task.systems.SystemsOverviewUpdateStatistics;
+
+import com.suse.manager.reactor.PGEventQueueStatistics;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.quartz.Scheduler;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.IntSupplier;
 
 import io.prometheus.client.exporter.HTTPServer;
 
@@ -64,6 +70,20 @@ public enum PrometheusExporter {
         }
     }
 
+    /**
+     * Registers a thread pool for monitoring, together with the durations of its tasks.
+     * @param pool a thread pool
+     * @param poolId a unique ID for the pool
+     * @param queueSize supplies the number of tasks waiting to be executed
+     * @param taskDurations the durations of the executed tasks
+     */
+    public void registerThreadPool(ThreadPoolExecutor pool, String poolId, IntSupplier queueSize,
+                                   TaskDurations taskDurations) {
+        if (ENABLED) {
+            new ThreadPoolCollector(pool, poolId, queueSize, taskDurations).register();
+        }
+    }
+
     /**
      * Registers a Scheduler for monitoring.
      * @param scheduler a scheduler
@@ -76,11 +96,42 @@ public enum PrometheusExporter {
     }
 
     /**
-     * Register collector for systems statistics
+     * Registers the Salt event queues for monitoring.
+     * @param queues the statistics of the queues
+     */
+    public void registerSaltEventQueues(List<PGEventQueueStatistics> queues) {
+        if (ENABLED) {
+            new SaltEventQueueCollector(queues).register();
+        }
+    }
+
+    /**
+     * Registers the copies of the reporting database tables from the peripheral servers for monitoring.
+     * @param statistics the statistics of the copies
+     */
+    public void registerHubReportDbSync(HubReportDbSyncStatistics statistics) {
+        if (ENABLED) {
+            new HubReportDbSyncCollector(statistics).register();
+        }
+    }
+
+    /**
+     * Registers the system overview update queue for monitoring.
+     * @param statistics the statistics of the queue
+     */
+    public void registerSystemsOverviewUpdate(SystemsOverviewUpdateStatistics statistics) {
+        if (ENABLED) {
+            new SystemsOverviewUpdateCollector(statistics).register();
+        }
+    }
+
+    /**
+     * Register collector for systems statistics, and start refreshing them in the background
      */
     public void registerSystemsCollector() {
         if (ENABLED) {
-            new SystemsCollector().register();
+            SystemsStatistics.INSTANCE.start(ConfigDefaults.get().getPrometheusSystemsRefreshInterval());
+            new SystemsCollector(SystemsStatistics.INSTANCE).register();
         }
     }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.metrics;
+
+import com.suse.manager.reactor.PGEventQueueStatistics;
+
+import java.util.List;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+
+/**
+ * Collector for the Salt event queues.
+ */
+public class SaltEventQueueCollector extends Collector {
+
+    private static final String PREFIX = "salt_events";
+    private static final List<String> LABELS = List.of("queue");
+
+    private final List<PGEventQueueStatistics> queues;
+
+    /**
+     * Standard constructor.
+     * @param queuesIn the statistics of the queues
+     */
+    public SaltEventQueueCollector(List<PGEventQueueStatistics> queuesIn) {
+        this.queues = queuesIn;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        GaugeMetricFamily backlog = new GaugeMetricFamily(PREFIX + "_backlog",
+                PREFIX + " - Estimated number of events waiting to be processed", LABELS);
+        GaugeMetricFamily batchSize = new GaugeMetricFamily(PREFIX + "_batch_size",
+                PREFIX + " - Number of events of the next batch", LABELS);
+        GaugeMetricFamily eventsPerSecond = new GaugeMetricFamily(PREFIX + "_per_second",
+                PREFIX + " - Processing rate of the last batch", LABELS);
+        CounterMetricFamily processed = new CounterMetricFamily(PREFIX + "_processed",
+                PREFIX + " - Number of events ever processed", LABELS);
+
+        for (PGEventQueueStatistics queue : queues) {
+            List<String> label = List.of(Integer.toString(queue.getQueue()));
+            backlog.addMetric(label, queue.getBacklog());
+            batchSize.addMetric(label, queue.getBatchSize());
+            eventsPerSecond.addMetric(label, queue.getEventsPerSecond());
+            processed.addMetric(label, queue.getProcessed());
+        }
+        return List.of(backlog, batchSize, eventsPerSecond, processed);
+    }
+}
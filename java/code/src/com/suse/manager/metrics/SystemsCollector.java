@@ -11,53 +11,63 @@
 
 package com.suse.manager.metrics;
 
-import com.redhat.rhn.common.hibernate.HibernateFactory;
-import com.redhat.rhn.domain.common.SatConfigFactory;
-
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.persistence.Tuple;
-
 import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
 
+/**
+ * Collector for the systems statistics. Scrapes read the snapshot periodically refreshed
+ * by {@link SystemsStatistics}.
+ */
 public class SystemsCollector extends Collector {
 
     public static final String PRODUCT_NAME = "uyuni";
 
-    private static long getCountFromNativeQuery(String selectCountQuery) {
-        return HibernateFactory.getSession()
-                .createNativeQuery(selectCountQuery, Tuple.class)
-                .getSingleResult()
-                .get("count", Number.class)
-                .longValue();
-    }
+    private static final List<String> LABELS = List.of("org_id", "os_family", "contact_method");
+
+    private final SystemsStatistics statistics;
 
     /**
-     * Returns the number of systems with outdated packages
-     *
-     * @return number of systems with outdated packages
+     * Standard constructor.
+     * @param statisticsIn the systems statistics
      */
-    public static long getNumberOfOutdatedSystems() {
-        String selectCountQuery = "SELECT COUNT(DISTINCT(id)) FROM susesystemoverview WHERE outdated_packages > 0";
-        return getCountFromNativeQuery(selectCountQuery);
+    public SystemsCollector(SystemsStatistics statisticsIn) {
+        this.statistics = statisticsIn;
     }
 
     @Override
     public List<MetricFamilySamples> collect() {
         List<MetricFamilySamples> out = new ArrayList<>();
         long start = System.nanoTime();
-        long numberOfSystems = getNumberOfSystems();
+        SystemsStatistics.Snapshot snapshot = statistics.getSnapshot();
 
-        if (numberOfSystems > 0) {
+        if (snapshot != null && snapshot.getSystems() > 0) {
             out.add(CustomCollectorUtils.gaugeFor("all_systems", "Number of all systems",
-                    numberOfSystems, PRODUCT_NAME));
+                    snapshot.getSystems(), PRODUCT_NAME));
             out.add(CustomCollectorUtils.gaugeFor("virtual_systems", "Number of virtual systems",
-                    getNumberOfVirtualSystems(), PRODUCT_NAME));
+                    snapshot.getVirtualSystems(), PRODUCT_NAME));
             out.add(CustomCollectorUtils.gaugeFor("inactive_systems", "Number of inactive systems",
-                    getNumberOfInactiveSystems(), PRODUCT_NAME));
+                    snapshot.getInactiveSystems(), PRODUCT_NAME));
             out.add(CustomCollectorUtils.gaugeFor("outdated_systems", "Number of systems with outdated packages",
-                    getNumberOfOutdatedSystems(), PRODUCT_NAME));
+                    snapshot.getOutdatedSystems(), PRODUCT_NAME));
+            out.add(CustomCollectorUtils.gaugeFor("systems_refresh_duration_seconds", "Duration of the last " +
+                    "Uyuni systems statistics refresh", snapshot.getRefreshSeconds(), PRODUCT_NAME));
+            out.add(CustomCollectorUtils.gaugeFor("systems_statistics_age_seconds", "Age of the Uyuni systems " +
+                    "statistics", snapshot.getAgeSeconds(), PRODUCT_NAME));
+
+            GaugeMetricFamily systems = groupGauge("systems", "Number of systems");
+            GaugeMetricFamily virtual = groupGauge("systems_virtual", "Number of virtual systems");
+            GaugeMetricFamily inactive = groupGauge("systems_inactive", "Number of inactive systems");
+            GaugeMetricFamily outdated = groupGauge("systems_outdated", "Number of systems with outdated packages");
+            for (SystemsStatistics.Group group : snapshot.getGroups()) {
+                systems.addMetric(group.getLabels(), group.getSystems());
+                virtual.addMetric(group.getLabels(), group.getVirtualSystems());
+                inactive.addMetric(group.getLabels(), group.getInactiveSystems());
+                outdated.addMetric(group.getLabels(), group.getOutdatedSystems());
+            }
+            out.addAll(List.of(systems, virtual, inactive, outdated));
             out.add(CustomCollectorUtils.gaugeFor("systems_scrape_duration_seconds", "Duration of Uyuni systems " +
                     "statistics scrape", (System.nanoTime() - start) / 1.0E9, PRODUCT_NAME));
         }
@@ -65,27 +75,8 @@ public class SystemsCollector extends Collector {
         return out;
     }
 
-    private long getNumberOfSystems() {
-        String selectCountQuery = "SELECT COUNT(DISTINCT(id)) FROM rhnServer";
-        return getCountFromNativeQuery(selectCountQuery);
-    }
-
-    private long getNumberOfVirtualSystems() {
-        String selectCountQuery = "SELECT COUNT(DISTINCT(virtual_system_id)) FROM rhnvirtualinstance";
-        return getCountFromNativeQuery(selectCountQuery);
-    }
-
-    private long getNumberOfInactiveSystems() {
-        String selectCountQuery = "SELECT COUNT(DISTINCT(server_id)) " +
-                "FROM rhnServerInfo " +
-                "WHERE checkin < CURRENT_TIMESTAMP - NUMTODSINTERVAL(:checkin_threshold, 'second')";
-        long threshold = SatConfigFactory.getSatConfigLongValue(SatConfigFactory.SYSTEM_CHECKIN_THRESHOLD, 1L);
-        long secondsInDay = 60L * 60 * 24;
-        return HibernateFactory.getSession()
-                .createNativeQuery(selectCountQuery, Tuple.class)
-                .setParameter("checkin_threshold", threshold * secondsInDay)
-                .getSingleResult()
-                .get("count", Number.class)
-                .longValue();
+    private static GaugeMetricFamily groupGauge(String metricName, String help) {
+        return new GaugeMetricFamily(PRODUCT_NAME + "_" + metricName,
+                PRODUCT_NAME + " - " + help + " per organization, OS family and contact method", LABELS);
     }
 }
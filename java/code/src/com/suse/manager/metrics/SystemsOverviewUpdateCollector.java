@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.metrics;
+
+import com.redhat.rhn.taskomatic.task.systems.SystemsOverviewUpdateStatistics;
+
+import java.util.List;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+
+/**
+ * Collector for the system overview update queue.
+ */
+public class SystemsOverviewUpdateCollector extends Collector {
+
+    private static final String PREFIX = "system_overview_update";
+
+    private final SystemsOverviewUpdateStatistics statistics;
+
+    /**
+     * Standard constructor.
+     * @param statisticsIn the statistics of the queue
+     */
+    public SystemsOverviewUpdateCollector(SystemsOverviewUpdateStatistics statisticsIn) {
+        this.statistics = statisticsIn;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        return List.of(
+                new GaugeMetricFamily(PREFIX + "_queue_systems",
+                        PREFIX + " - Number of systems waiting for a refresh when the queue was last drained",
+                        statistics.getPendingSystems()),
+                new GaugeMetricFamily(PREFIX + "_queue_oldest_seconds",
+                        PREFIX + " - Age of the oldest refresh request when the queue was last drained",
+                        statistics.getOldestPendingSeconds()),
+                new GaugeMetricFamily(PREFIX + "_batch_systems",
+                        PREFIX + " - Number of systems refreshed by the last batch",
+                        statistics.getLastBatchSystems()),
+                new GaugeMetricFamily(PREFIX + "_batch_seconds",
+                        PREFIX + " - Duration of the last batch refresh",
+                        statistics.getLastBatchSeconds()),
+                new GaugeMetricFamily(PREFIX + "_latency_seconds",
+                        PREFIX + " - Time between the oldest request of the last batch and its refresh",
+                        statistics.getLastBatchLatencySeconds()),
+                new CounterMetricFamily(PREFIX + "_systems",
+                        PREFIX + " - Number of refreshed systems",
+                        statistics.getRefreshedSystems()));
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.metrics;
+
+import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.SelectMode;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.common.SatConfigFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+/**
+ * Snapshot of the systems statistics exported to Prometheus. The statistics are computed
+ * with a single aggregate query on a schedule of their own, so that scrapes only read memory.
+ * Registrations and deletions request an early refresh once committed.
+ */
+public class SystemsStatistics {
+
+    public static final SystemsStatistics INSTANCE = new SystemsStatistics();
+
+    private static final Logger LOG = LogManager.getLogger(SystemsStatistics.class);
+
+    // Seconds to wait after a refresh request, to coalesce the requests of a registration burst
+    private static final long REQUESTED_REFRESH_DELAY = 10;
+    private static final long SECONDS_IN_DAY = 60L * 60 * 24;
+
+    private volatile Snapshot snapshot;
+    private final AtomicBoolean refreshRequested = new AtomicBoolean();
+    private ScheduledExecutorService refresher;
+
+    /**
+     * Statistics of the systems sharing organization, OS family and contact method
+     */
+    public static class Group {
+        private final List<String> labels;
+        private final long systems;
+        private final long virtualSystems;
+        private final long inactiveSystems;
+        private final long outdatedSystems;
+
+        private Group(List<String> labelsIn, long systemsIn, long virtualSystemsIn, long inactiveSystemsIn,
+                      long outdatedSystemsIn) {
+            labels = labelsIn;
+            systems = systemsIn;
+            virtualSystems = virtualSystemsIn;
+            inactiveSystems = inactiveSystemsIn;
+            outdatedSystems = outdatedSystemsIn;
+        }
+
+        /**
+         * @return the organization id, OS family and contact method of the systems
+         */
+        public List<String> getLabels() {
+            return labels;
+        }
+
+        /**
+         * @return the number of systems
+         */
+        public long getSystems() {
+            return systems;
+        }
+
+        /**
+         * @return the number of virtual systems
+         */
+        public long getVirtualSystems() {
+            return virtualSystems;
+        }
+
+        /**
+         * @return the number of systems which did not check in within the threshold
+         */
+        public long getInactiveSystems() {
+            return inactiveSystems;
+        }
+
+        /**
+         * @return the number of systems with outdated packages
+         */
+        public long getOutdatedSystems() {
+            return outdatedSystems;
+        }
+    }
+
+    /**
+     * Statistics computed by a refresh
+     */
+    public static class Snapshot {
+        private final List<Group> groups;
+        private final long refreshedAt;
+        private final double refreshSeconds;
+
+        private Snapshot(List<Group> groupsIn, long refreshedAtIn, double refreshSecondsIn) {
+            groups = groupsIn;
+            refreshedAt = refreshedAtIn;
+            refreshSeconds = refreshSecondsIn;
+        }
+
+        /**
+         * @return the statistics per organization, OS family and contact method
+         */
+        public List<Group> getGroups() {
+            return groups;
+        }
+
+        /**
+         * @return the number of systems
+         */
+        public long getSystems() {
+            return groups.stream().mapToLong(Group::getSystems).sum();
+        }
+
+        /**
+         * @return the number of virtual systems
+         */
+        public long getVirtualSystems() {
+            return groups.stream().mapToLong(Group::getVirtualSystems).sum();
+        }
+
+        /**
+         * @return the number of systems which did not check in within the threshold
+         */
+        public long getInactiveSystems() {
+            return groups.stream().mapToLong(Group::getInactiveSystems).sum();
+        }
+
+        /**
+         * @return the number of systems with outdated packages
+         */
+        public long getOutdatedSystems() {
+            return groups.stream().mapToLong(Group::getOutdatedSystems).sum();
+        }
+
+        /**
+         * @return the age of the statistics in seconds
+         */
+        public double getAgeSeconds() {
+            return (System.currentTimeMillis() - refreshedAt) / 1000.0;
+        }
+
+        /**
+         * @return the duration of the refresh in seconds
+         */
+        public double getRefreshSeconds() {
+            return refreshSeconds;
+        }
+    }
+
+    /**
+     * Returns the last computed statistics
+     * @return the statistics, null if they were never computed
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Computes the statistics in the current session and stores them as the last snapshot
+     * @return the computed statistics
+     */
+    public Snapshot refresh() {
+        long start = System.nanoTime();
+        long threshold = SatConfigFactory.getSatConfigLongValue(SatConfigFactory.SYSTEM_CHECKIN_THRESHOLD, 1L);
+        SelectMode mode = ModeFactory.getMode("System_queries", "systems_metrics");
+        DataResult<Map<String, Object>> rows = mode.execute(Map.of("checkin_threshold", threshold * SECONDS_IN_DAY));
+
+        Map<List<String>, Group> groups = new LinkedHashMap<>();
+        for (Map<String, Object> row : rows) {
+            List<String> labels = List.of(String.valueOf(row.get("org_id")), (String) row.get("os_family"),
+                    (String) row.get("contact_method"));
+            groups.put(labels, new Group(labels,
+                    ((Number) row.get("systems")).longValue(),
+                    ((Number) row.get("virtual_systems")).longValue(),
+                    ((Number) row.get("inactive_systems")).longValue(),
+                    ((Number) row.get("outdated_systems")).longValue()));
+        }
+        Snapshot result = new Snapshot(List.copyOf(groups.values()), System.currentTimeMillis(),
+                (System.nanoTime() - start) / 1.0E9);
+        snapshot = result;
+        return result;
+    }
+
+    /**
+     * Starts refreshing the statistics in the background
+     * @param intervalSeconds the seconds between two refreshes
+     */
+    public synchronized void start(long intervalSeconds) {
+        if (refresher != null) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "systems-statistics-refresher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refreshInBackground, 0, Math.max(1, intervalSeconds),
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops refreshing the statistics in the background
+     */
+    public synchronized void stop() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+            refresher = null;
+        }
+    }
+
+    /**
+     * Requests a refresh of the statistics ahead of schedule, e.g. because systems were
+     * registered or deleted. Requests arriving before the refresh happens are coalesced.
+     * Does nothing if the statistics are not refreshed in the background.
+     */
+    public synchronized void requestRefresh() {
+        if (refresher != null && refreshRequested.compareAndSet(false, true)) {
+            refresher.schedule(this::refreshInBackground, REQUESTED_REFRESH_DELAY, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Requests a refresh of the statistics once the current transaction is committed, so that
+     * the refresh sees its changes. Nothing is requested if the transaction is rolled back.
+     */
+    public void requestRefreshAfterCommit() {
+        HibernateFactory.getSession().getTransaction().registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // nothing to do before the commit
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    requestRefresh();
+                }
+            }
+        });
+    }
+
+    private void refreshInBackground() {
+        refreshRequested.set(false);
+        try {
+            refresh();
+        }
+        catch (Exception e) {
+            LOG.warn("Unable to refresh the systems statistics", e);
+        }
+        finally {
+            // read only, nothing to commit
+            HibernateFactory.rollbackTransactionAndCloseSession(false);
+        }
+    }
+}
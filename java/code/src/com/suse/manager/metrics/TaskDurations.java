@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.prometheus.client.SummaryMetricFamily;
+
+/**
+ * Accumulates the number and the total duration of the executions of named tasks.
+ */
+public class TaskDurations {
+
+    private static final double NANOSECONDS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<String, Duration> durations = new ConcurrentHashMap<>();
+
+    /**
+     * Accumulated duration of a task
+     */
+    private static class Duration {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+    }
+
+    /**
+     * Records an execution of a task.
+     * @param task the task name
+     * @param durationNanos the duration of the execution in nanoseconds
+     */
+    public void record(String task, long durationNanos) {
+        Duration duration = durations.computeIfAbsent(task, t -> new Duration());
+        duration.count.increment();
+        duration.nanos.add(durationNanos);
+    }
+
+    /**
+     * Returns the number of recorded executions of a task.
+     * @param task the task name
+     * @return the number of executions
+     */
+    public long getCount(String task) {
+        Duration duration = durations.get(task);
+        return duration == null ? 0 : duration.count.sum();
+    }
+
+    /**
+     * Returns a summary of the durations, labelled by task.
+     * @param metricName name of the metric
+     * @param help help string
+     * @param metricPrefix prefix for the metric name
+     * @return a Summary object
+     */
+    public SummaryMetricFamily summaryFor(String metricName, String help, String metricPrefix) {
+        SummaryMetricFamily summary = new SummaryMetricFamily(metricPrefix + "_" + metricName,
+                metricPrefix + " - " + help, List.of("task"));
+        durations.forEach((task, duration) -> summary.addMetric(List.of(task), duration.count.sum(),
+                duration.nanos.sum() / NANOSECONDS_PER_SECOND));
+        return summary;
+    }
+}
@@ -17,6 +17,7 @@ package com.suse.manager.metrics;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.IntSupplier;
 
 import io.prometheus.client.Collector;
 
@@ -27,6 +28,8 @@ public class ThreadPoolCollector extends Collector {
 
     private ThreadPoolExecutor pool;
     private String poolId;
+    private IntSupplier queueSize;
+    private TaskDurations taskDurations;
 
     /**
      * Standard constructor.
@@ -34,8 +37,22 @@ public class ThreadPoolCollector extends Collector {
      * @param poolIdIn a unique ID for the pool
      */
     public ThreadPoolCollector(ThreadPoolExecutor poolIn, String poolIdIn) {
+        this(poolIn, poolIdIn, () -> poolIn.getQueue().size(), null);
+    }
+
+    /**
+     * Constructor for pools fed by a dispatcher keeping its own queue.
+     * @param poolIn a thread pool
+     * @param poolIdIn a unique ID for the pool
+     * @param queueSizeIn supplies the number of tasks waiting to be executed
+     * @param taskDurationsIn the durations of the executed tasks, or null
+     */
+    public ThreadPoolCollector(ThreadPoolExecutor poolIn, String poolIdIn, IntSupplier queueSizeIn,
+                               TaskDurations taskDurationsIn) {
         this.pool = poolIn;
         this.poolId = poolIdIn;
+        this.queueSize = queueSizeIn;
+        this.taskDurations = taskDurationsIn;
     }
 
     @Override
@@ -50,6 +67,12 @@ public class ThreadPoolCollector extends Collector {
                 "Number of tasks ever submitted", this.pool.getTaskCount(), this.poolId));
         out.add(CustomCollectorUtils.counterFor("thread_pool_completed_task_count",
                 "Number of tasks ever completed", this.pool.getCompletedTaskCount(), this.poolId));
+        out.add(CustomCollectorUtils.gaugeFor("thread_pool_queue_size",
+                "Number of tasks waiting to be executed", this.queueSize.getAsInt(), this.poolId));
+        if (this.taskDurations != null) {
+            out.add(this.taskDurations.summaryFor("thread_pool_task_duration_seconds",
+                    "Execution time of the tasks", this.poolId));
+        }
 
         return out;
     }
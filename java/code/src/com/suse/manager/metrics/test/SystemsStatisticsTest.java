@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.metrics.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.domain.rhnpackage.Package;
+import com.redhat.rhn.domain.rhnpackage.test.PackageTest;
+import com.redhat.rhn.domain.server.Server;
+import com.redhat.rhn.domain.server.test.ServerFactoryTest;
+import com.redhat.rhn.manager.errata.cache.ErrataCacheManager;
+import com.redhat.rhn.taskomatic.task.systems.SystemsOverviewUpdateWorker;
+import com.redhat.rhn.testing.BaseTestCaseWithUser;
+
+import com.suse.manager.metrics.SystemsCollector;
+import com.suse.manager.metrics.SystemsStatistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import io.prometheus.client.Collector.MetricFamilySamples;
+
+/**
+ * Tests for {@link SystemsStatistics} and {@link SystemsCollector}.
+ */
+public class SystemsStatisticsTest extends BaseTestCaseWithUser {
+
+    @Test
+    public void testRefresh() {
+        SystemsStatistics statistics = new SystemsStatistics();
+        Server server = ServerFactoryTest.createTestServer(user);
+
+        SystemsStatistics.Snapshot snapshot = statistics.refresh();
+        long orgSystems = snapshot.getGroups().stream()
+                .filter(g -> g.getLabels().get(0).equals(user.getOrg().getId().toString()))
+                .filter(g -> g.getLabels().get(1).equals(server.getOs()))
+                .mapToLong(SystemsStatistics.Group::getSystems)
+                .sum();
+        assertEquals(1, orgSystems);
+        assertTrue(snapshot.getSystems() >= 1);
+        assertEquals(snapshot, statistics.getSnapshot());
+    }
+
+    @Test
+    public void testCountOutdatedSystems() {
+        SystemsStatistics statistics = new SystemsStatistics();
+        Server server = ServerFactoryTest.createTestServer(user);
+        Package pack = PackageTest.createTestPackage(user.getOrg());
+        ErrataCacheManager.insertNeededErrataCache(server.getId(), null, pack.getId());
+        SystemsOverviewUpdateWorker.doUpdate(server.getId());
+
+        long orgOutdatedSystems = statistics.refresh().getGroups().stream()
+                .filter(g -> g.getLabels().get(0).equals(user.getOrg().getId().toString()))
+                .mapToLong(SystemsStatistics.Group::getOutdatedSystems)
+                .sum();
+        assertEquals(1, orgOutdatedSystems);
+    }
+
+    @Test
+    public void testCollectReadsSnapshot() {
+        SystemsStatistics statistics = new SystemsStatistics();
+        SystemsCollector collector = new SystemsCollector(statistics);
+        assertTrue(collector.collect().isEmpty());
+
+        ServerFactoryTest.createTestServer(user);
+        statistics.refresh();
+        List<MetricFamilySamples> metrics = collector.collect();
+        Set<String> names = metrics.stream().map(m -> m.name).collect(Collectors.toSet());
+        assertTrue(names.containsAll(List.of("uyuni_all_systems", "uyuni_outdated_systems", "uyuni_systems",
+                "uyuni_systems_scrape_duration_seconds", "uyuni_systems_refresh_duration_seconds")));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.reactor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Processing statistics of a Salt event queue, also used to size the batches of events
+ * processed in a single transaction in adaptive mode.
+ *
+ * The batch size follows the measured processing time per event so that a batch takes
+ * about the target time, growing at most twofold between two batches.
+ */
+public class PGEventQueueStatistics {
+
+    /* Weight of the last batch in the average processing time per event */
+    private static final double SMOOTHING = 0.3;
+
+    private final int queue;
+    private final int maxBatchSize;
+    private final long targetNanos;
+
+    private final AtomicLong backlog = new AtomicLong();
+    private final LongAdder processed = new LongAdder();
+    private volatile int batchSize;
+    private volatile double eventsPerSecond;
+    private double nanosPerEvent;
+
+    /**
+     * Constructor
+     * @param queueIn the queue number
+     * @param initialBatchSize the size of the first batch
+     * @param maxBatchSizeIn the maximum batch size
+     * @param targetMillis the target processing time of a batch in milliseconds
+     */
+    public PGEventQueueStatistics(int queueIn, int initialBatchSize, int maxBatchSizeIn, long targetMillis) {
+        queue = queueIn;
+        maxBatchSize = Math.max(1, maxBatchSizeIn);
+        batchSize = Math.max(1, Math.min(initialBatchSize, maxBatchSize));
+        targetNanos = TimeUnit.MILLISECONDS.toNanos(targetMillis);
+    }
+
+    /**
+     * Records newly notified events.
+     * @param count the number of events
+     */
+    public void eventsQueued(long count) {
+        backlog.addAndGet(count);
+    }
+
+    /**
+     * Records a processed batch and adapts the size of the next one.
+     * @param count the number of events processed
+     * @param durationNanos the time it took to process and commit them
+     */
+    public synchronized void batchProcessed(int count, long durationNanos) {
+        processed.add(count);
+        if (count < batchSize) {
+            // the queue is empty, at least for this node
+            backlog.set(0);
+        }
+        else {
+            backlog.updateAndGet(b -> Math.max(0, b - count));
+        }
+        if (count == 0) {
+            return;
+        }
+
+        long duration = Math.max(1, durationNanos);
+        eventsPerSecond = count * (double) TimeUnit.SECONDS.toNanos(1) / duration;
+
+        double batchNanosPerEvent = (double) duration / count;
+        nanosPerEvent = nanosPerEvent == 0 ? batchNanosPerEvent :
+                SMOOTHING * batchNanosPerEvent + (1 - SMOOTHING) * nanosPerEvent;
+
+        long fitting = (long) (targetNanos / nanosPerEvent);
+        long next = Math.min(fitting, 2L * batchSize);
+        batchSize = (int) Math.max(1, Math.min(next, maxBatchSize));
+    }
+
+    /**
+     * @return the queue number
+     */
+    public int getQueue() {
+        return queue;
+    }
+
+    /**
+     * @return the size of the next batch
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the estimated number of events waiting to be processed
+     */
+    public long getBacklog() {
+        return backlog.get();
+    }
+
+    /**
+     * @return the number of events processed since the start
+     */
+    public long getProcessed() {
+        return processed.sum();
+    }
+
+    /**
+     * @return the processing rate of the last batch, in events per second
+     */
+    public double getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+}
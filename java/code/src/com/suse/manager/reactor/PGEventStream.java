@@ -26,6 +26,7 @@ import com.redhat.rhn.domain.reactor.SaltEvent;
 import com.redhat.rhn.domain.reactor.SaltEventFactory;
 import com.redhat.rhn.frontend.events.TransactionHelper;
 
+import com.suse.manager.metrics.PrometheusExporter;
 import com.suse.salt.netapi.event.AbstractEventStream;
 import com.suse.salt.netapi.exception.SaltException;
 import com.suse.salt.netapi.parser.JsonParser;
@@ -49,6 +50,7 @@ import java.util.TimerTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.LongStream;
@@ -62,6 +64,10 @@ public class PGEventStream extends AbstractEventStream implements PGNotification
     private static final Logger LOG = LogManager.getLogger(PGEventStream.class);
     private static final int MAX_EVENTS_PER_COMMIT = ConfigDefaults.get().getSaltEventsPerCommit();
     private static final int THREAD_POOL_SIZE = ConfigDefaults.get().getSaltEventThreadPoolSize();
+    private static final boolean ADAPTIVE_COMMIT = ConfigDefaults.get().isSaltEventsAdaptiveCommit();
+
+    /* Statistics of each queue, kept across reconnections */
+    private static final List<PGEventQueueStatistics> QUEUE_STATISTICS = createQueueStatistics();
 
     private PGConnection connection;
     private final List<ThreadPoolExecutor> executorServices = IntStream.range(0, THREAD_POOL_SIZE + 1).mapToObj(i ->
@@ -77,6 +83,22 @@ public class PGEventStream extends AbstractEventStream implements PGNotification
         )
     ).collect(Collectors.toList());
 
+    /* Number of drain requests of each queue since its current drain started, adaptive mode only */
+    private final List<AtomicInteger> drainRequests = IntStream.range(0, THREAD_POOL_SIZE + 1)
+            .mapToObj(i -> new AtomicInteger())
+            .collect(Collectors.toList());
+
+    private static List<PGEventQueueStatistics> createQueueStatistics() {
+        ConfigDefaults config = ConfigDefaults.get();
+        List<PGEventQueueStatistics> statistics = IntStream.range(0, THREAD_POOL_SIZE + 1)
+                .mapToObj(queue -> new PGEventQueueStatistics(queue, MAX_EVENTS_PER_COMMIT,
+                        ADAPTIVE_COMMIT ? config.getSaltEventsMaxPerCommit() : MAX_EVENTS_PER_COMMIT,
+                        config.getSaltEventsCommitTargetMillis()))
+                .collect(Collectors.toList());
+        PrometheusExporter.INSTANCE.registerSaltEventQueues(statistics);
+        return statistics;
+    }
+
     /**
      * Default constructor, connects to Postgres and waits for events.
      * @throws SaltException if connection fails
@@ -129,6 +151,12 @@ public class PGEventStream extends AbstractEventStream implements PGNotification
                     try (Statement s = connection.createStatement()) {
                         s.execute("SELECT 'salt-event-connection-watchdog';");
 
+                        if (ADAPTIVE_COMMIT) {
+                            // draining an empty queue is cheaper than counting the events of all of them
+                            IntStream.range(0, THREAD_POOL_SIZE + 1).forEach(queue -> scheduleDrain(queue));
+                            return;
+                        }
+
                         // if we have any rows in suseSaltEvent that do not yet have a process task active
                         // then schedule tasks for them
                         // this can only happen in case we lost notifications somehow
@@ -177,6 +205,16 @@ public class PGEventStream extends AbstractEventStream implements PGNotification
      */
     public void notification(List<Long> counts) {
         LOG.trace("Got notification: {}", counts);
+        if (ADAPTIVE_COMMIT) {
+            IntStream.range(0, THREAD_POOL_SIZE + 1).forEach(queue -> {
+                if (counts.get(queue) > 0) {
+                    QUEUE_STATISTICS.get(queue).eventsQueued(counts.get(queue));
+                    scheduleDrain(queue);
+                }
+            });
+            return;
+        }
+
         // compute the number of jobs we need to do - each job COMMITs individually
         // jobs = events / MAX_EVENTS_PER_COMMIT (rounded up)
         IntStream.range(0, THREAD_POOL_SIZE + 1).forEach(queue -> {
@@ -186,23 +224,78 @@ public class PGEventStream extends AbstractEventStream implements PGNotification
             LongStream.range(0L, jobs).forEach(job -> {
                 LOG.trace("Scheduling a job for queue {}", queue);
                 ThreadPoolExecutor executor = executorServices.get(queue);
-                executor.execute(() -> {
-                    List<SaltEvent> uncommittedEvents = new LinkedList<>();
-                    TransactionHelper.handlingTransaction(
-                            () -> processEvents(uncommittedEvents, queue),
-                            e -> handleExceptions(uncommittedEvents, e));
-                });
+                executor.execute(() -> processBatch(queue, MAX_EVENTS_PER_COMMIT));
             });
         });
     }
 
+    /**
+     * Schedules the draining of a queue, unless it is already being drained. In that case
+     * the running drain goes on until the queue is found empty after this request.
+     * @param queue the queue number
+     */
+    private void scheduleDrain(int queue) {
+        if (drainRequests.get(queue).getAndIncrement() == 0) {
+            LOG.trace("Scheduling the draining of queue {}", queue);
+            executorServices.get(queue).execute(() -> drain(queue));
+        }
+    }
+
+    /**
+     * Processes the events of a queue in batches sized by the processing time, until
+     * no event is left and no new drain was requested in the meantime.
+     * @param queue the queue number
+     */
+    private void drain(int queue) {
+        AtomicInteger requests = drainRequests.get(queue);
+        PGEventQueueStatistics statistics = QUEUE_STATISTICS.get(queue);
+        boolean drained = false;
+        try {
+            int handled;
+            do {
+                handled = requests.get();
+                int batchSize;
+                int processed;
+                do {
+                    batchSize = statistics.getBatchSize();
+                    processed = processBatch(queue, batchSize);
+                } while (processed >= batchSize);
+            } while (requests.addAndGet(-handled) > 0);
+            drained = true;
+        }
+        finally {
+            if (!drained) {
+                // let the next notification schedule a new drain, the queue would be stuck otherwise
+                LOG.error("Draining of queue {} failed, waiting for the next notification", queue);
+                requests.set(0);
+            }
+        }
+    }
+
+    /**
+     * Processes a batch of events in a single transaction.
+     * @param queue the queue number
+     * @param limit the maximum number of events to process
+     * @return the number of processed events
+     */
+    private int processBatch(int queue, int limit) {
+        List<SaltEvent> uncommittedEvents = new LinkedList<>();
+        long start = System.nanoTime();
+        TransactionHelper.handlingTransaction(
+                () -> processEvents(uncommittedEvents, queue, limit),
+                e -> handleExceptions(uncommittedEvents, e));
+        QUEUE_STATISTICS.get(queue).batchProcessed(uncommittedEvents.size(), System.nanoTime() - start);
+        return uncommittedEvents.size();
+    }
+
     /**
      * Reads one or more events from suseSaltEvent and notifies listeners (typically, {@link PGEventListener}).
      * @param uncommittedEvents used to keep track of events being processed
      * @param queue the index of the thread processing the events
+     * @param limit the maximum number of events to read
      */
-    private void processEvents(List<SaltEvent> uncommittedEvents, int queue) {
-        Stream<SaltEvent> events = SaltEventFactory.popSaltEvents(MAX_EVENTS_PER_COMMIT, queue)
+    private void processEvents(List<SaltEvent> uncommittedEvents, int queue, int limit) {
+        Stream<SaltEvent> events = SaltEventFactory.popSaltEvents(limit, queue)
                 .sorted(comparing(SaltEvent::getMinionId, nullsLast(naturalOrder())).thenComparing(SaltEvent::getId));
 
         events.forEach(event -> {
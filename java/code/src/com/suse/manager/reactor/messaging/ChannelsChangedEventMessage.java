@@ -19,6 +19,8 @@ import com.redhat.rhn.common.messaging.EventDatabaseMessage;
 
 import org.hibernate.Transaction;
 
+import java.util.Optional;
+
 /**
  * Trigger actions whenever a server's channel assignments were changed. Execution of the
  * action will wait until the current transaction has been committed as we are implementing
@@ -95,6 +97,15 @@ public class ChannelsChangedEventMessage implements EventDatabaseMessage {
         return this.transaction;
     }
 
+    /**
+     * Channel changes of the same server are handled in order.
+     * @return the server partition key
+     */
+    @Override
+    public Optional<String> getPartitionKey() {
+        return Optional.of("server_" + serverId);
+    }
+
     /**
      * {@inheritDoc}
      */
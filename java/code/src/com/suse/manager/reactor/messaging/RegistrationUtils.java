@@ -47,6 +47,7 @@ import com.redhat.rhn.manager.system.SystemManager;
 import com.redhat.rhn.manager.system.entitling.SystemEntitlementManager;
 import com.redhat.rhn.taskomatic.TaskomaticApiException;
 
+import com.suse.manager.metrics.SystemsStatistics;
 import com.suse.manager.reactor.utils.RhelUtils;
 import com.suse.manager.reactor.utils.ValueMap;
 import com.suse.manager.webui.controllers.StatesAPI;
@@ -117,6 +118,7 @@ public class RegistrationUtils {
         }
 
         LOG.info("Finished minion registration: {}", minionId);
+        SystemsStatistics.INSTANCE.requestRefreshAfterCommit();
 
         StatesAPI.generateServerPackageState(minion);
 
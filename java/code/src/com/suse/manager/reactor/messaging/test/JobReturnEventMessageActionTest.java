@@ -487,6 +487,72 @@ public class JobReturnEventMessageActionTest extends JMockBaseTestCaseWithUser {
         assertEquals(3, minion.getPackages().size());
     }
 
+    /**
+     * Test the rhnServerPackage rows written by two packages.profileupdate job return events
+     * adding, removing and updating packages.
+     *
+     * @throws Exception in case of an error
+     */
+    @Test
+    public void testPackagesProfileUpdateServerPackageRows() throws Exception {
+        MinionServer minion = MinionServerFactoryTest.createTestMinionServer(user);
+        minion.setMinionId("minionsles12-suma3pg.vagrant.local");
+        Action action = ActionFactoryTest.createAction(
+                user, ActionFactory.TYPE_PACKAGES_REFRESH_LIST);
+        action.addServerAction(ActionFactoryTest.createServerAction(minion, action));
+        JobReturnEventMessageAction messageAction = new JobReturnEventMessageAction(saltServerActionService, saltUtils);
+
+        messageAction.execute(new JobReturnEventMessage(JobReturnEvent
+                .parse(getJobReturnEvent("packages.profileupdate.json", action.getId()))
+                .get()));
+        assertEquals(List.of(
+                "aaa_base-13.2+git20140911.61c1681-12.1.x86_64",
+                "bash-4.2-75.2.x86_64",
+                "timezone-java-2016c-0.37.1.noarch"),
+                listServerPackageRows(minion));
+
+        // aaa_base is identical, bash was updated to version 500, timezone-java is gone and java is new
+        messageAction.execute(new JobReturnEventMessage(JobReturnEvent
+                .parse(getJobReturnEvent("packages.profileupdate.updated.json", action.getId()))
+                .get()));
+        List<String> updatedRows = List.of(
+                "aaa_base-13.2+git20140911.61c1681-12.1.x86_64",
+                "bash-500-75.2.x86_64",
+                "java-1.6-0.x86_64");
+        assertEquals(updatedRows, listServerPackageRows(minion));
+
+        // the same profile again leaves the rows as they are
+        messageAction.execute(new JobReturnEventMessage(JobReturnEvent
+                .parse(getJobReturnEvent("packages.profileupdate.updated.json", action.getId()))
+                .get()));
+        assertEquals(updatedRows, listServerPackageRows(minion));
+    }
+
+    /**
+     * Lists the rhnServerPackage rows of a minion as sorted name-version-release.arch strings
+     */
+    private static List<String> listServerPackageRows(MinionServer minion) {
+        HibernateFactory.getSession().flush();
+        List<Object[]> rows = HibernateFactory.getSession()
+                .createNativeQuery("SELECT pn.name, evr.epoch, evr.version, evr.release, pa.label, sp.installtime " +
+                        "FROM rhnServerPackage sp " +
+                        "JOIN rhnPackageName pn ON pn.id = sp.name_id " +
+                        "JOIN rhnPackageEvr evr ON evr.id = sp.evr_id " +
+                        "LEFT JOIN rhnPackageArch pa ON pa.id = sp.package_arch_id " +
+                        "WHERE sp.server_id = :sid")
+                .setParameter("sid", minion.getId())
+                .getResultList();
+        for (Object[] row : rows) {
+            // all the packages have epoch null and an install time
+            assertNull(row[1]);
+            assertNotNull(row[5]);
+        }
+        return rows.stream()
+                .map(row -> row[0] + "-" + row[2] + "-" + row[3] + "." + row[4])
+                .sorted()
+                .collect(Collectors.toList());
+    }
+
     @Test
     public void testPackagesProfileUpdateLivePatching() throws Exception {
         MinionServer minion = MinionServerFactoryTest.createTestMinionServer(user);
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.reactor.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.suse.manager.reactor.PGEventQueueStatistics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class PGEventQueueStatisticsTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testGrowsAtMostTwice() {
+        PGEventQueueStatistics statistics = new PGEventQueueStatistics(0, 1, 1000, 1000);
+
+        // 1 ms per event would allow 1000 events, but the size only doubles
+        statistics.batchProcessed(1, MS);
+        assertEquals(2, statistics.getBatchSize());
+        statistics.batchProcessed(2, 2 * MS);
+        assertEquals(4, statistics.getBatchSize());
+    }
+
+    @Test
+    public void testShrinksWhenSlow() {
+        PGEventQueueStatistics statistics = new PGEventQueueStatistics(0, 100, 1000, 1000);
+
+        // 100 ms per event: 10 events fit into the target time
+        statistics.batchProcessed(100, 10_000 * MS);
+        assertEquals(10, statistics.getBatchSize());
+        assertEquals(10.0, statistics.getEventsPerSecond(), 0.001);
+    }
+
+    @Test
+    public void testClamping() {
+        PGEventQueueStatistics statistics = new PGEventQueueStatistics(0, 100, 150, 1000);
+        statistics.batchProcessed(100, MS);
+        assertEquals(150, statistics.getBatchSize());
+
+        statistics = new PGEventQueueStatistics(0, 10, 150, 1000);
+        statistics.batchProcessed(10, 100_000 * MS);
+        assertEquals(1, statistics.getBatchSize());
+
+        // the initial size never exceeds the maximum
+        assertEquals(150, new PGEventQueueStatistics(0, 500, 150, 1000).getBatchSize());
+    }
+
+    @Test
+    public void testBacklog() {
+        PGEventQueueStatistics statistics = new PGEventQueueStatistics(0, 10, 10, 1000);
+        statistics.eventsQueued(25);
+        assertEquals(25, statistics.getBacklog());
+
+        statistics.batchProcessed(10, MS);
+        assertEquals(15, statistics.getBacklog());
+
+        // a partial batch means the queue was drained, whatever the estimate says
+        statistics.batchProcessed(3, MS);
+        assertEquals(0, statistics.getBacklog());
+        assertEquals(13, statistics.getProcessed());
+
+        // an empty batch does not change the size
+        statistics.batchProcessed(0, MS);
+        assertEquals(10, statistics.getBatchSize());
+    }
+}
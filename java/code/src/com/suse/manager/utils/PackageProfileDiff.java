@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.utils;
+
+import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.SelectMode;
+import com.redhat.rhn.common.db.datasource.WriteMode;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Difference between the packages installed on a server according to the database and
+ * according to a fresh package profile. Packages are compared by their name, EVR and
+ * architecture ids, so that only the changed rows of rhnServerPackage are written.
+ */
+public class PackageProfileDiff {
+
+    private final List<PackageKey> removed;
+    private final Map<PackageKey, Date> added;
+
+    /**
+     * Identifies an installed package by its name, EVR and architecture ids
+     */
+    public static final class PackageKey {
+        private final long nameId;
+        private final long evrId;
+        private final Long archId;
+
+        /**
+         * Constructor
+         * @param nameIdIn the package name id
+         * @param evrIdIn the package EVR id
+         * @param archIdIn the package architecture id, null if unknown
+         */
+        public PackageKey(long nameIdIn, long evrIdIn, Long archIdIn) {
+            nameId = nameIdIn;
+            evrId = evrIdIn;
+            archId = archIdIn;
+        }
+
+        /**
+         * @return the package name id
+         */
+        public long getNameId() {
+            return nameId;
+        }
+
+        /**
+         * @return the package EVR id
+         */
+        public long getEvrId() {
+            return evrId;
+        }
+
+        /**
+         * @return the package architecture id, null if unknown
+         */
+        public Long getArchId() {
+            return archId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof PackageKey)) {
+                return false;
+            }
+            PackageKey other = (PackageKey) o;
+            return nameId == other.nameId && evrId == other.evrId && Objects.equals(archId, other.archId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(nameId, evrId, archId);
+        }
+
+        @Override
+        public String toString() {
+            return nameId + "-" + evrId + "." + archId;
+        }
+    }
+
+    private PackageProfileDiff(List<PackageKey> removedIn, Map<PackageKey, Date> addedIn) {
+        removed = removedIn;
+        added = addedIn;
+    }
+
+    /**
+     * Computes the difference between the current and the installed packages
+     * @param current the packages currently stored for the server
+     * @param installed the packages actually installed, with their install time
+     * @return the difference
+     */
+    public static PackageProfileDiff compute(Collection<PackageKey> current, Map<PackageKey, Date> installed) {
+        Set<PackageKey> currentSet = current instanceof Set ? (Set<PackageKey>) current : new HashSet<>(current);
+        List<PackageKey> removed = currentSet.stream()
+                .filter(key -> !installed.containsKey(key))
+                .collect(Collectors.toList());
+        Map<PackageKey, Date> added = new LinkedHashMap<>();
+        installed.forEach((key, installTime) -> {
+            if (!currentSet.contains(key)) {
+                added.put(key, installTime);
+            }
+        });
+        return new PackageProfileDiff(removed, added);
+    }
+
+    /**
+     * Reads the packages currently stored for a server
+     * @param serverId the server id
+     * @return the package keys
+     */
+    public static Set<PackageKey> lookupServerPackages(Long serverId) {
+        SelectMode m = ModeFactory.getMode("System_queries", "server_package_ids");
+        DataResult<Map<String, Object>> rows = m.execute(Map.of("sid", serverId));
+        return rows.stream()
+                .map(row -> new PackageKey((Long) row.get("name_id"), (Long) row.get("evr_id"),
+                        (Long) row.get("package_arch_id")))
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Writes the difference to rhnServerPackage, with one batch for the removed and one
+     * for the added packages
+     * @param serverId the server id
+     */
+    public void apply(Long serverId) {
+        if (!removed.isEmpty()) {
+            WriteMode m = ModeFactory.getWriteMode("System_queries", "delete_server_package");
+            m.executeBatchUpdates(new DataResult<>(removed.stream()
+                    .map(key -> toParams(serverId, key))
+                    .collect(Collectors.toList())));
+        }
+        if (!added.isEmpty()) {
+            WriteMode m = ModeFactory.getWriteMode("System_queries", "insert_server_package");
+            List<Map<String, Object>> params = new ArrayList<>(added.size());
+            added.forEach((key, installTime) -> {
+                Map<String, Object> row = toParams(serverId, key);
+                row.put("installtime", installTime == null ? null : new Timestamp(installTime.getTime()));
+                params.add(row);
+            });
+            m.executeBatchUpdates(new DataResult<>(params));
+        }
+    }
+
+    private static Map<String, Object> toParams(Long serverId, PackageKey key) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("sid", serverId);
+        params.put("name_id", key.getNameId());
+        params.put("evr_id", key.getEvrId());
+        params.put("arch_id", key.getArchId());
+        return params;
+    }
+
+    /**
+     * @return the packages to remove
+     */
+    public List<PackageKey> getRemoved() {
+        return Collections.unmodifiableList(removed);
+    }
+
+    /**
+     * @return the packages to add, with their install time
+     */
+    public Map<PackageKey, Date> getAdded() {
+        return Collections.unmodifiableMap(added);
+    }
+
+    /**
+     * @return true if the stored packages already match the installed ones
+     */
+    public boolean isEmpty() {
+        return removed.isEmpty() && added.isEmpty();
+    }
+}
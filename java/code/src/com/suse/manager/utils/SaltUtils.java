@@ -147,6 +147,7 @@ import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.hibernate.Hibernate;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -1484,14 +1485,6 @@ public class SaltUtils {
      */
     private static void updatePackages(MinionServer server,
             PkgProfileUpdateSlsResult result) {
-        Set<InstalledPackage> packages = server.getPackages();
-
-        Map<String, InstalledPackage> oldPackageMap = packages.stream()
-            .collect(Collectors.toMap(
-                    SaltUtils::packageToKey,
-                    Function.identity()
-             ));
-
         Map<String, Map.Entry<String, Pkg.Info>> newPackageMap =
             result.getInfoInstalled().getChanges().getRet()
                 .entrySet().stream()
@@ -1509,19 +1502,70 @@ public class SaltUtils {
                         SaltUtils::resolveDuplicatePackage
                 ));
 
-        Collection<InstalledPackage> unchanged = oldPackageMap.entrySet().stream().filter(
-            e -> newPackageMap.containsKey(e.getKey())
-        ).map(Map.Entry::getValue).collect(Collectors.toList());
-        packages.retainAll(unchanged);
+        Map<PackageProfileDiff.PackageKey, Date> installed = toPackageKeys(newPackageMap.values(), server);
+
+        // the loaded collection must not hold pending changes, as it is reloaded afterwards
+        boolean packagesLoaded = Hibernate.isInitialized(server.getPackages());
+        if (packagesLoaded) {
+            HibernateFactory.getSession().flush();
+        }
 
-        Map<String, Tuple2<String, Pkg.Info>> packagesToAdd = newPackageMap.entrySet().stream().filter(
-                e -> !oldPackageMap.containsKey(e.getKey())
-        ).collect(Collectors.toMap(Map.Entry::getKey, e -> new Tuple2(e.getValue().getKey(), e.getValue().getValue())));
+        PackageProfileDiff diff = PackageProfileDiff.compute(
+                PackageProfileDiff.lookupServerPackages(server.getId()), installed);
+        LOG.debug("Package profile of minion {}: {} packages removed, {} added", server.getMinionId(),
+                diff.getRemoved().size(), diff.getAdded().size());
+        diff.apply(server.getId());
 
-        packages.addAll(createPackagesFromSalt(packagesToAdd, server));
+        if (packagesLoaded && !diff.isEmpty()) {
+            HibernateFactory.getSession().refresh(server);
+        }
         SystemManager.updateSystemOverview(server.getId());
     }
 
+    /**
+     * Resolves the name, EVR and architecture ids of the packages returned by Salt, creating
+     * the missing names and EVRs with one batch each.
+     *
+     * @param packages the package names and infos
+     * @param server the server the packages are installed on
+     * @return the install time of the packages, by package key
+     */
+    private static Map<PackageProfileDiff.PackageKey, Date> toPackageKeys(
+            Collection<Map.Entry<String, Pkg.Info>> packages, Server server) {
+        PackageType packageType = server.getPackageType();
+
+        Map<String, Long> nameIds = PackageFactory.lookupOrCreatePackageNameIds(packages.stream()
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet()));
+
+        Map<Map.Entry<String, Pkg.Info>, PackageEvr> evrs = packages.stream()
+                .collect(Collectors.toMap(Function.identity(), e -> toPackageEvr(e.getValue().getEpoch(),
+                        e.getValue().getVersion().get(), e.getValue().getRelease(), packageType)));
+        Map<PackageEvr, Long> evrIds = PackageEvrFactory.lookupOrCreatePackageEvrIds(
+                new HashSet<>(evrs.values()), packageType);
+
+        Map<String, Optional<Long>> archIds = new HashMap<>();
+        Map<PackageProfileDiff.PackageKey, Date> keys = new HashMap<>();
+        for (Map.Entry<String, Pkg.Info> entry : packages) {
+            Pkg.Info pkgInfo = entry.getValue();
+            // Add -deb suffix to architectures for Debian systems
+            String pkgArch = pkgInfo.getArchitecture().get();
+            if (packageType == PackageType.DEB) {
+                pkgArch += "-deb";
+            }
+            Long archId = archIds.computeIfAbsent(pkgArch,
+                    label -> Optional.ofNullable(PackageFactory.lookupPackageArchByLabel(label))
+                            .map(PackageArch::getId))
+                    .orElse(null);
+            Date installTime = pkgInfo.getInstallDateUnixTime()
+                    .map(time -> new Date((time * 1000)))
+                    .orElse(null);
+            keys.putIfAbsent(new PackageProfileDiff.PackageKey(nameIds.get(entry.getKey()),
+                    evrIds.get(evrs.get(entry)), archId), installTime);
+        }
+        return keys;
+    }
+
     private static Map.Entry<String, Info> resolveDuplicatePackage(Map.Entry<String, Info> firstEntry,
             Map.Entry<String, Info> secondEntry) {
         Info first = firstEntry.getValue();
@@ -1719,11 +1763,16 @@ public class SaltUtils {
 
     private static PackageEvr parsePackageEvr(Optional<String> epoch, String version, Optional<String> release,
                                               PackageType type) {
+        return PackageEvrFactory.lookupOrCreatePackageEvr(toPackageEvr(epoch, version, release, type));
+    }
+
+    private static PackageEvr toPackageEvr(Optional<String> epoch, String version, Optional<String> release,
+                                           PackageType type) {
         switch (type) {
             case DEB:
-                return PackageEvrFactory.lookupOrCreatePackageEvr(PackageEvr.parseDebian(version));
+                return PackageEvr.parseDebian(version);
             case RPM:
-                return PackageEvrFactory.lookupOrCreatePackageEvr(epoch.map(StringUtils::trimToNull).orElse(null),
+                return new PackageEvr(epoch.map(StringUtils::trimToNull).orElse(null),
                         version, release.orElse("0"), PackageType.RPM);
             default:
                 throw new RuntimeException("unreachable");
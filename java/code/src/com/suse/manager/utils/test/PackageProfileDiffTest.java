@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.utils.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.suse.manager.utils.PackageProfileDiff;
+import com.suse.manager.utils.PackageProfileDiff.PackageKey;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+public class PackageProfileDiffTest {
+
+    @Test
+    public void testOnlyChangesAreApplied() {
+        Date now = new Date();
+        Set<PackageKey> current = Set.of(
+                new PackageKey(1, 10, 100L),
+                new PackageKey(2, 20, 100L),
+                new PackageKey(3, 30, null));
+
+        Map<PackageKey, Date> installed = new HashMap<>();
+        installed.put(new PackageKey(1, 10, 100L), now);
+        // upgraded package: same name, new EVR
+        installed.put(new PackageKey(2, 21, 100L), now);
+        installed.put(new PackageKey(3, 30, null), null);
+        installed.put(new PackageKey(4, 40, 101L), null);
+
+        PackageProfileDiff diff = PackageProfileDiff.compute(current, installed);
+
+        assertEquals(List.of(new PackageKey(2, 20, 100L)), diff.getRemoved());
+        assertEquals(2, diff.getAdded().size());
+        assertEquals(now, diff.getAdded().get(new PackageKey(2, 21, 100L)));
+        assertTrue(diff.getAdded().containsKey(new PackageKey(4, 40, 101L)));
+    }
+
+    @Test
+    public void testUnchangedProfile() {
+        Set<PackageKey> current = new HashSet<>();
+        Map<PackageKey, Date> installed = new HashMap<>();
+        for (int i = 0; i < 5000; i++) {
+            PackageKey key = new PackageKey(i, i * 2L, i % 3 == 0 ? null : 100L);
+            current.add(key);
+            installed.put(new PackageKey(i, i * 2L, i % 3 == 0 ? null : 100L), new Date());
+        }
+
+        assertTrue(PackageProfileDiff.compute(current, installed).isEmpty());
+        assertEquals(5000, PackageProfileDiff.compute(Set.of(), installed).getAdded().size());
+        assertEquals(5000, PackageProfileDiff.compute(current, Map.of()).getRemoved().size());
+    }
+}
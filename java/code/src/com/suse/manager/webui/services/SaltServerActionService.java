@@ -509,15 +509,23 @@ public class SaltServerActionService {
         List<MinionServer> sshPushMinions = MinionServerFactory.findMinionsByServerIds(
                 sshMinionSummaries.stream().map(MinionSummary::getServerId).collect(Collectors.toList()));
 
-        if (!sshPushMinions.isEmpty()) {
-            for (MinionServer sshMinion : sshPushMinions) {
-                try {
-                    taskomaticApi.scheduleSSHActionExecution(actionIn, sshMinion, forcePackageListRefresh);
-                }
-                catch (TaskomaticApiException e) {
-                    LOG.error("Couldn't schedule SSH action id={} minion={}",
-                            actionIn.getId(), sshMinion.getMinionId(), e);
-                }
+        if (sshPushMinions.size() == 1) {
+            MinionServer sshMinion = sshPushMinions.get(0);
+            try {
+                taskomaticApi.scheduleSSHActionExecution(actionIn, sshMinion, forcePackageListRefresh);
+            }
+            catch (TaskomaticApiException e) {
+                LOG.error("Couldn't schedule SSH action id={} minion={}",
+                        actionIn.getId(), sshMinion.getMinionId(), e);
+            }
+        }
+        else if (!sshPushMinions.isEmpty()) {
+            try {
+                taskomaticApi.scheduleSSHActionExecution(actionIn, sshPushMinions, forcePackageListRefresh);
+            }
+            catch (TaskomaticApiException e) {
+                LOG.error("Couldn't schedule SSH action id={} on {} minions",
+                        actionIn.getId(), sshPushMinions.size(), e);
             }
         }
     }
@@ -1082,6 +1082,33 @@ public class SaltServerActionServiceTest extends JMockBaseTestCaseWithUser {
 
     }
 
+    @Test
+    public void testExecuteSSHActionOnSeveralMinions() throws Exception {
+        MinionServer firstSshMinion = MinionServerFactoryTest.createTestMinionServer(user);
+        firstSshMinion.setContactMethod(ServerFactory.findContactMethodByLabel(ContactMethodUtil.SSH_PUSH));
+        MinionServer secondSshMinion = MinionServerFactoryTest.createTestMinionServer(user);
+        secondSshMinion.setContactMethod(ServerFactory.findContactMethodByLabel(ContactMethodUtil.SSH_PUSH));
+        Action action = ActionFactoryTest.createAction(user, ActionFactory.TYPE_REBOOT);
+        createChildServerAction(action, STATUS_QUEUED, firstSshMinion, 5L);
+        createChildServerAction(action, STATUS_QUEUED, secondSshMinion, 5L);
+        HibernateFactory.getSession().flush();
+
+        SaltService saltServiceMock = mock(SaltService.class);
+        SaltServerActionService testService = createSaltServerActionService(saltServiceMock, saltServiceMock);
+        testService.setTaskomaticApi(taskomaticMock);
+        context().checking(new Expectations() { {
+            // a single job for all the ssh minions
+            oneOf(taskomaticMock).scheduleSSHActionExecution(with(action),
+                    with(new MinionServersMatcher(List.of(firstSshMinion.getMinionId(),
+                            secondSshMinion.getMinionId()))),
+                    with(false));
+            never(saltServiceMock).callAsync(
+                    with(any(LocalCall.class)), with(any(Target.class)), with(any(Optional.class)));
+        } });
+
+        testService.execute(action, false, false, Optional.empty());
+    }
+
     @Test
     public void testDoNotReExecuteDoneActions() throws Exception {
         MinionServer firstMinion = MinionServerFactoryTest.createTestMinionServer(user);
@@ -1158,6 +1185,35 @@ public class SaltServerActionServiceTest extends JMockBaseTestCaseWithUser {
         assertStateApplyWithPillar("ansible.runplaybook", "inventory_path", "/path/to/my/hosts", saltCall);
     }
 
+    private static class MinionServersMatcher extends BaseMatcher<List<MinionServer>> {
+
+        private final Set<String> expectedMinionIds;
+
+        private MinionServersMatcher(List<String> minionIds) {
+            this.expectedMinionIds = new HashSet<>(minionIds);
+        }
+
+        @Override
+        public boolean matches(Object actualValue) {
+            if (!(actualValue instanceof List)) {
+                return false;
+            }
+
+            // the order of the minions does not matter, each of them must be there once
+            List<?> actualMinions = (List<?>) actualValue;
+            Set<String> actualMinionIds = actualMinions.stream()
+                    .filter(MinionServer.class::isInstance)
+                    .map(m -> ((MinionServer) m).getMinionId())
+                    .collect(Collectors.toSet());
+            return actualMinions.size() == expectedMinionIds.size() && expectedMinionIds.equals(actualMinionIds);
+        }
+
+        @Override
+        public void describeTo(Description description) {
+            description.appendText("minions").appendValue(this.expectedMinionIds);
+        }
+    }
+
     private static class MinionListMatcher extends BaseMatcher<MinionList> {
 
         private final List<String> expectedMinionIds;
@@ -18,6 +18,7 @@ import static java.util.Optional.ofNullable;
 
 import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.domain.credentials.Credentials;
 import com.redhat.rhn.domain.product.SUSEProduct;
 import com.redhat.rhn.domain.scc.SCCCachingFactory;
@@ -30,13 +31,14 @@ import com.redhat.rhn.manager.content.ContentSyncManager;
 import com.suse.scc.client.SCCClient;
 import com.suse.scc.client.SCCClientException;
 import com.suse.scc.model.SCCMinProductJson;
+import com.suse.scc.model.SCCOrganizationSystemsUpdateResponse;
 import com.suse.scc.model.SCCRegisterSystemJson;
-import com.suse.scc.model.SCCSystemCredentialsJson;
 import com.suse.scc.model.SCCUpdateSystemJson;
 import com.suse.scc.model.SCCVirtualizationHostJson;
 import com.suse.utils.Opt;
 
 import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.http.HttpStatus;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -44,10 +46,15 @@ import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -55,7 +62,12 @@ import java.util.stream.IntStream;
 public class SCCSystemRegistrationManager {
 
     private static final Logger LOG = LogManager.getLogger(SCCSystemRegistrationManager.class);
+    private static final long DEFAULT_RETRY_DELAY = 1000L;
+    private static final int TOO_MANY_REQUESTS = 429;
+
     private final SCCClient sccClient;
+    private final boolean commitBatches;
+    private final long retryDelay;
 
     /**
      * Constructor
@@ -63,7 +75,30 @@ public class SCCSystemRegistrationManager {
      * @param sccClientIn
      */
     public SCCSystemRegistrationManager(SCCClient sccClientIn) {
+        this(sccClientIn, false);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param sccClientIn the SCC client
+     * @param commitBatchesIn commit the transaction after the results of each registration batch are stored
+     */
+    public SCCSystemRegistrationManager(SCCClient sccClientIn, boolean commitBatchesIn) {
+        this(sccClientIn, commitBatchesIn, DEFAULT_RETRY_DELAY);
+    }
+
+    /**
+     * Constructor
+     *
+     * @param sccClientIn the SCC client
+     * @param commitBatchesIn commit the transaction after the results of each registration batch are stored
+     * @param retryDelayIn delay in milliseconds before the first retry of a failed registration batch
+     */
+    public SCCSystemRegistrationManager(SCCClient sccClientIn, boolean commitBatchesIn, long retryDelayIn) {
         this.sccClient = sccClientIn;
+        this.commitBatches = commitBatchesIn;
+        this.retryDelay = retryDelayIn;
     }
 
     /**
@@ -138,38 +173,186 @@ public class SCCSystemRegistrationManager {
     }
 
     /**
-     * Register a system at SCC
+     * Register systems at SCC.
+     *
+     * The systems are sent in batches of {@link ConfigDefaults#REG_BATCH_SIZE} using the bulk endpoint of SCC,
+     * with up to {@link ConfigDefaults#getSCCParallelRegistrations()} batches in flight. Batches failing with
+     * a transient error are retried with an exponential backoff. The results of every batch are stored in the
+     * registration cache as soon as the batch is done.
      *
      * @param items the items to register
      * @param primaryCredential the current primary organization credential
      */
     public void register(List<SCCRegCacheItem> items, Credentials primaryCredential) {
-        items.forEach(cacheItem -> {
-            try {
-                Credentials itemCredentials = cacheItem.getOptCredentials().orElse(primaryCredential);
-                if (cacheItem.getOptServer().filter(s -> s.isForeign()).isEmpty()) {
-                    LOG.debug("Forward registration of {}", cacheItem);
-                    SCCSystemCredentialsJson systemCredentials = sccClient.createSystem(
-                            getPayload(cacheItem),
-                            itemCredentials.getUsername(),
-                            itemCredentials.getPassword());
-                    cacheItem.setSccId(systemCredentials.getId());
-                    cacheItem.setSccLogin(systemCredentials.getLogin());
-                    cacheItem.setSccPasswd(systemCredentials.getPassword());
-                }
+        int batchSize = Config.get().getInt(ConfigDefaults.REG_BATCH_SIZE, 200);
+        List<RegistrationBatch> batches = new ArrayList<>();
+        Map<Credentials, List<SCCRegCacheItem>> itemsByCredentials = new LinkedHashMap<>();
+        for (SCCRegCacheItem cacheItem : items) {
+            Credentials itemCredentials = cacheItem.getOptCredentials().orElse(primaryCredential);
+            if (cacheItem.getOptServer().filter(Server::isForeign).isPresent()) {
                 // Foreign systems will not be send to SCC
                 // but we need the entry in case it is a hypervisor and we need to send
                 // virtualization host data to SCC
-                cacheItem.setSccRegistrationRequired(false);
-                cacheItem.setRegistrationErrorTime(null);
-                cacheItem.setCredentials(itemCredentials);
+                setRegistered(cacheItem, itemCredentials);
+                cacheItem.getOptServer().ifPresent(ServerFactory::save);
             }
-            catch (Exception e) {
-                LOG.error("Error registering system {}", cacheItem.getId(), e);
-                cacheItem.setRegistrationErrorTime(new Date());
+            else {
+                itemsByCredentials.computeIfAbsent(itemCredentials, c -> new ArrayList<>()).add(cacheItem);
+            }
+        }
+        itemsByCredentials.forEach((credentials, credentialItems) -> {
+            for (int i = 0; i < credentialItems.size(); i += batchSize) {
+                batches.add(new RegistrationBatch(credentials,
+                        credentialItems.subList(i, Math.min(i + batchSize, credentialItems.size()))));
             }
-            cacheItem.getOptServer().ifPresent(ServerFactory::save);
         });
+        if (batches.isEmpty()) {
+            return;
+        }
+
+        // payloads touch the database: build them here and only send them from the pool
+        List<CompletableFuture<SCCOrganizationSystemsUpdateResponse>> responses = new ArrayList<>(batches.size());
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(batches.size(), Math.max(1, ConfigDefaults.get().getSCCParallelRegistrations())));
+        try {
+            for (RegistrationBatch batch : batches) {
+                List<SCCRegisterSystemJson> payload = batch.buildPayload();
+                String username = batch.getCredentials().getUsername();
+                String password = batch.getCredentials().getPassword();
+                if (payload.isEmpty()) {
+                    responses.add(CompletableFuture.completedFuture(new SCCOrganizationSystemsUpdateResponse(
+                            List.of())));
+                    continue;
+                }
+                responses.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return createUpdateSystems(payload, username, password);
+                    }
+                    catch (SCCClientException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor));
+            }
+            for (int i = 0; i < batches.size(); i++) {
+                RegistrationBatch batch = batches.get(i);
+                try {
+                    batch.apply(responses.get(i).join());
+                }
+                catch (CompletionException e) {
+                    LOG.error("Error registering a batch of {} systems", batch.getItems().size(), e.getCause());
+                    batch.fail();
+                }
+                if (commitBatches) {
+                    HibernateFactory.commitTransaction();
+                }
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private SCCOrganizationSystemsUpdateResponse createUpdateSystems(List<SCCRegisterSystemJson> payload,
+            String username, String password) throws SCCClientException {
+        int retries = ConfigDefaults.get().getSCCRegistrationRetries();
+        for (int attempt = 0;; attempt++) {
+            try {
+                return sccClient.createUpdateSystems(payload, username, password);
+            }
+            catch (SCCClientException e) {
+                if (attempt >= retries || !isTransient(e)) {
+                    throw e;
+                }
+                long delay = retryDelay << attempt;
+                LOG.warn("SCC error while registering {} systems, retrying in {} ms: {}",
+                        payload.size(), delay, e.getMessage());
+                try {
+                    Thread.sleep(delay);
+                }
+                catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static boolean isTransient(SCCClientException e) {
+        int status = e.getHttpStatusCode();
+        // 0 means that no response was received at all
+        return status == 0 || status == TOO_MANY_REQUESTS || status >= HttpStatus.SC_INTERNAL_SERVER_ERROR;
+    }
+
+    private static void setRegistered(SCCRegCacheItem cacheItem, Credentials itemCredentials) {
+        cacheItem.setSccRegistrationRequired(false);
+        cacheItem.setRegistrationErrorTime(null);
+        cacheItem.setCredentials(itemCredentials);
+    }
+
+    /**
+     * Systems registered at SCC with the same credentials and a single request
+     */
+    private class RegistrationBatch {
+
+        private final Credentials credentials;
+        private final List<SCCRegCacheItem> items;
+        private final Map<String, SCCRegCacheItem> itemsByLogin = new HashMap<>();
+
+        RegistrationBatch(Credentials credentialsIn, List<SCCRegCacheItem> itemsIn) {
+            credentials = credentialsIn;
+            items = itemsIn;
+        }
+
+        Credentials getCredentials() {
+            return credentials;
+        }
+
+        List<SCCRegCacheItem> getItems() {
+            return items;
+        }
+
+        List<SCCRegisterSystemJson> buildPayload() {
+            List<SCCRegisterSystemJson> payload = new ArrayList<>(items.size());
+            for (SCCRegCacheItem cacheItem : items) {
+                try {
+                    LOG.debug("Forward registration of {}", cacheItem);
+                    SCCRegisterSystemJson system = getPayload(cacheItem);
+                    itemsByLogin.put(system.getLogin(), cacheItem);
+                    payload.add(system);
+                }
+                catch (Exception e) {
+                    LOG.error("Error registering system {}", cacheItem.getId(), e);
+                    cacheItem.setRegistrationErrorTime(new Date());
+                }
+            }
+            return payload;
+        }
+
+        void apply(SCCOrganizationSystemsUpdateResponse response) {
+            Optional.ofNullable(response.getSystems()).orElseGet(List::of).forEach(systemCredentials -> {
+                SCCRegCacheItem cacheItem = itemsByLogin.remove(systemCredentials.getLogin());
+                if (cacheItem == null) {
+                    LOG.warn("SCC returned the unexpected system {}", systemCredentials.getLogin());
+                    return;
+                }
+                cacheItem.setSccId(systemCredentials.getId());
+                cacheItem.setSccLogin(systemCredentials.getLogin());
+                cacheItem.setSccPasswd(systemCredentials.getPassword());
+                setRegistered(cacheItem, credentials);
+                SCCCachingFactory.saveRegCacheItem(cacheItem);
+            });
+            // systems not in the response were not accepted by SCC
+            fail();
+        }
+
+        void fail() {
+            itemsByLogin.values().forEach(cacheItem -> {
+                LOG.error("Error registering system {}", cacheItem.getId());
+                cacheItem.setRegistrationErrorTime(new Date());
+                SCCCachingFactory.saveRegCacheItem(cacheItem);
+            });
+            itemsByLogin.clear();
+        }
     }
 
     private SCCRegisterSystemJson getPayload(SCCRegCacheItem rci) {
@@ -17,6 +17,7 @@ package com.suse.scc.client;
 import com.redhat.rhn.manager.content.ProductTreeEntry;
 
 import com.suse.scc.model.SCCOrderJson;
+import com.suse.scc.model.SCCOrganizationSystemsUpdateResponse;
 import com.suse.scc.model.SCCProductJson;
 import com.suse.scc.model.SCCRegisterSystemJson;
 import com.suse.scc.model.SCCRepositoryJson;
@@ -25,7 +26,9 @@ import com.suse.scc.model.SCCSystemCredentialsJson;
 import com.suse.scc.model.SCCUpdateSystemJson;
 import com.suse.scc.model.SCCVirtualizationHostJson;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Represents an endpoint for SCC.
@@ -52,6 +55,18 @@ public interface SCCClient {
      */
     List<SCCProductJson> listProducts() throws SCCClientException;
 
+    /**
+     * Gets all products, passing them one by one to the given consumer while they are received.
+     *
+     * GET /connect/organizations/products/unscoped
+     *
+     * @param consumer the consumer of the products
+     * @throws SCCClientException if anything goes wrong SCC side
+     */
+    default void forEachProduct(Consumer<SCCProductJson> consumer) throws SCCClientException {
+        listProducts().forEach(consumer);
+    }
+
     /**
      * Gets and returns the list of subscriptions available to an organization.
      *
@@ -91,6 +106,26 @@ public interface SCCClient {
     SCCSystemCredentialsJson createSystem(SCCRegisterSystemJson system, String username, String password)
             throws SCCClientException;
 
+    /**
+     * Create or update multiple systems at SCC with a single request
+     *
+     * PUT /connect/organizations/systems
+     *
+     * @param systems the systems
+     * @param username the username
+     * @param password the password
+     * @return the credentials of the created or updated systems
+     * @throws SCCClientException if anything goes wrong SCC side
+     */
+    default SCCOrganizationSystemsUpdateResponse createUpdateSystems(List<SCCRegisterSystemJson> systems,
+            String username, String password) throws SCCClientException {
+        List<SCCSystemCredentialsJson> result = new ArrayList<>(systems.size());
+        for (SCCRegisterSystemJson system : systems) {
+            result.add(createSystem(system, username, password));
+        }
+        return new SCCOrganizationSystemsUpdateResponse(result);
+    }
+
     /**
      * Update multiple clients in SCC
      * @param systems system data to update
@@ -105,6 +105,32 @@ public class SCCClientUtils {
             throw e;
         }
 
+        File logFile;
+        try {
+            logFile = getLogFile(logDir, getLogFilename(requestUri, user), setOwner);
+        }
+        catch (IOException e) {
+            closeQuietly(inputStream);
+            throw e;
+        }
+
+        OutputStream fileOutputStream = new FileOutputStream(logFile);
+        TeeInputStream tis = new TeeInputStream(inputStream, fileOutputStream);
+
+        Reader inputStreamReader = new InputStreamReader(tis);
+        return new BufferedReader(inputStreamReader);
+    }
+
+    /**
+     * Returns a file in the logging directory, creating it and the directory if needed. When run as root, the
+     * owner is changed to tomcat, so that both tomcat and taskomatic can overwrite it.
+     * @param logDir the logging directory
+     * @param filename the file name
+     * @param setOwner false to skip owner setting
+     * @return the file
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public static File getLogFile(String logDir, String filename, boolean setOwner) throws IOException {
         UserPrincipal tomcatUser = null;
         UserPrincipal rootUser = null;
         if (setOwner) {
@@ -123,8 +149,7 @@ public class SCCClientUtils {
             }
         }
 
-        String logFilename = getLogFilename(requestUri, user);
-        File logFile = new File(logDir + File.separator + logFilename);
+        File logFile = new File(logDir + File.separator + filename);
         if (!logFile.exists()) {
             FileUtils.touch(logFile);
         }
@@ -132,12 +157,7 @@ public class SCCClientUtils {
         if (setOwner && Files.getOwner(logPath, LinkOption.NOFOLLOW_LINKS).equals(rootUser)) {
             Files.setOwner(logPath, tomcatUser);
         }
-
-        OutputStream fileOutputStream = new FileOutputStream(logFile);
-        TeeInputStream tis = new TeeInputStream(inputStream, fileOutputStream);
-
-        Reader inputStreamReader = new InputStreamReader(tis);
-        return new BufferedReader(inputStreamReader);
+        return logFile;
     }
 
     /**
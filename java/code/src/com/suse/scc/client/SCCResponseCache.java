@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.scc.client;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Validators (ETag and Last-Modified) of an SCC response saved in the logging directory.
+ *
+ * The body of every SCC response is already saved by {@link SCCClientUtils#getLoggingReader}. When its validators
+ * are known too, the same request is sent conditionally and a "304 Not Modified" answer is read back from the
+ * saved body, together with the paging headers of the original response.
+ */
+public class SCCResponseCache {
+
+    private static final Logger LOG = LogManager.getLogger(SCCResponseCache.class);
+
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+    /** Headers needed to read a saved response as if it was received again */
+    private static final List<String> SAVED_HEADERS = List.of(ETAG, LAST_MODIFIED, "Per-Page", "Total", "Link");
+
+    private final File bodyFile;
+    private final String headersFilename;
+    private final String logDir;
+    private final boolean setOwner;
+
+    /**
+     * Standard constructor.
+     * @param requestUri the URI of the request
+     * @param user the user name
+     * @param logDirIn the logging directory where the response body is saved
+     * @param setOwnerIn false to skip owner setting
+     */
+    public SCCResponseCache(URI requestUri, String user, String logDirIn, boolean setOwnerIn) {
+        String filename = SCCClientUtils.getLogFilename(requestUri, user);
+        bodyFile = new File(logDirIn, filename);
+        headersFilename = filename + ".headers";
+        logDir = logDirIn;
+        setOwner = setOwnerIn;
+    }
+
+    /**
+     * Returns the saved headers, if the body of the response was completely saved.
+     * @return the saved headers
+     */
+    public Optional<Properties> getHeaders() {
+        File headersFile = new File(logDir, headersFilename);
+        if (!headersFile.isFile() || !bodyFile.isFile()) {
+            return Optional.empty();
+        }
+        Properties headers = new Properties();
+        try (InputStream in = new FileInputStream(headersFile)) {
+            headers.load(in);
+            return Optional.of(headers);
+        }
+        catch (IOException e) {
+            LOG.warn("Unable to read {}", headersFile, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Makes the request conditional, if the response to the same request was saved.
+     * @param request the request
+     */
+    public void addConditionalHeaders(HttpRequestBase request) {
+        getHeaders().ifPresent(headers -> {
+            Optional.ofNullable(headers.getProperty(ETAG))
+                    .ifPresent(etag -> request.addHeader("If-None-Match", etag));
+            Optional.ofNullable(headers.getProperty(LAST_MODIFIED))
+                    .ifPresent(lastModified -> request.addHeader("If-Modified-Since", lastModified));
+        });
+    }
+
+    /**
+     * Returns a reader on the saved response body.
+     * @return the reader
+     * @throws IOException Signals that an I/O exception has occurred.
+     */
+    public BufferedReader getBodyReader() throws IOException {
+        return Files.newBufferedReader(bodyFile.toPath(), Charset.defaultCharset());
+    }
+
+    /**
+     * Forgets the saved headers. To be called before the response body gets overwritten.
+     */
+    public void invalidate() {
+        try {
+            Files.deleteIfExists(new File(logDir, headersFilename).toPath());
+        }
+        catch (IOException e) {
+            LOG.warn("Unable to delete {}", headersFilename, e);
+        }
+    }
+
+    /**
+     * Saves the headers of a response whose body was completely saved. Nothing is saved if the response has no
+     * validator.
+     * @param response the response
+     */
+    public void store(HttpResponse response) {
+        if (response.getFirstHeader(ETAG) == null && response.getFirstHeader(LAST_MODIFIED) == null) {
+            return;
+        }
+        Properties headers = new Properties();
+        for (String name : SAVED_HEADERS) {
+            Header header = response.getFirstHeader(name);
+            if (header != null) {
+                headers.setProperty(name, header.getValue());
+            }
+        }
+        try {
+            File headersFile = SCCClientUtils.getLogFile(logDir, headersFilename, setOwner);
+            try (OutputStream out = new FileOutputStream(headersFile)) {
+                headers.store(out, null);
+            }
+        }
+        catch (IOException e) {
+            LOG.warn("Unable to save the headers of {}", bodyFile, e);
+            invalidate();
+        }
+    }
+}
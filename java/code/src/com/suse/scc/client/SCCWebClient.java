@@ -21,6 +21,7 @@ import com.redhat.rhn.manager.content.ProductTreeEntry;
 
 import com.suse.manager.reactor.utils.OptionalTypeAdapterFactory;
 import com.suse.scc.model.SCCOrderJson;
+import com.suse.scc.model.SCCOrganizationSystemsUpdateResponse;
 import com.suse.scc.model.SCCProductJson;
 import com.suse.scc.model.SCCRegisterSystemJson;
 import com.suse.scc.model.SCCRepositoryJson;
@@ -31,6 +32,8 @@ import com.suse.scc.model.SCCVirtualizationHostJson;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
@@ -48,15 +51,21 @@ import org.apache.logging.log4j.Logger;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
+import java.io.Writer;
 import java.lang.reflect.Type;
 import java.net.NoRouteToHostException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Properties;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -67,7 +76,13 @@ import java.util.stream.Stream;
  */
 public class SCCWebClient implements SCCClient {
 
-    private final ExecutorService executor = Executors.newCachedThreadPool();
+    /** Fetches the pages of the lists, shared by all the clients to bound the concurrent requests to SCC. */
+    private static final ExecutorService PAGE_EXECUTOR = Executors.newFixedThreadPool(
+            ConfigDefaults.get().getSCCParallelPageRequests(), r -> {
+                Thread thread = new Thread(r, "scc-page-request");
+                thread.setDaemon(true);
+                return thread;
+            });
     private static Logger log = LogManager.getLogger(SCCWebClient.class);
     private Gson gson = new GsonBuilder()
             .setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSX")
@@ -81,14 +96,9 @@ public class SCCWebClient implements SCCClient {
     private final HttpClientAdapter httpClient;
 
     /**
-     *  Represents a partial result with a pointer to the next one.
-     *
-     * @param <T> the generic type
+     *  Represents the paging information of a partial result, with a pointer to the next one.
      */
-    private class PaginatedResult<T> {
-
-        /** The result. */
-        private final T result;
+    private static class PaginatedResult {
 
         /** The next url. */
         private final String nextUrl;
@@ -97,12 +107,10 @@ public class SCCWebClient implements SCCClient {
 
         /**
          * Instantiates a new paginated result.
-         *  @param resultIn the result in
          * @param nextUrlIn the next url in
          * @param numPagesIn number of pages
          */
-        PaginatedResult(T resultIn, String nextUrlIn, int numPagesIn) {
-            result = resultIn;
+        PaginatedResult(String nextUrlIn, int numPagesIn) {
             nextUrl = nextUrlIn;
             this.numPages = numPagesIn;
         }
@@ -135,6 +143,14 @@ public class SCCWebClient implements SCCClient {
                 "/connect/organizations/products/unscoped", SCCProductJson.class);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void forEachProduct(Consumer<SCCProductJson> consumer) throws SCCClientException {
+        forEach("/connect/organizations/products/unscoped", SCCProductJson.class, consumer);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -170,36 +186,58 @@ public class SCCWebClient implements SCCClient {
      */
     private <T> List<T> getList(String endpoint, Type resultType)
             throws SCCClientException {
+        List<T> result = new ArrayList<>();
+        this.<T>forEach(endpoint, resultType, result::add);
+        return result;
+    }
+
+    /**
+     * Perform GET requests for all the pages of a list and pass its elements to the given consumer, in the
+     * order of the pages. The first page is streamed in the calling thread, the other ones are fetched
+     * concurrently (at most {@link ConfigDefaults#getSCCParallelPageRequests()} at once) and passed to the
+     * consumer in the calling thread as well.
+     *
+     * @param <T> the generic type
+     * @param endpoint the GET request endpoint
+     * @param resultType the type of the list elements
+     * @param consumer the consumer of the list elements
+     * @throws SCCClientException if a request was not successful
+     */
+    private <T> void forEach(String endpoint, Type resultType, Consumer<T> consumer)
+            throws SCCClientException {
 
-        PaginatedResult<List<T>> firstPage = request(endpoint, SCCClientUtils.toListType(resultType), "GET");
+        PaginatedResult firstPage = request(endpoint, resultType, consumer);
         log.info("Pages: {}", firstPage.numPages);
 
-        List<CompletableFuture<PaginatedResult<List<T>>>> futures = Stream.iterate(2, i -> i + 1)
+        List<CompletableFuture<List<T>>> futures = Stream.iterate(2, i -> i + 1)
                 .limit(Math.max(0, firstPage.numPages - 1)).map(pageNum -> {
             String e = endpoint + "?page=" + pageNum;
-            CompletableFuture<PaginatedResult<List<T>>> get = CompletableFuture.supplyAsync(() -> {
+            return CompletableFuture.supplyAsync(() -> {
                 try {
                     log.info("Start Page: {}", pageNum);
-                    PaginatedResult<List<T>> page = request(e, SCCClientUtils.toListType(resultType), "GET");
+                    List<T> page = new ArrayList<>();
+                    this.<T>request(e, resultType, page::add);
                     log.info("End Page: {}", pageNum);
                     return page;
                 }
                 catch (SCCClientException e1) {
-                    throw new RuntimeException(e1);
+                    throw new CompletionException(e1);
                 }
-            }, executor);
-            return get;
+            }, PAGE_EXECUTOR);
         }).collect(Collectors.toList());
 
-        CompletableFuture<Void> voidCompletableFuture = CompletableFuture.allOf(
-                futures.toArray(new CompletableFuture[futures.size()]));
-        voidCompletableFuture.join();
-        return Stream.concat(
-                Stream.of(firstPage),
-                futures.stream().map(CompletableFuture::join)
-                )
-                .flatMap(p -> p.result.stream())
-                .collect(Collectors.toList());
+        try {
+            for (CompletableFuture<List<T>> future : futures) {
+                future.join().forEach(consumer);
+            }
+        }
+        catch (CompletionException e) {
+            futures.forEach(f -> f.cancel(false));
+            if (e.getCause() instanceof SCCClientException) {
+                throw (SCCClientException) e.getCause();
+            }
+            throw e;
+        }
     }
 
     private void addHeaders(AbstractHttpMessage request) {
@@ -343,6 +381,52 @@ public class SCCWebClient implements SCCClient {
         }
     }
 
+    @Override
+    public SCCOrganizationSystemsUpdateResponse createUpdateSystems(List<SCCRegisterSystemJson> systems,
+            String username, String password) throws SCCClientException {
+        HttpPut request = new HttpPut(config.getUrl() + "/connect/organizations/systems");
+        // Additional request headers
+        addHeaders(request);
+        Map<String, List<SCCRegisterSystemJson>> payload = Map.of("systems", systems);
+        request.setEntity(new StringEntity(gson.toJson(payload), ContentType.APPLICATION_JSON));
+
+        if (log.isDebugEnabled()) {
+            log.debug("Send PUT to {} with {} systems", config.getUrl() + "/connect/organizations/systems",
+                    systems.size());
+        }
+
+        Reader streamReader = null;
+        try {
+            // Connect and parse the response on success
+            HttpResponse response = httpClient.executeRequest(request, username, password);
+
+            int responseCode = response.getStatusLine().getStatusCode();
+            if (responseCode == HttpStatus.SC_CREATED) {
+                streamReader = SCCClientUtils.getLoggingReader(request.getURI(), response,
+                        username, config.getLoggingDir(), !config.isSkipOwner());
+
+                return gson.fromJson(streamReader, SCCOrganizationSystemsUpdateResponse.class);
+            }
+            else {
+                // Request was not successful
+                throw new SCCClientException(responseCode, request.getURI().toString(),
+                        "Got response code " + responseCode + " connecting to " + request.getURI());
+            }
+        }
+        catch (NoRouteToHostException e) {
+            String proxy = ConfigDefaults.get().getProxyHost();
+            throw new SCCClientException("No route to SCC" +
+                    (proxy != null ? " or the Proxy: " + proxy : ""));
+        }
+        catch (IOException e) {
+            throw new SCCClientException(e);
+        }
+        finally {
+            request.releaseConnection();
+            SCCClientUtils.closeQuietly(streamReader);
+        }
+    }
+
     @Override
     public void setVirtualizationHost(List<SCCVirtualizationHostJson> virtHostInfo, String username, String password)
             throws SCCClientException {
@@ -385,20 +469,26 @@ public class SCCWebClient implements SCCClient {
         }
     }
     /**
-     * Perform HTTP request and parse the result into a given result type.
+     * Perform a GET request and parse the resulting list, passing its elements to the given consumer while
+     * reading the response. Unless the response changed, the list is read back from the previously saved
+     * response.
      *
      * @param <T> the generic type
      * @param endpoint the endpoint
-     * @param resultType the type of the result
-     * @param method the HTTP method to use
-     * @return object of type given by resultType
+     * @param resultType the type of the list elements
+     * @param consumer the consumer of the list elements
+     * @return the paging information of the response
      * @throws SCCClientException in case of a problem
      */
-    private <T> PaginatedResult<T> request(String endpoint, Type resultType, String method)
+    private <T> PaginatedResult request(String endpoint, Type resultType, Consumer<T> consumer)
             throws SCCClientException {
-        Reader streamReader = null;
+        BufferedReader streamReader = null;
         HttpRequestBase request = SCCRequestFactory.getInstance().initRequest(
-                method, endpoint, config);
+                "GET", endpoint, config);
+        SCCResponseCache cache = new SCCResponseCache(request.getURI(), config.getUsername(),
+                config.getLoggingDir(), !config.isSkipOwner());
+        Optional<Properties> cachedHeaders = cache.getHeaders();
+        cache.addConditionalHeaders(request);
         try {
             // Connect and parse the response on success
             HttpResponse response = httpClient.executeRequest(request,
@@ -406,47 +496,67 @@ public class SCCWebClient implements SCCClient {
 
             int responseCode = response.getStatusLine().getStatusCode();
 
-            if (responseCode == HttpStatus.SC_OK) {
+            Function<String, Optional<String>> headers;
+            if (responseCode == HttpStatus.SC_NOT_MODIFIED && cachedHeaders.isPresent()) {
+                log.debug("Not modified: {}", request.getURI());
+                streamReader = cache.getBodyReader();
+                headers = name -> Optional.ofNullable(cachedHeaders.get().getProperty(name));
+            }
+            else if (responseCode == HttpStatus.SC_OK) {
+                // the saved response gets overwritten
+                cache.invalidate();
                 streamReader = SCCClientUtils.getLoggingReader(request.getURI(), response,
                         config.getUsername(), config.getLoggingDir(), !config.isSkipOwner());
-
-                // Parse result type from JSON
-                T result = gson.fromJson(streamReader, resultType);
-
-                Optional<Integer> perPageOpt = Optional.ofNullable(response.getFirstHeader("Per-Page"))
-                        .map(h -> Integer.parseInt(h.getValue()));
-                Optional<Integer> totalOpt = Optional.ofNullable(response.getFirstHeader("Total"))
-                        .map(h -> Integer.parseInt(h.getValue()));
-                Optional<Integer> numPagesOpt = perPageOpt.flatMap(perPage -> totalOpt
-                        .map(total -> (int)Math.ceil(total / perPage.floatValue())));
-
-                int numPages = numPagesOpt.orElse(1);
-
-                String nextUrl = null;
-                Header linkHeader = response.getFirstHeader("Link");
-                if (linkHeader != null) {
-                    String linkHeaderValue = linkHeader.getValue();
-                    Matcher m = Pattern
-                            .compile(".*<" + config.getUrl() + "(.*?)>; rel=\"next\".*")
-                            .matcher(linkHeaderValue);
-                    if (m.matches()) {
-                        nextUrl = m.group(1);
-                    }
-                }
-                return new PaginatedResult<>(result, nextUrl, numPages);
+                headers = name -> Optional.ofNullable(response.getFirstHeader(name)).map(Header::getValue);
             }
             else {
                 // Request was not successful
                 throw new SCCClientException(responseCode, request.getURI().toString(),
                         "Got response code " + responseCode + " connecting to " + request.getURI());
             }
+
+            // Parse the list elements from JSON one by one
+            JsonReader jsonReader = new JsonReader(streamReader);
+            jsonReader.beginArray();
+            while (jsonReader.hasNext()) {
+                T element = gson.fromJson(jsonReader, resultType);
+                consumer.accept(element);
+            }
+            jsonReader.endArray();
+
+            if (responseCode == HttpStatus.SC_OK) {
+                // read the rest of the response, so that it is completely saved
+                streamReader.transferTo(Writer.nullWriter());
+                SCCClientUtils.closeQuietly(streamReader);
+                streamReader = null;
+                cache.store(response);
+            }
+
+            Optional<Integer> perPageOpt = headers.apply("Per-Page").map(Integer::parseInt);
+            Optional<Integer> totalOpt = headers.apply("Total").map(Integer::parseInt);
+            Optional<Integer> numPagesOpt = perPageOpt.flatMap(perPage -> totalOpt
+                    .map(total -> (int)Math.ceil(total / perPage.floatValue())));
+
+            int numPages = numPagesOpt.orElse(1);
+
+            String nextUrl = null;
+            Optional<String> linkHeader = headers.apply("Link");
+            if (linkHeader.isPresent()) {
+                Matcher m = Pattern
+                        .compile(".*<" + config.getUrl() + "(.*?)>; rel=\"next\".*")
+                        .matcher(linkHeader.get());
+                if (m.matches()) {
+                    nextUrl = m.group(1);
+                }
+            }
+            return new PaginatedResult(nextUrl, numPages);
         }
         catch (NoRouteToHostException e) {
             String proxy = ConfigDefaults.get().getProxyHost();
             throw new SCCClientException("No route to SCC" +
                     (proxy != null ? " or the Proxy: " + proxy : ""));
         }
-        catch (IOException e) {
+        catch (IOException | JsonParseException | IllegalStateException e) {
             throw new SCCClientException(e);
         }
         finally {
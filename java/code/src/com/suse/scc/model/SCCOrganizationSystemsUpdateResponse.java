@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.scc.model;
+
+import java.util.List;
+
+/**
+ * SCCOrganizationSystemsUpdateResponse, the answer of SCC to a bulk create or update of systems
+ */
+public class SCCOrganizationSystemsUpdateResponse {
+
+    private List<SCCSystemCredentialsJson> systems;
+
+    /**
+     * Constructor
+     * @param systemsIn the credentials of the created or updated systems
+     */
+    public SCCOrganizationSystemsUpdateResponse(List<SCCSystemCredentialsJson> systemsIn) {
+        this.systems = systemsIn;
+    }
+
+    /**
+     * @return return the credentials of the created or updated systems
+     */
+    public List<SCCSystemCredentialsJson> getSystems() {
+        return systems;
+    }
+}
@@ -26,6 +26,8 @@ import com.redhat.rhn.testing.httpservermock.Responder;
 import com.suse.scc.client.SCCClient;
 import com.suse.scc.client.SCCClientException;
 import com.suse.scc.client.SCCClientFactory;
+import com.suse.scc.client.SCCConfig;
+import com.suse.scc.client.SCCWebClient;
 import com.suse.scc.model.SCCProductJson;
 import com.suse.scc.model.SCCRepositoryJson;
 import com.suse.scc.model.SCCSubscriptionJson;
@@ -39,8 +41,10 @@ import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Tests for {@link SCCClient} methods.
@@ -236,6 +240,55 @@ public class SCCClientTest  {
         }
     }
 
+    /**
+     * Test for {@link com.suse.scc.client.SCCWebClient#forEachProduct} with conditional requests: the second listing
+     * is answered with "304 Not Modified" and read back from the saved responses.
+     * @throws Exception if things go wrong
+     */
+    @Test
+    public void testForEachProductNotModified() throws Exception {
+        File tmpDir = this.createTempDir();
+        HttpServerMock serverMock = new HttpServerMock();
+        URI uri = serverMock.getURI();
+        SCCServerStub stub = new SCCServerStub(uri);
+        AtomicInteger notModified = new AtomicInteger();
+        Responder responder = (requestIn, responseIn) -> {
+            if ("\"products\"".equals(requestIn.getValue("If-None-Match"))) {
+                notModified.incrementAndGet();
+                responseIn.setCode(HttpURLConnection.HTTP_NOT_MODIFIED);
+                try {
+                    responseIn.getPrintStream().close();
+                }
+                catch (IOException e) {
+                    // never happens
+                }
+            }
+            else {
+                responseIn.set("ETag", "\"products\"");
+                stub.respond(requestIn, responseIn);
+            }
+        };
+        SCCClient scc = new SCCWebClient(new SCCConfig(uri, "user", "password", null, null,
+                tmpDir.getAbsolutePath(), true));
+        try {
+            List<List<Long>> ids = serverMock.getResult(() -> {
+                List<Long> first = new ArrayList<>();
+                scc.forEachProduct(p -> first.add(p.getId()));
+                List<Long> second = new ArrayList<>();
+                scc.forEachProduct(p -> second.add(p.getId()));
+                return List.of(first, second);
+            }, responder);
+
+            assertEquals(List.of(42L, 43L), ids.get(0));
+            assertEquals(ids.get(0), ids.get(1));
+            // both pages were not modified
+            assertEquals(2, notModified.get());
+        }
+        finally {
+            this.removeTempDir(tmpDir);
+        }
+    }
+
     /**
      * Test for SCC error responses.
      * @throws Exception if things go wrong
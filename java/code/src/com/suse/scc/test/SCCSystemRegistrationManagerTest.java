@@ -30,6 +30,7 @@ import com.redhat.rhn.domain.server.ServerFactory;
 import com.redhat.rhn.domain.server.ServerInfo;
 import com.redhat.rhn.domain.server.VirtualInstanceFactory;
 import com.redhat.rhn.domain.server.test.CPUTest;
+import com.redhat.rhn.manager.content.ContentSyncManager;
 import com.redhat.rhn.manager.entitlement.EntitlementManager;
 import com.redhat.rhn.manager.formula.FormulaMonitoringManager;
 import com.redhat.rhn.manager.system.ServerGroupManager;
@@ -47,8 +48,10 @@ import com.suse.manager.webui.services.iface.VirtManager;
 import com.suse.manager.webui.services.test.TestSaltApi;
 import com.suse.scc.SCCSystemRegistrationManager;
 import com.suse.scc.client.SCCClient;
+import com.suse.scc.client.SCCClientException;
 import com.suse.scc.client.SCCConfig;
 import com.suse.scc.client.SCCWebClient;
+import com.suse.scc.model.SCCOrganizationSystemsUpdateResponse;
 import com.suse.scc.model.SCCRegisterSystemJson;
 import com.suse.scc.model.SCCSystemCredentialsJson;
 import com.suse.scc.model.SCCUpdateSystemJson;
@@ -60,9 +63,12 @@ import org.junit.jupiter.api.Test;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -84,12 +90,14 @@ public class SCCSystemRegistrationManagerTest extends BaseTestCaseWithUser {
         SCCWebClient sccWebClient = new SCCWebClient(new SCCConfig(
                 new URI("https://localhost"), "username", "password", "uuid")) {
             @Override
-            public SCCSystemCredentialsJson createSystem(
-                    SCCRegisterSystemJson system, String username, String password) {
+            public SCCOrganizationSystemsUpdateResponse createUpdateSystems(
+                    List<SCCRegisterSystemJson> systems, String username, String password) {
                 assertEquals("username", username);
                 assertEquals("password", password);
-                assertEquals(new Date(0), system.getLastSeenAt());
-                return new SCCSystemCredentialsJson(system.getLogin(), system.getPassword(), 12345L);
+                return new SCCOrganizationSystemsUpdateResponse(systems.stream().map(system -> {
+                    assertEquals(new Date(0), system.getLastSeenAt());
+                    return new SCCSystemCredentialsJson(system.getLogin(), system.getPassword(), 12345L);
+                }).collect(Collectors.toList()));
             }
 
             @Override
@@ -162,12 +170,14 @@ public class SCCSystemRegistrationManagerTest extends BaseTestCaseWithUser {
         SCCWebClient sccWebClient = new SCCWebClient(new SCCConfig(
                 new URI("https://localhost"), "username", "password", "uuid")) {
             @Override
-            public SCCSystemCredentialsJson createSystem(
-                    SCCRegisterSystemJson system, String username, String password) {
+            public SCCOrganizationSystemsUpdateResponse createUpdateSystems(
+                    List<SCCRegisterSystemJson> systems, String username, String password) {
                 assertEquals("username", username);
                 assertEquals("password", password);
-                assertEquals(new Date(0), system.getLastSeenAt());
-                return new SCCSystemCredentialsJson(system.getLogin(), system.getPassword(), 12345L);
+                return new SCCOrganizationSystemsUpdateResponse(systems.stream().map(system -> {
+                    assertEquals(new Date(0), system.getLastSeenAt());
+                    return new SCCSystemCredentialsJson(system.getLogin(), system.getPassword(), 12345L);
+                }).collect(Collectors.toList()));
             }
 
             @Override
@@ -233,9 +243,11 @@ public class SCCSystemRegistrationManagerTest extends BaseTestCaseWithUser {
         TestSCCWebClient sccWebClient = new TestSCCWebClient(new SCCConfig(
                 new URI("https://localhost"), "username", "password", "uuid")) {
             @Override
-            public SCCSystemCredentialsJson createSystem(
-                    SCCRegisterSystemJson system, String username, String password) {
-                return new SCCSystemCredentialsJson(system.getLogin(), system.getPassword(), 12345L);
+            public SCCOrganizationSystemsUpdateResponse createUpdateSystems(
+                    List<SCCRegisterSystemJson> systems, String username, String password) {
+                return new SCCOrganizationSystemsUpdateResponse(systems.stream()
+                        .map(system -> new SCCSystemCredentialsJson(system.getLogin(), system.getPassword(), 12345L))
+                        .collect(Collectors.toList()));
             }
 
             @Override
@@ -267,6 +279,77 @@ public class SCCSystemRegistrationManagerTest extends BaseTestCaseWithUser {
         sccSystemRegistrationManager.updateLastSeen(credentials);
     }
 
+    @Test
+    public void testBulkRegistrationWithRetry() throws Exception {
+        Path tmpSaltRoot = Files.createTempDirectory("salt");
+        SaltStateGeneratorService.INSTANCE.setSuseManagerStatesFilesRoot(tmpSaltRoot
+                .toAbsolutePath());
+        SaltStateGeneratorService.INSTANCE.setSkipSetOwner(true);
+
+        Config.get().setString(ConfigDefaults.REG_BATCH_SIZE, "5");
+
+        List<Server> servers = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Server testSystem = ServerTestUtils.createTestSystem();
+            ServerInfo serverInfo = testSystem.getServerInfo();
+            serverInfo.setCheckin(new Date(0)); // 1970-01-01 00:00:00 UTC
+            testSystem.setServerInfo(serverInfo);
+            servers.add(testSystem);
+        }
+        // SCC does not accept this one
+        String rejectedLogin = ContentSyncManager.getUUID() + "-" + servers.get(0).getId();
+
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean failed = new AtomicBoolean();
+        SCCWebClient sccWebClient = new SCCWebClient(new SCCConfig(
+                new URI("https://localhost"), "username", "password", "uuid")) {
+            @Override
+            public SCCOrganizationSystemsUpdateResponse createUpdateSystems(
+                    List<SCCRegisterSystemJson> systems, String username, String password)
+                    throws SCCClientException {
+                calls.incrementAndGet();
+                assertTrue(systems.size() <= 5);
+                if (failed.compareAndSet(false, true)) {
+                    throw new SCCClientException(503, "Service Unavailable");
+                }
+                return new SCCOrganizationSystemsUpdateResponse(systems.stream()
+                        .filter(system -> !system.getLogin().equals(rejectedLogin))
+                        .map(system -> new SCCSystemCredentialsJson(system.getLogin(), system.getPassword(), 12345L))
+                        .collect(Collectors.toList()));
+            }
+        };
+
+        SCCSystemRegistrationManager sccSystemRegistrationManager =
+                new SCCSystemRegistrationManager(sccWebClient, false, 10L);
+        SCCCachingFactory.initNewSystemsToForward();
+        List<SCCRegCacheItem> testSystems = SCCCachingFactory.findSystemsToForwardRegistration().stream()
+                .filter(i -> servers.contains(i.getOptServer().get()))
+                .collect(Collectors.toList());
+        assertEquals(12, testSystems.size());
+        Credentials credentials = CredentialsFactory.createSCCCredentials();
+        credentials.setUsername("username");
+        credentials.setPassword("password");
+        credentials.setUrl("https://scc.suse.com");
+        CredentialsFactory.storeCredentials(credentials);
+
+        sccSystemRegistrationManager.register(testSystems, credentials);
+
+        // 3 batches and one retry
+        assertEquals(4, calls.get());
+        for (SCCRegCacheItem item : testSystems) {
+            if (item.getOptServer().get().equals(servers.get(0))) {
+                assertTrue(item.getOptRegistrationErrorTime().isPresent());
+                assertTrue(item.getOptSccId().isEmpty());
+            }
+            else {
+                assertTrue(item.getOptRegistrationErrorTime().isEmpty());
+                assertEquals(12345L, item.getOptSccId().get().longValue());
+                assertEquals(credentials, item.getOptCredentials().get());
+            }
+        }
+        Config.get().remove(ConfigDefaults.REG_BATCH_SIZE);
+    }
+
     @Test
     public void testVirtualInfoLibvirt() throws Exception {
         Path tmpSaltRoot = Files.createTempDirectory("salt");
@@ -298,11 +381,14 @@ public class SCCSystemRegistrationManagerTest extends BaseTestCaseWithUser {
 
 
             @Override
-            public SCCSystemCredentialsJson createSystem(
-                    SCCRegisterSystemJson system, String username, String password) {
+            public SCCOrganizationSystemsUpdateResponse createUpdateSystems(
+                    List<SCCRegisterSystemJson> systems, String username, String password) {
                 assertEquals("username", username);
                 assertEquals("password", password);
-                return new SCCSystemCredentialsJson(system.getLogin(), system.getPassword(), new Random().nextLong());
+                return new SCCOrganizationSystemsUpdateResponse(systems.stream()
+                        .map(system -> new SCCSystemCredentialsJson(system.getLogin(), system.getPassword(),
+                                new Random().nextLong()))
+                        .collect(Collectors.toList()));
             }
 
             @Override
@@ -381,11 +467,14 @@ public class SCCSystemRegistrationManagerTest extends BaseTestCaseWithUser {
 
 
             @Override
-            public SCCSystemCredentialsJson createSystem(
-                    SCCRegisterSystemJson system, String username, String password) {
+            public SCCOrganizationSystemsUpdateResponse createUpdateSystems(
+                    List<SCCRegisterSystemJson> systems, String username, String password) {
                 assertEquals("username", username);
                 assertEquals("password", password);
-                return new SCCSystemCredentialsJson(system.getLogin(), system.getPassword(), new Random().nextLong());
+                return new SCCOrganizationSystemsUpdateResponse(systems.stream()
+                        .map(system -> new SCCSystemCredentialsJson(system.getLogin(), system.getPassword(),
+                                new Random().nextLong()))
+                        .collect(Collectors.toList()));
             }
 
             @Override
@@ -479,11 +568,14 @@ public class SCCSystemRegistrationManagerTest extends BaseTestCaseWithUser {
 
 
             @Override
-            public SCCSystemCredentialsJson createSystem(
-                    SCCRegisterSystemJson system, String username, String password) {
+            public SCCOrganizationSystemsUpdateResponse createUpdateSystems(
+                    List<SCCRegisterSystemJson> systems, String username, String password) {
                 assertEquals("username", username);
                 assertEquals("password", password);
-                return new SCCSystemCredentialsJson(system.getLogin(), system.getPassword(), new Random().nextLong());
+                return new SCCOrganizationSystemsUpdateResponse(systems.stream()
+                        .map(system -> new SCCSystemCredentialsJson(system.getLogin(), system.getPassword(),
+                                new Random().nextLong()))
+                        .collect(Collectors.toList()));
             }
 
             @Override
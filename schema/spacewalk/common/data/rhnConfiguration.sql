@@ -3,3 +3,5 @@ INSERT INTO rhnConfiguration (key, description, default_value) VALUES ('extauth_
 INSERT INTO rhnConfiguration (key, description, default_value) VALUES ('extauth_keep_temproles', 'Keep temporary user roles granted due to the external authentication setup for subsequent logins using password.', 'false');
 INSERT INTO rhnConfiguration (key, description, value, default_value)
 VALUES ('system_checkin_threshold', 'Number of days before reporting a system as inactive', null, 1);
+INSERT INTO rhnConfiguration (key, description, value, default_value)
+VALUES ('reportdb_change_log', 'Record the systems changed since the last reporting database update', null, 'false');
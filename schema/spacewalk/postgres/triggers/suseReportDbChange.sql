@@ -0,0 +1,495 @@
+--
+-- Copyright (c) 2023 SUSE LLC
+--
+-- This software is licensed to you under the GNU General Public License,
+-- version 2 (GPLv2). There is NO WARRANTY for this software, express or
+-- implied, including the implied warranties of MERCHANTABILITY or FITNESS
+-- FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+-- along with this software; if not, see
+-- http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+--
+-- Red Hat trademarks are not licensed under GPLv2. No permission is
+-- granted to use or replicate Red Hat trademarks that are incorporated
+-- in this software or its documentation.
+--
+
+-- True if the changed systems are recorded, i.e. the reporting db is updated incrementally.
+-- Checked first by the trigger functions so that the log costs nothing when it is not used.
+create or replace function suse_reportdb_change_enabled() returns boolean as
+$$
+        select coalesce((select cast(coalesce(value, default_value) as boolean)
+                           from rhnConfiguration
+                          where key = 'reportdb_change_log'), false);
+$$ language sql stable;
+
+-- Records the systems whose reporting data changed, see suseReportDbChange.
+-- The arguments are the columns of the changed rows holding the system ids.
+create or replace function suse_reportdb_change_trig_fun() returns trigger as
+$$
+declare
+        col text;
+        changed text;
+begin
+        if not suse_reportdb_change_enabled() then
+                return null;
+        end if;
+        changed := case tg_op
+                when 'INSERT' then 'select * from new_rows'
+                when 'DELETE' then 'select * from old_rows'
+                else 'select * from old_rows union all select * from new_rows'
+        end;
+        foreach col in array tg_argv loop
+                execute format('insert into suseReportDbChange (server_id) '
+                        'select distinct c.%I from (%s) c where c.%I is not null '
+                        'on conflict (server_id) do nothing', col, changed, col);
+        end loop;
+        return null;
+end;
+$$ language plpgsql;
+
+-- Same as suse_reportdb_change_trig_fun() for rows referencing the system indirectly.
+-- The arguments are the column of the changed rows holding the referenced id, the
+-- referenced table and its columns holding the system ids.
+create or replace function suse_reportdb_change_lookup_trig_fun() returns trigger as
+$$
+declare
+        i integer;
+        changed text;
+begin
+        if not suse_reportdb_change_enabled() then
+                return null;
+        end if;
+        changed := case tg_op
+                when 'INSERT' then 'select * from new_rows'
+                when 'DELETE' then 'select * from old_rows'
+                else 'select * from old_rows union all select * from new_rows'
+        end;
+        for i in 2 .. tg_nargs - 1 loop
+                execute format('insert into suseReportDbChange (server_id) '
+                        'select distinct l.%I from (%s) c join %I l on l.id = c.%I where l.%I is not null '
+                        'on conflict (server_id) do nothing',
+                        tg_argv[i], changed, tg_argv[1], tg_argv[0], tg_argv[i]);
+        end loop;
+        return null;
+end;
+$$ language plpgsql;
+
+create trigger
+rhnserver_rdb_ins_trig
+after insert on rhnServer
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('id');
+
+create trigger
+rhnserver_rdb_upd_trig
+after update on rhnServer
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('id');
+
+create trigger
+rhnserver_rdb_del_trig
+after delete on rhnServer
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('id');
+
+create trigger
+rhnserverinfo_rdb_ins_trig
+after insert on rhnServerInfo
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverinfo_rdb_upd_trig
+after update on rhnServerInfo
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverinfo_rdb_del_trig
+after delete on rhnServerInfo
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+suseminioninfo_rdb_ins_trig
+after insert on suseMinionInfo
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+suseminioninfo_rdb_upd_trig
+after update on suseMinionInfo
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+suseminioninfo_rdb_del_trig
+after delete on suseMinionInfo
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverlocation_rdb_ins_trig
+after insert on rhnServerLocation
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverlocation_rdb_upd_trig
+after update on rhnServerLocation
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverlocation_rdb_del_trig
+after delete on rhnServerLocation
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverpath_rdb_ins_trig
+after insert on rhnServerPath
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverpath_rdb_upd_trig
+after update on rhnServerPath
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverpath_rdb_del_trig
+after delete on rhnServerPath
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnproxyinfo_rdb_ins_trig
+after insert on rhnProxyInfo
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnproxyinfo_rdb_upd_trig
+after update on rhnProxyInfo
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnproxyinfo_rdb_del_trig
+after delete on rhnProxyInfo
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverhistory_rdb_ins_trig
+after insert on rhnServerHistory
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverhistory_rdb_upd_trig
+after update on rhnServerHistory
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverhistory_rdb_del_trig
+after delete on rhnServerHistory
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserveraction_rdb_ins_trig
+after insert on rhnServerAction
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserveraction_rdb_upd_trig
+after update on rhnServerAction
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserveraction_rdb_del_trig
+after delete on rhnServerAction
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverchannel_rdb_ins_trig
+after insert on rhnServerChannel
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverchannel_rdb_upd_trig
+after update on rhnServerChannel
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverchannel_rdb_del_trig
+after delete on rhnServerChannel
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverconfigchannel_rdb_ins_trig
+after insert on rhnServerConfigChannel
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverconfigchannel_rdb_upd_trig
+after update on rhnServerConfigChannel
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverconfigchannel_rdb_del_trig
+after delete on rhnServerConfigChannel
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnservercustomdatavalue_rdb_ins_trig
+after insert on rhnServerCustomDataValue
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnservercustomdatavalue_rdb_upd_trig
+after update on rhnServerCustomDataValue
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnservercustomdatavalue_rdb_del_trig
+after delete on rhnServerCustomDataValue
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnservergroupmembers_rdb_ins_trig
+after insert on rhnServerGroupMembers
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnservergroupmembers_rdb_upd_trig
+after update on rhnServerGroupMembers
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnservergroupmembers_rdb_del_trig
+after delete on rhnServerGroupMembers
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverneededcache_rdb_ins_trig
+after insert on rhnServerNeededCache
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverneededcache_rdb_upd_trig
+after update on rhnServerNeededCache
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverneededcache_rdb_del_trig
+after delete on rhnServerNeededCache
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverpackage_rdb_ins_trig
+after insert on rhnServerPackage
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverpackage_rdb_upd_trig
+after update on rhnServerPackage
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnserverpackage_rdb_del_trig
+after delete on rhnServerPackage
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnservernetinterface_rdb_ins_trig
+after insert on rhnServerNetInterface
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnservernetinterface_rdb_upd_trig
+after update on rhnServerNetInterface
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnservernetinterface_rdb_del_trig
+after delete on rhnServerNetInterface
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnservernetaddress4_rdb_ins_trig
+after insert on rhnServerNetAddress4
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_lookup_trig_fun('interface_id', 'rhnServerNetInterface', 'server_id');
+
+create trigger
+rhnservernetaddress4_rdb_upd_trig
+after update on rhnServerNetAddress4
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_lookup_trig_fun('interface_id', 'rhnServerNetInterface', 'server_id');
+
+create trigger
+rhnservernetaddress4_rdb_del_trig
+after delete on rhnServerNetAddress4
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_lookup_trig_fun('interface_id', 'rhnServerNetInterface', 'server_id');
+
+create trigger
+rhnservernetaddress6_rdb_ins_trig
+after insert on rhnServerNetAddress6
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_lookup_trig_fun('interface_id', 'rhnServerNetInterface', 'server_id');
+
+create trigger
+rhnservernetaddress6_rdb_upd_trig
+after update on rhnServerNetAddress6
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_lookup_trig_fun('interface_id', 'rhnServerNetInterface', 'server_id');
+
+create trigger
+rhnservernetaddress6_rdb_del_trig
+after delete on rhnServerNetAddress6
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_lookup_trig_fun('interface_id', 'rhnServerNetInterface', 'server_id');
+
+create trigger
+rhnvirtualinstance_rdb_ins_trig
+after insert on rhnVirtualInstance
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('host_system_id', 'virtual_system_id');
+
+create trigger
+rhnvirtualinstance_rdb_upd_trig
+after update on rhnVirtualInstance
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('host_system_id', 'virtual_system_id');
+
+create trigger
+rhnvirtualinstance_rdb_del_trig
+after delete on rhnVirtualInstance
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('host_system_id', 'virtual_system_id');
+
+create trigger
+rhnvirtualinstanceinfo_rdb_ins_trig
+after insert on rhnVirtualInstanceInfo
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_lookup_trig_fun('instance_id', 'rhnVirtualInstance', 'host_system_id', 'virtual_system_id');
+
+create trigger
+rhnvirtualinstanceinfo_rdb_upd_trig
+after update on rhnVirtualInstanceInfo
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_lookup_trig_fun('instance_id', 'rhnVirtualInstance', 'host_system_id', 'virtual_system_id');
+
+create trigger
+rhnvirtualinstanceinfo_rdb_del_trig
+after delete on rhnVirtualInstanceInfo
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_lookup_trig_fun('instance_id', 'rhnVirtualInstance', 'host_system_id', 'virtual_system_id');
+
+create trigger
+rhnxccdftestresult_rdb_ins_trig
+after insert on rhnXccdfTestresult
+referencing new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnxccdftestresult_rdb_upd_trig
+after update on rhnXccdfTestresult
+referencing old table as old_rows new table as new_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
+
+create trigger
+rhnxccdftestresult_rdb_del_trig
+after delete on rhnXccdfTestresult
+referencing old table as old_rows
+for each statement
+execute procedure suse_reportdb_change_trig_fun('server_id');
@@ -0,0 +1,277 @@
+-------------------------------
+-- Set based overview procedure
+-------------------------------
+
+create or replace
+function update_system_overview_bulk (
+    sids in numeric[]
+) returns void as
+$$
+begin
+    with errata as (
+        SELECT setv.server_id,
+               count(*) FILTER (WHERE setv.errata_type = 'Security Advisory') AS security_errata,
+               count(*) FILTER (WHERE setv.errata_type = 'Bug Fix Advisory') AS bug_errata,
+               count(*) FILTER (WHERE setv.errata_type = 'Product Enhancement Advisory') AS enhancement_errata
+        FROM rhnServerErrataTypeView setv
+        WHERE setv.server_id = ANY(sids)
+        GROUP BY setv.server_id
+    ), outdated as (
+        SELECT snc.server_id, count(DISTINCT p.name_id) AS outdated_packages
+        FROM rhnPackage p, rhnServerNeededCache snc
+        WHERE snc.server_id = ANY(sids) AND p.id = snc.package_id
+        GROUP BY snc.server_id
+    ), actions as (
+        SELECT SA.server_id,
+               count(distinct SA.action_id) AS actions_count,
+               count(A.id) FILTER (WHERE AT.label IN ('packages.refresh_list', 'packages.update',
+                       'packages.remove', 'errata.update', 'packages.delta')) AS package_actions_count
+        FROM rhnServerAction SA, rhnActionStatus AST, rhnActionType AT, rhnAction A
+        WHERE SA.server_id = ANY(sids)
+            AND AST.id = SA.status
+            AND AST.name = 'Queued'
+            AND A.id = SA.action_id
+            AND AT.id = A.action_type
+        GROUP BY SA.server_id
+    ), overview as (
+        SELECT s.id,
+               s.name AS server_name,
+               s.created,
+               (SELECT wc.login FROM web_contact wc WHERE wc.id = s.creator_id) AS creator_name,
+               s.modified,
+               (SELECT count(server_group_id)
+                FROM rhnVisibleServerGroupMembers
+                WHERE server_id = s.id) AS group_count,
+               base.id AS channel_id,
+               base.name AS channel_labels,
+               coalesce(e.security_errata, 0) AS security_errata,
+               coalesce(e.bug_errata, 0) AS bug_errata,
+               coalesce(e.enhancement_errata, 0) AS enhancement_errata,
+               coalesce(o.outdated_packages, 0) AS outdated_packages,
+               (SELECT count(*)
+                FROM rhnActionConfigRevision ACR
+                INNER JOIN rhnActionConfigRevisionResult ACRR on ACR.id = ACRR.action_config_revision_id
+                WHERE ACR.server_id = s.id
+                  AND ACR.action_id = (
+                       SELECT MAX(rA.id)
+                         FROM rhnAction rA
+                              INNER JOIN rhnServerAction rSA ON rSA.action_id = rA.id
+                              INNER JOIN rhnActionStatus rAS ON rAS.id = rSA.status
+                              INNER JOIN rhnActionType rAT ON rAT.id = rA.action_type
+                        WHERE rSA.server_id = s.id
+                          AND rAS.name in ('Completed', 'Failed')
+                          AND rAT.label = 'configfiles.diff'
+                  )
+                  AND ACR.failure_id is null
+                  AND ACRR.result is not null) AS config_files_with_differences,
+               si.last_checkin,
+               (SELECT date_diff_in_days(CAST(si.last_checkin AS TIMESTAMP), NOW()) > C.threshold
+                FROM (SELECT CAST(coalesce(value, default_value) AS INTEGER) AS threshold
+                        FROM rhnconfiguration WHERE key = 'system_checkin_threshold') C) AS awol,
+               (SELECT string_agg(ordered.label, ',')
+                FROM (
+                    SELECT label
+                    FROM rhnServerEntitlementView AS SEV
+                    WHERE SEV.server_id = s.id
+                    ORDER BY CASE SEV.is_base WHEN 'Y' THEN 1 WHEN 'N' THEN 2 END, SEV.label
+                ) AS ordered) AS entitlement_level,
+               EXISTS (SELECT 1 FROM rhnVirtualInstance WHERE virtual_system_id = s.id) AS virtual_guest,
+               (EXISTS (SELECT 1
+                        FROM rhnServerGroup sg
+                            INNER JOIN rhnServerGroupMembers sgm ON sg.id = sgm.server_group_id
+                            INNER JOIN rhnServerGroupType sgt ON sgt.id = sg.group_type
+                        WHERE sgm.server_id = s.id AND sgt.label = 'virtualization_host')
+                OR EXISTS (SELECT 1 FROM rhnVirtualInstance VI WHERE VI.host_system_id = s.id)) AS virtual_host,
+               EXISTS (SELECT 1 FROM rhnProxyInfo PI WHERE PI.server_id = s.id) AS proxy,
+               EXISTS (SELECT 1 FROM suseMgrServerInfo SI WHERE SI.server_id = s.id) AS mgr_server,
+               EXISTS (SELECT 1
+                       FROM rhnServerFeaturesView SFV
+                       WHERE SFV.server_id = s.id AND SFV.label = 'ftr_system_grouping') AS selectable,
+               (SELECT count(sp.name_id)
+                FROM rhnServerPackage sp
+                LEFT OUTER JOIN (SELECT sc.server_id,
+                                        cp.package_id,
+                                        p.name_id,
+                                        p.evr_id,
+                                        p.package_arch_id
+                                 FROM rhnPackage p,
+                                      rhnServerChannel sc,
+                                      rhnServerPackage sp2,
+                                      rhnChannelPackage cp,
+                                      rhnUserServerPerms usp2
+                                 WHERE cp.package_id = p.id
+                                   AND cp.channel_id = sc.channel_id
+                                   AND sc.server_id = usp2.server_id
+                                   AND sc.server_id = sp2.server_id
+                                   AND sp2.server_id = s.id
+                                   AND sp2.name_id = p.name_id
+                                   AND sp2.evr_id = p.evr_id
+                                   AND sp2.package_arch_id = p.package_arch_id
+                                 ) scp ON (scp.server_id = sp.server_id AND
+                                           sp.name_id = scp.name_id AND
+                                           sp.evr_id = scp.evr_id AND
+                                           sp.package_arch_id = scp.package_arch_id)
+                WHERE scp.package_id IS NULL AND sp.server_id = s.id
+                GROUP BY sp.server_id) AS extra_pkg_count,
+               (EXISTS (SELECT 1
+                        FROM rhnServerPackage SP
+                          JOIN rhnPackage P ON (P.evr_id = SP.evr_id AND P.name_id = SP.name_id)
+                          JOIN rhnErrataPackage EP ON EP.package_id = P.id
+                          JOIN rhnErrata E ON EP.errata_id = E.id
+                          JOIN rhnerratakeyword EK ON E.id = EK.errata_id
+                        WHERE SP.server_id = s.id
+                          AND EK.keyword = 'reboot_suggested'
+                          AND (to_date('1970-01-01', 'YYYY-MM-DD')
+                               + numtodsinterval(s.last_boot, 'second')) < SP.installtime at time zone 'UTC')
+                OR EXISTS (SELECT 1
+                           FROM rhnServerPackage SP
+                             JOIN rhnPackage P ON (P.evr_id = SP.evr_id AND P.name_id = SP.name_id)
+                             JOIN rhnPackageProvides PP ON P.id = PP.package_id
+                             JOIN rhnPackageCapability PC ON PP.capability_id = PC.id
+                           WHERE SP.server_id = s.id
+                             AND PC.name = 'installhint(reboot-needed)'
+                             AND (to_date('1970-01-01', 'YYYY-MM-DD')
+                                  + numtodsinterval(s.last_boot, 'second')) < SP.installtime at time zone 'UTC')
+                OR EXISTS (SELECT 1
+                           FROM suseMinionInfo smi
+                           WHERE smi.server_id = s.id
+                             AND smi.reboot_needed = 'Y')) AS requires_reboot,
+               EXISTS (SELECT 1
+                       FROM rhnKickstartSession KSS, rhnKickstartSessionState KSSS
+                       WHERE (KSS.old_server_id = s.id OR KSS.new_server_id = s.id)
+                           AND KSSS.id = KSS.state_id
+                           AND KSSS.label NOT IN ('complete', 'failed')) AS kickstarting,
+               coalesce(a.actions_count, 0) AS actions_count,
+               coalesce(a.package_actions_count, 0) AS package_actions_count,
+               (SELECT COUNT(DISTINCT E.id)
+                FROM rhnErrata E, rhnServerNeededErrataCache SNPC
+                WHERE SNPC.server_id = s.id
+                    AND SNPC.errata_id = E.id
+                    AND NOT EXISTS (SELECT SA.server_id
+                                    FROM rhnActionErrataUpdate AEU,
+                                       rhnServerAction SA,
+                                       rhnActionStatus AST
+                                    WHERE SA.server_id = s.id
+                                        AND SA.status = AST.id
+                                        AND AST.name IN('Queued', 'Picked Up')
+                                        AND AEU.action_id = SA.action_id
+                                        AND AEU.errata_id = E.id)) AS unscheduled_errata_count
+        FROM rhnServer s
+        LEFT JOIN LATERAL (
+            SELECT C.id, coalesce(C.name, '(none)') AS name
+            FROM rhnChannel C, rhnServerChannel SC
+            WHERE SC.server_id = s.id AND SC.channel_id = C.id AND C.parent_channel IS NULL
+            LIMIT 1
+        ) base ON TRUE
+        LEFT JOIN LATERAL (
+            SELECT CAST(TO_CHAR(checkin, 'YYYY-MM-DD HH24:MI:SS') AS timestamptz) AS last_checkin
+            FROM rhnServerInfo WHERE server_id = s.id
+            LIMIT 1
+        ) si ON TRUE
+        LEFT JOIN errata e ON e.server_id = s.id
+        LEFT JOIN outdated o ON o.server_id = s.id
+        LEFT JOIN actions a ON a.server_id = s.id
+        WHERE s.id = ANY(sids)
+    )
+    insert into suseSystemOverview (
+        id,
+        server_name,
+        created,
+        creator_name,
+        modified,
+        group_count,
+        channel_id,
+        channel_labels,
+        security_errata,
+        bug_errata,
+        enhancement_errata,
+        outdated_packages,
+        config_files_with_differences,
+        last_checkin,
+        entitlement_level,
+        virtual_guest,
+        virtual_host,
+        proxy,
+        mgr_server,
+        selectable,
+        extra_pkg_count,
+        requires_reboot,
+        kickstarting,
+        actions_count,
+        package_actions_count,
+        unscheduled_errata_count,
+        status_type
+    )
+    select
+        id,
+        server_name,
+        created,
+        creator_name,
+        modified,
+        group_count,
+        channel_id,
+        channel_labels,
+        security_errata,
+        bug_errata,
+        enhancement_errata,
+        outdated_packages,
+        config_files_with_differences,
+        last_checkin,
+        entitlement_level,
+        virtual_guest,
+        virtual_host,
+        proxy,
+        mgr_server,
+        selectable,
+        extra_pkg_count,
+        requires_reboot,
+        kickstarting,
+        actions_count,
+        package_actions_count,
+        unscheduled_errata_count,
+        case
+            when entitlement_level = '' then 'unentitled'
+            when awol then 'awol'
+            when kickstarting then 'kickstarting'
+            when requires_reboot then 'reboot needed'
+            when enhancement_errata + bug_errata + security_errata > 0 and unscheduled_errata_count = 0
+                then 'updates scheduled'
+            when actions_count > 0 then 'actions scheduled'
+            when enhancement_errata + bug_errata + security_errata + outdated_packages + package_actions_count = 0
+                then 'up2date'
+            when security_errata > 0 then 'critical'
+            when outdated_packages > 0 then 'updates'
+            else null
+        end
+    from overview
+    on conflict (id)
+    do update set
+        server_name = EXCLUDED.server_name,
+        created = EXCLUDED.created,
+        creator_name = EXCLUDED.creator_name,
+        modified = EXCLUDED.modified,
+        group_count = EXCLUDED.group_count,
+        channel_id = EXCLUDED.channel_id,
+        channel_labels = EXCLUDED.channel_labels,
+        security_errata = EXCLUDED.security_errata,
+        bug_errata = EXCLUDED.bug_errata,
+        enhancement_errata = EXCLUDED.enhancement_errata,
+        outdated_packages = EXCLUDED.outdated_packages,
+        config_files_with_differences = EXCLUDED.config_files_with_differences,
+        last_checkin = EXCLUDED.last_checkin,
+        entitlement_level = EXCLUDED.entitlement_level,
+        virtual_guest = EXCLUDED.virtual_guest,
+        virtual_host = EXCLUDED.virtual_host,
+        proxy = EXCLUDED.proxy,
+        mgr_server = EXCLUDED.mgr_server,
+        selectable = EXCLUDED.selectable,
+        extra_pkg_count = EXCLUDED.extra_pkg_count,
+        requires_reboot = EXCLUDED.requires_reboot,
+        kickstarting = EXCLUDED.kickstarting,
+        actions_count = EXCLUDED.actions_count,
+        package_actions_count = EXCLUDED.package_actions_count,
+        unscheduled_errata_count = EXCLUDED.unscheduled_errata_count,
+        status_type = EXCLUDED.status_type;
+end;
+$$
+language plpgsql;
@@ -0,0 +1,61 @@
+--------------------------------------
+-- Set based needed package cache update
+--------------------------------------
+
+create or replace function
+update_needed_cache_bulk(server_ids_in in numeric[])
+returns void as $$
+begin
+  with installed as (
+      SELECT sp.server_id, sp.name_id, sp.package_arch_id, max(pe.evr) AS max_evr
+        FROM rhnServerPackage sp
+        join rhnPackageEvr pe ON pe.id = sp.evr_id
+       WHERE sp.server_id = ANY(server_ids_in)
+       GROUP BY sp.server_id, sp.name_id, sp.package_arch_id
+  ), candidates as (
+      -- packages of the subscribed channels, with the channel errata shipping them
+      SELECT DISTINCT cp.channel_id, p.id AS package_id, p.name_id, p.package_arch_id, pe.evr,
+             x.errata_id, x.channel_id AS errata_channel_id
+        FROM (SELECT DISTINCT sc.channel_id
+                FROM rhnServerChannel sc
+               WHERE sc.server_id = ANY(server_ids_in)) c
+        join rhnChannelPackage cp ON cp.channel_id = c.channel_id
+        join susePackageExcludingPartOfPtf p ON p.id = cp.package_id
+        join rhnPackageEvr pe ON pe.id = p.evr_id
+        left join (SELECT ep.errata_id, ce.channel_id, ep.package_id
+                     FROM rhnChannelErrata ce
+                     join rhnErrataPackage ep ON ep.errata_id = ce.errata_id) x
+          ON x.channel_id = cp.channel_id AND x.package_id = cp.package_id
+        left join rhnErrata e ON x.errata_id = e.id
+       WHERE x.errata_id IS NULL or e.advisory_status != 'retracted' -- packages which are part of a retracted errata should not be installed
+  ), needed as (
+      SELECT DISTINCT i.server_id, c.errata_id, c.package_id, c.errata_channel_id AS channel_id
+        FROM installed i
+        join rhnServerChannel sc ON sc.server_id = i.server_id
+        join candidates c ON c.channel_id = sc.channel_id AND c.name_id = i.name_id
+                 AND (i.max_evr).type = (c.evr).type AND i.max_evr < c.evr
+        join rhnPackageUpgradeArchCompat puac
+                 ON puac.package_arch_id = i.package_arch_id
+                 AND puac.package_upgrade_arch_id = c.package_arch_id
+  ), removed as (
+      DELETE FROM rhnServerNeededCache snc
+       WHERE snc.server_id = ANY(server_ids_in)
+         AND NOT EXISTS (SELECT 1
+                           FROM needed n
+                          WHERE n.server_id = snc.server_id
+                            AND n.package_id = snc.package_id
+                            AND n.errata_id IS NOT DISTINCT FROM snc.errata_id
+                            AND n.channel_id IS NOT DISTINCT FROM snc.channel_id)
+  )
+  INSERT INTO rhnServerNeededCache (server_id, errata_id, package_id, channel_id)
+  SELECT n.server_id, n.errata_id, n.package_id, n.channel_id
+    FROM needed n
+   WHERE NOT EXISTS (SELECT 1
+                       FROM rhnServerNeededCache snc
+                      WHERE snc.server_id = n.server_id
+                        AND snc.package_id = n.package_id
+                        AND snc.errata_id IS NOT DISTINCT FROM n.errata_id
+                        AND snc.channel_id IS NOT DISTINCT FROM n.channel_id);
+end;
+$$
+language plpgsql;
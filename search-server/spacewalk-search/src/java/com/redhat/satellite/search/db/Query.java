@@ -15,10 +15,13 @@
 
 package com.redhat.satellite.search.db;
 
+import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.session.SqlSession;
 
+import java.io.IOException;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -67,6 +70,53 @@ public class Query<T> {
         return retval;
     }
 
+    /**
+     * Iterate over the objects of the query while they are fetched from the database,
+     * without loading them all in memory. The returned cursor must be closed before close().
+     * @param param query param
+     * @return objects of type T
+     * @throws SQLException something bad happened
+     */
+    public QueryCursor<T> iterate(Object param) throws SQLException {
+        Cursor<T> cursor = session.selectCursor(queryName, param);
+        return new QueryCursor<T>(cursor);
+    }
+
+    /**
+     * Objects of a query fetched from the database during the iteration
+     * @param <T> type returned by query
+     */
+    public static class QueryCursor<T> implements Iterable<T>, AutoCloseable {
+
+        private final Cursor<T> cursor;
+
+        QueryCursor(Cursor<T> cursorIn) {
+            cursor = cursorIn;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Iterator<T> iterator() {
+            return cursor.iterator();
+        }
+
+        /**
+         * Releases the result set of the query
+         * @throws SQLException something bad happened
+         */
+        @Override
+        public void close() throws SQLException {
+            try {
+                cursor.close();
+            }
+            catch (IOException e) {
+                throw new SQLException(e);
+            }
+        }
+    }
+
     /**
      * Load single object from query
      * @param param query apram
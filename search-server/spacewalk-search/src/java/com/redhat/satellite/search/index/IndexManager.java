@@ -28,6 +28,8 @@ import org.apache.lucene.analysis.PerFieldAnalyzerWrapper;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.DateTools;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.FieldSelector;
+import org.apache.lucene.document.MapFieldSelector;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
@@ -41,11 +43,13 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.LockObtainFailedException;
+import org.picocontainer.Startable;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -57,7 +61,7 @@ import java.util.TreeMap;
  *
  * @version $Rev$
  */
-public class IndexManager {
+public class IndexManager implements Startable {
 
     private static Logger log = LogManager.getLogger(IndexManager.class);
     private String indexWorkDir;
@@ -70,6 +74,12 @@ public class IndexManager {
     private int max_ngram;
     private boolean filterDocResults = false;
     private boolean explainResults = false;
+    private int commitBatchSize;
+    private int indexingThreads;
+    // one long lived writer and one shared searcher per index
+    private final Map<String, IndexWriter> writers = new HashMap<String, IndexWriter>();
+    private final Map<String, IndexSearcherManager> searchers =
+        new HashMap<String, IndexSearcherManager>();
     // Name conflict with our Configuration class and Hadoop's
     private Map<String, String> docLocaleLookUp = new TreeMap<String, String>
                                                                                                 (String.CASE_INSENSITIVE_ORDER);
@@ -97,6 +107,9 @@ public class IndexManager {
         max_ngram = config.getInt("search.max_ngram", 5);
         filterDocResults = config.getBoolean("search.doc.limit_results");
         explainResults = config.getBoolean("search.log.explain.results");
+        commitBatchSize = config.getInt("search.index.commit_batch_size", 1000);
+        indexingThreads = config.getInt("search.index.threads",
+                Runtime.getRuntime().availableProcessors());
     }
 
 
@@ -142,12 +155,11 @@ public class IndexManager {
     public List<Result> search(String indexName, String query, String lang,
             boolean isFineGrained)
             throws IndexingException, QueryParseException {
+        IndexSearcherManager manager = getSearcherManager(indexName);
         IndexSearcher searcher = null;
-        IndexReader reader = null;
         List<Result> retval = null;
         try {
-            reader = getIndexReader(indexName, lang);
-            searcher = getIndexSearcher(indexName, lang);
+            searcher = manager.acquire();
             QueryParser qp = getQueryParser(indexName, lang, isFineGrained);
             Query q = qp.parse(query);
             if (log.isDebugEnabled()) {
@@ -161,7 +173,7 @@ public class IndexManager {
             Set<Term> queryTerms = null;
             try {
                 queryTerms = new HashSet<Term>();
-                Query newQ = q.rewrite(reader);
+                Query newQ = q.rewrite(searcher.getIndexReader());
                 newQ.extractTerms(queryTerms);
             }
             catch (Exception e) {
@@ -189,10 +201,7 @@ public class IndexManager {
         finally {
             try {
                 if (searcher != null) {
-                    searcher.close();
-                }
-                if (reader != null) {
-                    reader.close();
+                    manager.release(searcher);
                 }
             }
             catch (IOException ex) {
@@ -214,19 +223,7 @@ public class IndexManager {
         throws IndexingException {
 
         try {
-            IndexWriter writer = getIndexWriter(indexName, lang);
-            try {
-                writer.flush();
-            }
-            finally {
-                try {
-                    writer.close();
-                }
-                finally {
-                    // unlock it if it is locked.
-                    unlockIndex(indexName);
-                }
-            }
+            getIndexWriter(indexName, lang).commit();
         }
         catch (CorruptIndexException e) {
             throw new IndexingException(e);
@@ -241,7 +238,8 @@ public class IndexManager {
 
 
     /**
-     * Adds a document to an index
+     * Adds a document to an index. The document is visible to searches only after
+     * the next {@link #commit(String)}.
      *
      * @param indexName index to use
      * @param doc Document to be indexed.
@@ -252,20 +250,7 @@ public class IndexManager {
         throws IndexingException {
 
         try {
-            IndexWriter writer = getIndexWriter(indexName, lang);
-            try {
-                writer.addDocument(doc);
-                writer.flush();
-            }
-            finally {
-                try {
-                    writer.close();
-                }
-                finally {
-                    // unlock it if it is locked.
-                    unlockIndex(indexName);
-                }
-            }
+            getIndexWriter(indexName, lang).addDocument(doc);
         }
         catch (CorruptIndexException e) {
             throw new IndexingException(e);
@@ -278,6 +263,9 @@ public class IndexManager {
         }
     }
     /**
+     * Adds a document to an index, replacing the documents having the same value
+     * for the unique field. The change is visible to searches only after the next
+     * {@link #commit(String)}.
      * @param indexName
      * @param doc document with data to index
      * @param uniqueField field in doc which identifies this uniquely
@@ -287,41 +275,15 @@ public class IndexManager {
     public void addUniqueToIndex(String indexName, Document doc,
             String uniqueField, String lang)
         throws IndexingException {
-        IndexReader reader = null;
-        int numFound = 0;
-        try {
-            reader = getIndexReader(indexName, lang);
-            Term term = new Term(uniqueField, doc.get(uniqueField));
-            numFound = reader.docFreq(term);
-        }
-        catch (FileNotFoundException e) {
-            // Index doesn't exist, so this add will be unique
-            // we don't need to do anything/
-        }
-        catch (IOException e) {
-            throw new IndexingException(e);
-        }
-        finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                }
-                catch (IOException e) {
-                    //
-                }
-            }
-        }
-        if (numFound > 0) {
-            log.info("Found " + numFound + " <" + indexName + " docs for " +
-                    uniqueField + ":" + doc.get(uniqueField) +
-                    " will remove them now.");
-            removeFromIndex(indexName, uniqueField, doc.get(uniqueField));
-        }
+        // the writer applies buffered deletes only to the documents added before,
+        // so this is the same as IndexWriter.updateDocument()
+        removeFromIndex(indexName, uniqueField, doc.get(uniqueField));
         addToIndex(indexName, doc, lang);
     }
 
     /**
-     * Remove a document from an index
+     * Remove a document from an index. The change is visible to searches only after
+     * the next {@link #commit(String)}.
      *
      * @param indexName index to use
      * @param uniqueField field name which represents this data's unique id
@@ -330,21 +292,38 @@ public class IndexManager {
      */
     public void removeFromIndex(String indexName, String uniqueField, String objectId)
             throws IndexingException {
-        log.info("Removing <" + indexName + "> " + uniqueField + ":" +
-                objectId);
+        if (log.isDebugEnabled()) {
+            log.debug("Removing <" + indexName + "> " + uniqueField + ":" + objectId);
+        }
         Term t = new Term(uniqueField, objectId);
-        IndexReader reader;
         try {
-            reader = getIndexReader(indexName, IndexHandler.DEFAULT_LANG);
-            try {
-                reader.deleteDocuments(t);
-                reader.flush();
-            }
-            finally {
-               if (reader != null) {
-                    reader.close();
-               }
-            }
+            getIndexWriter(indexName, IndexHandler.DEFAULT_LANG).deleteDocuments(t);
+        }
+        catch (CorruptIndexException e) {
+            throw new IndexingException(e);
+        }
+        catch (IOException e) {
+            throw new IndexingException(e);
+        }
+    }
+
+    /**
+     * Commits the pending changes of an index, making them durable and visible
+     * to the following searches
+     *
+     * @param indexName index to use
+     * @throws IndexingException something went wrong committing the changes
+     */
+    public void commit(String indexName) throws IndexingException {
+        IndexWriter writer;
+        synchronized (writers) {
+            writer = writers.get(indexName);
+        }
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.commit();
         }
         catch (CorruptIndexException e) {
             throw new IndexingException(e);
@@ -354,6 +333,72 @@ public class IndexManager {
         }
     }
 
+    /**
+     * @return number of documents the indexing tasks should add between two commits
+     */
+    public int getCommitBatchSize() {
+        return commitBatchSize;
+    }
+
+    /**
+     * @return number of threads the indexing tasks should use to build and add documents
+     */
+    public int getIndexingThreads() {
+        return indexingThreads;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void start() {
+        // writers and searchers are opened on first use: a lock found before that
+        // was left by a run which did not stop cleanly
+        File[] indexDirs = new File(indexWorkDir).listFiles();
+        if (indexDirs == null) {
+            return;
+        }
+        for (File indexDir : indexDirs) {
+            if (indexDir.isDirectory()) {
+                try {
+                    unlockIndex(indexDir.getName());
+                }
+                catch (IOException e) {
+                    log.error("Unable to remove the stale lock of index " + indexDir.getName(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Commits and closes the index writers and the shared searchers
+     */
+    @Override
+    public void stop() {
+        synchronized (writers) {
+            for (Map.Entry<String, IndexWriter> entry : writers.entrySet()) {
+                try {
+                    entry.getValue().close();
+                }
+                catch (IOException e) {
+                    log.error("Unable to close the writer of index " + entry.getKey(), e);
+                }
+            }
+            writers.clear();
+        }
+        synchronized (searchers) {
+            for (Map.Entry<String, IndexSearcherManager> entry : searchers.entrySet()) {
+                try {
+                    entry.getValue().close();
+                }
+                catch (IOException e) {
+                    log.error("Unable to close the searcher of index " + entry.getKey(), e);
+                }
+            }
+            searchers.clear();
+        }
+    }
+
     /**
      * Unlocks the index at the given directory if it is currently locked.
      * Otherwise, does nothing.
@@ -365,6 +410,7 @@ public class IndexManager {
         File f = new File(path);
         Directory dir = FSDirectory.getDirectory(f);
         if (IndexReader.isLocked(dir)) {
+            log.warn("Removing stale lock of index " + indexName);
             IndexReader.unlock(dir);
         }
     }
@@ -372,32 +418,34 @@ public class IndexManager {
     private IndexWriter getIndexWriter(String name, String lang)
             throws CorruptIndexException, LockObtainFailedException,
             IOException {
-        String path = indexWorkDir + name;
-        File f = new File(path);
-        f.mkdirs();
-        Analyzer analyzer = getAnalyzer(name, lang);
-        IndexWriter writer = new IndexWriter(path, analyzer);
-        writer.setUseCompoundFile(true);
-        return writer;
-    }
-
-    private IndexReader getIndexReader(String indexName, String locale)
-            throws CorruptIndexException, IOException {
-        String path = indexWorkDir + indexName;
-        log.info("IndexManager::getIndexReader(" + indexName + ", " + locale +
-                ") path = " + path);
-        File f = new File(path);
-        IndexReader retval = IndexReader.open(FSDirectory.getDirectory(f));
-        return retval;
+        synchronized (writers) {
+            IndexWriter writer = writers.get(name);
+            if (writer == null) {
+                String path = indexWorkDir + name;
+                File f = new File(path);
+                f.mkdirs();
+                Analyzer analyzer = getAnalyzer(name, lang);
+                writer = new IndexWriter(FSDirectory.getDirectory(f), analyzer,
+                        IndexWriter.MaxFieldLength.LIMITED);
+                writer.setUseCompoundFile(true);
+                writers.put(name, writer);
+            }
+            return writer;
+        }
     }
 
-    private IndexSearcher getIndexSearcher(String indexName, String locale)
-            throws CorruptIndexException, IOException {
-        String path = indexWorkDir + indexName;
-        log.info("IndexManager::getIndexSearcher(" + indexName + ", " + locale +
-                ") path = " + path);
-        IndexSearcher retval = new IndexSearcher(path);
-        return retval;
+    private IndexSearcherManager getSearcherManager(String indexName) {
+        synchronized (searchers) {
+            IndexSearcherManager manager = searchers.get(indexName);
+            if (manager == null) {
+                String path = indexWorkDir + indexName;
+                log.info("IndexManager::getSearcherManager(" + indexName + ") path = " +
+                        path);
+                manager = new IndexSearcherManager(path);
+                searchers.put(indexName, manager);
+            }
+            return manager;
+        }
     }
 
     private QueryParser getQueryParser(String indexName, String lang,
@@ -577,28 +625,34 @@ public class IndexManager {
     }
 
     /**
-     * Removes any documents which are not related to the passed in Set of good value
-     * @param ids Set of ids of all known/good values
+     * Removes any documents which are not related to the passed in list of good values
+     * @param sortedIds ids of all known/good values, sorted in natural String order
      * @param indexName index name to operate on
      * @param uniqField the name of the field in the Document to uniquely identify
      * this record
      * @return the number of documents deleted
      */
-    public int deleteRecordsNotInList(Set<String> ids, String indexName,
+    public int deleteRecordsNotInList(String[] sortedIds, String indexName,
             String uniqField) {
         int count = 0;
-        IndexReader reader = null;
+        // only load the unique field of the documents
+        FieldSelector selector = new MapFieldSelector(new String[] {uniqField});
+        IndexSearcherManager manager = getSearcherManager(indexName);
+        IndexSearcher searcher = null;
         try {
-            reader = getIndexReader(indexName, IndexHandler.DEFAULT_LANG);
+            // look at the committed documents, the pending ones are in the list anyway
+            commit(indexName);
+            searcher = manager.acquire();
+            IndexReader reader = searcher.getIndexReader();
 
             // Use maxDoc() to iterate over all docs, numDocs() returns the
             // number of currently alive docs leaving out the deleted ones.
             int maxDoc = reader.maxDoc();
             for (int i = 0; i < maxDoc; i++) {
                 if (!reader.isDeleted(i)) {
-                    Document doc = reader.document(i);
+                    Document doc = reader.document(i, selector);
                     String uniqId = doc.getField(uniqField).stringValue();
-                    if (!ids.contains(uniqId)) {
+                    if (Arrays.binarySearch(sortedIds, uniqId) < 0) {
                         log.info(indexName + ":" + uniqField  + ":  <" + uniqId +
                                 "> not found in list of current/good values " +
                                 "assuming this has been deleted from Database and we " +
@@ -608,6 +662,9 @@ public class IndexManager {
                     }
                 }
             }
+            if (count > 0) {
+                commit(indexName);
+            }
         }
         catch (IOException e) {
             e.printStackTrace();
@@ -618,9 +675,9 @@ public class IndexManager {
             log.info("deleteRecordsNotInList() caught exception : " + e);
         }
         finally {
-            if (reader != null) {
+            if (searcher != null) {
                 try {
-                    reader.close();
+                    manager.release(searcher);
                 }
                 catch (IOException e) {
                     //
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.redhat.satellite.search.index;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Shares one IndexSearcher of an index between all the queries. When the index has
+ * been committed since the searcher was opened, the next acquire reopens the reader,
+ * which only loads the new segments. Readers are reference counted, so a searcher
+ * replaced while a query is still running gets closed when that query releases it.
+ */
+public class IndexSearcherManager {
+
+    private final String path;
+    private IndexSearcher current;
+
+    /**
+     * Constructor
+     * @param pathIn directory of the index
+     */
+    public IndexSearcherManager(String pathIn) {
+        path = pathIn;
+    }
+
+    /**
+     * Returns an up to date searcher, to be given back with {@link #release(IndexSearcher)}
+     * @return the searcher
+     * @throws IOException if the index can not be opened
+     */
+    public synchronized IndexSearcher acquire() throws IOException {
+        if (current == null) {
+            Directory dir = FSDirectory.getDirectory(new File(path));
+            current = new IndexSearcher(IndexReader.open(dir));
+        }
+        else {
+            IndexReader reader = current.getIndexReader();
+            if (!reader.isCurrent()) {
+                IndexReader newReader = reader.reopen();
+                if (newReader != reader) {
+                    current = new IndexSearcher(newReader);
+                    // drop our own reference, running queries still hold theirs
+                    reader.decRef();
+                }
+            }
+        }
+        current.getIndexReader().incRef();
+        return current;
+    }
+
+    /**
+     * Gives back a searcher obtained with {@link #acquire()}
+     * @param searcher the searcher
+     * @throws IOException if closing an outdated reader fails
+     */
+    public void release(IndexSearcher searcher) throws IOException {
+        searcher.getIndexReader().decRef();
+    }
+
+    /**
+     * Closes the current searcher once all the running queries released it
+     * @throws IOException if closing the reader fails
+     */
+    public synchronized void close() throws IOException {
+        if (current != null) {
+            current.getIndexReader().decRef();
+            current = null;
+        }
+    }
+}
@@ -10,7 +10,13 @@ import com.redhat.satellite.search.tests.BaseTestCase;
 import com.redhat.satellite.search.tests.TestUtil;
 
 import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -51,12 +57,23 @@ public class IndexManagerTest extends BaseTestCase {
         DocumentBuilder pdb = new PackageDocumentBuilder();
         Document doc = pdb.buildDocument(objectId, meta);
         indexManager.addToIndex(index, doc, "en");
+        indexManager.commit(index);
         List<Result> results = indexManager.search(index, "name:foo", "en");
         assertTrue(results.size() >= 1);
         results = indexManager.search(index, "desc:really", "en");
         assertTrue(results.size() >= 1);
     }
 
+    public void testStaleLockRemovedAtStart() throws IOException {
+        File indexDir = new File(indexManager.getIndexWorkDir() + "stale");
+        indexDir.mkdirs();
+        Directory dir = FSDirectory.getDirectory(indexDir);
+        assertTrue(dir.makeLock(IndexWriter.WRITE_LOCK_NAME).obtain());
+        assertTrue(IndexReader.isLocked(dir));
+
+        indexManager.start();
+        assertFalse(IndexReader.isLocked(dir));
+    }
 
     @SuppressWarnings("unchecked")
     @Override
@@ -32,12 +32,12 @@ import org.quartz.JobExecutionException;
 import org.quartz.StatefulJob;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -60,25 +60,14 @@ public abstract class GenericIndexTask implements StatefulJob {
         IndexManager indexManager =
             (IndexManager)jobData.get("indexManager");
 
+        IndexingPipeline<GenericRecord> pipeline = null;
         try {
             //try to create the index first incase we never actually
             //   have any records (BZ 537502)
             indexManager.createIndex(getIndexName(), lang);
-            List<GenericRecord> data = getRecords(databaseManager);
-            int count = 0;
-            log.info(super.getClass().toString() + "found [" +
-                    data.size() + "] items to index");
-            for (Iterator<GenericRecord> iter = data.iterator(); iter.hasNext();) {
-                GenericRecord current = iter.next();
-                indexRecord(indexManager, current);
-                count++;
-                if (count == 10 || !iter.hasNext()) {
-                    if (System.getProperties().get("isTesting") == null) {
-                        updateLastRecord(databaseManager, current.getId());
-                    }
-                    count = 0;
-                }
-            }
+            pipeline = createPipeline(databaseManager, indexManager);
+            int count = indexRecords(databaseManager, pipeline);
+            log.info(super.getClass().toString() + " indexed [" + count + "] items");
             //
             // Check to see if any records have been deleted from database, so
             // we should delete from our indexes.
@@ -99,7 +88,30 @@ public abstract class GenericIndexTask implements StatefulJob {
             }
             throw new JobExecutionException(e);
         }
+        finally {
+            if (pipeline != null) {
+                pipeline.close();
+            }
+        }
     }
+
+    private IndexingPipeline<GenericRecord> createPipeline(
+            final DatabaseManager databaseManager, final IndexManager indexManager) {
+        return new IndexingPipeline<GenericRecord>(indexManager, getIndexName()) {
+            @Override
+            protected void index(GenericRecord record) throws IndexingException {
+                indexRecord(indexManager, record);
+            }
+
+            @Override
+            protected void updateLastIndexed(GenericRecord record) throws SQLException {
+                if (System.getProperties().get("isTesting") == null) {
+                    updateLastRecord(databaseManager, record.getId());
+                }
+            }
+        };
+    }
+
     /**
      * @param databaseManager
      * @param sid
@@ -153,13 +165,15 @@ public abstract class GenericIndexTask implements StatefulJob {
 
 
     /**
+     * Streams the records to index into the pipeline
      * @param databaseManager
-     * @return
+     * @param pipeline
+     * @return number of indexed records
      */
-    private List<GenericRecord> getRecords(DatabaseManager databaseManager)
-        throws SQLException {
+    private int indexRecords(DatabaseManager databaseManager,
+            IndexingPipeline<GenericRecord> pipeline)
+        throws SQLException, IndexingException {
         // What was the last object id we indexed?
-        List<GenericRecord> retval = null;
         Query<Long> query = databaseManager.getQuery(getQueryLastRecord());
         Long sid = null;
         try {
@@ -192,14 +206,16 @@ public abstract class GenericIndexTask implements StatefulJob {
             params.put("last_modified", lastRun);
             log.info("GenericIndexTask<" + super.getClass().toString() +
                     " last processed id = " + sid + ", lastRun was " + lastRun);
-            retval = srvrQuery.loadList(params);
-            log.info("GenericIndexTask<" + super.getClass().toString() +
-                    " number of results returned = " + retval.size());
+            try (Query.QueryCursor<GenericRecord> records = srvrQuery.iterate(params)) {
+                for (GenericRecord record : records) {
+                    pipeline.add(record);
+                }
+                return pipeline.finish();
+            }
         }
         finally {
             srvrQuery.close();
         }
-        return retval;
     }
 
     /**
@@ -210,17 +226,16 @@ public abstract class GenericIndexTask implements StatefulJob {
     protected int handleDeletedRecords(DatabaseManager databaseManager,
             IndexManager indexManager)
         throws SQLException {
-        List<Object> records = null;
         Query<Object> query = null;
         String uniqField = null;
         String indexName = null;
-        HashSet<String> idSet = null;
+        List<String> ids = new ArrayList<String>();
         try {
             query = databaseManager.getQuery(getQueryAllIds());
-            records = query.loadList(Collections.EMPTY_MAP);
-            idSet = new HashSet<String>();
-            for (Object record : records) {
-                idSet.add(record.toString());
+            try (Query.QueryCursor<Object> records = query.iterate(Collections.EMPTY_MAP)) {
+                for (Object record : records) {
+                    ids.add(record.toString());
+                }
             }
             uniqField = getUniqueFieldId();
             indexName = getIndexName();
@@ -230,7 +245,9 @@ public abstract class GenericIndexTask implements StatefulJob {
                 query.close();
             }
         }
-        return indexManager.deleteRecordsNotInList(idSet, indexName, uniqField);
+        String[] sortedIds = ids.toArray(new String[ids.size()]);
+        Arrays.sort(sortedIds);
+        return indexManager.deleteRecordsNotInList(sortedIds, indexName, uniqField);
     }
 
     /**
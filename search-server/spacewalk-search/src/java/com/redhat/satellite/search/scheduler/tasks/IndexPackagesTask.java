@@ -27,6 +27,7 @@ import com.redhat.satellite.search.index.builder.DocumentBuilder;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.lucene.document.Document;
+import org.quartz.DisallowConcurrentExecution;
 import org.quartz.Job;
 import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
@@ -35,8 +36,6 @@ import org.quartz.JobExecutionException;
 import java.sql.SQLException;
 import java.util.Calendar;
 import java.util.HashMap;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -44,6 +43,7 @@ import java.util.Map;
  *
  * @version $Rev$
  */
+@DisallowConcurrentExecution
 public class IndexPackagesTask implements Job {
 
     private static Logger log = LogManager.getLogger(IndexPackagesTask.class);
@@ -58,24 +58,14 @@ public class IndexPackagesTask implements Job {
         IndexManager indexManager =
             (IndexManager)jobData.get("indexManager");
 
+        IndexingPipeline<RhnPackage> pipeline = null;
         try {
             if (System.getProperties().get("isTesting") != null) {
                 cleanLastPackage(databaseManager);
             }
-            List<RhnPackage> packages = getPackages(databaseManager);
-            int count = 0;
-            log.info("found [" + packages.size() + "] packages to index");
-            for (Iterator<RhnPackage> iter = packages.iterator(); iter.hasNext();) {
-                RhnPackage current = iter.next();
-                indexPackage(indexManager, current);
-                count++;
-                if (count == 10 || !iter.hasNext()) {
-                    if (System.getProperties().get("isTesting") == null) {
-                        updateLastPackageId(databaseManager, current.getId());
-                    }
-                    count = 0;
-                }
-            }
+            pipeline = createPipeline(databaseManager, indexManager);
+            int count = indexPackages(databaseManager, pipeline);
+            log.info("indexed [" + count + "] packages");
         }
         catch (SQLException e) {
             throw new JobExecutionException(e);
@@ -88,6 +78,28 @@ public class IndexPackagesTask implements Job {
             }
             throw new JobExecutionException(e);
         }
+        finally {
+            if (pipeline != null) {
+                pipeline.close();
+            }
+        }
+    }
+
+    private IndexingPipeline<RhnPackage> createPipeline(
+            final DatabaseManager databaseManager, final IndexManager indexManager) {
+        return new IndexingPipeline<RhnPackage>(indexManager, "package") {
+            @Override
+            protected void index(RhnPackage pkg) throws IndexingException {
+                indexPackage(indexManager, pkg);
+            }
+
+            @Override
+            protected void updateLastIndexed(RhnPackage pkg) throws SQLException {
+                if (System.getProperties().get("isTesting") == null) {
+                    updateLastPackageId(databaseManager, pkg.getId());
+                }
+            }
+        };
     }
 
     private void cleanLastPackage(DatabaseManager databaseManager) throws SQLException {
@@ -143,9 +155,9 @@ public class IndexPackagesTask implements Job {
         }
     }
 
-    private List<RhnPackage> getPackages(DatabaseManager databaseManager)
-            throws SQLException {
-        List<RhnPackage> retval = null;
+    private int indexPackages(DatabaseManager databaseManager,
+            IndexingPipeline<RhnPackage> pipeline)
+            throws SQLException, IndexingException {
         Query<Long> query = databaseManager.getQuery("getLastPackageId");
         Long packageId = null;
         try {
@@ -158,12 +170,14 @@ public class IndexPackagesTask implements Job {
             packageId = new Long(0);
         }
         Query<RhnPackage> pkgQuery = databaseManager.getQuery("listPackagesFromId");
-        try {
-            retval = pkgQuery.loadList(packageId);
+        try (Query.QueryCursor<RhnPackage> packages = pkgQuery.iterate(packageId)) {
+            for (RhnPackage pkg : packages) {
+                pipeline.add(pkg);
+            }
+            return pipeline.finish();
         }
         finally {
             pkgQuery.close();
         }
-        return retval;
     }
 }
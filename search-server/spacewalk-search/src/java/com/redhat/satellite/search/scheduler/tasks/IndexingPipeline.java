@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.satellite.search.scheduler.tasks;
+
+import com.redhat.satellite.search.index.IndexManager;
+import com.redhat.satellite.search.index.IndexingException;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Indexes a stream of database records. Documents are built and added to the index
+ * by a pool of threads, while the thread feeding the records completes them in order,
+ * committing the index and recording the last indexed record once per batch. Before
+ * committing, the records in flight are waited for, so that the index never contains
+ * documents past the last indexed record: a rerun after a crash does not add them twice.
+ * At most a few records per thread are in flight: feeding more records waits for
+ * the oldest one to be indexed.
+ *
+ * @param <T> type of the records
+ */
+public abstract class IndexingPipeline<T> {
+
+    private final IndexManager indexManager;
+    private final String indexName;
+    private final int batchSize;
+    private final int maxPending;
+    private final ExecutorService executor;
+    private final Deque<Future<T>> pending = new ArrayDeque<Future<T>>();
+    private T lastIndexed;
+    private int uncommitted;
+    private int indexed;
+
+    /**
+     * Constructor
+     * @param indexManagerIn index manager
+     * @param indexNameIn name of the index receiving the documents
+     */
+    public IndexingPipeline(IndexManager indexManagerIn, String indexNameIn) {
+        indexManager = indexManagerIn;
+        indexName = indexNameIn;
+        batchSize = indexManagerIn.getCommitBatchSize();
+        int threads = indexManagerIn.getIndexingThreads();
+        maxPending = threads * 4;
+        executor = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Builds the document of a record and adds it to the index.
+     * Called concurrently by the indexing threads.
+     * @param record the record
+     * @throws IndexingException something went wrong adding the document
+     */
+    protected abstract void index(T record) throws IndexingException;
+
+    /**
+     * Records that all the records up to this one are in the index
+     * @param record the last indexed record
+     * @throws SQLException something went wrong saving the record
+     */
+    protected abstract void updateLastIndexed(T record) throws SQLException;
+
+    /**
+     * Queues a record for indexing. Records must be added in the order used
+     * to resume the indexing.
+     * @param record the record
+     * @throws IndexingException something went wrong adding a document
+     * @throws SQLException something went wrong saving the last indexed record
+     */
+    public void add(final T record) throws IndexingException, SQLException {
+        while (pending.size() >= maxPending) {
+            complete(pending.removeFirst());
+        }
+        if (uncommitted >= batchSize) {
+            commit();
+        }
+        pending.addLast(executor.submit(new Callable<T>() {
+            public T call() throws IndexingException {
+                index(record);
+                return record;
+            }
+        }));
+    }
+
+    /**
+     * Waits for all the queued records to be indexed and commits them
+     * @return number of indexed records
+     * @throws IndexingException something went wrong adding a document
+     * @throws SQLException something went wrong saving the last indexed record
+     */
+    public int finish() throws IndexingException, SQLException {
+        if (uncommitted > 0 || !pending.isEmpty()) {
+            commit();
+        }
+        return indexed;
+    }
+
+    /**
+     * Stops the indexing threads, dropping the records which are not indexed yet
+     */
+    public void close() {
+        for (Future<T> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        executor.shutdownNow();
+    }
+
+    private void complete(Future<T> future) throws IndexingException, SQLException {
+        try {
+            lastIndexed = future.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IndexingException(e);
+        }
+        catch (ExecutionException e) {
+            if (e.getCause() instanceof IndexingException) {
+                throw (IndexingException) e.getCause();
+            }
+            throw new IndexingException(e.getCause());
+        }
+        indexed++;
+        uncommitted++;
+    }
+
+    private void commit() throws IndexingException, SQLException {
+        // the index must not hold documents past the last record, nor the last
+        // record point past uncommitted documents
+        while (!pending.isEmpty()) {
+            complete(pending.removeFirst());
+        }
+        indexManager.commit(indexName);
+        updateLastIndexed(lastIndexed);
+        uncommitted = 0;
+    }
+}
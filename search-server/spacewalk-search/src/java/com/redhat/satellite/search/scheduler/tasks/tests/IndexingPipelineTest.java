@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.satellite.search.scheduler.tasks.tests;
+
+import com.redhat.satellite.search.config.Configuration;
+import com.redhat.satellite.search.index.IndexManager;
+import com.redhat.satellite.search.index.IndexingException;
+import com.redhat.satellite.search.scheduler.tasks.IndexingPipeline;
+
+import junit.framework.TestCase;
+
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IndexingPipelineTest
+ */
+public class IndexingPipelineTest extends TestCase {
+
+    private static final String INDEX = "test";
+
+    private final List<IndexingPipeline<Integer>> pipelines = new ArrayList<IndexingPipeline<Integer>>();
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (IndexingPipeline<Integer> pipeline : pipelines) {
+            pipeline.close();
+        }
+        super.tearDown();
+    }
+
+    public void testCommitsInOrderAfterDraining() throws Exception {
+        final TestIndexManager indexManager = new TestIndexManager(3, 4);
+        final Set<Integer> indexed = Collections.synchronizedSet(new HashSet<Integer>());
+        final List<Integer> lastIndexed = new ArrayList<Integer>();
+        IndexingPipeline<Integer> pipeline = track(new IndexingPipeline<Integer>(indexManager, INDEX) {
+            @Override
+            protected void index(Integer record) throws IndexingException {
+                // the first records of each round take the longest
+                sleep(10 - record % 10);
+                indexed.add(record);
+            }
+
+            @Override
+            protected void updateLastIndexed(Integer record) throws SQLException {
+                // the index was committed with every record up to this one, and none past it
+                assertEquals(lastIndexed.size() + 1, indexManager.commits.get());
+                Set<Integer> expected = new HashSet<Integer>();
+                for (int i = 0; i <= record; i++) {
+                    expected.add(i);
+                }
+                assertEquals(expected, new HashSet<Integer>(indexed));
+                lastIndexed.add(record);
+            }
+        });
+
+        for (int i = 0; i < 20; i++) {
+            pipeline.add(i);
+        }
+        assertEquals(20, pipeline.finish());
+
+        assertTrue(lastIndexed.size() > 1);
+        for (int i = 1; i < lastIndexed.size(); i++) {
+            assertTrue(lastIndexed.get(i - 1) < lastIndexed.get(i));
+        }
+        assertEquals(Integer.valueOf(19), lastIndexed.get(lastIndexed.size() - 1));
+    }
+
+    public void testBackpressure() throws Exception {
+        // a single thread: at most 4 records in flight
+        TestIndexManager indexManager = new TestIndexManager(100, 1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final IndexingPipeline<Integer> pipeline = track(new IndexingPipeline<Integer>(indexManager, INDEX) {
+            @Override
+            protected void index(Integer record) throws IndexingException {
+                try {
+                    release.await();
+                }
+                catch (InterruptedException e) {
+                    throw new IndexingException(e);
+                }
+            }
+
+            @Override
+            protected void updateLastIndexed(Integer record) {
+            }
+        });
+
+        final AtomicInteger added = new AtomicInteger();
+        final List<Exception> errors = Collections.synchronizedList(new ArrayList<Exception>());
+        Thread feeder = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 10; i++) {
+                        pipeline.add(i);
+                        added.incrementAndGet();
+                    }
+                }
+                catch (Exception e) {
+                    errors.add(e);
+                }
+            }
+        };
+        feeder.start();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while ((added.get() < 4 || feeder.getState() != Thread.State.WAITING) &&
+                System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        assertEquals(4, added.get());
+        assertEquals(Thread.State.WAITING, feeder.getState());
+
+        release.countDown();
+        feeder.join(5000);
+        assertFalse(feeder.isAlive());
+        assertTrue(errors.isEmpty());
+        assertEquals(10, added.get());
+        assertEquals(10, pipeline.finish());
+    }
+
+    public void testWorkerExceptionIsPropagated() throws Exception {
+        final List<Integer> lastIndexed = new ArrayList<Integer>();
+        IndexingPipeline<Integer> pipeline = track(new FailingPipeline(new TestIndexManager(3, 4), lastIndexed));
+
+        try {
+            for (int i = 0; i < 20; i++) {
+                pipeline.add(i);
+            }
+            pipeline.finish();
+            fail("the indexing error must be thrown");
+        }
+        catch (IndexingException e) {
+            assertEquals("cannot index 5", e.getMessage());
+        }
+        // nothing past the failing record was recorded as indexed
+        for (Integer record : lastIndexed) {
+            assertTrue(record < 5);
+        }
+    }
+
+    public void testRuntimeExceptionIsWrapped() throws Exception {
+        IndexingPipeline<Integer> pipeline = track(new IndexingPipeline<Integer>(new TestIndexManager(3, 2), INDEX) {
+            @Override
+            protected void index(Integer record) {
+                throw new IllegalStateException("broken document");
+            }
+
+            @Override
+            protected void updateLastIndexed(Integer record) {
+                fail("no record was indexed");
+            }
+        });
+
+        pipeline.add(0);
+        try {
+            pipeline.finish();
+            fail("the indexing error must be thrown");
+        }
+        catch (IndexingException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    public void testCursorClosedOnFailure() throws Exception {
+        IndexingPipeline<Integer> pipeline = track(
+                new FailingPipeline(new TestIndexManager(3, 4), new ArrayList<Integer>()));
+        TestCursor cursor = new TestCursor(100);
+
+        // fed like the indexing tasks feed the records of a query cursor
+        try (TestCursor records = cursor) {
+            for (Integer record : records) {
+                pipeline.add(record);
+            }
+            pipeline.finish();
+            fail("the indexing error must be thrown");
+        }
+        catch (IndexingException e) {
+            assertEquals("cannot index 5", e.getMessage());
+        }
+        assertTrue(cursor.closed);
+        assertTrue(cursor.fetched < 100);
+    }
+
+    private IndexingPipeline<Integer> track(IndexingPipeline<Integer> pipeline) {
+        pipelines.add(pipeline);
+        return pipeline;
+    }
+
+    private static void sleep(long millis) throws IndexingException {
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException e) {
+            throw new IndexingException(e);
+        }
+    }
+
+    /**
+     * Pipeline failing to index the record 5
+     */
+    private static class FailingPipeline extends IndexingPipeline<Integer> {
+
+        private final List<Integer> lastIndexed;
+
+        FailingPipeline(IndexManager indexManager, List<Integer> lastIndexedIn) {
+            super(indexManager, INDEX);
+            lastIndexed = lastIndexedIn;
+        }
+
+        @Override
+        protected void index(Integer record) throws IndexingException {
+            if (record == 5) {
+                throw new IndexingException("cannot index " + record);
+            }
+        }
+
+        @Override
+        protected void updateLastIndexed(Integer record) {
+            lastIndexed.add(record);
+        }
+    }
+
+    /**
+     * Counts the commits instead of writing an index
+     */
+    public static class TestIndexManager extends IndexManager {
+
+        private final AtomicInteger commits = new AtomicInteger();
+
+        /**
+         * @param batchSize number of documents between two commits
+         * @param threads number of indexing threads
+         * @throws Exception something went wrong building the configuration
+         */
+        public TestIndexManager(int batchSize, int threads) throws Exception {
+            super(new Configuration(new StringReader(
+                    "search.index_work_dir=" + System.getProperty("java.io.tmpdir") + "\n" +
+                    "search.index.commit_batch_size=" + batchSize + "\n" +
+                    "search.index.threads=" + threads + "\n")));
+        }
+
+        @Override
+        public void commit(String indexName) {
+            assertEquals(INDEX, indexName);
+            commits.incrementAndGet();
+        }
+    }
+
+    /**
+     * Cursor over the records 0..n-1, remembering whether it was closed
+     */
+    private static class TestCursor implements Iterable<Integer>, AutoCloseable {
+
+        private final int size;
+        private int fetched;
+        private boolean closed;
+
+        TestCursor(int sizeIn) {
+            size = sizeIn;
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            return new Iterator<Integer>() {
+                @Override
+                public boolean hasNext() {
+                    return !closed && fetched < size;
+                }
+
+                @Override
+                public Integer next() {
+                    return fetched++;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}